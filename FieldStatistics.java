@@ -0,0 +1,208 @@
+/**
+ * HUDUP: A FRAMEWORK OF E-COMMERCIAL RECOMMENDATION ALGORITHMS
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: http://www.locnguyen.net/st/products/hudup
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.hudup.core.alg.cf;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import net.hudup.core.Constants;
+import net.hudup.core.Util;
+
+/**
+ * This class is a read-only map view of one statistic of fields (users or items), such as means or variances, which are stored in a dense array indexed by an {@link IdDictionary}.
+ * The dictionary and the array travel together in this view, so that a measure which receives the view reads the statistic of a field by one dictionary lookup and one array access
+ * through {@link #stat(int)}, without boxing and without guessing which array backs a map. Neither the dictionary nor the array is modified after the view is created,
+ * so a view which was read once stays consistent while the algorithm publishes newer statistics in newer views.
+ * Fields whose statistic is {@link Constants#UNUSED}, such as users or items whose ratings were all removed, are absent from the map.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class FieldStatistics extends AbstractMap<Integer, Double> implements Serializable {
+
+
+	/**
+	 * Serial version UID for serializable class.
+	 */
+	private static final long serialVersionUID = 1L;
+
+
+	/**
+	 * Dictionary of dense indices of fields.
+	 */
+	protected IdDictionary index = null;
+
+
+	/**
+	 * Statistics indexed by dense index, whose length is not less than size of the dictionary.
+	 */
+	protected double[] values = null;
+
+
+	/**
+	 * Number of fields whose statistics are used, which is counted at the first call of {@link #size()}.
+	 */
+	private transient int size = -1;
+
+
+	/**
+	 * Constructor with specified dictionary and statistics array.
+	 * @param index dictionary of dense indices of fields.
+	 * @param values statistics indexed by dense index, whose length is not less than size of the dictionary.
+	 */
+	public FieldStatistics(IdDictionary index, double[] values) {
+		this.index = index;
+		this.values = values;
+	}
+
+
+	/**
+	 * Creating empty statistics.
+	 * @return empty statistics.
+	 */
+	public static FieldStatistics empty() {
+		return new FieldStatistics(new IdDictionary(), new double[0]);
+	}
+
+
+	/**
+	 * Getting statistics of specified map as view. If the map is a view already, it is returned. Otherwise, the map is copied into a new view.
+	 * @param fieldStats specified statistics map.
+	 * @return statistics of specified map as view.
+	 */
+	public static FieldStatistics of(Map<Integer, Double> fieldStats) {
+		if (fieldStats instanceof FieldStatistics) return (FieldStatistics)fieldStats;
+
+		IdDictionary index = new IdDictionary();
+		double[] values = new double[fieldStats.size()];
+		for (Map.Entry<Integer, Double> entry : fieldStats.entrySet()) {
+			int i = index.add(entry.getKey());
+			if (i >= values.length) values = Arrays.copyOf(values, Math.max(i + 1, values.length * 2));
+			values[i] = entry.getValue() != null ? entry.getValue() : Constants.UNUSED;
+		}
+		return new FieldStatistics(index.optimize(), values);
+	}
+
+
+	/**
+	 * Getting statistic of specified field.
+	 * @param fieldId specified field identifier.
+	 * @return statistic of specified field, {@link Constants#UNUSED} if the field is not in this view.
+	 */
+	public double stat(int fieldId) {
+		int i = this.index.indexOf(fieldId);
+		return i >= 0 && i < this.values.length ? this.values[i] : Constants.UNUSED;
+	}
+
+
+	/**
+	 * Getting dictionary of dense indices of fields.
+	 * @return dictionary of dense indices of fields.
+	 */
+	public IdDictionary getIndex() {
+		return this.index;
+	}
+
+
+	/**
+	 * Getting statistics array indexed by dense index.
+	 * @return statistics array indexed by dense index.
+	 */
+	public double[] getValues() {
+		return this.values;
+	}
+
+
+	/**
+	 * Estimating retained heap size of a view, excluding the dictionary and the array which are counted by their owner.
+	 * @return estimated size in bytes.
+	 */
+	public static long estimateBytes() {
+		return HeapFootprint.align(HeapFootprint.OBJECT_HEADER + 4 + 4 * HeapFootprint.REFERENCE);
+	}
+
+
+	@Override
+	public int size() {
+		// TODO Auto-generated method stub
+		if (this.size < 0) {
+			int size = 0;
+			for (int i = 0; i < this.index.size(); i++) {
+				if (Util.isUsed(this.values[i])) size++;
+			}
+			this.size = size;
+		}
+		return this.size;
+	}
+
+
+	@Override
+	public boolean containsKey(Object key) {
+		// TODO Auto-generated method stub
+		return get(key) != null;
+	}
+
+
+	@Override
+	public Double get(Object key) {
+		// TODO Auto-generated method stub
+		if (!(key instanceof Integer)) return null;
+		int i = this.index.indexOf((Integer)key);
+		return i >= 0 && i < this.values.length && Util.isUsed(this.values[i]) ? this.values[i] : null;
+	}
+
+
+	@Override
+	public Set<Map.Entry<Integer, Double>> entrySet() {
+		// TODO Auto-generated method stub
+		return new AbstractSet<Map.Entry<Integer, Double>>() {
+
+			@Override
+			public Iterator<Map.Entry<Integer, Double>> iterator() {
+				IdDictionary index = FieldStatistics.this.index;
+				double[] values = FieldStatistics.this.values;
+				return new Iterator<Map.Entry<Integer, Double>>() {
+
+					int next = skip(0);
+
+					private int skip(int i) {
+						while (i < index.size() && !Util.isUsed(values[i])) i++;
+						return i;
+					}
+
+					@Override
+					public boolean hasNext() {
+						return next < index.size();
+					}
+
+					@Override
+					public Map.Entry<Integer, Double> next() {
+						if (next >= index.size()) throw new NoSuchElementException();
+						int i = next;
+						next = skip(i + 1);
+						return new SimpleImmutableEntry<>(index.idOf(i), values[i]);
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return FieldStatistics.this.size();
+			}
+		};
+	}
+
+
+}
@@ -0,0 +1,263 @@
+/**
+ * HUDUP: A FRAMEWORK OF E-COMMERCIAL RECOMMENDATION ALGORITHMS
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: http://www.locnguyen.net/st/products/hudup
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.hudup.core.alg.cf;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class reports estimated retained heap sizes of internal structures of an algorithm such as statistics maps, similarity caches, dictionaries, and rating snapshot.
+ * Sizes are estimated from the layout of a 64-bit Java virtual machine with compressed references, which is the default for heaps smaller than 32 gigabytes:
+ * object header is {@link #OBJECT_HEADER} bytes, reference is {@link #REFERENCE} bytes, and objects are aligned to {@link #ALIGNMENT} bytes.
+ * Hash maps are assumed to be {@link java.util.HashMap} (s) filled incrementally with default load factor, and boxed keys and values are counted as distinct objects.
+ * A footprint is either measured from structures which are set up or projected from counts of users, items, and ratings before loading.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class HeapFootprint implements Serializable {
+
+	
+	/**
+	 * Serial version UID for serializable class.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	
+	/**
+	 * Size of object header in bytes.
+	 */
+	public static final int OBJECT_HEADER = 12;
+
+	
+	/**
+	 * Size of array header in bytes, which includes the length field.
+	 */
+	public static final int ARRAY_HEADER = 16;
+
+	
+	/**
+	 * Size of reference in bytes.
+	 */
+	public static final int REFERENCE = 4;
+
+	
+	/**
+	 * Object alignment in bytes.
+	 */
+	public static final int ALIGNMENT = 8;
+
+	
+	/**
+	 * Size of boxed {@link Integer} or boxed {@link Double} in bytes.
+	 */
+	public static final int BOXED = 16;
+
+	
+	/**
+	 * Size of {@link java.util.HashMap} object without table in bytes.
+	 */
+	public static final int HASH_MAP = 48;
+
+	
+	/**
+	 * Size of one entry (node) of {@link java.util.HashMap} without key and value in bytes.
+	 */
+	public static final int HASH_NODE = 32;
+
+	
+	/**
+	 * Estimated sizes of structures in bytes, in the order of adding.
+	 */
+	protected Map<String, Long> sizes = new LinkedHashMap<>();
+
+	
+	/**
+	 * Flag to indicate whether this footprint is projected from counts instead of measured from set-up structures.
+	 */
+	protected boolean projected = false;
+
+	
+	/**
+	 * Constructor with flag of projection.
+	 * @param projected flag to indicate whether this footprint is projected from counts instead of measured from set-up structures.
+	 */
+	public HeapFootprint(boolean projected) {
+		this.projected = projected;
+	}
+
+	
+	/**
+	 * Setting estimated size of specified structure.
+	 * @param name name of structure.
+	 * @param bytes estimated size in bytes.
+	 */
+	public void put(String name, long bytes) {
+		this.sizes.put(name, bytes);
+	}
+
+	
+	/**
+	 * Getting estimated size of specified structure.
+	 * @param name name of structure.
+	 * @return estimated size in bytes, 0 if the structure is not reported.
+	 */
+	public long get(String name) {
+		Long bytes = this.sizes.get(name);
+		return bytes != null ? bytes : 0;
+	}
+
+	
+	/**
+	 * Getting names of reported structures in the order of adding.
+	 * @return names of reported structures.
+	 */
+	public Set<String> getNames() {
+		return Collections.unmodifiableSet(this.sizes.keySet());
+	}
+
+	
+	/**
+	 * Getting total estimated size of all reported structures.
+	 * @return total estimated size in bytes.
+	 */
+	public long getTotal() {
+		long total = 0;
+		for (long bytes : this.sizes.values())
+			total += bytes;
+		return total;
+	}
+
+	
+	/**
+	 * Checking whether this footprint is projected from counts instead of measured from set-up structures.
+	 * @return whether this footprint is projected.
+	 */
+	public boolean isProjected() {
+		return this.projected;
+	}
+
+	
+	/**
+	 * Exporting this footprint as text, one structure per line in mebibytes.
+	 * @return text of this footprint.
+	 */
+	public String toText() {
+		StringBuilder buffer = new StringBuilder();
+		buffer.append("projected=" + this.projected + "\n");
+		for (Map.Entry<String, Long> entry : this.sizes.entrySet())
+			buffer.append(String.format("heap structure=%s bytes=%d mb=%.2f\n", entry.getKey(), entry.getValue(), entry.getValue() / (1024.0 * 1024.0)));
+		buffer.append(String.format("heap structure=total bytes=%d mb=%.2f\n", getTotal(), getTotal() / (1024.0 * 1024.0)));
+		return buffer.toString();
+	}
+
+	
+	@Override
+	public String toString() {
+		// TODO Auto-generated method stub
+		return toText();
+	}
+
+	
+	/**
+	 * Aligning specified size to {@link #ALIGNMENT}.
+	 * @param bytes specified size in bytes.
+	 * @return aligned size in bytes.
+	 */
+	public static long align(long bytes) {
+		return (bytes + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+	}
+
+	
+	/**
+	 * Estimating size of primitive or reference array.
+	 * @param length length of array.
+	 * @param elementBytes size of each element in bytes, for example 8 for double, 4 for int and reference, 1 for byte.
+	 * @return estimated size in bytes.
+	 */
+	public static long ofArray(long length, int elementBytes) {
+		return align(ARRAY_HEADER + length * elementBytes);
+	}
+
+	
+	/**
+	 * Estimating size of {@link java.util.HashMap} with specified number of entries, excluding keys and values.
+	 * @param entries number of entries.
+	 * @return estimated size in bytes.
+	 */
+	public static long ofHashMap(long entries) {
+		long capacity = 16;
+		while (capacity * 3 / 4 < entries)
+			capacity <<= 1;
+		return HASH_MAP + (entries > 0 ? ofArray(capacity, REFERENCE) : 0) + entries * HASH_NODE;
+	}
+
+	
+	/**
+	 * Estimating size of map from boxed keys to boxed values such as map from identifiers to means.
+	 * @param entries number of entries.
+	 * @return estimated size in bytes.
+	 */
+	public static long ofBoxedMap(long entries) {
+		return ofHashMap(entries) + entries * 2 * BOXED;
+	}
+
+	
+	/**
+	 * Estimating size of {@link java.util.HashSet} of boxed elements.
+	 * @param size number of elements.
+	 * @return estimated size in bytes.
+	 */
+	public static long ofBoxedSet(long size) {
+		return align(OBJECT_HEADER + REFERENCE) + ofHashMap(size) + size * BOXED;
+	}
+
+	
+	/**
+	 * Estimating size of {@link java.util.ArrayList} of boxed elements.
+	 * @param size number of elements.
+	 * @return estimated size in bytes.
+	 */
+	public static long ofBoxedList(long size) {
+		return align(OBJECT_HEADER + 3 * 4) + ofArray(size, REFERENCE) + size * BOXED;
+	}
+
+	
+	/**
+	 * Estimating size of two-level cache whose values are boxed numbers, which is the layout of similarity caches.
+	 * @param cache two-level cache.
+	 * @return estimated size in bytes.
+	 */
+	public static long ofCache(Map<Integer, Map<Integer, Object>> cache) {
+		long bytes = ofHashMap(cache.size()) + cache.size() * (long)BOXED;
+		for (Map<Integer, Object> row : cache.values())
+			bytes += ofBoxedMap(row.size());
+		return bytes;
+	}
+
+	
+	/**
+	 * Projecting size of two-level cache whose values are boxed numbers, assuming that entries are spread evenly over rows.
+	 * @param rows number of rows, which is the maximum number of first-level keys.
+	 * @param entries number of cached values.
+	 * @return projected size in bytes.
+	 */
+	public static long ofCache(int rows, long entries) {
+		if (rows <= 0 || entries <= 0) return ofHashMap(0);
+
+		int usedRows = (int)Math.min(rows, entries);
+		long perRow = (entries + usedRows - 1) / usedRows;
+		return ofHashMap(usedRows) + usedRows * (BOXED + ofBoxedMap(perRow));
+	}
+
+
+}
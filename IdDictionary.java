@@ -0,0 +1,292 @@
+/**
+ * HUDUP: A FRAMEWORK OF E-COMMERCIAL RECOMMENDATION ALGORITHMS
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: http://www.locnguyen.net/st/products/hudup
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.hudup.core.alg.cf;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * This class represents a dictionary which assigns each external identifier (user ID or item ID) a dense index from 0 to size - 1.
+ * Statistics of users and items can therefore be stored in primitive arrays indexed by dense index instead of maps of boxed values.
+ * When external identifiers are non-negative and compact, which is the case of popular datasets such as Movielens and FilmTrust, looking up dense index is one array access.
+ * Otherwise, the dictionary falls back to a primitive open-addressing hash table, which does not box identifiers.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class IdDictionary implements Serializable {
+
+	
+	/**
+	 * Serial version UID for serializable class.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	
+	/**
+	 * Minimum range of external identifiers for which direct table is always allowed.
+	 */
+	public static final int DIRECT_MIN_RANGE = 1 << 16;
+
+	
+	/**
+	 * Ratio between the range of external identifiers and the size above {@link #DIRECT_MIN_RANGE} for which direct table is still allowed.
+	 */
+	public static final int DIRECT_RANGE_RATIO = 4;
+
+	
+	/**
+	 * External identifiers indexed by dense index.
+	 */
+	protected int[] ids = new int[16];
+
+	
+	/**
+	 * Number of identifiers.
+	 */
+	protected int size = 0;
+
+	
+	/**
+	 * Open-addressing hash table whose slots store dense index plus one. Zero indicates empty slot.
+	 */
+	protected int[] slots = new int[32];
+
+	
+	/**
+	 * Direct table mapping external identifier to dense index, -1 indicates absent identifier. It is null if identifiers are not compact.
+	 */
+	protected int[] direct = null;
+
+	
+	/**
+	 * Default constructor.
+	 */
+	public IdDictionary() {
+
+	}
+
+	
+	/**
+	 * Constructor with specified external identifiers which are added in their order.
+	 * @param ids specified external identifiers.
+	 */
+	public IdDictionary(int[] ids) {
+		for (int id : ids)
+			add(id);
+		optimize();
+	}
+
+	
+	/**
+	 * Adding specified external identifier.
+	 * @param id specified external identifier.
+	 * @return dense index of specified external identifier.
+	 */
+	public int add(int id) {
+		int index = indexOf(id);
+		if (index >= 0) return index;
+
+		if (this.size == this.ids.length)
+			this.ids = Arrays.copyOf(this.ids, this.size * 2);
+		index = this.size++;
+		this.ids[index] = id;
+
+		if (this.size * 2 > this.slots.length)
+			rehash(this.slots.length * 2);
+		else
+			insertSlot(id, index);
+
+		if (this.direct != null) {
+			if (id < 0 || id >= maxDirectRange())
+				this.direct = null;
+			else {
+				if (id >= this.direct.length) {
+					int oldLength = this.direct.length;
+					this.direct = Arrays.copyOf(this.direct, Math.min(maxDirectRange(), Math.max(id + 1, oldLength * 2)));
+					Arrays.fill(this.direct, oldLength, this.direct.length, -1);
+				}
+				this.direct[id] = index;
+			}
+		}
+
+		return index;
+	}
+
+	
+	/**
+	 * Looking up dense index of specified external identifier.
+	 * @param id specified external identifier.
+	 * @return dense index of specified external identifier, -1 if the identifier is absent.
+	 */
+	public int indexOf(int id) {
+		if (this.direct != null)
+			return id >= 0 && id < this.direct.length ? this.direct[id] : -1;
+
+		int mask = this.slots.length - 1;
+		int slot = hash(id) & mask;
+		while (true) {
+			int entry = this.slots[slot];
+			if (entry == 0)
+				return -1;
+			else if (this.ids[entry - 1] == id)
+				return entry - 1;
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	
+	/**
+	 * Getting external identifier of specified dense index.
+	 * @param index specified dense index.
+	 * @return external identifier of specified dense index.
+	 */
+	public int idOf(int index) {
+		return this.ids[index];
+	}
+
+	
+	/**
+	 * Checking whether specified external identifier exists.
+	 * @param id specified external identifier.
+	 * @return true if specified external identifier exists.
+	 */
+	public boolean contains(int id) {
+		return indexOf(id) >= 0;
+	}
+
+	
+	/**
+	 * Getting number of identifiers.
+	 * @return number of identifiers.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	
+	/**
+	 * Getting copy of external identifiers ordered by dense index.
+	 * @return copy of external identifiers ordered by dense index.
+	 */
+	public int[] ids() {
+		return Arrays.copyOf(this.ids, this.size);
+	}
+
+	
+	/**
+	 * Estimating retained heap size of this dictionary.
+	 * @return estimated size in bytes.
+	 */
+	public long estimateBytes() {
+		return HeapFootprint.align(HeapFootprint.OBJECT_HEADER + 4 + 3 * HeapFootprint.REFERENCE)
+			+ HeapFootprint.ofArray(this.ids.length, 4) + HeapFootprint.ofArray(this.slots.length, 4)
+			+ (this.direct != null ? HeapFootprint.ofArray(this.direct.length, 4) : 0);
+	}
+
+	
+	/**
+	 * Projecting retained heap size of an optimized dictionary of specified number of compact identifiers, whose direct table has the same length as the number of identifiers.
+	 * @param size number of identifiers.
+	 * @return projected size in bytes.
+	 */
+	public static long projectBytes(int size) {
+		int capacity = 16, slots = 32;
+		while (capacity < size) capacity <<= 1;
+		while (slots < 2 * size) slots <<= 1;
+		return HeapFootprint.align(HeapFootprint.OBJECT_HEADER + 4 + 3 * HeapFootprint.REFERENCE)
+			+ HeapFootprint.ofArray(capacity, 4) + HeapFootprint.ofArray(slots, 4) + HeapFootprint.ofArray(size, 4);
+	}
+
+	
+	/**
+	 * Building direct table if external identifiers are non-negative and compact. This method should be called after all identifiers are added.
+	 * @return this dictionary.
+	 */
+	public IdDictionary optimize() {
+		int maxId = -1;
+		for (int i = 0; i < this.size; i++) {
+			int id = this.ids[i];
+			if (id < 0) {
+				this.direct = null;
+				return this;
+			}
+			maxId = Math.max(maxId, id);
+		}
+		if (maxId >= maxDirectRange()) {
+			this.direct = null;
+			return this;
+		}
+
+		this.direct = new int[maxId + 1];
+		Arrays.fill(this.direct, -1);
+		for (int i = 0; i < this.size; i++)
+			this.direct[this.ids[i]] = i;
+
+		return this;
+	}
+
+	
+	/**
+	 * Clearing this dictionary.
+	 */
+	public void clear() {
+		this.ids = new int[16];
+		this.size = 0;
+		this.slots = new int[32];
+		this.direct = null;
+	}
+
+	
+	/**
+	 * Getting maximum range of direct table.
+	 * @return maximum range of direct table.
+	 */
+	private int maxDirectRange() {
+		return (int)Math.min(Integer.MAX_VALUE - 8, Math.max((long)DIRECT_MIN_RANGE, (long)DIRECT_RANGE_RATIO * this.size));
+	}
+
+	
+	/**
+	 * Rebuilding hash table with specified capacity.
+	 * @param capacity specified capacity which is power of two.
+	 */
+	private void rehash(int capacity) {
+		this.slots = new int[capacity];
+		for (int i = 0; i < this.size; i++)
+			insertSlot(this.ids[i], i);
+	}
+
+	
+	/**
+	 * Inserting specified identifier and its dense index into hash table.
+	 * @param id specified identifier.
+	 * @param index dense index.
+	 */
+	private void insertSlot(int id, int index) {
+		int mask = this.slots.length - 1;
+		int slot = hash(id) & mask;
+		while (this.slots[slot] != 0)
+			slot = (slot + 1) & mask;
+		this.slots[slot] = index + 1;
+	}
+
+	
+	/**
+	 * Mixing bits of specified identifier.
+	 * @param id specified identifier.
+	 * @return hash code of specified identifier.
+	 */
+	private static int hash(int id) {
+		int h = id * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+
+}
@@ -0,0 +1,404 @@
+/**
+ * HUDUP: A FRAMEWORK OF E-COMMERCIAL RECOMMENDATION ALGORITHMS
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: http://www.locnguyen.net/st/products/hudup
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.hudup.core.alg.cf;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.hudup.core.Util;
+
+/**
+ * This class represents a composite similarity measure which is an arithmetic expression of measures, numbers, and parameters, for example {@code cpc*jaccard} or {@code mu_alpha*msd + (1-mu_alpha)*jaccard}.
+ * The grammar supports operators +, -, *, / with usual precedence, unary minus, parentheses, decimal numbers, and identifiers. Identifiers are measure names or configuration parameters,
+ * which are resolved by the algorithm. An expression is evaluated from values of its identifiers, which are aligned with {@link #getIdentifiers()}.
+ * Composite measures are defined in configuration as a list of definitions {@code name = expression} separated by semicolons.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class MeasureExpression implements Serializable {
+
+	
+	/**
+	 * Serial version UID for serializable class.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	
+	/**
+	 * Source text of this expression.
+	 */
+	protected String text = null;
+
+	
+	/**
+	 * Root node of this expression.
+	 */
+	protected Node root = null;
+
+	
+	/**
+	 * Distinct identifiers in the order of appearance.
+	 */
+	protected List<String> identifiers = Util.newList();
+
+	
+	/**
+	 * Parsing position, which is only used while parsing.
+	 */
+	private transient int position = 0;
+
+	
+	/**
+	 * Constructor with source text, which is parsed.
+	 * @param text source text.
+	 * @throws IllegalArgumentException if the text is not a valid expression.
+	 */
+	public MeasureExpression(String text) {
+		this.text = text.trim();
+		this.position = 0;
+		this.root = parseSum();
+		skipSpaces();
+		if (this.position < this.text.length())
+			throw error("unexpected character '" + this.text.charAt(this.position) + "'");
+	}
+
+	
+	/**
+	 * Getting source text of this expression.
+	 * @return source text.
+	 */
+	public String getText() {
+		return this.text;
+	}
+
+	
+	/**
+	 * Getting distinct identifiers of this expression in the order of appearance.
+	 * @return distinct identifiers.
+	 */
+	public List<String> getIdentifiers() {
+		return Collections.unmodifiableList(this.identifiers);
+	}
+
+	
+	/**
+	 * Evaluating this expression from values of identifiers.
+	 * @param values values of identifiers which are aligned with {@link #getIdentifiers()}.
+	 * @return value of this expression.
+	 */
+	public double evaluate(double[] values) {
+		return this.root.evaluate(values);
+	}
+
+	
+	@Override
+	public String toString() {
+		// TODO Auto-generated method stub
+		return this.text;
+	}
+
+	
+	/**
+	 * Parsing sum of terms.
+	 * @return parsed node.
+	 */
+	private Node parseSum() {
+		Node node = parseProduct();
+		while (true) {
+			skipSpaces();
+			char c = peek();
+			if (c != '+' && c != '-') return node;
+
+			this.position++;
+			node = new Binary(c, node, parseProduct());
+		}
+	}
+
+	
+	/**
+	 * Parsing product of factors.
+	 * @return parsed node.
+	 */
+	private Node parseProduct() {
+		Node node = parseFactor();
+		while (true) {
+			skipSpaces();
+			char c = peek();
+			if (c != '*' && c != '/') return node;
+
+			this.position++;
+			node = new Binary(c, node, parseFactor());
+		}
+	}
+
+	
+	/**
+	 * Parsing factor which is number, identifier, negated factor, or parenthesized expression.
+	 * @return parsed node.
+	 */
+	private Node parseFactor() {
+		skipSpaces();
+		char c = peek();
+		if (c == '-') {
+			this.position++;
+			return new Binary('-', new Constant(0), parseFactor());
+		}
+		else if (c == '(') {
+			this.position++;
+			Node node = parseSum();
+			skipSpaces();
+			if (peek() != ')') throw error("missing ')'");
+			this.position++;
+			return node;
+		}
+		else if (Character.isDigit(c) || c == '.') {
+			int start = this.position;
+			while (this.position < this.text.length() && (Character.isDigit(peek()) || peek() == '.')) this.position++;
+			if (this.position < this.text.length() && (peek() == 'e' || peek() == 'E')) {
+				this.position++;
+				if (peek() == '+' || peek() == '-') this.position++;
+				while (this.position < this.text.length() && Character.isDigit(peek())) this.position++;
+			}
+			try {
+				return new Constant(Double.parseDouble(this.text.substring(start, this.position)));
+			}
+			catch (NumberFormatException e) {
+				throw error("invalid number '" + this.text.substring(start, this.position) + "'");
+			}
+		}
+		else if (Character.isLetter(c) || c == '_') {
+			int start = this.position;
+			while (this.position < this.text.length() && (Character.isLetterOrDigit(peek()) || peek() == '_' || peek() == '.')) this.position++;
+			String identifier = this.text.substring(start, this.position);
+			int index = this.identifiers.indexOf(identifier);
+			if (index < 0) {
+				index = this.identifiers.size();
+				this.identifiers.add(identifier);
+			}
+			return new Identifier(index);
+		}
+		else if (c == 0)
+			throw error("unexpected end");
+		else
+			throw error("unexpected character '" + c + "'");
+	}
+
+	
+	/**
+	 * Skipping white spaces.
+	 */
+	private void skipSpaces() {
+		while (this.position < this.text.length() && Character.isWhitespace(this.text.charAt(this.position))) this.position++;
+	}
+
+	
+	/**
+	 * Peeking current character.
+	 * @return current character, 0 at the end.
+	 */
+	private char peek() {
+		return this.position < this.text.length() ? this.text.charAt(this.position) : 0;
+	}
+
+	
+	/**
+	 * Creating parsing error at current position.
+	 * @param message error message.
+	 * @return parsing error.
+	 */
+	private IllegalArgumentException error(String message) {
+		return new IllegalArgumentException("Invalid measure expression \"" + this.text + "\" at " + this.position + ": " + message);
+	}
+
+	
+	/**
+	 * Parsing definitions of composite measures, which are separated by semicolons. Each definition is {@code name = expression}.
+	 * @param text text of definitions, which can be null or empty.
+	 * @return map from names to expressions in the order of definitions.
+	 * @throws IllegalArgumentException if some definition is invalid.
+	 */
+	public static Map<String, MeasureExpression> parseDefinitions(String text) {
+		Map<String, MeasureExpression> definitions = new LinkedHashMap<>();
+		if (text == null) return definitions;
+
+		for (String definition : text.split(";")) {
+			if (definition.trim().isEmpty()) continue;
+
+			int equal = definition.indexOf('=');
+			String name = equal > 0 ? definition.substring(0, equal).trim() : "";
+			if (name.isEmpty() || !name.matches("[A-Za-z_][A-Za-z0-9_.]*"))
+				throw new IllegalArgumentException("Invalid measure definition \"" + definition.trim() + "\"");
+			definitions.put(name, new MeasureExpression(definition.substring(equal + 1)));
+		}
+
+		return definitions;
+	}
+
+	
+	/**
+	 * This class is a node of expression tree.
+	 *
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	protected static abstract class Node implements Serializable {
+
+		/**
+		 * Serial version UID for serializable class.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Evaluating this node from values of identifiers.
+		 * @param values values of identifiers.
+		 * @return value of this node.
+		 */
+		public abstract double evaluate(double[] values);
+
+	}
+
+	
+	/**
+	 * This class is a constant node.
+	 *
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	protected static class Constant extends Node {
+
+		/**
+		 * Serial version UID for serializable class.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Constant value.
+		 */
+		protected double value = 0;
+
+		/**
+		 * Constructor with specified value.
+		 * @param value specified value.
+		 */
+		public Constant(double value) {
+			this.value = value;
+		}
+
+		@Override
+		public double evaluate(double[] values) {
+			// TODO Auto-generated method stub
+			return this.value;
+		}
+
+	}
+
+	
+	/**
+	 * This class is an identifier node.
+	 *
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	protected static class Identifier extends Node {
+
+		/**
+		 * Serial version UID for serializable class.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Index of identifier.
+		 */
+		protected int index = 0;
+
+		/**
+		 * Constructor with specified index.
+		 * @param index index of identifier.
+		 */
+		public Identifier(int index) {
+			this.index = index;
+		}
+
+		@Override
+		public double evaluate(double[] values) {
+			// TODO Auto-generated method stub
+			return values[this.index];
+		}
+
+	}
+
+	
+	/**
+	 * This class is a binary operator node.
+	 *
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	protected static class Binary extends Node {
+
+		/**
+		 * Serial version UID for serializable class.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Operator which is one of +, -, *, /.
+		 */
+		protected char operator = '+';
+
+		/**
+		 * Left operand.
+		 */
+		protected Node left = null;
+
+		/**
+		 * Right operand.
+		 */
+		protected Node right = null;
+
+		/**
+		 * Constructor with specified operator and operands.
+		 * @param operator operator which is one of +, -, *, /.
+		 * @param left left operand.
+		 * @param right right operand.
+		 */
+		public Binary(char operator, Node left, Node right) {
+			this.operator = operator;
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		public double evaluate(double[] values) {
+			// TODO Auto-generated method stub
+			double a = this.left.evaluate(values), b = this.right.evaluate(values);
+			switch (this.operator) {
+			case '+':
+				return a + b;
+			case '-':
+				return a - b;
+			case '*':
+				return a * b;
+			default:
+				return a / b;
+			}
+		}
+
+	}
+
+
+}
@@ -0,0 +1,208 @@
+/**
+ * HUDUP: A FRAMEWORK OF E-COMMERCIAL RECOMMENDATION ALGORITHMS
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: http://www.locnguyen.net/st/products/hudup
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.hudup.core.alg.cf;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class represents one generation of the model of a neighbor algorithm, which is the state read by concurrent queries.
+ * A generation consists of the algorithm instance whose statistics, rating snapshot, and caches form the model, called the owner, and the immutable query model published with it.
+ * The owner is a frozen copy of the state of the algorithm, or of a staging instance which was set up in the background by {@link NeighborCF#rebuildSnapshot(RatingSnapshot, java.util.concurrent.Executor)}
+ * while the previous generation kept serving, and it is never modified after it is published. The algorithm publishes a generation by swapping only its reference.
+ * Concurrent queries acquire the current generation by one volatile read and calculate everything from it, so a swap never mixes two models.
+ * A replaced generation is retired: it stops accepting queries and, when its in-flight queries finish, it is closed, which clears its caches that are not shared with its successor.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class ModelGeneration {
+
+	
+	/**
+	 * Sequence of generation identifiers.
+	 */
+	private static final AtomicLong sequence = new AtomicLong(0);
+
+	
+	/**
+	 * Identifier of this generation, which increases with newer generations.
+	 */
+	protected long id = 0;
+
+	
+	/**
+	 * Algorithm instance whose state forms this generation.
+	 */
+	protected NeighborCF owner = null;
+
+	
+	/**
+	 * Query model of this generation.
+	 */
+	protected NeighborCF.QueryModel model = null;
+
+	
+	/**
+	 * Caches of the owner when this generation was published.
+	 */
+	protected List<Map<?, ?>> caches = null;
+
+	
+	/**
+	 * Number of in-flight queries, which is -1 after this generation is closed.
+	 */
+	protected AtomicInteger inFlight = new AtomicInteger(0);
+
+	
+	/**
+	 * Generation which replaced this generation, valid only if this generation is retired.
+	 */
+	protected volatile ModelGeneration successor = null;
+
+	
+	/**
+	 * Flag indicating whether this generation is retired.
+	 */
+	protected volatile boolean retired = false;
+
+	
+	/**
+	 * Constructor with specified owner, query model, and caches.
+	 * @param owner algorithm instance whose state forms this generation.
+	 * @param model query model of this generation.
+	 * @param caches caches of the owner, which are cleared when this generation is closed unless its successor shares them.
+	 */
+	public ModelGeneration(NeighborCF owner, NeighborCF.QueryModel model, List<Map<?, ?>> caches) {
+		this.id = sequence.incrementAndGet();
+		this.owner = owner;
+		this.model = model;
+		this.caches = caches;
+	}
+
+	
+	/**
+	 * Getting identifier of this generation.
+	 * @return identifier of this generation.
+	 */
+	public long getId() {
+		return this.id;
+	}
+
+	
+	/**
+	 * Getting algorithm instance whose state forms this generation.
+	 * @return algorithm instance whose state forms this generation.
+	 */
+	public NeighborCF getOwner() {
+		return this.owner;
+	}
+
+	
+	/**
+	 * Getting query model of this generation.
+	 * @return query model of this generation.
+	 */
+	protected NeighborCF.QueryModel getModel() {
+		return this.model;
+	}
+
+	
+	/**
+	 * Getting number of in-flight queries.
+	 * @return number of in-flight queries, 0 if this generation is closed.
+	 */
+	public int getInFlight() {
+		return Math.max(0, this.inFlight.get());
+	}
+
+	
+	/**
+	 * Checking whether this generation is retired, which means that it was replaced and does not accept new queries.
+	 * @return whether this generation is retired.
+	 */
+	public boolean isRetired() {
+		return this.retired;
+	}
+
+	
+	/**
+	 * Checking whether this generation is closed, which means that it is retired and its in-flight queries finished.
+	 * @return whether this generation is closed.
+	 */
+	public boolean isClosed() {
+		return this.inFlight.get() < 0;
+	}
+
+	
+	/**
+	 * Acquiring this generation for a query. Every successful acquisition must be followed by {@link #release()}.
+	 * @return true if this generation is acquired, false if it is closed and the current generation should be read again.
+	 */
+	public boolean tryAcquire() {
+		while (true) {
+			int count = this.inFlight.get();
+			if (count < 0) return false;
+			if (this.inFlight.compareAndSet(count, count + 1)) return true;
+		}
+	}
+
+	
+	/**
+	 * Releasing this generation after a query. The last query of a retired generation closes it.
+	 */
+	public void release() {
+		if (this.inFlight.decrementAndGet() == 0 && this.retired) closeIfIdle();
+	}
+
+	
+	/**
+	 * Retiring this generation after it was replaced by specified successor. This generation is closed at once if there is no in-flight query
+	 * and otherwise when its last in-flight query is released.
+	 * @param successor generation which replaced this generation, null if the algorithm is unset up, in which case all caches of this generation are cleared.
+	 */
+	public void retire(ModelGeneration successor) {
+		this.successor = successor;
+		this.retired = true;
+		closeIfIdle();
+	}
+
+	
+	/**
+	 * Closing this generation if it has no in-flight query. Caches which are not shared with the successor are cleared so that their memory is released even if this generation is still referenced.
+	 */
+	private void closeIfIdle() {
+		if (!this.inFlight.compareAndSet(0, -1)) return;
+
+		ModelGeneration successor = this.successor;
+		if (this.caches == null) return;
+		for (Map<?, ?> cache : this.caches) {
+			boolean shared = false;
+			for (Map<?, ?> successorCache : successor != null ? successor.caches : Collections.<Map<?, ?>>emptyList()) {
+				if (cache == successorCache) {
+					shared = true;
+					break;
+				}
+			}
+			if (!shared) cache.clear();
+		}
+	}
+
+	
+	@Override
+	public String toString() {
+		// TODO Auto-generated method stub
+		return "generation=" + this.id + " in_flight=" + getInFlight() + " retired=" + this.retired + " closed=" + isClosed();
+	}
+
+
+}
@@ -1,1221 +1,4411 @@
-/**
- * HUDUP: A FRAMEWORK OF E-COMMERCIAL RECOMMENDATION ALGORITHMS
- * (C) Copyright by Loc Nguyen's Academic Network
- * Project homepage: http://www.locnguyen.net/st/products/hudup
- * Email: ng_phloc@yahoo.com
- * Phone: +84-975250362
- */
-package net.hudup.core.alg.cf;
-
-import java.awt.Component;
-import java.io.Serializable;
-import java.rmi.RemoteException;
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
-
-import javax.swing.JOptionPane;
-
-import net.hudup.core.Constants;
-import net.hudup.core.Util;
-import net.hudup.core.alg.SupportCacheAlg;
-import net.hudup.core.data.Attribute;
-import net.hudup.core.data.Attribute.Type;
-import net.hudup.core.data.AttributeList;
-import net.hudup.core.data.DataConfig;
-import net.hudup.core.data.Dataset;
-import net.hudup.core.data.Fetcher;
-import net.hudup.core.data.Profile;
-import net.hudup.core.data.RatingVector;
-import net.hudup.core.logistic.NextUpdate;
-import net.hudup.core.logistic.Vector;
-
-/**
- * This class sets up the neighbor collaborative filtering (Neighbor CF) algorithm. It is memory-based CF because it extends directly {@link MemoryBasedCF} class.
- * Neighbor CF algorithm finds out the nearest neighbor of active user (or active item).
- * Later on, Neighbor CF algorithm recommends items that the nearest neighbor likes (rates with high value) to the active user, with assumption that the nearest neighbor and the active user (active item) share the same interests.
- * <br>
- * The most important feature of any Neighbor CF algorithm is how to calculate the similarity between two rating vectors or between two profiles so as to find out the nearest neighbor.
- * The nearest neighbor is the one who has highest similar measure with the active user (active item).
- * This class provides the method {@link #sim(RatingVector, RatingVector, Profile, Profile, Object...)} to calculate the similarity measure between two pairs.
- * The first pair includes the first rating vector and the first profile.
- * The second pair includes the second rating vector and the second profile.
- * If you only want to calculate the similarity between two rating vectors, two in put profiles are set to be null.
- * If you only want to calculate the similarity between two profiles, two in put rating vectors are set to be null.
- * In current implementation, only three similarity measures are supported such as Pearson, cosine, and hybrid.
- * Hybrid measure means that profile is merged into rating vector as a unified vector for calculating Pearson measure or cosine measure.<br>
- * <br>
- * There are many authors who contributed measure to this class.<br>
- * Authors Shuang-Bo Sun, Zhi-Heng Zhang, Xin-Ling Dong, Heng-Ru Zhang, Tong-Jun Li, Lin Zhang, and Fan Min contributed Triangle measure and TJM measure.<br>
- * 
- * @author Loc Nguyen
- * @version 10.0
- *
- */
-public abstract class NeighborCF extends MemoryBasedCFAbstract implements SupportCacheAlg {
-
-	
-	/**
-	 * Serial version UID for serializable class. 
-	 */
-	private static final long serialVersionUID = 1L;
-
-	
-	/**
-	 * In the configuration, the entry of similarity measure has the name specified by this constant.
-	 */
-	public static final String MEASURE = "measure";
-	
-	
-	/**
-	 * Name of hybrid measure.
-	 */
-	public static final String HYBRID = "hybrid";
-
-	
-	/**
-	 * Name of cosine measure.
-	 */
-	public static final String COSINE = "cosine";
-
-	
-	/**
-	 * Name of cosine + Jaccard measure.
-	 */
-	public static final String COSINEJ = "cosinej";
-
-	
-	/**
-	 * Name of pseudo Cosine + Jaccard.
-	 */
-	public static final String COJ = "coj";
-
-	
-	/**
-	 * Name of Pearson measure.
-	 */
-	public static final String PEARSON = "pearson";
-
-	
-	/**
-	 * Name of Pearson + Jaccard measure.
-	 */
-	public static final String PEARSONJ = "pearsonj";
-
-	
-	/**
-	 * Name of adjusted cosine measure.
-	 */
-	public static final String COD = "cod";
-
-	
-	/**
-	 * Name of constrained Pearson correlation coefficient measure. It is also cosine normalized (CON) measure.
-	 */
-	public static final String CPC = "cpc";
-	
-	
-	/**
-	 * Name of weighted Pearson correlation coefficient measure.
-	 */
-	public static final String WPC = "wpc";
-	
-	
-	/**
-	 * Name of sigmoid Pearson correlation coefficient measure.
-	 */
-	public static final String SPC = "spc";
-
-	
-	/**
-	 * Name of Jaccard measure.
-	 */
-	public static final String JACCARD = "jaccard";
-
-	
-	/**
-	 * Name of Jaccard2 measure.
-	 */
-	public static final String JACCARD2 = "jaccard2";
-
-	
-	/**
-	 * Name of MSD measure.
-	 */
-	public static final String MSD = "msd";
-
-	
-	/**
-	 * Name of MSD + Jaccard measure.
-	 */
-	public static final String MSDJ = "msdj";
-
-	
-	/**
-	 * Name of URP measure.
-	 */
-	public static final String URP = "urp";
-
-	
-	/**
-	 * Name of Triangle measure.
-	 */
-	public static final String TRIANGLE = "triangle";
-
-	
-	/**
-	 * Name of TJM measure.
-	 */
-	public static final String TJM = "tjm";
-
-	
-	/**
-	 * Cosine normalized mode.
-	 */
-	public static final String COSINE_NORMALIZED_FIELD = "cos_normalized";
-
-	
-	/**
-	 * Default cosine normalized mode.
-	 */
-	public static final boolean COSINE_NORMALIZED_DEFAULT = false;
-
-	
-	/**
-	 * MSD fraction mode.
-	 */
-	public static final String MSD_FRACTION_FIELD = "msd_fraction";
-
-	
-	/**
-	 * Default MSD fraction mode.
-	 */
-	public static final boolean MSD_FRACTION_DEFAULT = false;
-
-	
-	/**
-	 * Threshold for WPCC (weight weighted Pearson correlation coefficient).
-	 */
-	public static final double WPC_THRESHOLD = 50;
-
-	
-	/**
-	 * Rating median.
-	 */
-	protected double ratingMedian = Constants.UNUSED;
-
-	
-	/**
-	 * General user mean.
-	 */
-	protected double ratingMean = Constants.UNUSED;
-
-	
-	/**
-	 * General user variance.
-	 */
-	protected double ratingVar = Constants.UNUSED;
-
-	
-	/**
-	 * Internal item identifiers.
-	 */
-	protected Set<Integer> userIds = Util.newSet();
-
-	
-	/**
-	 * Internal user means.
-	 */
-	protected Map<Integer, Double> userMeans = Util.newMap();
-
-	
-	/**
-	 * Internal user variances.
-	 */
-	protected Map<Integer, Double> userVars = Util.newMap();
-
-	
-	/**
-	 * Internal item identifiers.
-	 */
-	protected Set<Integer> itemIds = Util.newSet();
-
-	
-	/**
-	 * Internal item means.
-	 */
-	protected Map<Integer, Double> itemMeans = Util.newMap();
-
-	
-	/**
-	 * Internal item variances.
-	 */
-	protected Map<Integer, Double> itemVars = Util.newMap();
-	
-	
-//	/**
-//	 * User rating cache (user id, item id, rating value).
-//	 */
-//	protected Map<Integer, Map<Integer, Object>> userRatingCache = Util.newMap();
-	
-	
-	/**
-	 * Row similarity cache.
-	 */
-	protected Map<Integer, Map<Integer, Object>> rowSimCache = Util.newMap();
-
-
-	/**
-	 * Column similarity cache.
-	 */
-	protected Map<Integer, Map<Integer, Object>> columnSimCache = Util.newMap();
-
-	
-	/**
-	 * Default constructor.
-	 */
-	public NeighborCF() {
-		// TODO Auto-generated constructor stub
-		
-	}
-
-
-	@Override
-	public synchronized void setup(Dataset dataset, Object...params) throws RemoteException {
-		// TODO Auto-generated method stub
-		super.setup(dataset, params);
-		
-		this.ratingMedian = (this.config.getMinRating() + this.config.getMaxRating()) / 2.0;
-		
-		updateUserMeanVars(dataset);
-		updateItemMeanVars(dataset);
-	}
-
-
-	@Override
-	public synchronized void unsetup() throws RemoteException {
-		// TODO Auto-generated method stub
-		super.unsetup();
-		
-		this.ratingMedian = Constants.UNUSED;
-		
-		this.ratingMean = Constants.UNUSED;
-		this.ratingVar = Constants.UNUSED;
-		this.userMeans.clear();
-		this.userVars.clear();
-		
-		this.itemIds.clear();
-		this.itemMeans.clear();
-		this.itemVars.clear();
-		this.userIds.clear();
-		
-//		this.userRatingCache.clear();
-		this.rowSimCache.clear();
-		this.columnSimCache.clear();
-	}
-
-
-	/**
-	 * Updating individual user means and variances from specified dataset.
-	 * @param dataset specified dataset.
-	 * @throws RemoteException if any error raises.
-	 */
-	private void updateUserMeanVars(Dataset dataset) throws RemoteException {
-		int totalRatingCount = 0;
-		this.ratingMean = 0.0;
-		this.ratingVar = 0.0;
-		this.userIds.clear();
-		this.userMeans.clear();
-		this.userVars.clear();
-		
-		//Calculating user means
-		Fetcher<RatingVector> users = dataset.fetchUserRatings();
-		while (users.next()) {
-			RatingVector user = users.pick();
-			if (user == null) continue;
-			
-			int userId = user.id();
-			this.userIds.add(userId);
-			
-			Set<Integer> itemIds = user.fieldIds(true);
-			double meanSum = 0;
-			for (int itemId : itemIds) {
-				double value = user.get(itemId).value;
-				meanSum += value;
-				
-				totalRatingCount++;
-				this.ratingMean += value;
-			}
-			this.userMeans.put(userId, meanSum / (double)(itemIds.size()));
-		}
-		this.ratingMean = this.ratingMean / (double)totalRatingCount;
-
-		//Calculating user variances
-		users.reset();
-		while (users.next()) {
-			RatingVector user = users.pick();
-			if (user == null) continue;
-		
-			Set<Integer> itemIds = user.fieldIds(true);
-			int userId = user.id();
-			double varSum = 0;
-			double userMean = this.userMeans.get(userId);
-			for (int itemId : itemIds) {
-				double value = user.get(itemId).value;
-				double d = value - userMean;
-				varSum += d*d;
-				
-				double D = value - this.ratingMean;
-				this.ratingVar += D*D;
-			}
-			this.userVars.put(userId, varSum / (double)(itemIds.size()));
-		}
-		this.ratingVar = this.ratingVar / (double)totalRatingCount;
-		
-		users.close();
-	}
-
-	
-	/**
-	 * Updating individual item means and variances from specified dataset.
-	 * @param dataset specified dataset.
-	 * @throws RemoteException if any error raises.
-	 */
-	private void updateItemMeanVars(Dataset dataset) throws RemoteException {
-		this.itemIds.clear();
-		this.itemMeans.clear();
-		this.itemVars.clear();
-		
-		//Calculating item means
-		Fetcher<RatingVector> items = dataset.fetchItemRatings();
-		while (items.next()) {
-			RatingVector item = items.pick();
-			if (item == null) continue;
-			
-			int itemId = item.id();
-			this.itemIds.add(itemId);
-			
-			Set<Integer> userIds = item.fieldIds(true);
-			double meanSum = 0;
-			for (int userId : userIds) {
-				double value = item.get(userId).value;
-				meanSum += value;
-			}
-			this.itemMeans.put(itemId, meanSum / (double)(userIds.size()));
-		}
-
-		//Calculating user variances
-		items.reset();
-		while (items.next()) {
-			RatingVector item = items.pick();
-			if (item == null) continue;
-		
-			Set<Integer> userIds = item.fieldIds(true);
-			int itemId = item.id();
-			double varSum = 0;
-			double itemMean = this.itemMeans.get(itemId);
-			for (int userId : userIds) {
-				double value = item.get(userId).value;
-				double d = value - itemMean;
-				varSum += d*d;
-			}
-			this.itemVars.put(itemId, varSum / (double)(userIds.size()));
-		}
-		
-		items.close();
-	}
-	
-	
-	/**
-	 * Getting the list of supported similar measures in names.
-	 * @return supported similar measures.
-	 */
-	public List<String> getSupportedMeasures() {
-		// TODO Auto-generated method stub
-		Set<String> mSet = Util.newSet();
-		mSet.add(COSINE);
-//		mSet.add(COSINEJ);
-		mSet.add(COJ);
-		mSet.add(PEARSON);
-//		mSet.add(PEARSONJ);
-		mSet.add(COD);
-		mSet.add(CPC);
-		mSet.add(WPC);
-		mSet.add(SPC);
-		mSet.add(JACCARD);
-		mSet.add(JACCARD2);
-		mSet.add(MSD);
-//		mSet.add(MSDJ);
-		mSet.add(URP);
-		mSet.add(TRIANGLE);
-//		mSet.add(TJM);
-		
-		List<String> measures = Util.newList();
-		measures.clear();
-		measures.addAll(mSet);
-		Collections.sort(measures);
-		return measures;
-	}
-
-	
-	/**
-	 * Getting the default similarity measure.
-	 * @return default similar measure.
-	 */
-	protected String getDefaultMeasure() {
-		return COSINE;
-	}
-
-	
-	/**
-	 * Getting the similarity measure.
-	 * @return similar measure.
-	 */
-	public String getMeasure() {
-		String measure = config.getAsString(MEASURE);
-		if (measure == null)
-			return getDefaultMeasure();
-		else
-			return measure;
-	}
-	
-	
-	/**
-	 * Setting the similarity measure.
-	 * @param measure the similarity measure.
-	 */
-	public synchronized void setMeasure(String measure) {
-		config.put(MEASURE, measure);
-	}
-	
-	
-	/**
-	 * Checking whether the supported similarity can be cached. In some case, the algorithm is cached but the similarity measure is not cached.
-	 * In current version of this class, the method always returns true.
-	 * @return true if the supported similarity can be cached.
-	 */
-	protected boolean isCachedSim() {
-		return true;
-	}
-	
-	
-//	@Override
-//	public synchronized RatingVector estimate(RecommendParam param, Set<Integer> queryIds) throws RemoteException {
-//		// TODO Auto-generated method stub
-//		if (param.ratingVector == null) //Consider not estimating yet.
-//			return null;
-//		if (!isCached())
-//			return estimate0(param, queryIds);
-//		
-//		int userId = param.ratingVector.id();
-//		if (userId < 0) //user is not stored in database.
-//			return estimate0(param, queryIds);
-//			
-//		if (this.userRatingCache.containsKey(userId)) { //Already estimated
-//			Map<Integer, Object> ratingMap = this.userRatingCache.get(userId);
-//			if (ratingMap == null) {
-//				ratingMap = Util.newMap();
-//				this.userRatingCache.put(userId, ratingMap);
-//			}
-//				
-//			RatingVector result = param.ratingVector.newInstance(true);
-//			Set<Integer> queryIds2 = Util.newSet();
-//			queryIds2.addAll(queryIds);
-//			if (ratingMap.size() > 0) {
-//				for (int itemId : queryIds) {
-//					if (!ratingMap.containsKey(itemId))
-//						continue;
-//					
-//					queryIds2.remove(itemId);
-//					double ratingValue = (double)ratingMap.get(itemId); //cache can store unused rating value.
-//					if (Util.isUsed(ratingValue))
-//						result.put(itemId, ratingValue);
-//				}
-//				if (queryIds2.size() == 0)
-//					return result.size() == 0 ? null : result;
-//			}
-//			
-//			RatingVector result2 = estimate0(param, queryIds2);
-//			if (result2 == null || result2.size() == 0) {
-//				for (int itemId : queryIds2) {
-//					ratingMap.put(itemId, Constants.UNUSED); //Consider estimated.
-//				}
-//				return result.size() == 0 ? null : result;
-//			}
-//			
-//			Set<Integer> itemIds = result2.fieldIds(); //Resulted items are always rated.
-//			for (int itemId : itemIds) {
-//				double value = result2.get(itemId).value;
-//				ratingMap.put(itemId, value);
-//				result.put(itemId, value);
-//			}
-//			return result.size() == 0 ? null : result;
-//		}
-//		
-//		RatingVector result = estimate0(param, queryIds);
-//		Map<Integer, Object> ratingMap = Util.newMap();
-//		userRatingCache.put(userId, ratingMap); //Consider estimated.
-//		if (result == null) return null;
-//		
-//		Set<Integer> itemIds = result.fieldIds(); //Resulted items are always rated.
-//		for (int itemId : itemIds) {
-//			double value = result.get(itemId).value;
-//			ratingMap.put(itemId, value);
-//		}
-//		return result.size() == 0 ? null : result;
-//	}
-//	
-//	
-//	/**
-//	 * This method is very important, which is used to estimate rating values of given items (users) without caching. Any class that extends this abstract class must implement this method.
-//	 * Note that the role of user and the role of item are exchangeable. Rating vector can be user rating vector or item rating vector. Please see {@link RatingVector} for more details. 
-//	 * The input parameters are a recommendation parameter and a set of item (user) identifiers.
-//	 * The output result is a set of predictive or estimated rating values of items (users) specified by the second input parameter.
-//	 * @param param recommendation parameter. Please see {@link RecommendParam} for more details of this parameter.
-//	 * @param queryIds set of identifications (IDs) of items that need to be estimated their rating values.
-//	 * @return rating vector contains estimated rating values of the specified set of IDs of items (users). Return null if cannot estimate.
-//	 */
-//	protected abstract RatingVector estimate0(RecommendParam param, Set<Integer> queryIds) throws RemoteException;
-	
-	
-	/**
-	 * Calculating the similarity between two pairs.
-	 * The first pair includes the first rating vector and the first profile.
-	 * The second pair includes the second rating vector and the second profile.
-	 * If you only want to calculate the similarity between two rating vectors, two in put profiles are set to be null.
-	 * If you only want to calculate the similarity between two profiles, two in put rating vectors are set to be null.
-	 * In current implementation, only three similarity measures are supported such as Pearson, cosine, and hybrid.
-	 * Hybrid measure means that profile is merged into rating vector as a unified vector for calculating Pearson measure or cosine measure.
-	 * In current implementation, hybrid measure is not supported.
-	 * 
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @param parameters extra parameters.
-	 * @return similarity between both two {@link RatingVector} (s) and two {@link Profile} (s).
-	 */
-	public synchronized double sim(RatingVector vRating1, RatingVector vRating2, Profile profile1, Profile profile2, Object...parameters) {
-		String measure = getMeasure();
-		if (!isCachedSim()) //In some case, the algorithm is cached but the similarity measure is not cached.
-			return sim0(measure, vRating1, vRating2, profile1, profile2, parameters);
-		
-		Task task = new Task() {
-			
-			@Override
-			public Object perform(Object...params) {
-				return sim0(measure, vRating1, vRating2, profile1, profile2, parameters);
-			}
-		};
-		
-		return (double)cacheTask(vRating1.id(), vRating2.id(), this.rowSimCache, task);
-	}
-	
-	
-	/**
-	 * Calculating the similarity measure between two pairs as usual.
-	 * @param measure specified measure.
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @param params extra parameter.
-	 * @return similarity between both two {@link RatingVector} (s) and two {@link Profile} (s) as usual.
-	 */
-	protected double sim0(String measure, RatingVector vRating1, RatingVector vRating2, Profile profile1, Profile profile2, Object...params) {
-//		boolean hybrid = config.getAsBoolean(HYBRID);
-//		if (!hybrid) {
-//			profile1 = null;
-//			profile2 = null;
-//		}
-		
-		if (measure.equals(COSINE))
-			return cosine(vRating1, vRating2, profile1, profile2);
-		if (measure.equals(COSINEJ))
-			return cosine(vRating1, vRating2, profile1, profile2) * jaccard(vRating1, vRating2, profile1, profile2);
-		if (measure.equals(COJ))
-			return coj(vRating1, vRating2, profile1, profile2);
-		else if (measure.equals(PEARSON))
-			return corr(vRating1, vRating2, profile1, profile2);
-		else if (measure.equals(PEARSONJ))
-			return corr(vRating1, vRating2, profile1, profile2) * jaccard(vRating1, vRating2, profile1, profile2);
-		else if (measure.equals(COD))
-			return cod(vRating1, vRating2, profile1, profile2);
-		else if (measure.equals(CPC))
-			return cpc(vRating1, vRating2, profile1, profile2);
-		else if (measure.equals(WPC))
-			return wpc(vRating1, vRating2, profile1, profile2);
-		else if (measure.equals(SPC))
-			return spc(vRating1, vRating2, profile1, profile2);
-		else if (measure.equals(JACCARD))
-			return jaccard(vRating1, vRating2, profile1, profile2);
-		else if (measure.equals(JACCARD2))
-			return jaccard2(vRating1, vRating2, profile1, profile2);
-		else if (measure.equals(MSD))
-			return msd(vRating1, vRating2, profile1, profile2);
-		else if (measure.equals(MSDJ))
-			return msd(vRating1, vRating2, profile1, profile2) * jaccard(vRating1, vRating2, profile1, profile2);
-		else if (measure.equals(URP))
-			return urp(vRating1, vRating2, profile1, profile2);
-		else if (measure.equals(TRIANGLE))
-			return triangle(vRating1, vRating2, profile1, profile2);
-		else if (measure.equals(TJM))
-			return triangle(vRating1, vRating2, profile1, profile2) * jaccard(vRating1, vRating2, profile1, profile2);
-		else
-			return Constants.UNUSED;
-	}
-	
-	
-	/**
-	 * Calculating the cosine measure between two pairs.
-	 * The first pair includes the first rating vector and the first profile.
-	 * The second pair includes the second rating vector and the second profile.
-	 * 
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @return the cosine between both two {@link RatingVector} (s) and two {@link Profile} (s).
-	 */
-	@NextUpdate
-	protected double cosine(
-			RatingVector vRating1, RatingVector vRating2,
-			Profile profile1, Profile profile2) {
-		
-		boolean normalized = getConfig().getAsBoolean(COSINE_NORMALIZED_FIELD);
-		return normalized ? vRating1.cosine(vRating2, this.ratingMedian) : vRating1.cosine(vRating2);
-
-//		boolean normalized = getConfig().getAsBoolean(COSINE_NORMALIZED_FIELD);
-//		if (profile1 == null || profile2 == null)
-//			return normalized ? vRating1.cosine(vRating2, this.ratingMedian) : vRating1.cosine(vRating2);
-//		
-//		Vector[] vectors = toNormVector(vRating1, vRating2, profile1, profile2);
-//		Vector vector1 = vectors[0];
-//		Vector vector2 = vectors[1];
-//		
-//		return normalized ? vector1.cosine(vector2, this.ratingMedian) : vector1.cosine(vector2);
-	}
-
-	
-	/**
-	 * Calculating the COD (adjusted cosine) measure between two pairs.
-	 * The first pair includes the first rating vector and the first profile.
-	 * The second pair includes the second rating vector and the second profile.
-	 * 
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @return ACOS measure between both two rating vectors.
-	 */
-	protected abstract double cod(RatingVector vRating1, RatingVector vRating2,
-			Profile profile1, Profile profile2);
-	
-
-	/**
-	 * Calculating the COD (adjusted cosine) measure between two rating vectors.
-	 * @param vRating1 the first rating vectors.
-	 * @param vRating2 the second rating vectors.
-	 * @param fieldMeans mean value of field ratings.
-	 * @return ACOS (adjusted cosine) measure between two rating vectors.
-	 */
-	protected double cod(RatingVector vRating1, RatingVector vRating2, Map<Integer, Double> fieldMeans) {
-		Set<Integer> common = commonFieldIds(vRating1, vRating2);
-		if (common.size() == 0) return Constants.UNUSED;
-
-		double VX = 0, VY = 0;
-		double VXY = 0;
-		for (int fieldId : common) {
-			double mean = fieldMeans.get(fieldId);
-			double deviate1 = vRating1.get(fieldId).value - mean;
-			double deviate2 = vRating2.get(fieldId).value - mean;
-			
-			VX  += deviate1 * deviate1;
-			VY  += deviate2 * deviate2;
-			VXY += deviate1 * deviate2;
-		}
-		
-		if (VX == 0 || VY == 0)
-			return Constants.UNUSED;
-		else
-			return VXY / Math.sqrt(VX * VY);
-	}
-
-	
-	/**
-	 * Calculating the Cosine-Jaccard measure between two pairs. Cosine-Jaccard is developed by Loc Nguyen.
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @author Loc Nguyen
-	 * @return Cosine-Jaccard measure between both two rating vectors and profiles.
-	 */
-	protected double coj(
-			RatingVector vRating1, RatingVector vRating2,
-			Profile profile1, Profile profile2) {
-		Set<Integer> union = unionFieldIds(vRating1, vRating2);
-		
-		boolean normalized = getConfig().getAsBoolean(COSINE_NORMALIZED_FIELD);
-		double VX = 0, VY = 0;
-		double VXY = 0;
-		for (int fieldId : union) {
-			double deviate1 = Constants.UNUSED;
-			double deviate2 = Constants.UNUSED;
-			if (vRating1.isRated(fieldId))
-				deviate1 = vRating1.get(fieldId).value - (normalized ? this.ratingMedian : 0);
-			if (vRating2.isRated(fieldId))
-				deviate2 = vRating2.get(fieldId).value - (normalized ? this.ratingMedian : 0);
-			
-			if (Util.isUsed(deviate1))
-				VX  += deviate1 * deviate1;
-			if (Util.isUsed(deviate2))
-				VY  += deviate2 * deviate2;
-			if (Util.isUsed(deviate1) && Util.isUsed(deviate2))
-				VXY += deviate1 * deviate2;
-		}
-		
-		if (VX == 0 || VY == 0)
-			return Constants.UNUSED;
-		else
-			return VXY / Math.sqrt(VX * VY);
-	}
-	
-	
-	/**
-	 * Calculating the correlation coefficient between two pairs.
-	 * The first pair includes the first rating vector and the first profile.
-	 * The second pair includes the second rating vector and the second profile.
-	 * 
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @return correlation coefficient between both two {@link RatingVector} (s) and two {@link Profile} (s).
-	 */
-	@NextUpdate
-	protected double corr(
-			RatingVector vRating1, RatingVector vRating2,
-			Profile profile1, Profile profile2) {
-		
-		return vRating1.corr(vRating2);
-		
-//		if (profile1 == null || profile2 == null)
-//			return vRating1.corr(vRating2);
-//
-//		Vector[] vectors = toNormVector(vRating1, vRating2, profile1, profile2);
-//		Vector vector1 = vectors[0];
-//		Vector vector2 = vectors[1];
-//		
-//		return vector1.corr(vector2);
-	}
-
-	
-	/**
-	 * Normalizing two pairs into two normalized vectors.
-	 * The first pair includes the first rating vector and the first profile.
-	 * The second pair includes the second rating vector and the second profile.
-	 * Note, all elements of normalized vectors are &gt;=0 and &lt;=1 and sum of them is 1.
-	 * However, for the result of this method, each normalized vector corresponding to each pair has two parts such as part of rating vector and part of profile.
-	 * Part of rating vector is normalized partially and part of profile is normalized partially.
-	 * For example, suppose the first pair is (1, 2, 3, 4, 5, 6) in which part of rating vector is (1, 2, 3) and part of profile is (4, 5, 6).
-	 * Such pair is normalized as vector (1/6, 2/6, 3/6, 4/15, 5/15, 6/15) because the normalized rating vector (1/6, 2/6, 3/6) is and the normalized profile is (4/15, 5/15, 6/15).
-	 * If profile does not contains numbers, there is a conversion.
-	 * 
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @return array of two normalized vectors.
-	 */
-	@SuppressWarnings("unused")
-	@Deprecated
-	private Vector[] toNormVector(
-			RatingVector vRating1, RatingVector vRating2, 
-			Profile profile1, Profile profile2) {
-		
-		Vector vector1 = new Vector(0, 0);
-		Vector vector2 = new Vector(0, 0);
-		
-		Vector[] vectors = toNormVector(vRating1, vRating2);
-		if (vectors.length != 0) {
-			vector1.concat(vectors[0]);
-			vector2.concat(vectors[1]);
-		}
-		
-		vectors = toNormDiscreteVectors(profile1, profile2);
-		if (vectors.length != 0) {
-			vector1.concat(vectors[0]);
-			vector2.concat(vectors[1]);
-		}
-		
-		return new Vector[] { vector1, vector2 };
-	}
-	
-	
-	/**
-	 * Normalizing two rating vectors into two normalized vectors.
-	 * For example, two rating vectors (1, 3, 5) and (2, 4, 6) are normalized into (1/9, 3/9, 5/9) and (2/12, 4/12, 6/12).
-	 * 
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @return array of two normalized {@link Vector} (s) from two rating vectors.
-	 */
-	@Deprecated
-	private Vector[] toNormVector(RatingVector vRating1, RatingVector vRating2) {
-		
-		List<Integer> common = Util.newList();
-		common.addAll(vRating1.fieldIds(true));
-		common.retainAll(vRating2.fieldIds(true));
-		if (common.size() == 0)
-			return new Vector[0];
-		
-		double n = dataset.getConfig().getMaxRating() - dataset.getConfig().getMinRating();
-		
-		double[] data1 = new double[common.size()];
-		double[] data2 = new double[common.size()];
-		for (int i = 0; i < common.size(); i++) {
-			int id = common.get(i);
-			
-			data1[i] = vRating1.get(id).value / n; 
-			data2[i] = vRating2.get(id).value / n; 
-		}
-		
-		return new Vector[] { new Vector(data1), new Vector(data2)};
-	}
-	
-	
-	/**
-	 * Normalizing two profiles into two normalized vector.
-	 * Note, values in such two profiles are binary or nominal. Nominal indicates discrete and non-number data such as weekdays {Monday, Tuesday, Wednesday, Thursday, Friday, Saturday, Sunday}.
-	 * 
-	 * @param profile1 first profiles.
-	 * @param profile2 second profiles.
-	 * @return array of two normalized {@link Vector} (s) from two profiles.
-	 */
-	@Deprecated
-	private Vector[] toNormDiscreteVectors(Profile profile1, Profile profile2) {
-		if (profile1 == null || profile2 == null)
-			return new Vector[0];
-		
-		List<Double> data1 = Util.newList();
-		List<Double> data2 = Util.newList();
-
-		AttributeList attRef = profile1.getAttRef();
-		for (int i = 0; i < attRef.size(); i++) {
-			Attribute att = attRef.get(i);
-			if (!att.isCategory() || att.isKey())
-				continue;
-			if (profile1.isMissing(i) || profile2.isMissing(i))
-				continue;
-			
-			double value1 = profile1.getValueAsReal(i);
-			double value2 = profile2.getValueAsReal(i);
-			if (att.getType() == Type.nominal) {
-				value1 = profile1.getNominalNormalizedValue(i);
-				value2 = profile2.getNominalNormalizedValue(i);
-			}
-			data1.add(value1);
-			data2.add(value2);
-		}
-		
-		if (data1.size() == 0 || data2.size() == 0)
-			return new Vector[0];
-		
-		return new Vector[] { new Vector(data1), new Vector(data2)};
-	}
-
-	
-	/**
-	 * Calculating the CPC (constrained Pearson correlation) measure between two pairs.
-	 * It is also cosine normalized (CON) measure.
-	 * The first pair includes the first rating vector and the first profile.
-	 * The second pair includes the second rating vector and the second profile.
-	 * 
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @return CPC measure between both two rating vectors.
-	 */
-	protected double cpc(
-			RatingVector vRating1, RatingVector vRating2,
-			Profile profile1, Profile profile2) {
-		Set<Integer> common = commonFieldIds(vRating1, vRating2);
-		if (common.size() == 0) return Constants.UNUSED;
-		
-		double VX = 0, VY = 0;
-		double VXY = 0;
-		for (int fieldId : common) {
-			double deviate1 = vRating1.get(fieldId).value - this.ratingMedian;
-			double deviate2 = vRating2.get(fieldId).value - this.ratingMedian;
-			
-			VX  += deviate1 * deviate1;
-			VY  += deviate2 * deviate2;
-			VXY += deviate1 * deviate2;
-		}
-		
-		if (VX == 0 || VY == 0)
-			return Constants.UNUSED;
-		else
-			return VXY / Math.sqrt(VX * VY);
-	}
-	
-	
-	/**
-	 * Calculating the WPC (weighted Pearson correlation) measure between two pairs. SMTP is developed by Yung-Shen Lin, Jung-Yi Jiang, Shie-Jue Lee, and implemented by Loc Nguyen.
-	 * The first pair includes the first rating vector and the first profile.
-	 * The second pair includes the second rating vector and the second profile.
-	 * 
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @return WPCC measure between both two rating vectors.
-	 */
-	protected double wpc(
-			RatingVector vRating1, RatingVector vRating2,
-			Profile profile1, Profile profile2) {
-		Set<Integer> common = commonFieldIds(vRating1, vRating2);
-		double N = common.size();
-		if (N <= WPC_THRESHOLD)
-			return corr(vRating1, vRating2, profile1, profile2) * (N/WPC_THRESHOLD);
-		else
-			return corr(vRating1, vRating2, profile1, profile2);
-	}
-	
-	
-	/**
-	 * Calculating the WPC (weighted Pearson correlation) measure between two pairs. SMTP is developed by Yung-Shen Lin, Jung-Yi Jiang, Shie-Jue Lee, and implemented by Loc Nguyen.
-	 * The first pair includes the first rating vector and the first profile.
-	 * The second pair includes the second rating vector and the second profile.
-	 * 
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @return WPC measure between both two rating vectors.
-	 */
-	protected double spc(
-			RatingVector vRating1, RatingVector vRating2,
-			Profile profile1, Profile profile2) {
-		Set<Integer> common = commonFieldIds(vRating1, vRating2);
-		double N = common.size();
-		
-		return corr(vRating1, vRating2, profile1, profile2) / (1 + Math.exp(-N/2.0));
-	}
-	
-	
-	/**
-	 * Calculating the Jaccard measure between two pairs.
-	 * The first pair includes the first rating vector and the first profile.
-	 * The second pair includes the second rating vector and the second profile.
-	 * 
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @return Jaccard measure between both two rating vectors and profiles.
-	 */
-	protected double jaccard(RatingVector vRating1, RatingVector vRating2,
-			Profile profile1, Profile profile2) {
-		Set<Integer> common = commonFieldIds(vRating1, vRating2);
-		Set<Integer> union = unionFieldIds(vRating1, vRating2);
-		if (union.size() == 0)
-			return Constants.UNUSED;
-		else
-			return (double)common.size() / (double)(union.size());
-	}
-	
-	
-	/**
-	 * Calculating the Jaccard2 measure between two pairs.
-	 * The first pair includes the first rating vector and the first profile.
-	 * The second pair includes the second rating vector and the second profile.
-	 * 
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @return Jaccard2 measure between both two rating vectors and profiles.
-	 */
-	protected double jaccard2(RatingVector vRating1, RatingVector vRating2,
-			Profile profile1, Profile profile2) {
-		Set<Integer> ratedIds1 = vRating1.fieldIds(true);
-		Set<Integer> ratedIds2 = vRating2.fieldIds(true);
-		if (ratedIds1.size() == 0 || ratedIds2.size() == 0)
-			return Constants.UNUSED;
-		
-		Set<Integer> common = commonFieldIds(vRating1, vRating2);
-		return (double)common.size() / (double)(ratedIds1.size()*ratedIds2.size());
-	}
-
-	
-	/**
-	 * Calculating the MSD measure between two pairs.
-	 * The first pair includes the first rating vector and the first profile.
-	 * The second pair includes the second rating vector and the second profile.
-	 * 
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @return MSD measure between both two rating vectors and profiles.
-	 */
-	protected double msd(RatingVector vRating1, RatingVector vRating2,
-			Profile profile1, Profile profile2) {
-		Set<Integer> common = commonFieldIds(vRating1, vRating2);
-		if (common.size() == 0) return Constants.UNUSED;
-		
-		double sum = 0;
-		double maxRating = this.config.getMaxRating();
-		for (int id : common) {
-			double d = (vRating1.get(id).value - vRating2.get(id).value);
-			sum += d*d;
-		}
-		
-		boolean fraction = config.getAsBoolean(MSD_FRACTION_FIELD);
-		if (fraction)
-			return 1 / (1 + sum/common.size());
-		else
-			return 1.0 - sum/(common.size()*maxRating*maxRating);
-	}
-	
-	
-	/**
-	 * Calculating the URP measure between two pairs.
-	 * The first pair includes the first rating vector and the first profile.
-	 * The second pair includes the second rating vector and the second profile.
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @return URP measure between both two rating vectors and profiles.
-	 */
-	protected double urp(RatingVector vRating1, RatingVector vRating2,
-			Profile profile1, Profile profile2) {
-		double mean1 = vRating1.mean();
-		double var1 = vRating1.mleVar();
-		double mean2 = vRating2.mean();
-		double var2 = vRating2.mleVar();
-		
-		return 1.0 - 1.0 / (1.0 + Math.exp(-Math.abs(mean1-mean2)*Math.abs(var1-var2)));
-	}
-
-	
-	/**
-	 * Calculating the Triangle measure between two pairs.
-	 * Shuang-Bo Sun, Zhi-Heng Zhang, Xin-Ling Dong, Heng-Ru Zhang, Tong-Jun Li, Lin Zhang, and Fan Min developed the Triangle measure. Loc Nguyen implements it.
-	 * The first pair includes the first rating vector and the first profile.
-	 * The second pair includes the second rating vector and the second profile.
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @author Shuang-Bo Sun, Zhi-Heng Zhang, Xin-Ling Dong, Heng-Ru Zhang, Tong-Jun Li, Lin Zhang, Fan Min
-	 * @return Triangle measure between both two rating vectors and profiles.
-	 */
-	protected double triangle(RatingVector vRating1, RatingVector vRating2,
-			Profile profile1, Profile profile2) {
-		return 1 - vRating1.distance(vRating2) / (vRating1.module()+vRating2.module());
-	}
-	
-	
-	@Override
-	public Object cacheTask(int id1, int id2, Map<Integer, Map<Integer, Object>> cache, Task task, Object...params) {
-		// TODO Auto-generated method stub
-		return SupportCacheAlg.cacheTask(this, id1, id2, cache, task, params);
-	}
-
-	
-	@Override
-	public Object cacheTask(int id, Map<Integer, Object> cache, Task task, Object... params) {
-		// TODO Auto-generated method stub
-		return SupportCacheAlg.cacheTask(this, id, cache, task, params);
-	}
-
-	
-	@Override
-	public boolean isCached() {
-		return getConfig().getAsBoolean(SupportCacheAlg.SUPPORT_CACHE_FIELD);
-	}
-	
-	
-	@Override
-	public void setCached(boolean cached) {
-		getConfig().put(SupportCacheAlg.SUPPORT_CACHE_FIELD, cached);
-	}
-
-	
-	/**
-	 * Computing common field IDs of two rating vectors.
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @return common field IDs of two rating vectors.
-	 */
-	protected static Set<Integer> commonFieldIds(RatingVector vRating1, RatingVector vRating2) {
-		Set<Integer> common = Util.newSet();
-		common.addAll(vRating1.fieldIds(true));
-		common.retainAll(vRating2.fieldIds(true));
-		return common;
-	}
-
-	
-	/**
-	 * Computing union field IDs of two rating vectors.
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @return common field IDs of two rating vectors.
-	 */
-	protected static Set<Integer> unionFieldIds(RatingVector vRating1, RatingVector vRating2) {
-		Set<Integer> union = Util.newSet();
-		union.addAll(vRating1.fieldIds(true));
-		union.addAll(vRating2.fieldIds(true));
-		return union;
-	}
-
-	
-	@Override
-	public DataConfig createDefaultConfig() {
-		DataConfig tempConfig = super.createDefaultConfig();
-		tempConfig.put(SUPPORT_CACHE_FIELD, SUPPORT_CACHE_DEFAULT);
-		tempConfig.put(MEASURE, getDefaultMeasure()); tempConfig.addReadOnly(MEASURE);
-		tempConfig.put(HYBRID, false); tempConfig.addInvisible(HYBRID);
-		tempConfig.put(COSINE_NORMALIZED_FIELD, COSINE_NORMALIZED_DEFAULT);
-		tempConfig.put(MSD_FRACTION_FIELD, MSD_FRACTION_DEFAULT);
-
-		DataConfig config = new DataConfig() {
-
-			/**
-			 * Serial version UID for serializable class. 
-			 */
-			private static final long serialVersionUID = 1L;
-
-			@Override
-			public Serializable userEdit(Component comp, String key, Serializable defaultValue) {
-				// TODO Auto-generated method stub
-				if (key.equals(MEASURE)) {
-					String measure = getAsString(MEASURE);
-					measure = measure == null ? getDefaultMeasure() : measure;
-					return (Serializable) JOptionPane.showInputDialog(
-							comp, 
-							"Please choose one similar measure", 
-							"Choosing similar measure", 
-							JOptionPane.INFORMATION_MESSAGE, 
-							null, 
-							getSupportedMeasures().toArray(), 
-							measure);
-				}
-				else 
-					return tempConfig.userEdit(comp, key, defaultValue);
-			}
-			
-		};
-
-		config.putAll(tempConfig);
-		return config;
-	}
-
-
-}
+/**
+ * HUDUP: A FRAMEWORK OF E-COMMERCIAL RECOMMENDATION ALGORITHMS
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: http://www.locnguyen.net/st/products/hudup
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.hudup.core.alg.cf;
+
+import java.awt.Component;
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.rmi.RemoteException;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import javax.swing.JOptionPane;
+
+import net.hudup.core.Constants;
+import net.hudup.core.Util;
+import net.hudup.core.alg.SupportCacheAlg;
+import net.hudup.core.data.Attribute;
+import net.hudup.core.data.Attribute.Type;
+import net.hudup.core.data.AttributeList;
+import net.hudup.core.data.DataConfig;
+import net.hudup.core.data.Dataset;
+import net.hudup.core.data.Fetcher;
+import net.hudup.core.data.Profile;
+import net.hudup.core.data.RatingVector;
+import net.hudup.core.data.UserRating;
+import net.hudup.core.logistic.LogUtil;
+import net.hudup.core.logistic.NextUpdate;
+import net.hudup.core.logistic.Vector;
+
+/**
+ * This class sets up the neighbor collaborative filtering (Neighbor CF) algorithm. It is memory-based CF because it extends directly {@link MemoryBasedCF} class.
+ * Neighbor CF algorithm finds out the nearest neighbor of active user (or active item).
+ * Later on, Neighbor CF algorithm recommends items that the nearest neighbor likes (rates with high value) to the active user, with assumption that the nearest neighbor and the active user (active item) share the same interests.
+ * <br>
+ * The most important feature of any Neighbor CF algorithm is how to calculate the similarity between two rating vectors or between two profiles so as to find out the nearest neighbor.
+ * The nearest neighbor is the one who has highest similar measure with the active user (active item).
+ * This class provides the method {@link #sim(RatingVector, RatingVector, Profile, Profile, Object...)} to calculate the similarity measure between two pairs.
+ * The first pair includes the first rating vector and the first profile.
+ * The second pair includes the second rating vector and the second profile.
+ * If you only want to calculate the similarity between two rating vectors, two in put profiles are set to be null.
+ * If you only want to calculate the similarity between two profiles, two in put rating vectors are set to be null.
+ * In current implementation, only three similarity measures are supported such as Pearson, cosine, and hybrid.
+ * Hybrid measure means that profile is merged into rating vector as a unified vector for calculating Pearson measure or cosine measure.<br>
+ * <br>
+ * There are many authors who contributed measure to this class.<br>
+ * Authors Shuang-Bo Sun, Zhi-Heng Zhang, Xin-Ling Dong, Heng-Ru Zhang, Tong-Jun Li, Lin Zhang, and Fan Min contributed Triangle measure and TJM measure.<br>
+ * 
+ * @author Loc Nguyen
+ * @version 10.0
+ *
+ */
+public abstract class NeighborCF extends MemoryBasedCFAbstract implements SupportCacheAlg {
+
+	
+	/**
+	 * Serial version UID for serializable class. 
+	 */
+	private static final long serialVersionUID = 1L;
+
+	
+	/**
+	 * In the configuration, the entry of similarity measure has the name specified by this constant.
+	 */
+	public static final String MEASURE = "measure";
+	
+	
+	/**
+	 * Hybrid mode. If it is true, profiles are encoded at setup by {@link ProfileEncoding} and profile similarity is merged into similarity of rating vectors
+	 * with weight {@link #HYBRID_WEIGHT_FIELD}.
+	 */
+	public static final String HYBRID = "hybrid";
+	
+	
+	/**
+	 * Weight of profile similarity in hybrid mode, which is in [0, 1].
+	 */
+	public static final String HYBRID_WEIGHT_FIELD = "hybrid_weight";
+	
+	
+	/**
+	 * Default weight of profile similarity in hybrid mode.
+	 */
+	public static final double HYBRID_WEIGHT_DEFAULT = 0.5;
+
+	
+	/**
+	 * Name of cosine measure.
+	 */
+	public static final String COSINE = "cosine";
+
+	
+	/**
+	 * Name of cosine + Jaccard measure.
+	 */
+	public static final String COSINEJ = "cosinej";
+
+	
+	/**
+	 * Name of pseudo Cosine + Jaccard.
+	 */
+	public static final String COJ = "coj";
+
+	
+	/**
+	 * Name of Pearson measure.
+	 */
+	public static final String PEARSON = "pearson";
+
+	
+	/**
+	 * Name of Pearson + Jaccard measure.
+	 */
+	public static final String PEARSONJ = "pearsonj";
+
+	
+	/**
+	 * Name of adjusted cosine measure.
+	 */
+	public static final String COD = "cod";
+
+	
+	/**
+	 * Name of constrained Pearson correlation coefficient measure. It is also cosine normalized (CON) measure.
+	 */
+	public static final String CPC = "cpc";
+	
+	
+	/**
+	 * Name of weighted Pearson correlation coefficient measure.
+	 */
+	public static final String WPC = "wpc";
+	
+	
+	/**
+	 * Name of sigmoid Pearson correlation coefficient measure.
+	 */
+	public static final String SPC = "spc";
+
+	
+	/**
+	 * Name of Jaccard measure.
+	 */
+	public static final String JACCARD = "jaccard";
+
+	
+	/**
+	 * Name of Jaccard2 measure.
+	 */
+	public static final String JACCARD2 = "jaccard2";
+
+	
+	/**
+	 * Name of MSD measure.
+	 */
+	public static final String MSD = "msd";
+
+	
+	/**
+	 * Name of MSD + Jaccard measure.
+	 */
+	public static final String MSDJ = "msdj";
+
+	
+	/**
+	 * Name of URP measure.
+	 */
+	public static final String URP = "urp";
+
+	
+	/**
+	 * Name of Triangle measure.
+	 */
+	public static final String TRIANGLE = "triangle";
+
+	
+	/**
+	 * Name of TJM measure.
+	 */
+	public static final String TJM = "tjm";
+
+	
+	/**
+	 * Cosine normalized mode.
+	 */
+	public static final String COSINE_NORMALIZED_FIELD = "cos_normalized";
+
+	
+	/**
+	 * Default cosine normalized mode.
+	 */
+	public static final boolean COSINE_NORMALIZED_DEFAULT = false;
+
+	
+	/**
+	 * MSD fraction mode.
+	 */
+	public static final String MSD_FRACTION_FIELD = "msd_fraction";
+
+	
+	/**
+	 * Default MSD fraction mode.
+	 */
+	public static final boolean MSD_FRACTION_DEFAULT = false;
+
+	
+	/**
+	 * Rating snapshot mode. If it is true, setup builds a compact in-memory rating snapshot and calculates user and item statistics from the snapshot.
+	 */
+	public static final String RATING_SNAPSHOT_FIELD = "rating_snapshot";
+	
+	
+	/**
+	 * Default rating snapshot mode.
+	 */
+	public static final boolean RATING_SNAPSHOT_DEFAULT = false;
+	
+	
+	/**
+	 * Path of binary snapshot file. If rating snapshot mode is on and the path is not empty, setup memory-maps the file when its source checksum matches the dataset.
+	 * Otherwise setup builds the snapshot from the dataset and writes the file for later setups.
+	 */
+	public static final String SNAPSHOT_FILE_FIELD = "snapshot_file";
+	
+	
+	/**
+	 * Default path of binary snapshot file, which is empty so that no file is used.
+	 */
+	public static final String SNAPSHOT_FILE_DEFAULT = "";
+	
+	
+	/**
+	 * Snapshot verification mode. If it is true, the checksum of source dataset also hashes all ratings of the dataset, and the CRC32 checksum of the body of snapshot file is validated when the file is mapped.
+	 * Otherwise the checksum of source dataset is built from cheap metadata of the dataset only. Changing this mode makes setup build the snapshot file again.
+	 */
+	public static final String SNAPSHOT_VERIFY_FIELD = "snapshot_verify";
+	
+	
+	/**
+	 * Default snapshot verification mode.
+	 */
+	public static final boolean SNAPSHOT_VERIFY_DEFAULT = false;
+	
+	
+	/**
+	 * Metrics mode. If it is true, latencies of similarity calculation, cache counters, and co-rated lengths are recorded in {@link NeighborMetrics}.
+	 */
+	public static final String METRICS_FIELD = "metrics";
+	
+	
+	/**
+	 * Default metrics mode.
+	 */
+	public static final boolean METRICS_DEFAULT = false;
+	
+	
+	/**
+	 * Definitions of composite measures, which are separated by semicolons, for example {@code msdcpc = msd*cpc; mix = mu_alpha*pearson + (1-mu_alpha)*jaccard}.
+	 * Identifiers of an expression are numeric configuration parameters or measures, including other composite measures. See {@link MeasureExpression}.
+	 */
+	public static final String COMPOSITE_MEASURES_FIELD = "composite_measures";
+	
+	
+	/**
+	 * Default definitions of composite measures, which are empty.
+	 */
+	public static final String COMPOSITE_MEASURES_DEFAULT = "";
+	
+	
+	/**
+	 * Overlap matrix mode. If it is true, setup calculates numbers of co-rated items of all pairs of users by {@link OverlapMatrix},
+	 * which are read by measures weighted by overlap such as Jaccard, WPC, and SPC.
+	 */
+	public static final String OVERLAP_MATRIX_FIELD = "overlap_matrix";
+	
+	
+	/**
+	 * Default overlap matrix mode.
+	 */
+	public static final boolean OVERLAP_MATRIX_DEFAULT = false;
+	
+	
+	/**
+	 * Threshold for WPCC (weight weighted Pearson correlation coefficient).
+	 */
+	public static final double WPC_THRESHOLD = 50;
+
+	
+	/**
+	 * Rating median.
+	 */
+	protected double ratingMedian = Constants.UNUSED;
+
+	
+	/**
+	 * General user mean.
+	 */
+	protected double ratingMean = Constants.UNUSED;
+
+	
+	/**
+	 * General user variance.
+	 */
+	protected double ratingVar = Constants.UNUSED;
+
+	
+	/**
+	 * Internal item identifiers.
+	 */
+	protected Set<Integer> userIds = Util.newSet();
+
+	
+	/**
+	 * Internal user means, which is a read-only view of {@link #userMeanArray} indexed by {@link #userIndex}.
+	 */
+	protected Map<Integer, Double> userMeans = FieldStatistics.empty();
+
+	
+	/**
+	 * Internal user variances, which is a read-only view of {@link #userVarArray} indexed by {@link #userIndex}.
+	 */
+	protected Map<Integer, Double> userVars = FieldStatistics.empty();
+
+	
+	/**
+	 * Internal item identifiers.
+	 */
+	protected Set<Integer> itemIds = Util.newSet();
+
+	
+	/**
+	 * Internal item means, which is a read-only view of {@link #itemMeanArray} indexed by {@link #itemIndex}.
+	 */
+	protected Map<Integer, Double> itemMeans = FieldStatistics.empty();
+
+	
+	/**
+	 * Internal item variances, which is a read-only view of {@link #itemVarArray} indexed by {@link #itemIndex}.
+	 */
+	protected Map<Integer, Double> itemVars = FieldStatistics.empty();
+	
+	
+	/**
+	 * Dictionary of dense user indices.
+	 */
+	protected IdDictionary userIndex = new IdDictionary();
+	
+	
+	/**
+	 * Internal user means indexed by dense user index.
+	 */
+	protected double[] userMeanArray = new double[0];
+	
+	
+	/**
+	 * Internal user variances indexed by dense user index.
+	 */
+	protected double[] userVarArray = new double[0];
+	
+	
+	/**
+	 * Dictionary of dense item indices.
+	 */
+	protected IdDictionary itemIndex = new IdDictionary();
+	
+	
+	/**
+	 * Internal item means indexed by dense item index.
+	 */
+	protected double[] itemMeanArray = new double[0];
+	
+	
+	/**
+	 * Internal item variances indexed by dense item index.
+	 */
+	protected double[] itemVarArray = new double[0];
+	
+	
+//	/**
+//	 * User rating cache (user id, item id, rating value).
+//	 */
+//	protected Map<Integer, Map<Integer, Object>> userRatingCache = Util.newMap();
+	
+	
+	/**
+	 * Compact in-memory snapshot of user ratings, whose rows are users and whose columns are items. It is null if rating snapshot mode is off.
+	 */
+	protected RatingSnapshot snapshot = null;
+
+	
+	/**
+	 * Encoded profiles of rows in hybrid mode, null if hybrid mode is off or there is no profile.
+	 */
+	protected ProfileEncoding profileEncoding = null;
+
+	
+	/**
+	 * Weight of profile similarity in hybrid mode, which is read at setup.
+	 */
+	protected double hybridWeight = HYBRID_WEIGHT_DEFAULT;
+
+	
+	/**
+	 * Numbers of co-rated items of pairs of users, null if overlap matrix mode is off.
+	 */
+	protected OverlapMatrix overlapMatrix = null;
+	
+	
+	/**
+	 * Row similarity cache. It is concurrent so that concurrent queries can share it without lock.
+	 */
+	protected Map<Integer, Map<Integer, Object>> rowSimCache = new ConcurrentHashMap<>();
+
+	
+	/**
+	 * Column similarity cache. It is concurrent so that concurrent queries can share it without lock.
+	 */
+	protected Map<Integer, Map<Integer, Object>> columnSimCache = new ConcurrentHashMap<>();
+
+	
+	/**
+	 * Number of requested row similarities, including similarities taken from cache. It is shared with owners of published generations which count their queries.
+	 */
+	protected LongAdder simRequestCount = new LongAdder();
+	
+	
+	/**
+	 * Number of row similarities which are actually calculated, excluding similarities taken from cache. It is shared with owners of published generations which count their queries.
+	 */
+	protected LongAdder simComputeCount = new LongAdder();
+
+	
+	/**
+	 * Number of calculated similarities which is used to sample {@link NeighborEvents.SimilarityEvent}.
+	 */
+	protected AtomicLong simEventTicks = new AtomicLong(0);
+
+	
+	/**
+	 * Calculation times in nanoseconds per rated field of candidates by measure, which are learned by {@link #simBatchTopKBudget(RatingVector, List, int, long, int, Object...)}.
+	 * They are only estimates, so they are updated without lock. They are shared with owners of published generations which search with budgets.
+	 */
+	protected Map<String, Double> budgetEstimates = new ConcurrentHashMap<>();
+
+	
+	/**
+	 * Registry of run-time metrics, which records nothing unless it is enabled.
+	 */
+	protected NeighborMetrics metrics = new NeighborMetrics();
+
+	
+	/**
+	 * Immutable state of concurrent queries which is published after setup, null if this algorithm is not set up.
+	 */
+	protected volatile QueryModel queryModel = null;
+
+	
+	/**
+	 * Current model generation, which is acquired by concurrent queries, null if this algorithm is not set up.
+	 */
+	protected volatile ModelGeneration generation = null;
+
+	
+	/**
+	 * Updater of the current model generation, which swaps generations published by {@link #setMeasure(String)} without lock.
+	 */
+	private static final AtomicReferenceFieldUpdater<NeighborCF, ModelGeneration> generationUpdater =
+		AtomicReferenceFieldUpdater.newUpdater(NeighborCF.class, ModelGeneration.class, "generation");
+
+	
+	/**
+	 * Number of times this algorithm was unset up, which keeps a background rebuild started before unsetup or a newer setup from publishing its generation.
+	 */
+	protected long setupEpoch = 0;
+
+	
+	/**
+	 * Flag to indicate whether this algorithm is being set up, in which case {@link #unsetup()} called by setup keeps the current generation published
+	 * so that concurrent queries are served by the previous generation until the new generation is published.
+	 */
+	private boolean settingUp = false;
+
+	
+	/**
+	 * Parsed composite measures paired with their source definitions, which are parsed again only when the definitions change.
+	 */
+	protected volatile Map.Entry<String, Map<String, MeasureExpression>> compositeMeasures = null;
+
+	
+	/**
+	 * Pool of scratch buffers of concurrent queries.
+	 */
+	protected ScratchPool scratchPool = new ScratchPool();
+
+	
+	/**
+	 * Version stamps of rows (users), which keep concurrent queries from caching similarities of rows whose ratings changed by {@link #applyRatings(List)}.
+	 */
+	protected VersionStamps rowVersions = new VersionStamps();
+
+	
+	/**
+	 * Version stamps of columns (items), which keep concurrent queries from caching similarities of columns whose ratings changed by {@link #applyRatings(List)}.
+	 */
+	protected VersionStamps columnVersions = new VersionStamps();
+
+	
+	/**
+	 * Default constructor.
+	 */
+	public NeighborCF() {
+		// TODO Auto-generated constructor stub
+		
+	}
+
+
+	@Override
+	public synchronized void setup(Dataset dataset, Object...params) throws RemoteException {
+		// TODO Auto-generated method stub
+		this.settingUp = true;
+		try {
+			setup0(dataset, params);
+		}
+		catch (RemoteException | RuntimeException e) {
+			publishGeneration(null);
+			throw e;
+		}
+		finally {
+			this.settingUp = false;
+		}
+	}
+
+	
+	/**
+	 * Setting up this algorithm from specified dataset while the previous generation keeps serving concurrent queries, and then publishing the new generation.
+	 * @param dataset specified dataset.
+	 * @param params additional parameters.
+	 * @throws RemoteException if any error raises.
+	 */
+	private void setup0(Dataset dataset, Object...params) throws RemoteException {
+		super.setup(dataset, params);
+		
+		this.ratingMedian = (this.config.getMinRating() + this.config.getMaxRating()) / 2.0;
+		this.metrics.setEnabled(getConfig().getAsBoolean(METRICS_FIELD));
+		
+		String snapshotFile = getConfig().getAsString(SNAPSHOT_FILE_FIELD);
+		if (getConfig().getAsBoolean(RATING_SNAPSHOT_FIELD) && snapshotFile != null && !snapshotFile.trim().isEmpty())
+			setupSnapshotFile(dataset, Paths.get(snapshotFile.trim()));
+		else if (getConfig().getAsBoolean(RATING_SNAPSHOT_FIELD)) {
+			Fetcher<RatingVector> users = dataset.fetchUserRatings();
+			this.snapshot = RatingSnapshot.build(users, getSnapshotValueBins());
+			users.close();
+			updateMeanVars(this.snapshot);
+		}
+		else {
+			updateUserMeanVars(dataset);
+			updateItemMeanVars(dataset);
+		}
+		
+		if (getConfig().getAsBoolean(OVERLAP_MATRIX_FIELD)) {
+			RatingSnapshot source = this.snapshot;
+			if (source == null) {
+				Fetcher<RatingVector> users = dataset.fetchUserRatings();
+				source = RatingSnapshot.build(users, null);
+				users.close();
+			}
+			updateOverlapMatrix(source);
+		}
+		
+		if (getConfig().getAsBoolean(HYBRID)) {
+			Fetcher<Profile> profiles = fetchRowProfiles(dataset);
+			if (profiles != null) {
+				updateProfileEncoding(profiles);
+				profiles.close();
+			}
+		}
+		
+		updateConfigState();
+		publishQueryModel();
+	}
+
+	
+	/**
+	 * Reading state which is derived from configuration at setup, such as bins of measures, after the model is set up and before its generation is published.
+	 * This method does nothing by default. Derived classes which have such state override this method.
+	 */
+	protected void updateConfigState() {
+		
+	}
+
+	
+	/**
+	 * Fetching profiles of rows, whose rating vectors are compared by this algorithm, for hybrid mode. Rows are users as in {@link RatingSnapshot}.
+	 * Derived classes which compare items override this method to fetch item profiles.
+	 * @param dataset specified dataset.
+	 * @return fetcher of profiles of rows, which can be null.
+	 * @throws RemoteException if any error raises.
+	 */
+	protected Fetcher<Profile> fetchRowProfiles(Dataset dataset) throws RemoteException {
+		return dataset.fetchUserProfiles();
+	}
+
+	
+	/**
+	 * Setting up encoded profiles of rows for hybrid mode after setup, which is used by tools and benchmarks set up by {@link #setupSnapshot(RatingSnapshot)}.
+	 * @param profiles fetcher of profiles of rows, which is not closed by this method.
+	 * @throws RemoteException if any error raises.
+	 */
+	public synchronized void setupProfiles(Fetcher<Profile> profiles) throws RemoteException {
+		updateProfileEncoding(profiles);
+		this.rowSimCache = new ConcurrentHashMap<>();
+		publishQueryModel();
+	}
+
+	
+	/**
+	 * Calculating overlap matrix of specified snapshot.
+	 * @param snapshot specified snapshot.
+	 */
+	private void updateOverlapMatrix(RatingSnapshot snapshot) {
+		NeighborEvents.SetupPhaseEvent event = new NeighborEvents.SetupPhaseEvent();
+		event.begin();
+		this.overlapMatrix = OverlapMatrix.build(snapshot);
+		event.end();
+		if (event.shouldCommit()) {
+			event.phase = "overlap";
+			event.count = snapshot.rowCount();
+			event.ratings = this.overlapMatrix.getPairCount();
+			event.commit();
+		}
+	}
+
+	
+	/**
+	 * Encoding specified profiles once and reading weight of profile similarity.
+	 * @param profiles fetcher of profiles, which is not closed by this method.
+	 * @throws RemoteException if any error raises.
+	 */
+	private void updateProfileEncoding(Fetcher<Profile> profiles) throws RemoteException {
+		NeighborEvents.SetupPhaseEvent event = new NeighborEvents.SetupPhaseEvent();
+		event.begin();
+		this.profileEncoding = ProfileEncoding.build(profiles);
+		double weight = getConfig().getAsReal(HYBRID_WEIGHT_FIELD);
+		this.hybridWeight = Util.isUsed(weight) ? Math.max(0, Math.min(1, weight)) : HYBRID_WEIGHT_DEFAULT;
+		event.end();
+		if (event.shouldCommit()) {
+			event.phase = "profile";
+			event.count = this.profileEncoding != null ? this.profileEncoding.size() : 0;
+			event.commit();
+		}
+	}
+
+	
+	/**
+	 * Setting up this algorithm from specified rating snapshot instead of dataset. Rows of the snapshot are users and columns of the snapshot are items.
+	 * This method is used by tools and benchmarks which hold ratings in memory without dataset. Methods which need the dataset are not supported in this case.
+	 * Like {@link #setup(Dataset, Object...)}, the previous generation keeps serving concurrent queries until the new generation is published.
+	 * @param snapshot specified rating snapshot.
+	 * @throws RemoteException if any error raises.
+	 */
+	public synchronized void setupSnapshot(RatingSnapshot snapshot) throws RemoteException {
+		this.settingUp = true;
+		try {
+			unsetup();
+			
+			this.ratingMedian = (this.config.getMinRating() + this.config.getMaxRating()) / 2.0;
+			this.metrics.setEnabled(getConfig().getAsBoolean(METRICS_FIELD));
+			this.snapshot = snapshot;
+			updateMeanVars(snapshot);
+			if (getConfig().getAsBoolean(OVERLAP_MATRIX_FIELD))
+				updateOverlapMatrix(snapshot);
+			updateConfigState();
+			publishQueryModel();
+		}
+		catch (RemoteException | RuntimeException e) {
+			publishGeneration(null);
+			throw e;
+		}
+		finally {
+			this.settingUp = false;
+		}
+	}
+
+	
+	/**
+	 * Ingesting specified rating changes into rating snapshot after setup without setting up again. The snapshot is not modified because concurrent queries read it.
+	 * Instead, a new snapshot is derived by {@link RatingSnapshot#apply(List, double[])}, which copies unchanged rows in bulk and merges only changed rows and columns,
+	 * and statistics arrays are copied before they are updated and published in new views. Identifier sets are copied only if some user or item is added or removed.
+	 * Means and variances are calculated again only for changed users and items, and the general mean and variance are updated from the sums of changed users
+	 * instead of passing over all ratings.
+	 * Cached similarities which depend on changed users and items are invalidated by {@link #invalidateCaches(Set, Set, boolean)}, and other cached similarities are kept.
+	 * Counts of overlap matrix involving changed users are calculated from rating vectors until the next setup.
+	 * Rating vectors of the dataset are not updated, so methods which read the dataset, such as {@link #getColumnRating(int)}, do not see the changes.
+	 * @param changes specified rating changes.
+	 * @throws RemoteException if any error raises.
+	 * @throws IllegalStateException if this algorithm is not set up with rating snapshot.
+	 */
+	public synchronized void applyRatings(List<RatingChange> changes) throws RemoteException {
+		RatingSnapshot old = this.snapshot;
+		if (old == null)
+			throw new IllegalStateException("Rating snapshot is not set up");
+		if (changes == null || changes.size() == 0) return;
+		
+		NeighborEvents.SetupPhaseEvent event = new NeighborEvents.SetupPhaseEvent();
+		event.begin();
+		RatingSnapshot snapshot = old.apply(changes, getSnapshotValueBins()).buildColumns();
+		Set<Integer> changedUserIds = Util.newSet();
+		Set<Integer> changedItemIds = Util.newSet();
+		for (RatingChange change : changes) {
+			if (snapshot.rowOf(change.getUserId()) < 0 || snapshot.columnOf(change.getItemId()) < 0) continue;
+			changedUserIds.add(change.getUserId());
+			changedItemIds.add(change.getItemId());
+		}
+		
+		//Copying statistics
+		int rowCount = snapshot.rowCount(), columnCount = snapshot.columnCount();
+		double[] userMeanArray = Arrays.copyOf(this.userMeanArray, rowCount);
+		double[] userVarArray = Arrays.copyOf(this.userVarArray, rowCount);
+		double[] itemMeanArray = new double[columnCount];
+		double[] itemVarArray = new double[columnCount];
+		for (int column = 0; column < columnCount; column++) {
+			int oldColumn = old.columnOf(snapshot.columnId(column));
+			itemMeanArray[column] = oldColumn >= 0 ? this.itemMeanArray[oldColumn] : Constants.UNUSED;
+			itemVarArray[column] = oldColumn >= 0 ? this.itemVarArray[oldColumn] : Constants.UNUSED;
+		}
+		Set<Integer> userIds = this.userIds;
+		Set<Integer> itemIds = this.itemIds;
+		double ratingSum = this.ratingMean * old.ratingCount();
+		double ratingSquareSum = (this.ratingVar + this.ratingMean*this.ratingMean) * old.ratingCount();
+		
+		//Calculating statistics of changed users and items
+		for (int userId : changedUserIds) {
+			int oldRow = old.rowOf(userId);
+			for (int k = oldRow >= 0 ? old.rowStart(oldRow) : 0; k < (oldRow >= 0 ? old.rowEnd(oldRow) : 0); k++) {
+				double value = old.value(k);
+				ratingSum -= value;
+				ratingSquareSum -= value*value;
+			}
+			
+			int row = snapshot.rowOf(userId);
+			int length = snapshot.rowLength(row);
+			double meanSum = 0;
+			for (int k = snapshot.rowStart(row); k < snapshot.rowEnd(row); k++) {
+				double value = snapshot.value(k);
+				meanSum += value;
+				ratingSquareSum += value*value;
+			}
+			ratingSum += meanSum;
+			double userMean = meanSum / (double)length;
+			double varSum = 0;
+			for (int k = snapshot.rowStart(row); k < snapshot.rowEnd(row); k++) {
+				double d = snapshot.value(k) - userMean;
+				varSum += d*d;
+			}
+			userIds = updateFieldStats(userId, length, userMean, varSum / (double)length, row, userMeanArray, userVarArray, userIds, this.userIds);
+		}
+		for (int itemId : changedItemIds) {
+			int column = snapshot.columnOf(itemId);
+			int length = snapshot.columnLength(column);
+			double meanSum = 0;
+			for (int entry = snapshot.columnStart(column); entry < snapshot.columnEnd(column); entry++)
+				meanSum += snapshot.value(snapshot.position(entry));
+			double itemMean = meanSum / (double)length;
+			double varSum = 0;
+			for (int entry = snapshot.columnStart(column); entry < snapshot.columnEnd(column); entry++) {
+				double e = snapshot.value(snapshot.position(entry)) - itemMean;
+				varSum += e*e;
+			}
+			itemIds = updateFieldStats(itemId, length, itemMean, varSum / (double)length, column, itemMeanArray, itemVarArray, itemIds, this.itemIds);
+		}
+		
+		//Updating general mean and variance
+		double ratingMean = ratingSum / (double)snapshot.ratingCount();
+		double ratingVar = Math.max(0, ratingSquareSum / (double)snapshot.ratingCount() - ratingMean*ratingMean);
+		if (changedUserIds.size() == 0) {
+			ratingMean = this.ratingMean;
+			ratingVar = this.ratingVar;
+		}
+		boolean globalChanged = ratingMean != this.ratingMean || ratingVar != this.ratingVar;
+		boolean catalogChanged = columnCount != old.columnCount();
+		
+		//Publishing
+		this.userMeanArray = userMeanArray;
+		this.userVarArray = userVarArray;
+		this.itemMeanArray = itemMeanArray;
+		this.itemVarArray = itemVarArray;
+		this.userIndex = snapshot.getRowIndex();
+		this.itemIndex = snapshot.getColumnIndex();
+		this.userIds = userIds;
+		this.userMeans = new FieldStatistics(this.userIndex, userMeanArray);
+		this.userVars = new FieldStatistics(this.userIndex, userVarArray);
+		this.itemIds = itemIds;
+		this.itemMeans = new FieldStatistics(this.itemIndex, itemMeanArray);
+		this.itemVars = new FieldStatistics(this.itemIndex, itemVarArray);
+		this.ratingMean = ratingMean;
+		this.ratingVar = ratingVar;
+		this.snapshot = snapshot;
+		if (this.overlapMatrix != null)
+			this.overlapMatrix = this.overlapMatrix.withStale(changedUserIds);
+		
+		String measure = getMeasure();
+		if ((globalChanged && isGlobalDependentMeasure(measure)) || (catalogChanged && isCatalogDependentMeasure(measure)))
+			invalidateCaches(null, null, true);
+		else
+			invalidateCaches(changedUserIds, changedItemIds, false);
+		publishQueryModel();
+		
+		event.end();
+		if (event.shouldCommit()) {
+			event.phase = "ingest";
+			event.count = changedUserIds.size();
+			event.ratings = changes.size();
+			event.commit();
+		}
+	}
+
+	
+	/**
+	 * Rebuilding the model from specified rating snapshot in the background without blocking queries. A staging instance of this algorithm, which shares configuration and metrics
+	 * with this algorithm, is set up from the snapshot by specified executor while the current generation keeps serving. Then the staging state is installed into this algorithm
+	 * under its lock, which only assigns references, and its generation, whose owner is a frozen copy of the staging state, is published by one volatile write.
+	 * The previous generation is retired when its in-flight queries finish. Encoded profiles of hybrid mode are kept. Ratings ingested by {@link #applyRatings(List)} during the rebuild
+	 * are replaced by the new generation. If this algorithm is unset up, or set up again, before the rebuild finishes, the rebuilt generation is discarded.
+	 * @param snapshot specified rating snapshot.
+	 * @param executor executor which sets up the staging instance.
+	 * @return future of the published generation, which completes exceptionally with {@link IllegalStateException} if the rebuilt generation is discarded.
+	 */
+	public CompletableFuture<ModelGeneration> rebuildSnapshot(RatingSnapshot snapshot, Executor executor) {
+		long epoch = getSetupEpoch();
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				NeighborCF staging = newStaging();
+				staging.setupSnapshot(snapshot);
+				synchronized (this) {
+					staging.profileEncoding = this.profileEncoding;
+					staging.hybridWeight = this.hybridWeight;
+				}
+				staging.publishQueryModel();
+				return installStaging(staging, epoch);
+			}
+			catch (Exception e) {
+				throw new CompletionException(e);
+			}
+		}, executor);
+	}
+
+	
+	/**
+	 * Rebuilding the model from specified dataset in the background without blocking queries, which is the background counterpart of {@link #setup(Dataset, Object...)}.
+	 * See {@link #rebuildSnapshot(RatingSnapshot, Executor)} for how the new generation is built and published.
+	 * @param dataset specified dataset.
+	 * @param executor executor which sets up the staging instance.
+	 * @return future of the published generation, which completes exceptionally with {@link IllegalStateException} if the rebuilt generation is discarded.
+	 */
+	public CompletableFuture<ModelGeneration> rebuild(Dataset dataset, Executor executor) {
+		long epoch = getSetupEpoch();
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				NeighborCF staging = newStaging();
+				staging.setup(dataset);
+				return installStaging(staging, epoch);
+			}
+			catch (Exception e) {
+				throw new CompletionException(e);
+			}
+		}, executor);
+	}
+
+	
+	/**
+	 * Creating a staging instance of this algorithm for background rebuild, which shares configuration, metrics, and estimates of budgeted searches with this algorithm.
+	 * @return staging instance which is not set up.
+	 * @throws Exception if any error raises.
+	 */
+	protected NeighborCF newStaging() throws Exception {
+		NeighborCF staging = getClass().getDeclaredConstructor().newInstance();
+		staging.config = this.config;
+		staging.metrics = this.metrics;
+		staging.budgetEstimates = this.budgetEstimates;
+		return staging;
+	}
+
+	
+	/**
+	 * Getting the number of times this algorithm was unset up, which is read when a background rebuild starts.
+	 * @return number of times this algorithm was unset up.
+	 */
+	protected synchronized long getSetupEpoch() {
+		return this.setupEpoch;
+	}
+
+	
+	/**
+	 * Installing state of specified staging instance which was set up in the background and publishing its generation.
+	 * The generation is not published if this algorithm was unset up, or set up again, after the rebuild started.
+	 * @param staging specified staging instance.
+	 * @param epoch number of times this algorithm was unset up when the rebuild started.
+	 * @return published generation.
+	 * @throws IllegalStateException if this algorithm was unset up after the rebuild started.
+	 */
+	protected synchronized ModelGeneration installStaging(NeighborCF staging, long epoch) {
+		if (epoch != this.setupEpoch)
+			throw new IllegalStateException("Algorithm was unset up during rebuild, so the rebuilt generation is discarded");
+		
+		installState(staging);
+		publishGeneration(staging.generation);
+		return staging.generation;
+	}
+
+	
+	/**
+	 * Creating a frozen copy of the state of this algorithm, which is the owner of a published generation. The copy shares configuration, metrics, similarity counters,
+	 * scratch buffers, and state objects of this algorithm by reference. It is never modified, and this algorithm assigns new objects to its fields instead of modifying objects
+	 * that generations read, so that setup, ingestion, and rebuild never change the state read by in-flight queries of a published generation.
+	 * @return frozen copy of the state of this algorithm.
+	 */
+	protected NeighborCF freezeState() {
+		try {
+			NeighborCF frozen = newStaging();
+			frozen.installState(this);
+			frozen.simRequestCount = this.simRequestCount;
+			frozen.simComputeCount = this.simComputeCount;
+			frozen.simEventTicks = this.simEventTicks;
+			frozen.budgetEstimates = this.budgetEstimates;
+			frozen.scratchPool = this.scratchPool;
+			return frozen;
+		}
+		catch (Exception e) {
+			throw new IllegalStateException("Freezing state of algorithm fails", e);
+		}
+	}
+
+	
+	/**
+	 * Assigning state of specified source instance to this algorithm. Objects are shared rather than copied, and the source must not be modified afterwards.
+	 * Derived classes which have other state override this method.
+	 * @param source specified source instance.
+	 */
+	protected void installState(NeighborCF source) {
+		if (source.dataset != null) this.dataset = source.dataset;
+		this.ratingMedian = source.ratingMedian;
+		this.ratingMean = source.ratingMean;
+		this.ratingVar = source.ratingVar;
+		this.userIds = source.userIds;
+		this.userMeans = source.userMeans;
+		this.userVars = source.userVars;
+		this.itemIds = source.itemIds;
+		this.itemMeans = source.itemMeans;
+		this.itemVars = source.itemVars;
+		this.userIndex = source.userIndex;
+		this.userMeanArray = source.userMeanArray;
+		this.userVarArray = source.userVarArray;
+		this.itemIndex = source.itemIndex;
+		this.itemMeanArray = source.itemMeanArray;
+		this.itemVarArray = source.itemVarArray;
+		this.snapshot = source.snapshot;
+		this.profileEncoding = source.profileEncoding;
+		this.hybridWeight = source.hybridWeight;
+		this.overlapMatrix = source.overlapMatrix;
+		this.rowSimCache = source.rowSimCache;
+		this.columnSimCache = source.columnSimCache;
+		this.rowVersions = source.rowVersions;
+		this.columnVersions = source.columnVersions;
+		this.queryModel = source.queryModel;
+	}
+
+	
+	/**
+	 * Publishing specified generation as the current generation and retiring the previous generation.
+	 * @param generation specified generation, null if this algorithm is unset up.
+	 */
+	protected void publishGeneration(ModelGeneration generation) {
+		ModelGeneration previous = generationUpdater.getAndSet(this, generation);
+		if (previous != null && previous != generation) previous.retire(generation);
+	}
+
+	
+	/**
+	 * Acquiring the current generation for a concurrent query, which must be released after the query.
+	 * @return acquired generation.
+	 * @throws IllegalStateException if this algorithm is not set up.
+	 */
+	protected ModelGeneration acquireGeneration() {
+		while (true) {
+			ModelGeneration generation = this.generation;
+			if (generation == null)
+				throw new IllegalStateException("Algorithm is not set up");
+			if (generation.tryAcquire()) return generation;
+		}
+	}
+
+	
+	/**
+	 * Getting the current model generation.
+	 * @return current model generation, null if this algorithm is not set up.
+	 */
+	public ModelGeneration getGeneration() {
+		return this.generation;
+	}
+
+	
+	/**
+	 * Collecting caches of this algorithm which belong to its model generation. Derived classes which have other caches override this method.
+	 * @param caches list to which caches are added.
+	 */
+	protected void collectCaches(List<Map<?, ?>> caches) {
+		caches.add(this.rowSimCache);
+		caches.add(this.columnSimCache);
+	}
+
+	
+	/**
+	 * Updating statistics of a user or an item whose ratings changed. A user or an item without ratings is removed from identifier set and its statistics become unused.
+	 * The published identifier set is not modified because concurrent queries read it. It is copied only if the membership of the user or the item changes.
+	 * @param id identifier of user or item.
+	 * @param length number of ratings of user or item.
+	 * @param mean mean of ratings.
+	 * @param var variance of ratings.
+	 * @param index dense index of user or item.
+	 * @param meanArray dense array of means.
+	 * @param varArray dense array of variances.
+	 * @param ids identifier set which is being updated.
+	 * @param published published identifier set.
+	 * @return updated identifier set, which is the specified set or its copy.
+	 */
+	private static Set<Integer> updateFieldStats(int id, int length, double mean, double var, int index, double[] meanArray, double[] varArray, Set<Integer> ids, Set<Integer> published) {
+		meanArray[index] = length == 0 ? Constants.UNUSED : mean;
+		varArray[index] = length == 0 ? Constants.UNUSED : var;
+		if ((length == 0) != ids.contains(id)) return ids;
+		
+		if (ids == published) {
+			Set<Integer> copy = Util.newSet();
+			copy.addAll(published);
+			ids = copy;
+		}
+		if (length == 0)
+			ids.remove(id);
+		else
+			ids.add(id);
+		return ids;
+	}
+
+	
+	/**
+	 * Invalidating cached similarities which depend on specified changed users and items.
+	 * Row similarities of changed users and column similarities of changed items are removed from both sides of caches. If the measure depends on statistics of fields
+	 * according to {@link #isFieldDependentMeasure(String)}, row similarities of users who rated changed items and column similarities of items rated by changed users are removed too.
+	 * Removed rows and columns are stamped so that concurrent queries which started before do not cache similarities calculated from old ratings.
+	 * Derived classes which hold other caches override this method to invalidate them.
+	 * @param userIds identifiers of changed users, which are ignored if all entries are invalidated.
+	 * @param itemIds identifiers of changed items, which are ignored if all entries are invalidated.
+	 * @param all whether all cached similarities are invalidated, for example when the measure depends on the general mean or on the number of items.
+	 */
+	protected void invalidateCaches(Set<Integer> userIds, Set<Integer> itemIds, boolean all) {
+		if (all) {
+			if (this.metrics.isEnabled()) {
+				this.metrics.recordEvictions(NeighborMetrics.ROW_SIM_CACHE, cacheEntries(this.rowSimCache));
+				this.metrics.recordEvictions(NeighborMetrics.COLUMN_SIM_CACHE, cacheEntries(this.columnSimCache));
+			}
+			this.rowVersions.stampAll();
+			this.columnVersions.stampAll();
+			this.rowSimCache.clear();
+			this.columnSimCache.clear();
+			return;
+		}
+		
+		Set<Integer> rows = Util.newSet();
+		rows.addAll(userIds);
+		Set<Integer> columns = Util.newSet();
+		columns.addAll(itemIds);
+		RatingSnapshot snapshot = this.snapshot;
+		if (isFieldDependentMeasure(getMeasure()) && snapshot != null && snapshot.hasColumns()) {
+			for (int itemId : itemIds) {
+				int column = snapshot.columnOf(itemId);
+				for (int entry = snapshot.columnStart(column); entry < snapshot.columnEnd(column); entry++)
+					rows.add(snapshot.rowId(snapshot.row(entry)));
+			}
+			for (int userId : userIds) {
+				int row = snapshot.rowOf(userId);
+				for (int k = snapshot.rowStart(row); k < snapshot.rowEnd(row); k++)
+					columns.add(snapshot.columnId(snapshot.column(k)));
+			}
+		}
+		
+		this.rowVersions.stamp(rows);
+		this.columnVersions.stamp(columns);
+		long rowEvictions = evictCache(this.rowSimCache, rows);
+		long columnEvictions = evictCache(this.columnSimCache, columns);
+		if (this.metrics.isEnabled()) {
+			this.metrics.recordEvictions(NeighborMetrics.ROW_SIM_CACHE, rowEvictions);
+			this.metrics.recordEvictions(NeighborMetrics.COLUMN_SIM_CACHE, columnEvictions);
+		}
+	}
+
+	
+	/**
+	 * Removing entries of specified keys from both sides of specified two-level cache.
+	 * @param cache specified two-level cache.
+	 * @param ids specified keys.
+	 * @return number of removed entries.
+	 */
+	protected static long evictCache(Map<Integer, Map<Integer, Object>> cache, Set<Integer> ids) {
+		if (ids.size() == 0) return 0;
+		
+		long count = 0;
+		for (int id : ids) {
+			Map<Integer, Object> row = cache.remove(id);
+			if (row != null) count += row.size();
+		}
+		for (Map<Integer, Object> row : cache.values()) {
+			for (int id : ids) {
+				if (row.remove(id) != null) count++;
+			}
+		}
+		return count;
+	}
+
+	
+	/**
+	 * Checking whether similarity of two rating vectors under specified measure depends on statistics of their fields, for example means of items rated by two users.
+	 * In this case, similarities of users who rated changed items are invalidated when ratings change.
+	 * The default implementation returns true for COD and for composite measures having such component.
+	 * @param measure specified measure.
+	 * @return whether similarity under specified measure depends on statistics of fields.
+	 */
+	protected boolean isFieldDependentMeasure(String measure) {
+		if (measure == null) return false;
+		if (measure.equals(COD)) return true;
+		
+		MeasureExpression composite = getCompositeMeasures().get(measure);
+		if (composite == null) return false;
+		for (String identifier : composite.getIdentifiers()) {
+			if (compositeParameter(identifier) == null && isFieldDependentMeasure(identifier)) return true;
+		}
+		return false;
+	}
+
+	
+	/**
+	 * Checking whether similarity of two rating vectors under specified measure depends on the general mean or variance of all ratings, so that all cached similarities
+	 * are invalidated when they change. The default implementation returns true only for composite measures having such component.
+	 * @param measure specified measure.
+	 * @return whether similarity under specified measure depends on the general mean or variance.
+	 */
+	protected boolean isGlobalDependentMeasure(String measure) {
+		MeasureExpression composite = measure != null ? getCompositeMeasures().get(measure) : null;
+		if (composite == null) return false;
+		
+		for (String identifier : composite.getIdentifiers()) {
+			if (compositeParameter(identifier) == null && isGlobalDependentMeasure(identifier)) return true;
+		}
+		return false;
+	}
+
+	
+	/**
+	 * Checking whether similarity of two rating vectors under specified measure depends on the number of all items, so that all cached similarities
+	 * are invalidated when new items are rated. The default implementation returns true only for composite measures having such component.
+	 * @param measure specified measure.
+	 * @return whether similarity under specified measure depends on the number of all items.
+	 */
+	protected boolean isCatalogDependentMeasure(String measure) {
+		MeasureExpression composite = measure != null ? getCompositeMeasures().get(measure) : null;
+		if (composite == null) return false;
+		
+		for (String identifier : composite.getIdentifiers()) {
+			if (compositeParameter(identifier) == null && isCatalogDependentMeasure(identifier)) return true;
+		}
+		return false;
+	}
+	
+	
+	/**
+	 * Setting up rating snapshot and moments from binary snapshot file at specified path if the file is built from specified dataset.
+	 * The file is memory-mapped, so that ratings and both layouts are served from the mapping instead of being copied into the heap.
+	 * If {@link #SNAPSHOT_VERIFY_FIELD} is on, the body of the file is also validated against its CRC32 checksum.
+	 * Otherwise, the snapshot is built from the dataset and written to the file. Failures of reading and writing the file are logged and do not fail setup.
+	 * @param dataset specified dataset.
+	 * @param path path of binary snapshot file.
+	 * @throws RemoteException if any error raises.
+	 */
+	protected void setupSnapshotFile(Dataset dataset, Path path) throws RemoteException {
+		boolean verify = getConfig().getAsBoolean(SNAPSHOT_VERIFY_FIELD);
+		long checksum = sourceChecksum(dataset, verify);
+		SnapshotFile file = null;
+		try {
+			file = SnapshotFile.map(path, checksum, verify);
+		}
+		catch (IOException e) {
+			LogUtil.error("Snapshot is built again because snapshot file cannot be read, caused by " + e.getMessage());
+		}
+		
+		if (file != null) {
+			this.snapshot = file.getSnapshot();
+			this.userIndex = this.snapshot.getRowIndex();
+			this.itemIndex = this.snapshot.getColumnIndex();
+			this.userMeanArray = file.getRowMeans();
+			this.userVarArray = file.getRowVars();
+			this.itemMeanArray = file.getColumnMeans();
+			this.itemVarArray = file.getColumnVars();
+			this.ratingMean = file.getRatingMean();
+			this.ratingVar = file.getRatingVar();
+			updateMeanVarMaps(this.snapshot);
+			return;
+		}
+		
+		Fetcher<RatingVector> users = dataset.fetchUserRatings();
+		this.snapshot = RatingSnapshot.build(users, getSnapshotValueBins());
+		users.close();
+		updateMeanVars(this.snapshot);
+		try {
+			new SnapshotFile(this.snapshot, this.userMeanArray, this.userVarArray, this.itemMeanArray, this.itemVarArray, this.ratingMean, this.ratingVar, checksum).write(path);
+		}
+		catch (IOException e) {
+			LogUtil.error("Snapshot file " + path + " cannot be written, caused by " + e.getMessage());
+		}
+	}
+	
+	
+	/**
+	 * Calculating checksum of specified dataset which identifies the source of binary snapshot file.
+	 * The default implementation hashes textual configuration values of the dataset, value bins of snapshot, numbers of users and items,
+	 * and sizes and modified times of local files named by configuration values, which costs no pass over ratings.
+	 * If specified content flag is true, the content of ratings is hashed too by {@link #contentChecksum(Dataset, CRC32)}.
+	 * @param dataset specified dataset.
+	 * @param content whether the content of ratings is hashed.
+	 * @return checksum of specified dataset.
+	 * @throws RemoteException if any error raises.
+	 */
+	protected long sourceChecksum(Dataset dataset, boolean content) throws RemoteException {
+		CRC32 crc = new CRC32();
+		DataConfig config = dataset.getConfig();
+		if (config != null) {
+			for (String key : new TreeSet<String>(config.keySet())) {
+				Object value = config.get(key);
+				if (value instanceof String || value instanceof Number || value instanceof Boolean)
+					crc.update((key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8));
+				String stamp = value instanceof String ? fileStamp((String)value) : null;
+				if (stamp != null)
+					crc.update((key + "@" + stamp + "\n").getBytes(StandardCharsets.UTF_8));
+			}
+		}
+		crc.update(("bins=" + Arrays.toString(getSnapshotValueBins()) + "\n").getBytes(StandardCharsets.UTF_8));
+		
+		Fetcher<Integer> userIds = dataset.fetchUserIds();
+		Fetcher<Integer> itemIds = dataset.fetchItemIds();
+		crc.update(("users=" + userIds.getMetadata().getSize() + ",items=" + itemIds.getMetadata().getSize() + "\n").getBytes(StandardCharsets.UTF_8));
+		userIds.close();
+		itemIds.close();
+		
+		if (content) contentChecksum(dataset, crc);
+		return crc.getValue();
+	}
+	
+	
+	/**
+	 * Getting stamp of local file or directory named by specified configuration value, which consists of sizes and modified times of the file or of the files in the directory,
+	 * so that the checksum of source dataset changes when a file store is edited.
+	 * @param value configuration value which can be a path or a file URI.
+	 * @return stamp of the file or directory, null if specified value does not name a local file or directory.
+	 */
+	protected static String fileStamp(String value) {
+		if (value.trim().isEmpty()) return null;
+		try {
+			Path path = value.startsWith("file:") ? Paths.get(URI.create(value)) : Paths.get(value);
+			if (Files.isRegularFile(path))
+				return Files.size(path) + ":" + Files.getLastModifiedTime(path).toMillis();
+			else if (!Files.isDirectory(path))
+				return null;
+			
+			List<Path> files;
+			try (Stream<Path> list = Files.list(path)) {
+				files = list.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+			}
+			StringBuilder stamp = new StringBuilder();
+			for (Path file : files)
+				stamp.append(file.getFileName()).append(':').append(Files.size(file)).append(':').append(Files.getLastModifiedTime(file).toMillis()).append(';');
+			return stamp.toString();
+		}
+		catch (IOException | RuntimeException e) {
+			return null;
+		}
+	}
+	
+	
+	/**
+	 * Hashing the content of ratings of specified dataset, which are user identifiers, item identifiers, and rating values, in one pass over user rating vectors.
+	 * Items of every user are hashed in ascending order so that the checksum does not depend on the order of iterating rated items.
+	 * @param dataset specified dataset.
+	 * @param crc checksum which is updated.
+	 * @throws RemoteException if any error raises.
+	 */
+	protected void contentChecksum(Dataset dataset, CRC32 crc) throws RemoteException {
+		int[] itemIds = new int[0];
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+		Fetcher<RatingVector> users = dataset.fetchUserRatings();
+		while (users.next()) {
+			RatingVector user = users.pick();
+			if (user == null) continue;
+			
+			Set<Integer> ids = user.fieldIds(true);
+			if (itemIds.length < ids.size()) itemIds = new int[Math.max(ids.size(), itemIds.length * 2)];
+			int n = 0;
+			for (int itemId : ids) itemIds[n++] = itemId;
+			Arrays.sort(itemIds, 0, n);
+			
+			buffer.putInt(user.id()).putInt(n);
+			for (int i = 0; i < n; i++) {
+				if (buffer.remaining() < 12) {
+					buffer.flip();
+					crc.update(buffer);
+					buffer.clear();
+				}
+				buffer.putInt(itemIds[i]).putLong(Double.doubleToLongBits(user.get(itemIds[i]).value));
+			}
+			if (buffer.remaining() < 8) {
+				buffer.flip();
+				crc.update(buffer);
+				buffer.clear();
+			}
+		}
+		users.close();
+		
+		buffer.flip();
+		crc.update(buffer);
+	}
+	
+	
+	@Override
+	public synchronized void unsetup() throws RemoteException {
+		// TODO Auto-generated method stub
+		this.queryModel = null;
+		this.setupEpoch++;
+		if (!this.settingUp) publishGeneration(null);
+		super.unsetup();
+		
+		this.ratingMedian = Constants.UNUSED;
+		
+		this.ratingMean = Constants.UNUSED;
+		this.ratingVar = Constants.UNUSED;
+		this.userMeans = FieldStatistics.empty();
+		this.userVars = FieldStatistics.empty();
+		
+		this.itemIds = Util.newSet();
+		this.itemMeans = FieldStatistics.empty();
+		this.itemVars = FieldStatistics.empty();
+		this.userIds = Util.newSet();
+		
+		this.userIndex = new IdDictionary();
+		this.userMeanArray = new double[0];
+		this.userVarArray = new double[0];
+		this.itemIndex = new IdDictionary();
+		this.itemMeanArray = new double[0];
+		this.itemVarArray = new double[0];
+		
+		this.snapshot = null;
+		this.profileEncoding = null;
+		this.overlapMatrix = null;
+		
+//		this.userRatingCache.clear();
+		if (this.metrics.isEnabled()) {
+			this.metrics.recordEvictions(NeighborMetrics.ROW_SIM_CACHE, cacheEntries(this.rowSimCache));
+			this.metrics.recordEvictions(NeighborMetrics.COLUMN_SIM_CACHE, cacheEntries(this.columnSimCache));
+		}
+		this.rowSimCache = new ConcurrentHashMap<>();
+		this.columnSimCache = new ConcurrentHashMap<>();
+		resetSimCounts();
+	}
+
+
+	/**
+	 * Updating individual user means and variances from specified dataset.
+	 * @param dataset specified dataset.
+	 * @throws RemoteException if any error raises.
+	 */
+	private void updateUserMeanVars(Dataset dataset) throws RemoteException {
+		NeighborEvents.SetupPhaseEvent event = new NeighborEvents.SetupPhaseEvent();
+		event.begin();
+		int totalRatingCount = 0;
+		this.ratingMean = 0.0;
+		this.ratingVar = 0.0;
+		this.userIds = Util.newSet();
+		this.userIndex = new IdDictionary();
+		this.userMeanArray = new double[0];
+		
+		//Calculating user means
+		Fetcher<RatingVector> users = dataset.fetchUserRatings();
+		while (users.next()) {
+			RatingVector user = users.pick();
+			if (user == null) continue;
+			
+			int userId = user.id();
+			this.userIds.add(userId);
+			int userIdx = this.userIndex.add(userId);
+			
+			Set<Integer> itemIds = user.fieldIds(true);
+			double meanSum = 0;
+			for (int itemId : itemIds) {
+				double value = user.get(itemId).value;
+				meanSum += value;
+				
+				totalRatingCount++;
+				this.ratingMean += value;
+			}
+			double userMean = meanSum / (double)(itemIds.size());
+			this.userMeanArray = ensureLength(this.userMeanArray, userIdx + 1);
+			this.userMeanArray[userIdx] = userMean;
+		}
+		this.ratingMean = this.ratingMean / (double)totalRatingCount;
+		this.userIndex.optimize();
+		this.userVarArray = new double[this.userMeanArray.length];
+
+		//Calculating user variances
+		users.reset();
+		while (users.next()) {
+			RatingVector user = users.pick();
+			if (user == null) continue;
+		
+			Set<Integer> itemIds = user.fieldIds(true);
+			int userId = user.id();
+			double varSum = 0;
+			int userIdx = this.userIndex.indexOf(userId);
+			double userMean = this.userMeanArray[userIdx];
+			for (int itemId : itemIds) {
+				double value = user.get(itemId).value;
+				double d = value - userMean;
+				varSum += d*d;
+				
+				double D = value - this.ratingMean;
+				this.ratingVar += D*D;
+			}
+			double userVar = varSum / (double)(itemIds.size());
+			this.userVarArray[userIdx] = userVar;
+		}
+		this.ratingVar = this.ratingVar / (double)totalRatingCount;
+		this.userMeans = new FieldStatistics(this.userIndex, this.userMeanArray);
+		this.userVars = new FieldStatistics(this.userIndex, this.userVarArray);
+		
+		users.close();
+		
+		event.end();
+		if (event.shouldCommit()) {
+			event.phase = "user";
+			event.count = this.userIds.size();
+			event.ratings = totalRatingCount;
+			event.commit();
+		}
+	}
+
+	
+	/**
+	 * Updating individual item means and variances from specified dataset.
+	 * @param dataset specified dataset.
+	 * @throws RemoteException if any error raises.
+	 */
+	private void updateItemMeanVars(Dataset dataset) throws RemoteException {
+		NeighborEvents.SetupPhaseEvent event = new NeighborEvents.SetupPhaseEvent();
+		event.begin();
+		long totalRatingCount = 0;
+		this.itemIds = Util.newSet();
+		this.itemIndex = new IdDictionary();
+		this.itemMeanArray = new double[0];
+		
+		//Calculating item means
+		Fetcher<RatingVector> items = dataset.fetchItemRatings();
+		while (items.next()) {
+			RatingVector item = items.pick();
+			if (item == null) continue;
+			
+			int itemId = item.id();
+			this.itemIds.add(itemId);
+			int itemIdx = this.itemIndex.add(itemId);
+			
+			Set<Integer> userIds = item.fieldIds(true);
+			double meanSum = 0;
+			for (int userId : userIds) {
+				double value = item.get(userId).value;
+				meanSum += value;
+			}
+			double itemMean = meanSum / (double)(userIds.size());
+			totalRatingCount += userIds.size();
+			this.itemMeanArray = ensureLength(this.itemMeanArray, itemIdx + 1);
+			this.itemMeanArray[itemIdx] = itemMean;
+		}
+		this.itemIndex.optimize();
+		this.itemVarArray = new double[this.itemMeanArray.length];
+
+		//Calculating user variances
+		items.reset();
+		while (items.next()) {
+			RatingVector item = items.pick();
+			if (item == null) continue;
+		
+			Set<Integer> userIds = item.fieldIds(true);
+			int itemId = item.id();
+			double varSum = 0;
+			int itemIdx = this.itemIndex.indexOf(itemId);
+			double itemMean = this.itemMeanArray[itemIdx];
+			for (int userId : userIds) {
+				double value = item.get(userId).value;
+				double d = value - itemMean;
+				varSum += d*d;
+			}
+			double itemVar = varSum / (double)(userIds.size());
+			this.itemVarArray[itemIdx] = itemVar;
+		}
+		this.itemMeans = new FieldStatistics(this.itemIndex, this.itemMeanArray);
+		this.itemVars = new FieldStatistics(this.itemIndex, this.itemVarArray);
+		
+		items.close();
+		
+		event.end();
+		if (event.shouldCommit()) {
+			event.phase = "item";
+			event.count = this.itemIds.size();
+			event.ratings = totalRatingCount;
+			event.commit();
+		}
+	}
+	
+	
+	/**
+	 * Updating user and item means and variances from specified rating snapshot whose rows are users and whose columns are items.
+	 * Dictionaries of the snapshot become dictionaries of dense user and item indices, so they are shared with the snapshot and must be replaced rather than cleared.
+	 * @param snapshot specified rating snapshot.
+	 */
+	protected void updateMeanVars(RatingSnapshot snapshot) {
+		NeighborEvents.SetupPhaseEvent event = new NeighborEvents.SetupPhaseEvent();
+		event.begin();
+		int rowCount = snapshot.rowCount(), columnCount = snapshot.columnCount();
+		this.userIndex = snapshot.getRowIndex();
+		this.itemIndex = snapshot.getColumnIndex();
+		this.userMeanArray = new double[rowCount];
+		this.userVarArray = new double[rowCount];
+		this.itemMeanArray = new double[columnCount];
+		this.itemVarArray = new double[columnCount];
+		int[] itemCounts = new int[columnCount];
+		
+		//Calculating means
+		double ratingSum = 0;
+		for (int row = 0; row < rowCount; row++) {
+			double meanSum = 0;
+			for (int k = snapshot.rowStart(row); k < snapshot.rowEnd(row); k++) {
+				double value = snapshot.value(k);
+				int column = snapshot.column(k);
+				meanSum += value;
+				this.itemMeanArray[column] += value;
+				itemCounts[column]++;
+			}
+			ratingSum += meanSum;
+			this.userMeanArray[row] = meanSum / (double)snapshot.rowLength(row);
+		}
+		for (int column = 0; column < columnCount; column++)
+			this.itemMeanArray[column] = this.itemMeanArray[column] / (double)itemCounts[column];
+		this.ratingMean = ratingSum / (double)snapshot.ratingCount();
+		
+		//Calculating variances
+		this.ratingVar = 0;
+		for (int row = 0; row < rowCount; row++) {
+			double userMean = this.userMeanArray[row];
+			double varSum = 0;
+			for (int k = snapshot.rowStart(row); k < snapshot.rowEnd(row); k++) {
+				double value = snapshot.value(k);
+				int column = snapshot.column(k);
+				double d = value - userMean;
+				varSum += d*d;
+				
+				double e = value - this.itemMeanArray[column];
+				this.itemVarArray[column] += e*e;
+				
+				double D = value - this.ratingMean;
+				this.ratingVar += D*D;
+			}
+			this.userVarArray[row] = varSum / (double)snapshot.rowLength(row);
+		}
+		for (int column = 0; column < columnCount; column++)
+			this.itemVarArray[column] = this.itemVarArray[column] / (double)itemCounts[column];
+		this.ratingVar = this.ratingVar / (double)snapshot.ratingCount();
+		
+		updateMeanVarMaps(snapshot);
+		
+		event.end();
+		if (event.shouldCommit()) {
+			event.phase = "snapshot";
+			event.count = rowCount;
+			event.ratings = snapshot.ratingCount();
+			event.commit();
+		}
+	}
+	
+	
+	/**
+	 * Filling identifier sets and creating views of means and variances over dense arrays of user and item statistics, which are indexed by dense indices of specified snapshot.
+	 * @param snapshot specified rating snapshot whose rows are users and whose columns are items.
+	 */
+	protected void updateMeanVarMaps(RatingSnapshot snapshot) {
+		int rowCount = snapshot.rowCount(), columnCount = snapshot.columnCount();
+		this.userIds = Util.newSet();
+		for (int row = 0; row < rowCount; row++)
+			this.userIds.add(snapshot.rowId(row));
+		this.userMeans = new FieldStatistics(this.userIndex, this.userMeanArray);
+		this.userVars = new FieldStatistics(this.userIndex, this.userVarArray);
+		
+		this.itemIds = Util.newSet();
+		for (int column = 0; column < columnCount; column++)
+			this.itemIds.add(snapshot.columnId(column));
+		this.itemMeans = new FieldStatistics(this.itemIndex, this.itemMeanArray);
+		this.itemVars = new FieldStatistics(this.itemIndex, this.itemVarArray);
+	}
+	
+	
+	/**
+	 * Getting value bins for quantized storage of rating snapshot.
+	 * The default implementation returns null, which means that ratings of the snapshot are stored as doubles.
+	 * @return value bins for quantized storage of rating snapshot, null for double storage.
+	 */
+	protected double[] getSnapshotValueBins() {
+		return null;
+	}
+	
+	
+	/**
+	 * Loading specified rating vector into specified prepared vector. The rating vector is always read as it is passed, even if its user is a row of the rating snapshot,
+	 * so that query vectors which differ from the model, such as vectors of users outside the model or edited copies of users, are scored by their own ratings.
+	 * Rows of the model are loaded from the snapshot explicitly by {@link #simRows(int, int, int, double[])}, which does not iterate rating vectors.
+	 * @param vRating specified rating vector.
+	 * @param buffer specified prepared vector.
+	 * @return specified prepared vector which was loaded.
+	 */
+	protected PreparedVector prepare(RatingVector vRating, PreparedVector buffer) {
+		return buffer.load(vRating);
+	}
+	
+	
+	/**
+	 * Calculating specified kernel between two rating vectors, which are prepared into pooled scratch vectors so that the kernel iterates arrays instead of boxed maps and sets.
+	 * @param vRating1 first rating vector, which is prepared as active vector.
+	 * @param vRating2 second rating vector, which is prepared as candidate vector.
+	 * @param kernel specified kernel.
+	 * @return similarity calculated by specified kernel.
+	 */
+	protected double simPrepared(RatingVector vRating1, RatingVector vRating2, SimilarityKernel kernel) {
+		ScratchPool.Scratch scratch = this.scratchPool.borrow();
+		try {
+			PreparedVector active = prepare(vRating1, scratch.active).prepareActive();
+			PreparedVector candidate = prepare(vRating2, scratch.candidate);
+			return kernel.sim(active, candidate);
+		}
+		finally {
+			this.scratchPool.release(scratch);
+		}
+	}
+	
+	
+	/**
+	 * Ensuring that specified array has at least specified length. The array is grown by doubling.
+	 * @param array specified array.
+	 * @param length specified length.
+	 * @return specified array itself or its grown copy.
+	 */
+	protected static double[] ensureLength(double[] array, int length) {
+		if (array.length >= length)
+			return array;
+		else
+			return Arrays.copyOf(array, Math.max(length, array.length * 2));
+	}
+	
+	
+	/**
+	 * Looking up statistic of specified field from specified dense array indexed by specified dictionary.
+	 * @param fieldIndex dictionary of dense indices of fields.
+	 * @param fieldStats dense array of statistics indexed by the dictionary.
+	 * @param fieldId specified field identifier.
+	 * @return statistic of specified field, {@link Constants#UNUSED} if the field is not in the dictionary.
+	 */
+	protected static double fieldStat(IdDictionary fieldIndex, double[] fieldStats, int fieldId) {
+		int index = fieldIndex.indexOf(fieldId);
+		return index >= 0 && index < fieldStats.length ? fieldStats[index] : Constants.UNUSED;
+	}
+	
+	
+	/**
+	 * Looking up statistic of specified field from specified statistics map. The dense array of the map is read directly if the map is a {@link FieldStatistics} view.
+	 * @param fieldStats specified statistics map.
+	 * @param fieldId specified field identifier.
+	 * @return statistic of specified field, {@link Constants#UNUSED} if the field is not in the map.
+	 */
+	protected static double fieldStat(Map<Integer, Double> fieldStats, int fieldId) {
+		if (fieldStats instanceof FieldStatistics)
+			return ((FieldStatistics)fieldStats).stat(fieldId);
+		Double stat = fieldStats.get(fieldId);
+		return stat != null ? stat : Constants.UNUSED;
+	}
+	
+	
+	/**
+	 * Getting the list of supported similar measures in names.
+	 * @return supported similar measures.
+	 */
+	public List<String> getSupportedMeasures() {
+		// TODO Auto-generated method stub
+		Set<String> mSet = Util.newSet();
+		mSet.add(COSINE);
+//		mSet.add(COSINEJ);
+		mSet.add(COJ);
+		mSet.add(PEARSON);
+//		mSet.add(PEARSONJ);
+		mSet.add(COD);
+		mSet.add(CPC);
+		mSet.add(WPC);
+		mSet.add(SPC);
+		mSet.add(JACCARD);
+		mSet.add(JACCARD2);
+		mSet.add(MSD);
+//		mSet.add(MSDJ);
+		mSet.add(URP);
+		mSet.add(TRIANGLE);
+//		mSet.add(TJM);
+		
+		Set<String> builtins = MeasureExpression.parseDefinitions(getBuiltinCompositeDefinitions()).keySet();
+		for (String composite : getCompositeMeasures().keySet()) {
+			if (!builtins.contains(composite)) mSet.add(composite);
+		}
+		
+		List<String> measures = Util.newList();
+		measures.clear();
+		measures.addAll(mSet);
+		Collections.sort(measures);
+		return measures;
+	}
+	
+	
+	/**
+	 * Getting composite measures, which are built-in composite measures of {@link #getBuiltinCompositeDefinitions()} and composite measures defined by {@link #COMPOSITE_MEASURES_FIELD}.
+	 * Definitions are parsed once and parsed again only when they change, and a configured definition replaces the built-in definition of the same name.
+	 * Invalid configured definitions are reported and ignored, and composite measures which refer to themselves directly or indirectly are removed.
+	 * @return map from names to expressions of composite measures.
+	 */
+	public Map<String, MeasureExpression> getCompositeMeasures() {
+		String definitions = getConfig() != null ? getConfig().getAsString(COMPOSITE_MEASURES_FIELD) : null;
+		definitions = definitions != null ? definitions.trim() : "";
+		Map.Entry<String, Map<String, MeasureExpression>> cache = this.compositeMeasures;
+		if (cache != null && cache.getKey().equals(definitions)) return cache.getValue();
+		
+		Map<String, MeasureExpression> composites = MeasureExpression.parseDefinitions(getBuiltinCompositeDefinitions());
+		try {
+			composites.putAll(MeasureExpression.parseDefinitions(definitions));
+		}
+		catch (Throwable e) {
+			LogUtil.error("Composite measures \"" + definitions + "\" are ignored because they are invalid, caused by " + e.getMessage());
+		}
+		
+		Set<String> cyclic = Util.newSet();
+		for (String name : composites.keySet()) {
+			if (isCyclicComposite(name, composites, Util.newSet())) cyclic.add(name);
+		}
+		if (cyclic.size() > 0) {
+			LogUtil.warn("Composite measures " + cyclic + " refer to themselves and are ignored");
+			composites.keySet().removeAll(cyclic);
+		}
+		
+		composites = Collections.unmodifiableMap(composites);
+		this.compositeMeasures = new AbstractMap.SimpleImmutableEntry<>(definitions, composites);
+		return composites;
+	}
+	
+	
+	/**
+	 * Getting definitions of built-in composite measures, which are products or sums of other measures such as {@link #COSINEJ}, in the syntax of {@link #COMPOSITE_MEASURES_FIELD}.
+	 * Built-in composite measures are calculated and compiled like configured composite measures. Derived classes append definitions of their own composite measures.
+	 * @return definitions of built-in composite measures separated by semicolons.
+	 */
+	protected String getBuiltinCompositeDefinitions() {
+		return COSINEJ + " = " + COSINE + " * " + JACCARD + "; "
+			+ PEARSONJ + " = " + PEARSON + " * " + JACCARD + "; "
+			+ TJM + " = " + TRIANGLE + " * " + JACCARD;
+	}
+	
+	
+	/**
+	 * Checking whether specified composite measure refers to itself directly or indirectly.
+	 * @param name name of composite measure.
+	 * @param composites all composite measures.
+	 * @param visiting composite measures on the current path of references.
+	 * @return whether specified composite measure refers to itself.
+	 */
+	private static boolean isCyclicComposite(String name, Map<String, MeasureExpression> composites, Set<String> visiting) {
+		MeasureExpression composite = composites.get(name);
+		if (composite == null) return false;
+		if (!visiting.add(name)) return true;
+		
+		for (String identifier : composite.getIdentifiers()) {
+			if (isCyclicComposite(identifier, composites, visiting)) return true;
+		}
+		visiting.remove(name);
+		return false;
+	}
+	
+	
+	/**
+	 * Resolving identifier of composite measure as numeric configuration parameter, for example {@code mu_alpha}. Other identifiers are measures.
+	 * @param identifier identifier of composite measure.
+	 * @return value of configuration parameter, null if the identifier is a measure.
+	 */
+	protected Double compositeParameter(String identifier) {
+		Serializable value = getConfig() != null ? getConfig().get(identifier) : null;
+		return value instanceof Number ? ((Number)value).doubleValue() : null;
+	}
+
+	
+	/**
+	 * Getting the default similarity measure.
+	 * @return default similar measure.
+	 */
+	protected String getDefaultMeasure() {
+		return COSINE;
+	}
+
+	
+	/**
+	 * Getting the similarity measure.
+	 * @return similar measure.
+	 */
+	public String getMeasure() {
+		String measure = config.getAsString(MEASURE);
+		if (measure == null)
+			return getDefaultMeasure();
+		else
+			return measure;
+	}
+	
+	
+	/**
+	 * Setting the similarity measure. If this algorithm is set up, a generation whose query model calculates the measure is published without lock.
+	 * Its owner is a frozen copy of the owner of the current generation, so the statistics, rating snapshot, and caches are the same.
+	 * If the current generation is replaced meanwhile, for example by {@link #applyRatings(List)}, the generation is built again from its replacement.
+	 * @param measure the similarity measure.
+	 */
+	public void setMeasure(String measure) {
+		config.put(MEASURE, measure);
+		while (true) {
+			ModelGeneration generation = this.generation;
+			String current = getMeasure();
+			if (generation == null || generation.getModel().measure.equals(current)) return;
+			
+			NeighborCF owner = generation.getOwner().freezeState();
+			owner.queryModel = owner.newQueryModel(current);
+			List<Map<?, ?>> caches = Util.newList();
+			owner.collectCaches(caches);
+			ModelGeneration successor = new ModelGeneration(owner, owner.queryModel, caches);
+			if (generationUpdater.compareAndSet(this, generation, successor)) {
+				generation.retire(successor);
+				return;
+			}
+		}
+	}
+	
+	
+	/**
+	 * Checking whether the supported similarity can be cached. In some case, the algorithm is cached but the similarity measure is not cached.
+	 * In current version of this class, the method always returns true.
+	 * @return true if the supported similarity can be cached.
+	 */
+	protected boolean isCachedSim() {
+		return true;
+	}
+	
+	
+//	@Override
+//	public synchronized RatingVector estimate(RecommendParam param, Set<Integer> queryIds) throws RemoteException {
+//		// TODO Auto-generated method stub
+//		if (param.ratingVector == null) //Consider not estimating yet.
+//			return null;
+//		if (!isCached())
+//			return estimate0(param, queryIds);
+//		
+//		int userId = param.ratingVector.id();
+//		if (userId < 0) //user is not stored in database.
+//			return estimate0(param, queryIds);
+//			
+//		if (this.userRatingCache.containsKey(userId)) { //Already estimated
+//			Map<Integer, Object> ratingMap = this.userRatingCache.get(userId);
+//			if (ratingMap == null) {
+//				ratingMap = Util.newMap();
+//				this.userRatingCache.put(userId, ratingMap);
+//			}
+//				
+//			RatingVector result = param.ratingVector.newInstance(true);
+//			Set<Integer> queryIds2 = Util.newSet();
+//			queryIds2.addAll(queryIds);
+//			if (ratingMap.size() > 0) {
+//				for (int itemId : queryIds) {
+//					if (!ratingMap.containsKey(itemId))
+//						continue;
+//					
+//					queryIds2.remove(itemId);
+//					double ratingValue = (double)ratingMap.get(itemId); //cache can store unused rating value.
+//					if (Util.isUsed(ratingValue))
+//						result.put(itemId, ratingValue);
+//				}
+//				if (queryIds2.size() == 0)
+//					return result.size() == 0 ? null : result;
+//			}
+//			
+//			RatingVector result2 = estimate0(param, queryIds2);
+//			if (result2 == null || result2.size() == 0) {
+//				for (int itemId : queryIds2) {
+//					ratingMap.put(itemId, Constants.UNUSED); //Consider estimated.
+//				}
+//				return result.size() == 0 ? null : result;
+//			}
+//			
+//			Set<Integer> itemIds = result2.fieldIds(); //Resulted items are always rated.
+//			for (int itemId : itemIds) {
+//				double value = result2.get(itemId).value;
+//				ratingMap.put(itemId, value);
+//				result.put(itemId, value);
+//			}
+//			return result.size() == 0 ? null : result;
+//		}
+//		
+//		RatingVector result = estimate0(param, queryIds);
+//		Map<Integer, Object> ratingMap = Util.newMap();
+//		userRatingCache.put(userId, ratingMap); //Consider estimated.
+//		if (result == null) return null;
+//		
+//		Set<Integer> itemIds = result.fieldIds(); //Resulted items are always rated.
+//		for (int itemId : itemIds) {
+//			double value = result.get(itemId).value;
+//			ratingMap.put(itemId, value);
+//		}
+//		return result.size() == 0 ? null : result;
+//	}
+//	
+//	
+//	/**
+//	 * This method is very important, which is used to estimate rating values of given items (users) without caching. Any class that extends this abstract class must implement this method.
+//	 * Note that the role of user and the role of item are exchangeable. Rating vector can be user rating vector or item rating vector. Please see {@link RatingVector} for more details. 
+//	 * The input parameters are a recommendation parameter and a set of item (user) identifiers.
+//	 * The output result is a set of predictive or estimated rating values of items (users) specified by the second input parameter.
+//	 * @param param recommendation parameter. Please see {@link RecommendParam} for more details of this parameter.
+//	 * @param queryIds set of identifications (IDs) of items that need to be estimated their rating values.
+//	 * @return rating vector contains estimated rating values of the specified set of IDs of items (users). Return null if cannot estimate.
+//	 */
+//	protected abstract RatingVector estimate0(RecommendParam param, Set<Integer> queryIds) throws RemoteException;
+	
+	
+	/**
+	 * Calculating the similarity between two pairs.
+	 * The first pair includes the first rating vector and the first profile.
+	 * The second pair includes the second rating vector and the second profile.
+	 * If you only want to calculate the similarity between two rating vectors, two in put profiles are set to be null.
+	 * If you only want to calculate the similarity between two profiles, two in put rating vectors are set to be null.
+	 * In current implementation, only three similarity measures are supported such as Pearson, cosine, and hybrid.
+	 * Hybrid measure means that profile is merged into rating vector as a unified vector for calculating Pearson measure or cosine measure.
+	 * In hybrid mode, similarity of profiles which are encoded at setup is merged into similarity of rating vectors, see {@link #HYBRID}.
+	 * This method does not lock this algorithm. Like {@link #simBatchConcurrent(RatingVector, List, Object...)}, it acquires the current {@link ModelGeneration}
+	 * and calculates the similarity with its query model and the frozen state of its owner.
+	 * 
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @param parameters extra parameters.
+	 * @return similarity between both two {@link RatingVector} (s) and two {@link Profile} (s).
+	 * @throws IllegalStateException if this algorithm is not set up.
+	 */
+	public double sim(RatingVector vRating1, RatingVector vRating2, Profile profile1, Profile profile2, Object...parameters) {
+		ModelGeneration generation = acquireGeneration();
+		try {
+			return generation.getOwner().sim(generation.getModel(), vRating1, vRating2, profile1, profile2, parameters);
+		}
+		finally {
+			generation.release();
+		}
+	}
+	
+	
+	/**
+	 * Calculating the similarity between two pairs with specified query model of an acquired generation owned by this algorithm.
+	 * @param model query model of acquired generation.
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @param parameters extra parameters.
+	 * @return similarity between both two {@link RatingVector} (s) and two {@link Profile} (s).
+	 */
+	protected double sim(QueryModel model, RatingVector vRating1, RatingVector vRating2, Profile profile1, Profile profile2, Object...parameters) {
+		String measure = model.measure;
+		this.simRequestCount.increment();
+		if (!isCachedSim()) //In some case, the algorithm is cached but the similarity measure is not cached.
+			return computeSim(measure, vRating1, vRating2, profile1, profile2, parameters);
+		
+		Task task = new Task() {
+			
+			@Override
+			public Object perform(Object...params) {
+				return computeSim(measure, vRating1, vRating2, profile1, profile2, parameters);
+			}
+		};
+		
+		return (double)cacheTask(vRating1.id(), vRating2.id(), this.rowSimCache, task);
+	}
+	
+	
+	/**
+	 * Calculating profile similarity of two rows from encoded profiles. Profiles which were not encoded at setup are encoded from specified profiles.
+	 * @param id1 identifier of first row.
+	 * @param id2 identifier of second row.
+	 * @param profile1 first profile, which can be null.
+	 * @param profile2 second profile, which can be null.
+	 * @return profile similarity, {@link Constants#UNUSED} if hybrid mode is off or some profile is not found.
+	 */
+	protected double profileSim(int id1, int id2, Profile profile1, Profile profile2) {
+		ProfileEncoding encoding = this.profileEncoding;
+		return encoding != null ? encoding.sim(id1, id2, profile1, profile2) : Constants.UNUSED;
+	}
+	
+	
+	/**
+	 * Merging profile similarity of two rows into similarity of their rating vectors in hybrid mode. Similarity is returned as is if hybrid mode is off.
+	 * @param sim similarity of rating vectors.
+	 * @param id1 identifier of first row.
+	 * @param id2 identifier of second row.
+	 * @param profile1 first profile, which can be null.
+	 * @param profile2 second profile, which can be null.
+	 * @return hybrid similarity.
+	 */
+	protected double hybridSim(double sim, int id1, int id2, Profile profile1, Profile profile2) {
+		return this.profileEncoding != null ? hybridSim(sim, profileSim(id1, id2, profile1, profile2)) : sim;
+	}
+	
+	
+	/**
+	 * Merging profile similarity into similarity of rating vectors with weight {@link #HYBRID_WEIGHT_FIELD}. If similarity of rating vectors is not used,
+	 * for example because there is no co-rated item, it contributes zero so that rows without common ratings are still compared by profiles.
+	 * @param sim similarity of rating vectors.
+	 * @param profileSim profile similarity.
+	 * @return hybrid similarity, which is similarity of rating vectors if profile similarity is not used.
+	 */
+	protected double hybridSim(double sim, double profileSim) {
+		if (!Util.isUsed(profileSim))
+			return sim;
+		else if (!Util.isUsed(sim))
+			return this.hybridWeight * profileSim;
+		else
+			return (1 - this.hybridWeight) * sim + this.hybridWeight * profileSim;
+	}
+	
+	
+	/**
+	 * Fusing compiled kernel with encoded profiles in hybrid mode, so that profile similarity is merged by a dense loop over codes after the kernel.
+	 * @param kernel compiled kernel, which can be null.
+	 * @return hybrid kernel, or specified kernel if hybrid mode is off.
+	 */
+	protected SimilarityKernel hybridKernel(SimilarityKernel kernel) {
+		if (kernel == null || this.profileEncoding == null) return kernel;
+		
+		return (active, candidate) -> hybridSim(kernel.sim(active, candidate), active.id(), candidate.id(), null, null);
+	}
+	
+	
+	/**
+	 * Calculating the similarity between two pairs by {@link #sim0(String, RatingVector, RatingVector, Profile, Profile, Object...)} without cache,
+	 * counting the calculation and recording its latency and co-rated length if metrics are enabled.
+	 * A sampled calculation emits {@link NeighborEvents.SimilarityEvent} and a calculation of expensive measure which missed row similarity cache emits {@link NeighborEvents.CacheMissEvent} when Flight Recorder enables them.
+	 * Calculations of measures which are not cached are not reported as cache misses.
+	 * @param measure specified measure.
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @param params extra parameters.
+	 * @return similarity between both two {@link RatingVector} (s) and two {@link Profile} (s).
+	 */
+	protected double computeSim(String measure, RatingVector vRating1, RatingVector vRating2, Profile profile1, Profile profile2, Object...params) {
+		this.simComputeCount.increment();
+		boolean measured = this.metrics.isEnabled();
+		boolean sampled = (this.simEventTicks.incrementAndGet() & (NeighborEvents.SIM_SAMPLING - 1)) == 0;
+		QueryModel model = this.queryModel;
+		boolean expensive = model != null && model.measure.equals(measure) ? model.expensive : isExpensiveMeasure(measure);
+		boolean missed = isCachedSim() && isCached() && expensive;
+		if (!measured && !sampled && !missed)
+			return hybridSim(sim0(measure, vRating1, vRating2, profile1, profile2, params), vRating1.id(), vRating2.id(), profile1, profile2);
+		
+		NeighborEvents.SimilarityEvent simEvent = sampled ? new NeighborEvents.SimilarityEvent() : null;
+		NeighborEvents.CacheMissEvent missEvent = missed ? new NeighborEvents.CacheMissEvent() : null;
+		if (simEvent != null) simEvent.begin();
+		if (missEvent != null) missEvent.begin();
+		long start = measured ? System.nanoTime() : 0;
+		double sim = hybridSim(sim0(measure, vRating1, vRating2, profile1, profile2, params), vRating1.id(), vRating2.id(), profile1, profile2);
+		if (simEvent != null) simEvent.end();
+		if (missEvent != null) missEvent.end();
+		
+		int corated = -1;
+		if (measured) {
+			this.metrics.recordLatency(measure, System.nanoTime() - start);
+			if (this.metrics.sampleCorated())
+				this.metrics.recordCorated(corated = coratedCount(vRating1, vRating2));
+		}
+		if (simEvent != null && simEvent.shouldCommit()) {
+			simEvent.measure = measure;
+			simEvent.id1 = vRating1.id();
+			simEvent.id2 = vRating2.id();
+			simEvent.corated = corated >= 0 ? corated : coratedCount(vRating1, vRating2);
+			simEvent.commit();
+		}
+		if (missEvent != null && missEvent.shouldCommit()) {
+			missEvent.cache = NeighborMetrics.ROW_SIM_CACHE;
+			missEvent.measure = measure;
+			missEvent.id1 = vRating1.id();
+			missEvent.id2 = vRating2.id();
+			missEvent.commit();
+		}
+		
+		return sim;
+	}
+	
+	
+	/**
+	 * Checking whether specified measure is expensive, whose calculations which missed cache are reported by {@link NeighborEvents.CacheMissEvent}.
+	 * The default implementation returns true only for composite measures having some expensive component.
+	 * @param measure specified measure.
+	 * @return whether specified measure is expensive.
+	 */
+	protected boolean isExpensiveMeasure(String measure) {
+		MeasureExpression composite = measure != null ? getCompositeMeasures().get(measure) : null;
+		if (composite == null) return false;
+		
+		for (String identifier : composite.getIdentifiers()) {
+			if (compositeParameter(identifier) == null && isExpensiveMeasure(identifier)) return true;
+		}
+		return false;
+	}
+	
+	
+	/**
+	 * Calculating the similarities between an active rating vector and many candidate rating vectors in one call.
+	 * The query model and the cache row of the active vector are read only once.
+	 * If the measure is compiled by {@link #compileKernel(String)}, the active vector is prepared once as a dense scatter array in scratch buffers taken from {@link ScratchPool},
+	 * in the same way as {@link #sim(RatingVector, RatingVector, Profile, Profile, Object...)}, and candidates are streamed through the compiled measure.
+	 * Otherwise, each candidate is calculated by {@link #sim0(String, RatingVector, RatingVector, Profile, Profile, Object...)} as usual.
+	 * This method does not lock this algorithm. Like {@link #simBatchConcurrent(RatingVector, List, Object...)}, it acquires the current {@link ModelGeneration}
+	 * and calculates the similarities with its query model and the frozen state of its owner, and it also counts requested and calculated similarities.
+	 * 
+	 * @param vActive active rating vector.
+	 * @param activeProfile active profile, which can be null.
+	 * @param candidates list of candidate rating vectors.
+	 * @param candidateProfiles list of candidate profiles which is aligned with list of candidate rating vectors, which can be null.
+	 * @param parameters extra parameters.
+	 * @return array of similarities which is aligned with list of candidate rating vectors. Similarity of null candidate is {@link Constants#UNUSED}.
+	 * @throws IllegalStateException if this algorithm is not set up.
+	 */
+	public double[] simBatch(RatingVector vActive, Profile activeProfile, List<RatingVector> candidates, List<Profile> candidateProfiles, Object...parameters) {
+		ModelGeneration generation = acquireGeneration();
+		try {
+			return generation.getOwner().simBatch(generation.getModel(), vActive, activeProfile, candidates, candidateProfiles, parameters);
+		}
+		finally {
+			generation.release();
+		}
+	}
+	
+	
+	/**
+	 * Calculating the similarities between an active rating vector and many candidate rating vectors with specified query model of an acquired generation owned by this algorithm.
+	 * Similarities are not cached if their rows were stamped by {@link #rowVersions} after the calculation started.
+	 * @param model query model of acquired generation.
+	 * @param vActive active rating vector.
+	 * @param activeProfile active profile, which can be null.
+	 * @param candidates list of candidate rating vectors.
+	 * @param candidateProfiles list of candidate profiles which is aligned with list of candidate rating vectors, which can be null.
+	 * @param parameters extra parameters.
+	 * @return array of similarities which is aligned with list of candidate rating vectors.
+	 */
+	protected double[] simBatch(QueryModel model, RatingVector vActive, Profile activeProfile, List<RatingVector> candidates, List<Profile> candidateProfiles, Object...parameters) {
+		if (candidates == null || candidates.size() == 0)
+			return new double[0];
+		
+		double[] sims = new double[candidates.size()];
+		String measure = model.measure;
+		this.simRequestCount.add(sims.length);
+		long moment = this.rowVersions.current();
+		Map<Integer, Object> cacheRow = null;
+		if (model.cached)
+			cacheRow = cacheRow(this.rowSimCache, vActive.id());
+		
+		SimilarityKernel kernel = model.kernel;
+		ScratchPool.Scratch scratch = kernel != null ? this.scratchPool.borrow() : null;
+		try {
+			PreparedVector active = kernel != null ? prepare(vActive, scratch.active).prepareActive() : null;
+			PreparedVector candidate = kernel != null ? scratch.candidate : null;
+			boolean measured = this.metrics.isEnabled();
+			for (int i = 0; i < sims.length; i++) {
+				RatingVector vCandidate = candidates.get(i);
+				if (vCandidate == null) {
+					sims[i] = Constants.UNUSED;
+					continue;
+				}
+				
+				if (cacheRow != null) {
+					Object value = cacheRow.get(vCandidate.id());
+					if (value != null && value instanceof Number) {
+						sims[i] = ((Number)value).doubleValue();
+						if (measured) this.metrics.recordHit(NeighborMetrics.ROW_SIM_CACHE);
+						continue;
+					}
+					if (measured) this.metrics.recordMiss(NeighborMetrics.ROW_SIM_CACHE);
+				}
+				
+				if (kernel == null) {
+					Profile profile = candidateProfiles != null && i < candidateProfiles.size() ? candidateProfiles.get(i) : null;
+					sims[i] = computeSim(measure, vActive, vCandidate, activeProfile, profile, parameters);
+				}
+				else if (!measured) {
+					this.simComputeCount.increment();
+					sims[i] = kernel.sim(active, prepare(vCandidate, candidate));
+				}
+				else {
+					this.simComputeCount.increment();
+					long start = System.nanoTime();
+					sims[i] = kernel.sim(active, prepare(vCandidate, candidate));
+					this.metrics.recordLatency(measure, System.nanoTime() - start);
+					if (this.metrics.sampleCorated())
+						this.metrics.recordCorated(commonCount(active, candidate));
+				}
+				
+				if (cacheRow != null) {
+					Double sim = sims[i];
+					cacheRow.putIfAbsent(vCandidate.id(), sim);
+					if (!this.rowVersions.isUnchanged(vActive.id(), vCandidate.id(), moment))
+						cacheRow.remove(vCandidate.id(), sim); //Ratings changed during calculation.
+				}
+			}
+		}
+		finally {
+			this.scratchPool.release(scratch);
+		}
+		
+		return sims;
+	}
+	
+	
+	/**
+	 * Calculating the similarities between an active rating vector and many candidate rating vectors in one call without profiles.
+	 * @param vActive active rating vector.
+	 * @param candidates list of candidate rating vectors.
+	 * @param parameters extra parameters.
+	 * @return array of similarities which is aligned with list of candidate rating vectors.
+	 */
+	public double[] simBatch(RatingVector vActive, List<RatingVector> candidates, Object...parameters) {
+		return simBatch(vActive, null, candidates, null, parameters);
+	}
+	
+	
+	/**
+	 * Calculating the similarities between an active rating vector and many candidate rating vectors and then selecting the top K most similar candidates.
+	 * @param vActive active rating vector.
+	 * @param candidates list of candidate rating vectors.
+	 * @param k number of selected candidates.
+	 * @param parameters extra parameters.
+	 * @return positions of the top K most similar candidates in the candidate list, ordered by decreasing similarity.
+	 */
+	public int[] simBatchTopK(RatingVector vActive, List<RatingVector> candidates, int k, Object...parameters) {
+		return topK(simBatch(vActive, candidates, parameters), k);
+	}
+	
+	
+	/**
+	 * Calculating many similarity measures between an active rating vector and many candidate rating vectors in one call, which is used by sweeps comparing measures.
+	 * Each pair is prepared once and iterated once to accumulate {@link PairStatistics} shared by all measures which are finished by {@link #compileFinisher(String, PairStatistics)}.
+	 * Other measures are calculated by their compiled kernels on the same prepared vectors, or by {@link #sim0(String, RatingVector, RatingVector, Profile, Profile, Object...)} otherwise.
+	 * Similarity caches are not used because they hold similarities of the current measure, and requested and calculated similarities are not counted.
+	 * This method does not lock this algorithm. Like {@link #simBatchConcurrent(RatingVector, List, Object...)}, it acquires the current {@link ModelGeneration}
+	 * and calculates the similarities with the frozen state of its owner.
+	 * @param vActive active rating vector.
+	 * @param candidates list of candidate rating vectors.
+	 * @param measures list of measure names.
+	 * @param parameters extra parameters.
+	 * @return matrix of similarities whose rows are aligned with measures and whose columns are aligned with candidates. Similarity of null candidate is {@link Constants#UNUSED}.
+	 * @throws IllegalStateException if this algorithm is not set up.
+	 */
+	public double[][] simBatchMulti(RatingVector vActive, List<RatingVector> candidates, List<String> measures, Object...parameters) {
+		ModelGeneration generation = acquireGeneration();
+		try {
+			return generation.getOwner().simBatchMulti(generation.getModel(), vActive, candidates, measures, parameters);
+		}
+		finally {
+			generation.release();
+		}
+	}
+	
+	
+	/**
+	 * Calculating many similarity measures between an active rating vector and many candidate rating vectors with specified query model of an acquired generation owned by this algorithm.
+	 * @param model query model of acquired generation.
+	 * @param vActive active rating vector.
+	 * @param candidates list of candidate rating vectors.
+	 * @param measures list of measure names.
+	 * @param parameters extra parameters.
+	 * @return matrix of similarities whose rows are aligned with measures and whose columns are aligned with candidates.
+	 */
+	protected double[][] simBatchMulti(QueryModel model, RatingVector vActive, List<RatingVector> candidates, List<String> measures, Object...parameters) {
+		int candidateCount = candidates != null ? candidates.size() : 0;
+		double[][] sims = new double[measures.size()][candidateCount];
+		if (candidateCount == 0) return sims;
+		
+		PairStatistics statistics = new PairStatistics(this.itemIndex);
+		PairStatistics.Finisher[] finishers = new PairStatistics.Finisher[measures.size()];
+		SimilarityKernel[] kernels = new SimilarityKernel[measures.size()];
+		boolean fused = false;
+		for (int m = 0; m < finishers.length; m++) {
+			finishers[m] = compileFinisher(measures.get(m), statistics);
+			if (finishers[m] != null)
+				fused = true;
+			else
+				kernels[m] = compileKernel(measures.get(m));
+		}
+		
+		ScratchPool.Scratch scratch = this.scratchPool.borrow();
+		try {
+			PreparedVector active = prepare(vActive, scratch.active).prepareActive();
+			PreparedVector candidate = scratch.candidate;
+			statistics.setActive(active);
+			for (int i = 0; i < candidateCount; i++) {
+				RatingVector vCandidate = candidates.get(i);
+				if (vCandidate == null) {
+					for (int m = 0; m < sims.length; m++) sims[m][i] = Constants.UNUSED;
+					continue;
+				}
+				
+				prepare(vCandidate, candidate);
+				if (fused) statistics.accumulate(active, candidate);
+				for (int m = 0; m < sims.length; m++) {
+					if (finishers[m] != null)
+						sims[m][i] = finishers[m].sim(active, candidate, statistics);
+					else if (kernels[m] != null)
+						sims[m][i] = kernels[m].sim(active, candidate);
+					else
+						sims[m][i] = sim0(measures.get(m), vActive, vCandidate, null, null, parameters);
+				}
+				
+				if (this.profileEncoding != null) {
+					double profileSim = profileSim(vActive.id(), vCandidate.id(), null, null);
+					for (int m = 0; m < sims.length; m++) sims[m][i] = hybridSim(sims[m][i], profileSim);
+				}
+			}
+		}
+		finally {
+			this.scratchPool.release(scratch);
+		}
+		
+		return sims;
+	}
+	
+	
+	/**
+	 * Calculating many similarity measures between two rating vectors in one call. See {@link #simBatchMulti(RatingVector, List, List, Object...)}.
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param measures list of measure names.
+	 * @param parameters extra parameters.
+	 * @return array of similarities which is aligned with measures.
+	 */
+	public double[] simMulti(RatingVector vRating1, RatingVector vRating2, List<String> measures, Object...parameters) {
+		double[][] sims = simBatchMulti(vRating1, Collections.singletonList(vRating2), measures, parameters);
+		double[] result = new double[sims.length];
+		for (int m = 0; m < sims.length; m++)
+			result[m] = sims[m][0];
+		return result;
+	}
+	
+	
+	/**
+	 * Compiling specified measure into finisher which calculates the measure from shared statistics of a pair. Centers of deviations which are needed by the measure are registered into the statistics.
+	 * A finisher must return the same value as the kernel of {@link #compileKernel(String)} for the same measure.
+	 * @param measure specified measure.
+	 * @param statistics shared statistics.
+	 * @return finisher of specified measure, null if the measure is not finished from statistics.
+	 */
+	protected PairStatistics.Finisher compileFinisher(String measure, PairStatistics statistics) {
+		if (measure == null)
+			return null;
+		else if (measure.equals(COSINE) && !getConfig().getAsBoolean(COSINE_NORMALIZED_FIELD)) {
+			int k = statistics.addCenter(0);
+			return (active, candidate, stats) -> cosine(stats.commonVXY[k], active.sumSquare(), candidate.sumSquare());
+		}
+		else if (measure.equals(CPC) || measure.equals(COSINE)) {
+			int k = statistics.addCenter(this.ratingMedian);
+			return (active, candidate, stats) -> {
+				if (stats.common == 0 || stats.commonVX[k] == 0 || stats.commonVY[k] == 0)
+					return Constants.UNUSED;
+				else
+					return stats.commonVXY[k] / Math.sqrt(stats.commonVX[k] * stats.commonVY[k]);
+			};
+		}
+		else if (measure.equals(COJ)) {
+			int k = statistics.addCenter(getConfig().getAsBoolean(COSINE_NORMALIZED_FIELD) ? this.ratingMedian : 0);
+			return (active, candidate, stats) -> {
+				double VX = stats.activeSquare[k], VY = stats.candidateSquare[k];
+				if (VX == 0 || VY == 0)
+					return Constants.UNUSED;
+				else
+					return stats.commonVXY[k] / Math.sqrt(VX * VY);
+			};
+		}
+		else if (measure.equals(PEARSON)) {
+			int k = statistics.addCenter(0);
+			return (active, candidate, stats) -> pearson(stats.common, stats.commonSum1, stats.commonSum2, stats.commonVX[k], stats.commonVY[k], stats.commonVXY[k], active.mean(), candidate.mean());
+		}
+		else if (measure.equals(WPC) || measure.equals(SPC)) {
+			int k = statistics.addCenter(0);
+			boolean sigmoid = measure.equals(SPC);
+			return (active, candidate, stats) -> {
+				double pearson = pearson(stats.common, stats.commonSum1, stats.commonSum2, stats.commonVX[k], stats.commonVY[k], stats.commonVXY[k], active.mean(), candidate.mean());
+				return sigmoid ? spc(pearson, stats.common) : wpc(pearson, stats.common);
+			};
+		}
+		else if (measure.equals(TRIANGLE))
+			return (active, candidate, stats) -> triangle(stats.squareDiff, active, candidate);
+		else if (measure.equals(JACCARD))
+			return (active, candidate, stats) -> jaccard(active, candidate, stats.common);
+		else if (measure.equals(JACCARD2)) {
+			return (active, candidate, stats) -> {
+				if (active.size() == 0 || candidate.size() == 0)
+					return Constants.UNUSED;
+				else
+					return (double)stats.common / (double)(active.size()*candidate.size());
+			};
+		}
+		else if (measure.equals(MSD) || measure.equals(MSDJ)) {
+			boolean fraction = config.getAsBoolean(MSD_FRACTION_FIELD);
+			double maxRating = this.config.getMaxRating();
+			boolean withJaccard = measure.equals(MSDJ);
+			return (active, candidate, stats) -> {
+				int common = stats.common;
+				double msd = Constants.UNUSED;
+				if (common > 0)
+					msd = fraction ? 1 / (1 + stats.squareDiff/common) : 1.0 - stats.squareDiff/(common*maxRating*maxRating);
+				return withJaccard ? msd * jaccard(active, candidate, common) : msd;
+			};
+		}
+		else
+			return compileCompositeFinisher(measure, statistics);
+	}
+	
+	
+	/**
+	 * Compiling composite measure into finisher which evaluates the expression of the composite measure from finishers of its component measures, so that all components share one pass.
+	 * A component measure which is not finished from statistics but is compiled by {@link #compileKernel(String)}, such as a measure reading columns, is calculated by its kernel on the same prepared pair.
+	 * @param measure specified composite measure.
+	 * @param statistics shared statistics.
+	 * @return finisher of specified composite measure, null if the measure is not composite or some component measure is neither finished from statistics nor compiled.
+	 */
+	protected PairStatistics.Finisher compileCompositeFinisher(String measure, PairStatistics statistics) {
+		MeasureExpression composite = getCompositeMeasures().get(measure);
+		if (composite == null) return null;
+		
+		List<String> identifiers = composite.getIdentifiers();
+		double[] constants = new double[identifiers.size()];
+		PairStatistics.Finisher[] components = new PairStatistics.Finisher[identifiers.size()];
+		for (int i = 0; i < components.length; i++) {
+			Double parameter = compositeParameter(identifiers.get(i));
+			if (parameter != null) {
+				constants[i] = parameter;
+				continue;
+			}
+			
+			components[i] = compileFinisher(identifiers.get(i), statistics);
+			if (components[i] != null) continue;
+			SimilarityKernel kernel = compileKernel(identifiers.get(i));
+			if (kernel == null) return null;
+			components[i] = (active, candidate, stats) -> kernel.sim(active, candidate);
+		}
+		
+		return (active, candidate, stats) -> {
+			double[] values = constants.clone();
+			for (int i = 0; i < components.length; i++) {
+				if (components[i] == null) continue;
+				values[i] = components[i].sim(active, candidate, stats);
+				if (!Util.isUsed(values[i])) return Constants.UNUSED;
+			}
+			return compositeValue(composite.evaluate(values));
+		};
+	}
+	
+	
+	/**
+	 * Calculating the similarity between two rating vectors on the concurrent query path, which is the concurrent counterpart of {@link #sim(RatingVector, RatingVector, Profile, Profile, Object...)}.
+	 * See {@link #simBatchConcurrent(RatingVector, List, Object...)} for the contract of the concurrent query path.
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param parameters extra parameters.
+	 * @return similarity between both two rating vectors.
+	 */
+	public double simConcurrent(RatingVector vRating1, RatingVector vRating2, Object...parameters) {
+		return simBatchConcurrent(vRating1, Collections.singletonList(vRating2), parameters)[0];
+	}
+	
+	
+	/**
+	 * Calculating the similarities between an active rating vector and many candidate rating vectors on the concurrent query path.
+	 * This method does not synchronize on this algorithm, so it can be called by many threads, including virtual threads, at the same time.
+	 * It acquires the current {@link ModelGeneration} and reads its immutable {@link QueryModel} and the frozen state of its owner, so that a generation swapped in by setup, ingestion,
+	 * or {@link #rebuildSnapshot(RatingSnapshot, Executor)} during the call is not mixed with the acquired one. It takes scratch buffers from {@link ScratchPool}, and shares row similarity cache which is concurrent.
+	 * Measures without compiled kernel are calculated by {@link #sim0(String, RatingVector, RatingVector, Profile, Profile, Object...)} from the frozen state of the owner,
+	 * which includes statistics and the rating snapshot whose columns are built before the query model of a column measure such as BCF or PC is published, and whose internal caches are concurrent.
+	 * A call which overlaps unsetup finishes with the acquired generation, and later calls fail until this algorithm is set up again. A call which overlaps {@link #applyRatings(List)}
+	 * may read old ratings, and its similarities are not cached if their rows were stamped by {@link #rowVersions} after the calculation started.
+	 * Requested and calculated similarities are not counted by {@link #getSimRequestCount()} and {@link #getSimComputeCount()}.
+	 * @param vActive active rating vector.
+	 * @param candidates list of candidate rating vectors.
+	 * @param parameters extra parameters.
+	 * @return array of similarities which is aligned with list of candidate rating vectors. Similarity of null candidate is {@link Constants#UNUSED}.
+	 * @throws IllegalStateException if this algorithm is not set up.
+	 */
+	public double[] simBatchConcurrent(RatingVector vActive, List<RatingVector> candidates, Object...parameters) {
+		ModelGeneration generation = acquireGeneration();
+		try {
+			return generation.getOwner().simBatchConcurrent(generation.getModel(), vActive, candidates, parameters);
+		}
+		finally {
+			generation.release();
+		}
+	}
+
+	
+	/**
+	 * Calculating the similarities between an active rating vector and many candidate rating vectors with specified query model of an acquired generation owned by this algorithm.
+	 * @param model query model of acquired generation.
+	 * @param vActive active rating vector.
+	 * @param candidates list of candidate rating vectors.
+	 * @param parameters extra parameters.
+	 * @return array of similarities which is aligned with list of candidate rating vectors.
+	 */
+	protected double[] simBatchConcurrent(QueryModel model, RatingVector vActive, List<RatingVector> candidates, Object...parameters) {
+		if (candidates == null || candidates.size() == 0)
+			return new double[0];
+		
+		double[] sims = new double[candidates.size()];
+		long moment = this.rowVersions.current();
+		Map<Integer, Object> cacheRow = model.cached ? cacheRow(this.rowSimCache, vActive.id()) : null;
+		boolean measured = this.metrics.isEnabled();
+		ScratchPool.Scratch scratch = null;
+		PreparedVector active = null;
+		try {
+			for (int i = 0; i < sims.length; i++) {
+				RatingVector vCandidate = candidates.get(i);
+				if (vCandidate == null) {
+					sims[i] = Constants.UNUSED;
+					continue;
+				}
+				
+				if (cacheRow != null) {
+					Object value = cacheRow.get(vCandidate.id());
+					if (value != null && value instanceof Number) {
+						sims[i] = ((Number)value).doubleValue();
+						if (measured) this.metrics.recordHit(NeighborMetrics.ROW_SIM_CACHE);
+						continue;
+					}
+					if (measured) this.metrics.recordMiss(NeighborMetrics.ROW_SIM_CACHE);
+				}
+				
+				long start = measured ? System.nanoTime() : 0;
+				if (model.kernel == null)
+					sims[i] = hybridSim(sim0(model.measure, vActive, vCandidate, null, null, parameters), vActive.id(), vCandidate.id(), null, null);
+				else {
+					if (scratch == null) {
+						scratch = this.scratchPool.borrow();
+						active = prepare(vActive, scratch.active).prepareActive();
+					}
+					sims[i] = model.kernel.sim(active, prepare(vCandidate, scratch.candidate));
+				}
+				if (measured) this.metrics.recordLatency(model.measure, System.nanoTime() - start);
+				
+				if (cacheRow != null) {
+					Double sim = sims[i];
+					cacheRow.putIfAbsent(vCandidate.id(), sim);
+					if (!this.rowVersions.isUnchanged(vActive.id(), vCandidate.id(), moment))
+						cacheRow.remove(vCandidate.id(), sim); //Ratings changed during calculation.
+				}
+			}
+		}
+		finally {
+			this.scratchPool.release(scratch);
+		}
+		
+		return sims;
+	}
+	
+	
+	/**
+	 * Calculating the similarities between specified row of the rating snapshot and a range of candidate rows on the concurrent query path, which is used by batch jobs
+	 * such as neighbor graph computation. Rows are loaded by {@link PreparedVector#load(RatingSnapshot, int)} into buffers taken from {@link ScratchPool}
+	 * and streamed through the compiled kernel, so no rating vector is boxed. Measures without compiled kernel are calculated by
+	 * {@link #sim0(String, RatingVector, RatingVector, Profile, Profile, Object...)} from boxed rows. Similarity caches are not used, and similarities are not counted.
+	 * @param row dense row index of active row.
+	 * @param candidateFrom first candidate row, inclusive.
+	 * @param candidateTo last candidate row, exclusive.
+	 * @param sims array which receives similarities aligned with candidate rows and which is reused by the caller, allocated if it is null or too short.
+	 * @return array of similarities aligned with candidate rows.
+	 * @throws IllegalStateException if this algorithm is not set up with rating snapshot.
+	 */
+	public double[] simRows(int row, int candidateFrom, int candidateTo, double[] sims) {
+		ModelGeneration generation = acquireGeneration();
+		try {
+			return generation.getOwner().simRows(generation.getModel(), row, candidateFrom, candidateTo, sims);
+		}
+		finally {
+			generation.release();
+		}
+	}
+
+	
+	/**
+	 * Calculating the similarities between specified row of the rating snapshot and a range of candidate rows with specified query model of an acquired generation owned by this algorithm.
+	 * @param model query model of acquired generation.
+	 * @param row dense row index of active row.
+	 * @param candidateFrom first candidate row, inclusive.
+	 * @param candidateTo last candidate row, exclusive.
+	 * @param sims array which receives similarities, allocated if it is null or too short.
+	 * @return array of similarities aligned with candidate rows.
+	 */
+	protected double[] simRows(QueryModel model, int row, int candidateFrom, int candidateTo, double[] sims) {
+		RatingSnapshot snapshot = this.snapshot;
+		if (snapshot == null)
+			throw new IllegalStateException("Algorithm is not set up with rating snapshot");
+		int count = Math.max(0, candidateTo - candidateFrom);
+		if (sims == null || sims.length < count) sims = new double[count];
+		if (count == 0) return sims;
+		
+		if (model.kernel == null) {
+			RatingVector vActive = snapshot.rowVector(row);
+			for (int i = 0; i < count; i++) {
+				RatingVector vCandidate = snapshot.rowVector(candidateFrom + i);
+				sims[i] = hybridSim(sim0(model.measure, vActive, vCandidate, null, null), vActive.id(), vCandidate.id(), null, null);
+			}
+			return sims;
+		}
+		
+		ScratchPool.Scratch scratch = this.scratchPool.borrow();
+		try {
+			PreparedVector active = scratch.active.load(snapshot, row).prepareActive();
+			for (int i = 0; i < count; i++)
+				sims[i] = model.kernel.sim(active, scratch.candidate.load(snapshot, candidateFrom + i));
+		}
+		finally {
+			this.scratchPool.release(scratch);
+		}
+		
+		return sims;
+	}
+	
+	
+	/**
+	 * Number of candidates which are calculated between two checks of budget in {@link #simBatchTopKBudget(RatingVector, List, int, long, int, Object...)} when the measure is not expensive.
+	 * Candidates of expensive measures are checked one by one.
+	 */
+	public static final int BUDGET_CHUNK = 32;
+	
+	
+	/**
+	 * Searching the top K neighbors of an active rating vector among candidates within a time or work budget, which bounds tail latency of expensive measures such as BCF, PC, SMTP, and NHSM.
+	 * Candidates are scanned in priority order, which is decreasing number of fields co-rated with the active vector and then decreasing number of rated fields,
+	 * so that the candidates which are likely to be neighbors are calculated first. When the budget runs out, the best-so-far top K among scanned candidates are returned
+	 * and the result is marked incomplete. Ordering is also bounded by the time budget, and candidates which are not reached by ordering are ranked after the others by number of rated fields.
+	 * A chunk of candidates is cut to the candidates whose calculation, estimated from the time per rated field of the calculated chunks or of the previous searches of the same measure,
+	 * is expected to finish before the deadline, which bounds the overrun of expensive measures.
+	 * Similarities are calculated on the concurrent query path of {@link #simBatchConcurrent(RatingVector, List, Object...)}, so this method does not lock this algorithm.
+	 * @param vActive active rating vector.
+	 * @param candidates list of candidate rating vectors.
+	 * @param k number of neighbors.
+	 * @param timeBudgetNanos time budget in nanoseconds, which is unlimited if it is not positive.
+	 * @param workBudget maximum number of calculated similarities, which is unlimited if it is not positive.
+	 * @param parameters extra parameters.
+	 * @return best-so-far top K neighbors with completeness indicator.
+	 * @throws IllegalStateException if this algorithm is not set up.
+	 */
+	public NeighborSearchResult simBatchTopKBudget(RatingVector vActive, List<RatingVector> candidates, int k, long timeBudgetNanos, int workBudget, Object...parameters) {
+		long start = System.nanoTime();
+		ModelGeneration generation = acquireGeneration();
+		try {
+			return generation.getOwner().simBatchTopKBudget(generation.getModel(), start, vActive, candidates, k, timeBudgetNanos, workBudget, parameters);
+		}
+		finally {
+			generation.release();
+		}
+	}
+
+	
+	/**
+	 * Searching the top K neighbors within a budget with specified query model of an acquired generation owned by this algorithm.
+	 * @param model query model of acquired generation.
+	 * @param start starting time in nanoseconds of {@link System#nanoTime()}.
+	 * @param vActive active rating vector.
+	 * @param candidates list of candidate rating vectors.
+	 * @param k number of neighbors.
+	 * @param timeBudgetNanos time budget in nanoseconds, which is unlimited if it is not positive.
+	 * @param workBudget maximum number of calculated similarities, which is unlimited if it is not positive.
+	 * @param parameters extra parameters.
+	 * @return best-so-far top K neighbors with completeness indicator.
+	 */
+	protected NeighborSearchResult simBatchTopKBudget(QueryModel model, long start, RatingVector vActive, List<RatingVector> candidates, int k, long timeBudgetNanos, int workBudget, Object...parameters) {
+		if (candidates == null || candidates.size() == 0)
+			return new NeighborSearchResult(new int[0], new double[0], 0, 0, System.nanoTime() - start);
+		
+		long deadline = timeBudgetNanos > 0 ? start + timeBudgetNanos : Long.MAX_VALUE;
+		long[] keys = new long[candidates.size()];
+		int[] order = budgetOrder(vActive, candidates, workBudget > 0 ? workBudget : candidates.size(), deadline, keys);
+		int work = workBudget > 0 ? Math.min(workBudget, order.length) : order.length;
+		int chunk = model.expensive ? 1 : BUDGET_CHUNK;
+		
+		double[] sims = new double[candidates.size()];
+		Arrays.fill(sims, Constants.UNUSED);
+		List<RatingVector> batch = Util.newList(chunk);
+		int scanned = 0;
+		long spentNanos = 0, spentFields = 0;
+		Double estimate = this.budgetEstimates.get(model.measure);
+		while (scanned < work) {
+			long now = System.nanoTime();
+			if (now >= deadline) break;
+			
+			double nanosPerField = spentFields > 0 ? (double)spentNanos / spentFields : (estimate != null ? estimate : 0);
+			double allowed = deadline == Long.MAX_VALUE || nanosPerField <= 0 ? Double.POSITIVE_INFINITY : (deadline - now) / nanosPerField;
+			int end = scanned;
+			long fields = 0;
+			while (end < Math.min(scanned + chunk, work)) {
+				int size = Math.max(1, (int)keys[order[end]]);
+				if (fields + size > allowed) break;
+				fields += size;
+				end++;
+			}
+			if (end == scanned) { //Calculating the next candidate is expected to overrun the deadline.
+				if (spentFields == 0) this.budgetEstimates.put(model.measure, nanosPerField / 2); //Relaxing estimate so that a pessimistic estimate does not stop later searches forever.
+				break;
+			}
+			
+			batch.clear();
+			for (int i = scanned; i < end; i++)
+				batch.add(candidates.get(order[i]));
+			
+			double[] batchSims = simBatchConcurrent(model, vActive, batch, parameters);
+			for (int i = scanned; i < end; i++)
+				sims[order[i]] = batchSims[i - scanned];
+			scanned = end;
+			spentNanos += System.nanoTime() - now;
+			spentFields += fields;
+		}
+		if (spentFields > 0) this.budgetEstimates.put(model.measure, (double)spentNanos / spentFields);
+		
+		int[] positions = topK(sims, k);
+		double[] topSims = new double[positions.length];
+		for (int i = 0; i < positions.length; i++)
+			topSims[i] = sims[positions[i]];
+		return new NeighborSearchResult(positions, topSims, scanned, order.length, System.nanoTime() - start);
+	}
+	
+	
+	/**
+	 * Ordering non-null candidates for budgeted neighbor search by decreasing number of fields co-rated with the active vector and then by decreasing number of rated fields.
+	 * Co-rated fields are counted until the deadline, and candidates which are not counted are ranked after the counted candidates.
+	 * Only the first specified number of candidates are ordered, by a bounded heap over primitive priority keys, because the others are never calculated.
+	 * Candidates are not ordered at all if the deadline passed while counting.
+	 * @param vActive active rating vector.
+	 * @param candidates list of candidate rating vectors.
+	 * @param work number of candidates which are ordered first.
+	 * @param deadline deadline in nanoseconds of {@link System#nanoTime()}.
+	 * @param keys output priority keys indexed by candidate position, whose high 32 bits are number of co-rated fields plus 1, 0 if not counted,
+	 * and whose low 32 bits are number of rated fields.
+	 * @return positions of non-null candidates, the first of which are in priority order.
+	 */
+	protected int[] budgetOrder(RatingVector vActive, List<RatingVector> candidates, int work, long deadline, long[] keys) {
+		int[] order = new int[candidates.size()];
+		int count = 0;
+		ScratchPool.Scratch scratch = this.scratchPool.borrow();
+		try {
+			PreparedVector active = prepare(vActive, scratch.active).prepareActive();
+			boolean counting = true;
+			for (int i = 0; i < order.length; i++) {
+				RatingVector vCandidate = candidates.get(i);
+				if (vCandidate == null) continue;
+				
+				if (counting && i % BUDGET_CHUNK == 0 && System.nanoTime() >= deadline)
+					counting = false;
+				if (counting) {
+					PreparedVector candidate = prepare(vCandidate, scratch.candidate);
+					keys[i] = ((long)(commonCount(active, candidate) + 1) << 32) | candidate.size();
+				}
+				else
+					keys[i] = vCandidate.size();
+				order[count++] = i;
+			}
+		}
+		finally {
+			this.scratchPool.release(scratch);
+		}
+		if (count < order.length) order = Arrays.copyOf(order, count);
+		if (count == 0 || System.nanoTime() >= deadline) return order;
+		
+		int[] heap = new int[Math.min(Math.max(work, 1), count)]; //Min-heap of positions by priority key.
+		int size = 0;
+		for (int n = 0; n < count; n++) {
+			int position = order[n];
+			if (size < heap.length) {
+				int child = size++;
+				while (child > 0) {
+					int parent = (child - 1) / 2;
+					if (keys[heap[parent]] <= keys[position]) break;
+					heap[child] = heap[parent];
+					child = parent;
+				}
+				heap[child] = position;
+			}
+			else if (keys[position] > keys[heap[0]])
+				budgetSiftDown(keys, heap, size, position);
+		}
+		
+		boolean[] selected = new boolean[keys.length];
+		for (int n = 0; n < size; n++)
+			selected[heap[n]] = true;
+		int[] result = new int[count];
+		int tail = size;
+		for (int n = 0; n < count; n++) {
+			if (!selected[order[n]]) result[tail++] = order[n];
+		}
+		for (int n = size; n > 0; n--) {
+			result[n - 1] = heap[0];
+			if (n > 1) budgetSiftDown(keys, heap, n - 1, heap[n - 1]);
+		}
+		return result;
+	}
+	
+	
+	/**
+	 * Replacing the root of min-heap of candidate positions by specified position and sifting it down.
+	 * @param keys priority keys indexed by candidate position.
+	 * @param heap min-heap of positions.
+	 * @param size size of the heap.
+	 * @param position specified position.
+	 */
+	private static void budgetSiftDown(long[] keys, int[] heap, int size, int position) {
+		long key = keys[position];
+		int parent = 0;
+		while (true) {
+			int child = 2 * parent + 1;
+			if (child >= size) break;
+			if (child + 1 < size && keys[heap[child + 1]] < keys[heap[child]])
+				child++;
+			if (keys[heap[child]] >= key) break;
+			heap[parent] = heap[child];
+			parent = child;
+		}
+		heap[parent] = position;
+	}
+	
+	
+	/**
+	 * Building and publishing the immutable state of concurrent queries from the current measure and configuration, which becomes a new generation owned by a frozen copy of this algorithm.
+	 * The measure is read again after publishing, so that a measure set by {@link #setMeasure(String)} meanwhile is not replaced by the measure which was read before.
+	 */
+	protected void publishQueryModel() {
+		String measure = null;
+		do {
+			measure = getMeasure();
+			QueryModel model = newQueryModel(measure);
+			this.queryModel = model;
+			List<Map<?, ?>> caches = Util.newList();
+			collectCaches(caches);
+			publishGeneration(new ModelGeneration(freezeState(), model, caches));
+		} while (!measure.equals(getMeasure()));
+	}
+	
+	
+	/**
+	 * Building the immutable state of concurrent queries which calculate specified measure from the state and configuration of this algorithm.
+	 * @param measure specified measure.
+	 * @return query model of specified measure.
+	 */
+	protected QueryModel newQueryModel(String measure) {
+		return new QueryModel(measure, hybridKernel(compileKernel(measure)), isCachedSim() && isCached(), isExpensiveMeasure(measure));
+	}
+	
+	
+	/**
+	 * Estimating rating value of active user on specified item by mean-centered weighted sum over the most similar neighbors who rated the item, which is the estimation of user-based neighbor algorithm.
+	 * Means of active user and neighbors are read from user statistics of the model, and the mean of a user who is not in the model is calculated from its rating vector.
+	 * The estimated value is bounded by the rating range of configuration.
+	 * @param vRating active user rating vector.
+	 * @param itemId item identifier.
+	 * @param neighbors neighbor rating vectors who rated the item.
+	 * @param sims similarities between active user and neighbors.
+	 * @param top positions of the most similar neighbors ordered by decreasing similarity, for example resulted from {@link #topK(double[], int)}.
+	 * @param k number of used neighbors.
+	 * @return estimated rating value, {@link Constants#UNUSED} if there is no usable neighbor.
+	 */
+	public double estimate(RatingVector vRating, int itemId, List<RatingVector> neighbors, double[] sims, int[] top, int k) {
+		Map<Integer, Double> userMeans = this.userMeans;
+		double numerator = 0, denominator = 0;
+		for (int i = 0; i < Math.min(k, top.length); i++) {
+			double sim = sims[top[i]];
+			if (!Util.isUsed(sim) || Double.isNaN(sim) || sim == 0) continue;
+			
+			RatingVector neighbor = neighbors.get(top[i]);
+			if (!neighbor.isRated(itemId)) continue;
+			double neighborMean = fieldStat(userMeans, neighbor.id());
+			numerator += sim * (neighbor.get(itemId).value - (Util.isUsed(neighborMean) ? neighborMean : neighbor.mean()));
+			denominator += Math.abs(sim);
+		}
+		if (denominator == 0) return Constants.UNUSED;
+		
+		double mean = fieldStat(userMeans, vRating.id());
+		if (!Util.isUsed(mean)) mean = vRating.mean();
+		double value = mean + numerator / denominator;
+		return Math.min(this.config.getMaxRating(), Math.max(this.config.getMinRating(), value));
+	}
+	
+	
+	/**
+	 * Selecting the top K largest similarities. Unused similarities are ignored.
+	 * @param sims array of similarities.
+	 * @param k number of selected similarities.
+	 * @return positions of the top K largest similarities, ordered by decreasing similarity.
+	 */
+	public static int[] topK(double[] sims, int k) {
+		if (sims == null || k <= 0)
+			return new int[0];
+		
+		int[] heap = new int[Math.min(k, sims.length)]; //Min-heap of positions.
+		int size = 0;
+		for (int i = 0; i < sims.length; i++) {
+			double sim = sims[i];
+			if (!Util.isUsed(sim)) continue;
+			
+			if (size < heap.length) {
+				int child = size++;
+				while (child > 0) {
+					int parent = (child - 1) / 2;
+					if (sims[heap[parent]] <= sim) break;
+					heap[child] = heap[parent];
+					child = parent;
+				}
+				heap[child] = i;
+			}
+			else if (size > 0 && sim > sims[heap[0]]) {
+				topKSiftDown(sims, heap, size, i);
+			}
+		}
+		
+		int[] result = new int[size];
+		for (int n = size; n > 0; n--) {
+			result[n - 1] = heap[0];
+			if (n > 1) topKSiftDown(sims, heap, n - 1, heap[n - 1]);
+		}
+		return result;
+	}
+	
+	
+	/**
+	 * Replacing the root of min-heap of positions by specified position and sifting it down.
+	 * @param sims array of similarities.
+	 * @param heap min-heap of positions.
+	 * @param size size of the heap.
+	 * @param position specified position.
+	 */
+	private static void topKSiftDown(double[] sims, int[] heap, int size, int position) {
+		double sim = sims[position];
+		int parent = 0;
+		while (true) {
+			int child = 2 * parent + 1;
+			if (child >= size) break;
+			if (child + 1 < size && sims[heap[child + 1]] < sims[heap[child]])
+				child++;
+			if (sims[heap[child]] >= sim) break;
+			heap[parent] = heap[child];
+			parent = child;
+		}
+		heap[parent] = position;
+	}
+	
+	
+	/**
+	 * Compiling specified measure into a kernel for batch calculation. Configuration values that the measure needs are read here once.
+	 * Measures which delegate to {@link RatingVector} or need profiles are not compiled.
+	 * @param measure specified measure.
+	 * @return compiled kernel of specified measure, null if the measure is not compiled.
+	 */
+	protected SimilarityKernel compileKernel(String measure) {
+		if (measure == null)
+			return null;
+		else if (measure.equals(COSINE)) {
+			if (!getConfig().getAsBoolean(COSINE_NORMALIZED_FIELD))
+				return (active, candidate) -> cosine(active, candidate);
+			double median = this.ratingMedian;
+			return (active, candidate) -> cpc(active, candidate, median); //Normalized cosine is centered at median over co-rated fields like CPC.
+		}
+		else if (measure.equals(PEARSON))
+			return (active, candidate) -> pearson(active, candidate);
+		else if (measure.equals(TRIANGLE))
+			return (active, candidate) -> triangle(active, candidate);
+		else if (measure.equals(WPC) || measure.equals(SPC))
+			return compileFusedKernel(measure);
+		else if (measure.equals(CPC)) {
+			double median = this.ratingMedian;
+			return (active, candidate) -> cpc(active, candidate, median);
+		}
+		else if (measure.equals(COJ)) {
+			double center = getConfig().getAsBoolean(COSINE_NORMALIZED_FIELD) ? this.ratingMedian : 0;
+			return (active, candidate) -> {
+				double VX = deviationSquare(active, center), VY = deviationSquare(candidate, center);
+				double VXY = 0;
+				for (int i = 0; i < candidate.size(); i++) {
+					double value1 = active.lookup(candidate.fieldId(i));
+					if (Util.isUsed(value1))
+						VXY += (value1 - center) * (candidate.value(i) - center);
+				}
+				
+				if (VX == 0 || VY == 0)
+					return Constants.UNUSED;
+				else
+					return VXY / Math.sqrt(VX * VY);
+			};
+		}
+		else if (measure.equals(JACCARD))
+			return (active, candidate) -> jaccard(active, candidate, commonCount(active, candidate));
+		else if (measure.equals(JACCARD2)) {
+			return (active, candidate) -> {
+				if (active.size() == 0 || candidate.size() == 0)
+					return Constants.UNUSED;
+				else
+					return (double)commonCount(active, candidate) / (double)(active.size()*candidate.size());
+			};
+		}
+		else if (measure.equals(MSD) || measure.equals(MSDJ)) {
+			boolean fraction = config.getAsBoolean(MSD_FRACTION_FIELD);
+			double maxRating = this.config.getMaxRating();
+			boolean withJaccard = measure.equals(MSDJ);
+			return (active, candidate) -> msd(active, candidate, fraction, maxRating, withJaccard);
+		}
+		else
+			return compileCompositeKernel(measure);
+	}
+	
+	
+	/**
+	 * Compiling composite measure into one fused kernel by {@link #compileFusedKernel(String)}. Component measures are finished from {@link PairStatistics} which are accumulated in one pass over the candidate,
+	 * so that the composite measure costs about the same as one component measure.
+	 * @param measure specified composite measure.
+	 * @return fused kernel of specified composite measure, null if the measure is not composite or some component measure is neither finished from statistics nor compiled.
+	 */
+	protected SimilarityKernel compileCompositeKernel(String measure) {
+		return getCompositeMeasures().containsKey(measure) ? compileFusedKernel(measure) : null;
+	}
+	
+	
+	/**
+	 * Compiling specified measure into a kernel which accumulates {@link PairStatistics} of each pair in one pass and finishes the measure by {@link #compileFinisher(String, PairStatistics)}.
+	 * Statistics are pooled because a kernel can be called by many threads at the same time.
+	 * @param measure specified measure.
+	 * @return fused kernel of specified measure, null if the measure is not finished from statistics.
+	 */
+	protected SimilarityKernel compileFusedKernel(String measure) {
+		PairStatistics template = new PairStatistics(this.itemIndex);
+		PairStatistics.Finisher finisher = compileFinisher(measure, template);
+		if (finisher == null) return null;
+		
+		AtomicReference<PairStatistics> idle = new AtomicReference<>(template);
+		return (active, candidate) -> {
+			PairStatistics statistics = idle.getAndSet(null);
+			if (statistics == null) statistics = new PairStatistics(template);
+			
+			statistics.setActive(active).accumulate(active, candidate);
+			double sim = finisher.sim(active, candidate, statistics);
+			idle.set(statistics);
+			return sim;
+		};
+	}
+	
+	
+	/**
+	 * Counting common rated fields of active vector and candidate vector.
+	 * @param active active vector which was prepared by {@link PreparedVector#prepareActive()}.
+	 * @param candidate candidate vector.
+	 * @return number of common rated fields.
+	 */
+	protected static int commonCount(PreparedVector active, PreparedVector candidate) {
+		int common = 0;
+		for (int i = 0; i < candidate.size(); i++) {
+			if (Util.isUsed(active.lookup(candidate.fieldId(i))))
+				common++;
+		}
+		return common;
+	}
+	
+	
+	/**
+	 * Calculating Jaccard measure from sizes of two prepared vectors and their number of common rated fields.
+	 * @param vector1 first prepared vector.
+	 * @param vector2 second prepared vector.
+	 * @param common number of common rated fields.
+	 * @return Jaccard measure.
+	 */
+	protected static double jaccard(PreparedVector vector1, PreparedVector vector2, int common) {
+		int union = vector1.size() + vector2.size() - common;
+		if (union == 0)
+			return Constants.UNUSED;
+		else
+			return (double)common / (double)union;
+	}
+	
+	
+	/**
+	 * Calculating sum of squared deviations of all rated values of prepared vector from specified center.
+	 * @param vector prepared vector.
+	 * @param center specified center.
+	 * @return sum of squared deviations from specified center.
+	 */
+	protected static double deviationSquare(PreparedVector vector, double center) {
+		double sum = 0;
+		for (int i = 0; i < vector.size(); i++) {
+			double deviate = vector.value(i) - center;
+			sum += deviate * deviate;
+		}
+		return sum;
+	}
+	
+	
+	/**
+	 * Calculating the cosine measure between two prepared vectors, whose dot product is taken over co-rated fields and whose lengths are taken over all rated fields.
+	 * @param active active vector, which is prepared by {@link PreparedVector#prepareActive()}.
+	 * @param candidate candidate vector.
+	 * @return cosine measure between two prepared vectors.
+	 */
+	protected static double cosine(PreparedVector active, PreparedVector candidate) {
+		double product = 0;
+		for (int i = 0; i < candidate.size(); i++) {
+			double value1 = active.lookup(candidate.fieldId(i));
+			if (Util.isUsed(value1)) product += value1 * candidate.value(i);
+		}
+		return cosine(product, active.sumSquare(), candidate.sumSquare());
+	}
+	
+	
+	/**
+	 * Finishing the cosine measure from dot product over co-rated fields and squared lengths of two vectors.
+	 * @param product dot product over co-rated fields.
+	 * @param square1 squared length of the first vector.
+	 * @param square2 squared length of the second vector.
+	 * @return cosine measure.
+	 */
+	protected static double cosine(double product, double square1, double square2) {
+		if (square1 == 0 || square2 == 0)
+			return Constants.UNUSED;
+		else
+			return product / Math.sqrt(square1 * square2);
+	}
+	
+	
+	/**
+	 * Calculating the Pearson correlation between two prepared vectors over co-rated fields, whose ratings are centered at means of all rated fields of each vector.
+	 * Raw sums are accumulated like {@link PairStatistics} so that the kernel and the finisher of Pearson measure return the same value.
+	 * @param active active vector, which is prepared by {@link PreparedVector#prepareActive()}.
+	 * @param candidate candidate vector.
+	 * @return Pearson correlation between two prepared vectors.
+	 */
+	protected static double pearson(PreparedVector active, PreparedVector candidate) {
+		int common = 0;
+		double sum1 = 0, sum2 = 0, square1 = 0, square2 = 0, product = 0;
+		for (int i = 0; i < candidate.size(); i++) {
+			double value1 = active.lookup(candidate.fieldId(i));
+			if (!Util.isUsed(value1)) continue;
+			
+			double value2 = candidate.value(i);
+			common++;
+			sum1 += value1;
+			sum2 += value2;
+			product += value1 * value2;
+			square1 += value1 * value1;
+			square2 += value2 * value2;
+		}
+		return pearson(common, sum1, sum2, square1, square2, product, active.mean(), candidate.mean());
+	}
+	
+	
+	/**
+	 * Finishing the Pearson correlation from raw sums over co-rated fields. Sums of deviations from the means are expanded from raw sums, and squared deviations which are
+	 * negative by rounding are considered to be zero.
+	 * @param common number of co-rated fields.
+	 * @param sum1 sum of the first values.
+	 * @param sum2 sum of the second values.
+	 * @param square1 sum of squares of the first values.
+	 * @param square2 sum of squares of the second values.
+	 * @param product sum of products of the first values and the second values.
+	 * @param mean1 mean of all rated values of the first vector.
+	 * @param mean2 mean of all rated values of the second vector.
+	 * @return Pearson correlation.
+	 */
+	protected static double pearson(int common, double sum1, double sum2, double square1, double square2, double product, double mean1, double mean2) {
+		if (common == 0) return Constants.UNUSED;
+		
+		double VX = Math.max(0, square1 - 2*mean1*sum1 + common*mean1*mean1);
+		double VY = Math.max(0, square2 - 2*mean2*sum2 + common*mean2*mean2);
+		double VXY = product - mean2*sum1 - mean1*sum2 + common*mean1*mean2;
+		if (VX == 0 || VY == 0)
+			return Constants.UNUSED;
+		else
+			return VXY / Math.sqrt(VX * VY);
+	}
+	
+	
+	/**
+	 * Calculating the Triangle measure between two prepared vectors, whose distance is taken over co-rated fields and whose lengths are taken over all rated fields.
+	 * @param active active vector, which is prepared by {@link PreparedVector#prepareActive()}.
+	 * @param candidate candidate vector.
+	 * @return Triangle measure between two prepared vectors.
+	 */
+	protected static double triangle(PreparedVector active, PreparedVector candidate) {
+		double squareDiff = 0;
+		for (int i = 0; i < candidate.size(); i++) {
+			double value1 = active.lookup(candidate.fieldId(i));
+			if (!Util.isUsed(value1)) continue;
+			
+			double d = value1 - candidate.value(i);
+			squareDiff += d * d;
+		}
+		return triangle(squareDiff, active, candidate);
+	}
+	
+	
+	/**
+	 * Finishing the Triangle measure from sum of squared differences over co-rated fields and lengths of two prepared vectors.
+	 * @param squareDiff sum of squared differences over co-rated fields.
+	 * @param active active vector.
+	 * @param candidate candidate vector.
+	 * @return Triangle measure.
+	 */
+	protected static double triangle(double squareDiff, PreparedVector active, PreparedVector candidate) {
+		return 1 - Math.sqrt(squareDiff) / (active.module() + candidate.module());
+	}
+	
+	
+	/**
+	 * Calculating the similarity measure between two pairs as usual.
+	 * @param measure specified measure.
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @param params extra parameter.
+	 * @return similarity between both two {@link RatingVector} (s) and two {@link Profile} (s) as usual.
+	 */
+	protected double sim0(String measure, RatingVector vRating1, RatingVector vRating2, Profile profile1, Profile profile2, Object...params) {
+//		boolean hybrid = config.getAsBoolean(HYBRID);
+//		if (!hybrid) {
+//			profile1 = null;
+//			profile2 = null;
+//		}
+		
+		if (measure.equals(COSINE))
+			return cosine(vRating1, vRating2, profile1, profile2);
+		if (measure.equals(COJ))
+			return coj(vRating1, vRating2, profile1, profile2);
+		else if (measure.equals(PEARSON))
+			return corr(vRating1, vRating2, profile1, profile2);
+		else if (measure.equals(COD))
+			return cod(vRating1, vRating2, profile1, profile2);
+		else if (measure.equals(CPC))
+			return cpc(vRating1, vRating2, profile1, profile2);
+		else if (measure.equals(WPC))
+			return wpc(vRating1, vRating2, profile1, profile2);
+		else if (measure.equals(SPC))
+			return spc(vRating1, vRating2, profile1, profile2);
+		else if (measure.equals(JACCARD))
+			return jaccard(vRating1, vRating2, profile1, profile2);
+		else if (measure.equals(JACCARD2))
+			return jaccard2(vRating1, vRating2, profile1, profile2);
+		else if (measure.equals(MSD))
+			return msd(vRating1, vRating2, profile1, profile2);
+		else if (measure.equals(MSDJ))
+			return msd(vRating1, vRating2, profile1, profile2) * jaccard(vRating1, vRating2, profile1, profile2);
+		else if (measure.equals(URP))
+			return urp(vRating1, vRating2, profile1, profile2);
+		else if (measure.equals(TRIANGLE))
+			return triangle(vRating1, vRating2, profile1, profile2);
+		else
+			return compositeSim(measure, vRating1, vRating2, profile1, profile2, params);
+	}
+	
+	
+	/**
+	 * Calculating composite measure between two pairs by evaluating its expression from its component measures, each of which is calculated as usual.
+	 * This method is the fallback of composite measures which are not compiled by {@link #compileCompositeKernel(String)}.
+	 * @param measure specified composite measure.
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @param params extra parameter.
+	 * @return composite measure, {@link Constants#UNUSED} if the measure is not composite or some component measure is not used.
+	 */
+	protected double compositeSim(String measure, RatingVector vRating1, RatingVector vRating2, Profile profile1, Profile profile2, Object...params) {
+		MeasureExpression composite = getCompositeMeasures().get(measure);
+		if (composite == null) return Constants.UNUSED;
+		
+		List<String> identifiers = composite.getIdentifiers();
+		double[] values = new double[identifiers.size()];
+		for (int i = 0; i < values.length; i++) {
+			Double parameter = compositeParameter(identifiers.get(i));
+			values[i] = parameter != null ? parameter : sim0(identifiers.get(i), vRating1, vRating2, profile1, profile2, params);
+			if (!Util.isUsed(values[i])) return Constants.UNUSED;
+		}
+		return compositeValue(composite.evaluate(values));
+	}
+	
+	
+	/**
+	 * Checking value of composite measure, which is not used if it is not finite, for example when it is divided by zero.
+	 * @param value value of composite measure.
+	 * @return value of composite measure, {@link Constants#UNUSED} if it is not finite.
+	 */
+	protected static double compositeValue(double value) {
+		return Double.isFinite(value) ? value : Constants.UNUSED;
+	}
+	
+	
+	/**
+	 * Calculating the cosine measure between two pairs.
+	 * The first pair includes the first rating vector and the first profile.
+	 * The second pair includes the second rating vector and the second profile.
+	 * 
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @return the cosine between both two {@link RatingVector} (s) and two {@link Profile} (s).
+	 */
+	@NextUpdate
+	protected double cosine(
+			RatingVector vRating1, RatingVector vRating2,
+			Profile profile1, Profile profile2) {
+		
+		boolean normalized = getConfig().getAsBoolean(COSINE_NORMALIZED_FIELD);
+		return normalized ? vRating1.cosine(vRating2, this.ratingMedian) : vRating1.cosine(vRating2);
+
+//		boolean normalized = getConfig().getAsBoolean(COSINE_NORMALIZED_FIELD);
+//		if (profile1 == null || profile2 == null)
+//			return normalized ? vRating1.cosine(vRating2, this.ratingMedian) : vRating1.cosine(vRating2);
+//		
+//		Vector[] vectors = toNormVector(vRating1, vRating2, profile1, profile2);
+//		Vector vector1 = vectors[0];
+//		Vector vector2 = vectors[1];
+//		
+//		return normalized ? vector1.cosine(vector2, this.ratingMedian) : vector1.cosine(vector2);
+	}
+
+	
+	/**
+	 * Calculating the COD (adjusted cosine) measure between two pairs.
+	 * The first pair includes the first rating vector and the first profile.
+	 * The second pair includes the second rating vector and the second profile.
+	 * 
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @return ACOS measure between both two rating vectors.
+	 */
+	protected abstract double cod(RatingVector vRating1, RatingVector vRating2,
+			Profile profile1, Profile profile2);
+	
+
+	/**
+	 * Calculating the COD (adjusted cosine) measure between two rating vectors.
+	 * @param vRating1 the first rating vectors.
+	 * @param vRating2 the second rating vectors.
+	 * @param fieldMeans mean value of field ratings.
+	 * @return ACOS (adjusted cosine) measure between two rating vectors.
+	 */
+	protected double cod(RatingVector vRating1, RatingVector vRating2, Map<Integer, Double> fieldMeans) {
+		FieldStatistics means = FieldStatistics.of(fieldMeans);
+		return simPrepared(vRating1, vRating2, (active, candidate) -> cod(active, candidate, means.getIndex(), means.getValues()));
+	}
+
+	
+	/**
+	 * Calculating the COD (adjusted cosine) measure between two prepared vectors in one loop over co-rated fields. Fields without mean are skipped.
+	 * @param active active vector, which is prepared by {@link PreparedVector#prepareActive()}.
+	 * @param candidate candidate vector.
+	 * @param fieldIndex dictionary of dense indices of fields.
+	 * @param fieldMeans dense array of field means indexed by the dictionary.
+	 * @return ACOS (adjusted cosine) measure between two prepared vectors.
+	 */
+	protected static double cod(PreparedVector active, PreparedVector candidate, IdDictionary fieldIndex, double[] fieldMeans) {
+		double VX = 0, VY = 0;
+		double VXY = 0;
+		for (int i = 0; i < candidate.size(); i++) {
+			int fieldId = candidate.fieldId(i);
+			double value1 = active.lookup(fieldId);
+			if (!Util.isUsed(value1)) continue;
+			double mean = fieldStat(fieldIndex, fieldMeans, fieldId);
+			if (!Util.isUsed(mean)) continue;
+			
+			double deviate1 = value1 - mean;
+			double deviate2 = candidate.value(i) - mean;
+			VX  += deviate1 * deviate1;
+			VY  += deviate2 * deviate2;
+			VXY += deviate1 * deviate2;
+		}
+		
+		if (VX == 0 || VY == 0)
+			return Constants.UNUSED;
+		else
+			return VXY / Math.sqrt(VX * VY);
+	}
+
+	
+	/**
+	 * Calculating the Cosine-Jaccard measure between two pairs. Cosine-Jaccard is developed by Loc Nguyen.
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @author Loc Nguyen
+	 * @return Cosine-Jaccard measure between both two rating vectors and profiles.
+	 */
+	protected double coj(
+			RatingVector vRating1, RatingVector vRating2,
+			Profile profile1, Profile profile2) {
+		Set<Integer> union = unionFieldIds(vRating1, vRating2);
+		
+		boolean normalized = getConfig().getAsBoolean(COSINE_NORMALIZED_FIELD);
+		double VX = 0, VY = 0;
+		double VXY = 0;
+		for (int fieldId : union) {
+			double deviate1 = Constants.UNUSED;
+			double deviate2 = Constants.UNUSED;
+			if (vRating1.isRated(fieldId))
+				deviate1 = vRating1.get(fieldId).value - (normalized ? this.ratingMedian : 0);
+			if (vRating2.isRated(fieldId))
+				deviate2 = vRating2.get(fieldId).value - (normalized ? this.ratingMedian : 0);
+			
+			if (Util.isUsed(deviate1))
+				VX  += deviate1 * deviate1;
+			if (Util.isUsed(deviate2))
+				VY  += deviate2 * deviate2;
+			if (Util.isUsed(deviate1) && Util.isUsed(deviate2))
+				VXY += deviate1 * deviate2;
+		}
+		
+		if (VX == 0 || VY == 0)
+			return Constants.UNUSED;
+		else
+			return VXY / Math.sqrt(VX * VY);
+	}
+	
+	
+	/**
+	 * Calculating the correlation coefficient between two pairs.
+	 * The first pair includes the first rating vector and the first profile.
+	 * The second pair includes the second rating vector and the second profile.
+	 * 
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @return correlation coefficient between both two {@link RatingVector} (s) and two {@link Profile} (s).
+	 */
+	@NextUpdate
+	protected double corr(
+			RatingVector vRating1, RatingVector vRating2,
+			Profile profile1, Profile profile2) {
+		
+		return vRating1.corr(vRating2);
+		
+//		if (profile1 == null || profile2 == null)
+//			return vRating1.corr(vRating2);
+//
+//		Vector[] vectors = toNormVector(vRating1, vRating2, profile1, profile2);
+//		Vector vector1 = vectors[0];
+//		Vector vector2 = vectors[1];
+//		
+//		return vector1.corr(vector2);
+	}
+
+	
+	/**
+	 * Normalizing two pairs into two normalized vectors.
+	 * The first pair includes the first rating vector and the first profile.
+	 * The second pair includes the second rating vector and the second profile.
+	 * Note, all elements of normalized vectors are &gt;=0 and &lt;=1 and sum of them is 1.
+	 * However, for the result of this method, each normalized vector corresponding to each pair has two parts such as part of rating vector and part of profile.
+	 * Part of rating vector is normalized partially and part of profile is normalized partially.
+	 * For example, suppose the first pair is (1, 2, 3, 4, 5, 6) in which part of rating vector is (1, 2, 3) and part of profile is (4, 5, 6).
+	 * Such pair is normalized as vector (1/6, 2/6, 3/6, 4/15, 5/15, 6/15) because the normalized rating vector (1/6, 2/6, 3/6) is and the normalized profile is (4/15, 5/15, 6/15).
+	 * If profile does not contains numbers, there is a conversion.
+	 * 
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @return array of two normalized vectors.
+	 */
+	@SuppressWarnings("unused")
+	@Deprecated
+	private Vector[] toNormVector(
+			RatingVector vRating1, RatingVector vRating2, 
+			Profile profile1, Profile profile2) {
+		
+		Vector vector1 = new Vector(0, 0);
+		Vector vector2 = new Vector(0, 0);
+		
+		Vector[] vectors = toNormVector(vRating1, vRating2);
+		if (vectors.length != 0) {
+			vector1.concat(vectors[0]);
+			vector2.concat(vectors[1]);
+		}
+		
+		vectors = toNormDiscreteVectors(profile1, profile2);
+		if (vectors.length != 0) {
+			vector1.concat(vectors[0]);
+			vector2.concat(vectors[1]);
+		}
+		
+		return new Vector[] { vector1, vector2 };
+	}
+	
+	
+	/**
+	 * Normalizing two rating vectors into two normalized vectors.
+	 * For example, two rating vectors (1, 3, 5) and (2, 4, 6) are normalized into (1/9, 3/9, 5/9) and (2/12, 4/12, 6/12).
+	 * 
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @return array of two normalized {@link Vector} (s) from two rating vectors.
+	 */
+	@Deprecated
+	private Vector[] toNormVector(RatingVector vRating1, RatingVector vRating2) {
+		
+		List<Integer> common = Util.newList();
+		common.addAll(vRating1.fieldIds(true));
+		common.retainAll(vRating2.fieldIds(true));
+		if (common.size() == 0)
+			return new Vector[0];
+		
+		double n = dataset.getConfig().getMaxRating() - dataset.getConfig().getMinRating();
+		
+		double[] data1 = new double[common.size()];
+		double[] data2 = new double[common.size()];
+		for (int i = 0; i < common.size(); i++) {
+			int id = common.get(i);
+			
+			data1[i] = vRating1.get(id).value / n; 
+			data2[i] = vRating2.get(id).value / n; 
+		}
+		
+		return new Vector[] { new Vector(data1), new Vector(data2)};
+	}
+	
+	
+	/**
+	 * Normalizing two profiles into two normalized vector.
+	 * Note, values in such two profiles are binary or nominal. Nominal indicates discrete and non-number data such as weekdays {Monday, Tuesday, Wednesday, Thursday, Friday, Saturday, Sunday}.
+	 * 
+	 * @param profile1 first profiles.
+	 * @param profile2 second profiles.
+	 * @return array of two normalized {@link Vector} (s) from two profiles.
+	 */
+	@Deprecated
+	private Vector[] toNormDiscreteVectors(Profile profile1, Profile profile2) {
+		if (profile1 == null || profile2 == null)
+			return new Vector[0];
+		
+		List<Double> data1 = Util.newList();
+		List<Double> data2 = Util.newList();
+
+		AttributeList attRef = profile1.getAttRef();
+		for (int i = 0; i < attRef.size(); i++) {
+			Attribute att = attRef.get(i);
+			if (!att.isCategory() || att.isKey())
+				continue;
+			if (profile1.isMissing(i) || profile2.isMissing(i))
+				continue;
+			
+			double value1 = profile1.getValueAsReal(i);
+			double value2 = profile2.getValueAsReal(i);
+			if (att.getType() == Type.nominal) {
+				value1 = profile1.getNominalNormalizedValue(i);
+				value2 = profile2.getNominalNormalizedValue(i);
+			}
+			data1.add(value1);
+			data2.add(value2);
+		}
+		
+		if (data1.size() == 0 || data2.size() == 0)
+			return new Vector[0];
+		
+		return new Vector[] { new Vector(data1), new Vector(data2)};
+	}
+
+	
+	/**
+	 * Calculating the CPC (constrained Pearson correlation) measure between two pairs.
+	 * It is also cosine normalized (CON) measure.
+	 * The first pair includes the first rating vector and the first profile.
+	 * The second pair includes the second rating vector and the second profile.
+	 * 
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @return CPC measure between both two rating vectors.
+	 */
+	protected double cpc(
+			RatingVector vRating1, RatingVector vRating2,
+			Profile profile1, Profile profile2) {
+		double median = this.ratingMedian;
+		return simPrepared(vRating1, vRating2, (active, candidate) -> cpc(active, candidate, median));
+	}
+	
+	
+	/**
+	 * Calculating the CPC (constrained Pearson correlation) measure between two prepared vectors in one loop over co-rated fields.
+	 * @param active active vector, which is prepared by {@link PreparedVector#prepareActive()}.
+	 * @param candidate candidate vector.
+	 * @param median rating median.
+	 * @return CPC measure between two prepared vectors.
+	 */
+	protected static double cpc(PreparedVector active, PreparedVector candidate, double median) {
+		double VX = 0, VY = 0;
+		double VXY = 0;
+		for (int i = 0; i < candidate.size(); i++) {
+			double value1 = active.lookup(candidate.fieldId(i));
+			if (!Util.isUsed(value1)) continue;
+			
+			double deviate1 = value1 - median;
+			double deviate2 = candidate.value(i) - median;
+			VX  += deviate1 * deviate1;
+			VY  += deviate2 * deviate2;
+			VXY += deviate1 * deviate2;
+		}
+		
+		if (VX == 0 || VY == 0)
+			return Constants.UNUSED;
+		else
+			return VXY / Math.sqrt(VX * VY);
+	}
+	
+	
+	/**
+	 * Calculating the WPC (weighted Pearson correlation) measure between two pairs. SMTP is developed by Yung-Shen Lin, Jung-Yi Jiang, Shie-Jue Lee, and implemented by Loc Nguyen.
+	 * The first pair includes the first rating vector and the first profile.
+	 * The second pair includes the second rating vector and the second profile.
+	 * 
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @return WPCC measure between both two rating vectors.
+	 */
+	protected double wpc(
+			RatingVector vRating1, RatingVector vRating2,
+			Profile profile1, Profile profile2) {
+		int N = overlapCounts(vRating1, vRating2)[2];
+		return wpc(corr(vRating1, vRating2, profile1, profile2), N);
+	}
+	
+	
+	/**
+	 * Weighting specified Pearson correlation by number of co-rated fields as WPC measure, which shrinks correlations of pairs having at most {@link #WPC_THRESHOLD} co-rated fields.
+	 * @param pearson Pearson correlation.
+	 * @param common number of co-rated fields.
+	 * @return WPC measure.
+	 */
+	protected static double wpc(double pearson, int common) {
+		double N = common;
+		if (N <= WPC_THRESHOLD)
+			return pearson * (N/WPC_THRESHOLD);
+		else
+			return pearson;
+	}
+	
+	
+	/**
+	 * Calculating the WPC (weighted Pearson correlation) measure between two pairs. SMTP is developed by Yung-Shen Lin, Jung-Yi Jiang, Shie-Jue Lee, and implemented by Loc Nguyen.
+	 * The first pair includes the first rating vector and the first profile.
+	 * The second pair includes the second rating vector and the second profile.
+	 * 
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @return WPC measure between both two rating vectors.
+	 */
+	protected double spc(
+			RatingVector vRating1, RatingVector vRating2,
+			Profile profile1, Profile profile2) {
+		int N = overlapCounts(vRating1, vRating2)[2];
+		
+		return spc(corr(vRating1, vRating2, profile1, profile2), N);
+	}
+	
+	
+	/**
+	 * Weighting specified Pearson correlation by sigmoid function of number of co-rated fields as SPC measure.
+	 * @param pearson Pearson correlation.
+	 * @param common number of co-rated fields.
+	 * @return SPC measure.
+	 */
+	protected static double spc(double pearson, int common) {
+		double N = common;
+		return pearson / (1 + Math.exp(-N/2.0));
+	}
+	
+	
+	/**
+	 * Calculating the Jaccard measure between two pairs.
+	 * The first pair includes the first rating vector and the first profile.
+	 * The second pair includes the second rating vector and the second profile.
+	 * 
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @return Jaccard measure between both two rating vectors and profiles.
+	 */
+	protected double jaccard(RatingVector vRating1, RatingVector vRating2,
+			Profile profile1, Profile profile2) {
+		int[] counts = overlapCounts(vRating1, vRating2);
+		int union = counts[0] + counts[1] - counts[2];
+		if (union == 0)
+			return Constants.UNUSED;
+		else
+			return (double)counts[2] / (double)union;
+	}
+	
+	
+	/**
+	 * Calculating the Jaccard2 measure between two pairs.
+	 * The first pair includes the first rating vector and the first profile.
+	 * The second pair includes the second rating vector and the second profile.
+	 * 
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @return Jaccard2 measure between both two rating vectors and profiles.
+	 */
+	protected double jaccard2(RatingVector vRating1, RatingVector vRating2,
+			Profile profile1, Profile profile2) {
+		int[] counts = overlapCounts(vRating1, vRating2);
+		if (counts[0] == 0 || counts[1] == 0)
+			return Constants.UNUSED;
+		
+		return (double)counts[2] / (double)(counts[0]*counts[1]);
+	}
+
+	
+	/**
+	 * Calculating the MSD measure between two pairs.
+	 * The first pair includes the first rating vector and the first profile.
+	 * The second pair includes the second rating vector and the second profile.
+	 * 
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @return MSD measure between both two rating vectors and profiles.
+	 */
+	protected double msd(RatingVector vRating1, RatingVector vRating2,
+			Profile profile1, Profile profile2) {
+		boolean fraction = config.getAsBoolean(MSD_FRACTION_FIELD);
+		double maxRating = this.config.getMaxRating();
+		return simPrepared(vRating1, vRating2, (active, candidate) -> msd(active, candidate, fraction, maxRating, false));
+	}
+	
+	
+	/**
+	 * Calculating the MSD measure between two prepared vectors in one loop over co-rated fields, optionally multiplied by Jaccard measure from the same co-rated count.
+	 * @param active active vector, which is prepared by {@link PreparedVector#prepareActive()}.
+	 * @param candidate candidate vector.
+	 * @param fraction whether MSD is in fraction form.
+	 * @param maxRating maximum rating.
+	 * @param withJaccard whether MSD is multiplied by Jaccard measure.
+	 * @return MSD measure between two prepared vectors.
+	 */
+	protected static double msd(PreparedVector active, PreparedVector candidate, boolean fraction, double maxRating, boolean withJaccard) {
+		int common = 0;
+		double sum = 0;
+		for (int i = 0; i < candidate.size(); i++) {
+			double value1 = active.lookup(candidate.fieldId(i));
+			if (!Util.isUsed(value1)) continue;
+			
+			common++;
+			double d = value1 - candidate.value(i);
+			sum += d*d;
+		}
+		
+		double msd = Constants.UNUSED;
+		if (common > 0)
+			msd = fraction ? 1 / (1 + sum/common) : 1.0 - sum/(common*maxRating*maxRating);
+		return withJaccard ? msd * jaccard(active, candidate, common) : msd;
+	}
+	
+	
+	/**
+	 * Calculating the URP measure between two pairs.
+	 * The first pair includes the first rating vector and the first profile.
+	 * The second pair includes the second rating vector and the second profile.
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @return URP measure between both two rating vectors and profiles.
+	 */
+	protected double urp(RatingVector vRating1, RatingVector vRating2,
+			Profile profile1, Profile profile2) {
+		double mean1 = vRating1.mean();
+		double var1 = vRating1.mleVar();
+		double mean2 = vRating2.mean();
+		double var2 = vRating2.mleVar();
+		
+		return 1.0 - 1.0 / (1.0 + Math.exp(-Math.abs(mean1-mean2)*Math.abs(var1-var2)));
+	}
+
+	
+	/**
+	 * Calculating the Triangle measure between two pairs.
+	 * Shuang-Bo Sun, Zhi-Heng Zhang, Xin-Ling Dong, Heng-Ru Zhang, Tong-Jun Li, Lin Zhang, and Fan Min developed the Triangle measure. Loc Nguyen implements it.
+	 * The first pair includes the first rating vector and the first profile.
+	 * The second pair includes the second rating vector and the second profile.
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @author Shuang-Bo Sun, Zhi-Heng Zhang, Xin-Ling Dong, Heng-Ru Zhang, Tong-Jun Li, Lin Zhang, Fan Min
+	 * @return Triangle measure between both two rating vectors and profiles.
+	 */
+	protected double triangle(RatingVector vRating1, RatingVector vRating2,
+			Profile profile1, Profile profile2) {
+		return 1 - vRating1.distance(vRating2) / (vRating1.module()+vRating2.module());
+	}
+	
+	
+	@Override
+	public Object cacheTask(int id1, int id2, Map<Integer, Map<Integer, Object>> cache, Task task, Object...params) {
+		// TODO Auto-generated method stub
+		MeasuredTask measuredTask = measureTask(cache, task, id1, id2);
+		Task performedTask = measuredTask != null ? measuredTask : task;
+		Object result = null;
+		if (cache instanceof ConcurrentMap<?, ?> && isCached()) {
+			VersionStamps versions = versionsOf(cache);
+			long moment = versions != null ? versions.current() : 0;
+			Map<Integer, Object> cacheRow = cacheRow(cache, id1);
+			result = concurrentCacheTask(cacheRow, id2, performedTask, params);
+			if (versions != null && result != null && !versions.isUnchanged(id1, id2, moment))
+				cacheRow.remove(id2, result); //Ratings changed during calculation.
+		}
+		else if (cache instanceof ConcurrentMap<?, ?>)
+			result = performedTask.perform(params);
+		else
+			result = SupportCacheAlg.cacheTask(this, id1, id2, cache, performedTask, params);
+		
+		if (measuredTask != null) measuredTask.record(this.metrics, cacheName(cache));
+		return result;
+	}
+
+	
+	@Override
+	public Object cacheTask(int id, Map<Integer, Object> cache, Task task, Object... params) {
+		// TODO Auto-generated method stub
+		MeasuredTask measuredTask = measureTask(cache, task, id, -1);
+		Task performedTask = measuredTask != null ? measuredTask : task;
+		Object result = null;
+		if (cache instanceof ConcurrentMap<?, ?> && isCached()) {
+			VersionStamps versions = versionsOf(cache);
+			long moment = versions != null ? versions.current() : 0;
+			result = concurrentCacheTask(cache, id, performedTask, params);
+			if (versions != null && result != null && !versions.isUnchanged(id, id, moment))
+				cache.remove(id, result); //Ratings changed during calculation.
+		}
+		else if (cache instanceof ConcurrentMap<?, ?>)
+			result = performedTask.perform(params);
+		else
+			result = SupportCacheAlg.cacheTask(this, id, cache, performedTask, params);
+		
+		if (measuredTask != null) measuredTask.record(this.metrics, cacheName(cache));
+		return result;
+	}
+
+	
+	/**
+	 * Taking value of specified key from specified concurrent cache or performing specified task and caching its result without lock.
+	 * If two threads miss the same key at the same time, both perform the task and the first result is kept, which is harmless because tasks are pure.
+	 * @param cache specified concurrent cache.
+	 * @param id specified key.
+	 * @param task specified task.
+	 * @param params parameters of the task.
+	 * @return cached or calculated value.
+	 */
+	protected static Object concurrentCacheTask(Map<Integer, Object> cache, int id, Task task, Object...params) {
+		Object value = cache.get(id);
+		if (value != null) return value;
+		
+		value = task.perform(params);
+		if (value == null) return null;
+		Object previous = cache.putIfAbsent(id, value);
+		return previous != null ? previous : value;
+	}
+
+	
+	/**
+	 * Getting row of specified two-level cache, which is created if absent. Rows of concurrent caches are concurrent and are created without lock.
+	 * @param cache specified two-level cache.
+	 * @param id key of row.
+	 * @return row of specified two-level cache.
+	 */
+	protected static Map<Integer, Object> cacheRow(Map<Integer, Map<Integer, Object>> cache, int id) {
+		Map<Integer, Object> row = cache.get(id);
+		if (row != null) return row;
+		
+		if (cache instanceof ConcurrentMap<?, ?>) {
+			Map<Integer, Object> created = new ConcurrentHashMap<>();
+			row = cache.putIfAbsent(id, created);
+			return row != null ? row : created;
+		}
+		else {
+			row = Util.newMap();
+			cache.put(id, row);
+			return row;
+		}
+	}
+
+	
+	/**
+	 * Wrapping specified cache task so as to record cache hits and misses in metrics and to emit {@link NeighborEvents.CacheMissEvent} for misses of caches other than row similarity cache.
+	 * Misses of row similarity cache are reported by {@link #computeSim(String, RatingVector, RatingVector, Profile, Profile, Object...)} instead.
+	 * @param cache specified cache.
+	 * @param task specified task.
+	 * @param id1 first key.
+	 * @param id2 second key, -1 for single-key cache.
+	 * @return wrapped task, null if caching is off or there is nothing to record.
+	 */
+	protected MeasuredTask measureTask(Object cache, Task task, int id1, int id2) {
+		NeighborEvents.CacheMissEvent event = null;
+		if (cache != this.rowSimCache) {
+			event = new NeighborEvents.CacheMissEvent();
+			if (!event.isEnabled()) event = null;
+		}
+		if ((event == null && !this.metrics.isEnabled()) || !isCached())
+			return null;
+		
+		if (event != null) {
+			event.cache = cacheName(cache);
+			event.measure = getMeasure();
+			event.id1 = id1;
+			event.id2 = id2;
+		}
+		return new MeasuredTask(task, event);
+	}
+
+	
+	/**
+	 * Getting version stamps of keys of specified cache, which is a two-level cache or a single-key cache of derived classes.
+	 * @param cache specified cache.
+	 * @return version stamps of keys of specified cache, null if the cache is not invalidated by {@link #applyRatings(List)}.
+	 */
+	protected VersionStamps versionsOf(Object cache) {
+		if (cache == this.rowSimCache)
+			return this.rowVersions;
+		else if (cache == this.columnSimCache)
+			return this.columnVersions;
+		else
+			return null;
+	}
+
+	
+	/**
+	 * Getting the name of specified cache which is used by metrics.
+	 * @param cache specified cache.
+	 * @return name of specified cache.
+	 */
+	protected String cacheName(Object cache) {
+		if (cache == this.rowSimCache)
+			return NeighborMetrics.ROW_SIM_CACHE;
+		else if (cache == this.columnSimCache)
+			return NeighborMetrics.COLUMN_SIM_CACHE;
+		else
+			return NeighborMetrics.OTHER_CACHE;
+	}
+	
+	
+	/**
+	 * Getting the registry of run-time metrics after updating cache sizes.
+	 * @return registry of run-time metrics.
+	 */
+	public synchronized NeighborMetrics getMetrics() {
+		updateCacheSizes();
+		return this.metrics;
+	}
+	
+	
+	/**
+	 * Updating sizes of caches in metrics.
+	 */
+	protected void updateCacheSizes() {
+		this.metrics.updateSize(NeighborMetrics.ROW_SIM_CACHE, cacheEntries(this.rowSimCache));
+		this.metrics.updateSize(NeighborMetrics.COLUMN_SIM_CACHE, cacheEntries(this.columnSimCache));
+	}
+	
+	
+	/**
+	 * Estimating retained heap sizes of internal structures which are set up, such as statistics maps, dense statistics arrays, dictionaries, rating snapshot, and similarity caches.
+	 * Dictionaries shared between this algorithm and rating snapshot are counted once.
+	 * @return estimated heap footprint.
+	 */
+	public synchronized HeapFootprint getFootprint() {
+		HeapFootprint footprint = new HeapFootprint(false);
+		estimateFootprint(footprint);
+		return footprint;
+	}
+	
+	
+	/**
+	 * Putting estimated retained heap sizes of internal structures into specified footprint. Derived classes override this method to report their own structures.
+	 * @param footprint specified footprint.
+	 */
+	protected void estimateFootprint(HeapFootprint footprint) {
+		footprint.put("userIds", HeapFootprint.ofBoxedSet(this.userIds.size()));
+		footprint.put("userMeans", FieldStatistics.estimateBytes());
+		footprint.put("userVars", FieldStatistics.estimateBytes());
+		footprint.put("itemIds", HeapFootprint.ofBoxedSet(this.itemIds.size()));
+		footprint.put("itemMeans", FieldStatistics.estimateBytes());
+		footprint.put("itemVars", FieldStatistics.estimateBytes());
+		footprint.put("userIndex", this.userIndex.estimateBytes());
+		footprint.put("itemIndex", this.itemIndex.estimateBytes());
+		footprint.put("userMeanVarArrays", HeapFootprint.ofArray(this.userMeanArray.length, 8) + HeapFootprint.ofArray(this.userVarArray.length, 8));
+		footprint.put("itemMeanVarArrays", HeapFootprint.ofArray(this.itemMeanArray.length, 8) + HeapFootprint.ofArray(this.itemVarArray.length, 8));
+		if (this.snapshot != null) {
+			boolean shared = this.snapshot.getRowIndex() == this.userIndex && this.snapshot.getColumnIndex() == this.itemIndex;
+			footprint.put("snapshot", this.snapshot.estimateBytes(!shared));
+		}
+		if (this.profileEncoding != null)
+			footprint.put("profileEncoding", this.profileEncoding.estimateBytes());
+		if (this.overlapMatrix != null)
+			footprint.put("overlapMatrix", this.overlapMatrix.estimateBytes());
+		footprint.put("rowSimCache", HeapFootprint.ofCache(this.rowSimCache));
+		footprint.put("columnSimCache", HeapFootprint.ofCache(this.columnSimCache));
+	}
+	
+	
+	/**
+	 * Projecting retained heap sizes of internal structures for specified numbers of users, items, ratings, and cached similarities before loading any dataset.
+	 * The projection follows the current configuration, for example rating snapshot is projected only if it is enabled. Identifiers are assumed compact.
+	 * The dataset itself, which is held by the caller, is not projected.
+	 * @param userCount number of users.
+	 * @param itemCount number of items.
+	 * @param ratingCount number of ratings.
+	 * @param rowSims expected number of cached row similarities, which is at most the number of user pairs.
+	 * @param columnSims expected number of cached column similarities, which is at most the number of item pairs.
+	 * @return projected heap footprint.
+	 */
+	public synchronized HeapFootprint projectFootprint(int userCount, int itemCount, long ratingCount, long rowSims, long columnSims) {
+		HeapFootprint footprint = new HeapFootprint(true);
+		projectFootprint(footprint, userCount, itemCount, ratingCount, rowSims, columnSims);
+		return footprint;
+	}
+	
+	
+	/**
+	 * Putting projected retained heap sizes of internal structures into specified footprint. Derived classes override this method to project their own structures.
+	 * @param footprint specified footprint.
+	 * @param userCount number of users.
+	 * @param itemCount number of items.
+	 * @param ratingCount number of ratings.
+	 * @param rowSims expected number of cached row similarities.
+	 * @param columnSims expected number of cached column similarities.
+	 */
+	protected void projectFootprint(HeapFootprint footprint, int userCount, int itemCount, long ratingCount, long rowSims, long columnSims) {
+		footprint.put("userIds", HeapFootprint.ofBoxedSet(userCount));
+		footprint.put("userMeans", FieldStatistics.estimateBytes());
+		footprint.put("userVars", FieldStatistics.estimateBytes());
+		footprint.put("itemIds", HeapFootprint.ofBoxedSet(itemCount));
+		footprint.put("itemMeans", FieldStatistics.estimateBytes());
+		footprint.put("itemVars", FieldStatistics.estimateBytes());
+		footprint.put("userIndex", IdDictionary.projectBytes(userCount));
+		footprint.put("itemIndex", IdDictionary.projectBytes(itemCount));
+		footprint.put("userMeanVarArrays", 2 * HeapFootprint.ofArray(userCount, 8));
+		footprint.put("itemMeanVarArrays", 2 * HeapFootprint.ofArray(itemCount, 8));
+		if (getConfig().getAsBoolean(RATING_SNAPSHOT_FIELD))
+			footprint.put("snapshot", RatingSnapshot.projectBytes(userCount, itemCount, ratingCount, getSnapshotValueBins() != null, false));
+		
+		boolean cached = isCached();
+		footprint.put("rowSimCache", cached ? HeapFootprint.ofCache(userCount, rowSims) : HeapFootprint.ofHashMap(0));
+		footprint.put("columnSimCache", cached ? HeapFootprint.ofCache(itemCount, columnSims) : HeapFootprint.ofHashMap(0));
+	}
+	
+	
+	/**
+	 * Counting entries of two-level cache.
+	 * @param cache two-level cache.
+	 * @return number of entries of two-level cache.
+	 */
+	protected static long cacheEntries(Map<Integer, Map<Integer, Object>> cache) {
+		long count = 0;
+		for (Map<Integer, Object> row : cache.values())
+			count += row.size();
+		return count;
+	}
+	
+	
+	/**
+	 * Counting fields rated by both rating vectors, iterating the smaller vector.
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @return number of fields rated by both rating vectors.
+	 */
+	protected static int coratedCount(RatingVector vRating1, RatingVector vRating2) {
+		if (vRating1 == null || vRating2 == null) return 0;
+		
+		RatingVector small = vRating1.size() <= vRating2.size() ? vRating1 : vRating2;
+		RatingVector large = small == vRating1 ? vRating2 : vRating1;
+		int count = 0;
+		for (int fieldId : small.fieldIds(true)) {
+			if (large.isRated(fieldId)) count++;
+		}
+		return count;
+	}
+	
+	
+	/**
+	 * Getting numbers of rated fields of two rating vectors and their number of co-rated fields. The numbers are read from {@link OverlapMatrix} if both vectors are user rating vectors
+	 * which are its rows, and they are counted from the vectors otherwise, for example when items are compared.
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @return array of number of rated fields of first vector, number of rated fields of second vector, and number of co-rated fields.
+	 */
+	protected int[] overlapCounts(RatingVector vRating1, RatingVector vRating2) {
+		OverlapMatrix overlaps = this.overlapMatrix;
+		boolean users = vRating1 instanceof UserRating && vRating2 instanceof UserRating;
+		int[] counts = overlaps != null && users ? overlaps.counts(vRating1.id(), vRating2.id()) : null;
+		if (counts != null)
+			return counts;
+		else
+			return new int[] {vRating1.count(true), vRating2.count(true), coratedCount(vRating1, vRating2)};
+	}
+	
+	
+	/**
+	 * This class is the immutable state of concurrent queries, which is published through a volatile field after setup so that queries read it without lock.
+	 * Statistics and rating snapshot are not copied because they are not modified after setup, and the volatile publication makes them visible to query threads.
+	 * 
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	protected static class QueryModel {
+		
+		/**
+		 * Similarity measure.
+		 */
+		public final String measure;
+		
+		/**
+		 * Compiled kernel of the measure, null if the measure is not compiled.
+		 */
+		public final SimilarityKernel kernel;
+		
+		/**
+		 * Whether row similarities are cached.
+		 */
+		public final boolean cached;
+		
+		/**
+		 * Whether the measure is expensive according to {@link NeighborCF#isExpensiveMeasure(String)}, which is evaluated once when the model is published.
+		 */
+		public final boolean expensive;
+		
+		/**
+		 * Constructor with specified measure, kernel, caching flag, and expensiveness flag.
+		 * @param measure similarity measure.
+		 * @param kernel compiled kernel, which can be null.
+		 * @param cached whether row similarities are cached.
+		 * @param expensive whether the measure is expensive.
+		 */
+		public QueryModel(String measure, SimilarityKernel kernel, boolean cached, boolean expensive) {
+			this.measure = measure;
+			this.kernel = kernel;
+			this.cached = cached;
+			this.expensive = expensive;
+		}
+		
+	}
+
+	
+	/**
+	 * This class wraps a cache task so as to know whether the task is performed, which means a cache miss.
+	 * 
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	protected static class MeasuredTask implements Task {
+		
+		/**
+		 * Wrapped task.
+		 */
+		private Task task;
+		
+		/**
+		 * Flag to indicate whether the wrapped task is performed.
+		 */
+		private boolean performed = false;
+		
+		/**
+		 * Event of cache miss which is committed if the wrapped task is performed, which can be null.
+		 */
+		private NeighborEvents.CacheMissEvent event;
+		
+		/**
+		 * Constructor with wrapped task.
+		 * @param task wrapped task.
+		 */
+		public MeasuredTask(Task task) {
+			this(task, null);
+		}
+		
+		/**
+		 * Constructor with wrapped task and event of cache miss.
+		 * @param task wrapped task.
+		 * @param event event of cache miss, which can be null.
+		 */
+		public MeasuredTask(Task task, NeighborEvents.CacheMissEvent event) {
+			this.task = task;
+			this.event = event;
+		}
+		
+		@Override
+		public Object perform(Object...params) {
+			this.performed = true;
+			if (this.event != null) this.event.begin();
+			Object result = this.task.perform(params);
+			if (this.event != null) this.event.end();
+			return result;
+		}
+		
+		/**
+		 * Recording cache hit or cache miss in metrics if they are enabled and committing event of cache miss.
+		 * @param metrics registry of metrics.
+		 * @param cache name of cache.
+		 */
+		public void record(NeighborMetrics metrics, String cache) {
+			if (metrics.isEnabled()) {
+				if (this.performed)
+					metrics.recordMiss(cache);
+				else
+					metrics.recordHit(cache);
+			}
+			
+			if (this.performed && this.event != null && this.event.shouldCommit())
+				this.event.commit();
+		}
+		
+	}
+
+	
+	@Override
+	public boolean isCached() {
+		return getConfig().getAsBoolean(SupportCacheAlg.SUPPORT_CACHE_FIELD);
+	}
+	
+	
+	@Override
+	public void setCached(boolean cached) {
+		getConfig().put(SupportCacheAlg.SUPPORT_CACHE_FIELD, cached);
+		if (this.queryModel != null) publishQueryModel();
+	}
+
+	
+	/**
+	 * Getting the number of requested row similarities since setting up or since the last reset, including similarities taken from cache.
+	 * @return number of requested row similarities.
+	 */
+	public long getSimRequestCount() {
+		return this.simRequestCount.sum();
+	}
+	
+	
+	/**
+	 * Getting the number of row similarities which are actually calculated since setting up or since the last reset.
+	 * The difference between requested similarities and calculated similarities is the number of cache hits.
+	 * @return number of calculated row similarities.
+	 */
+	public long getSimComputeCount() {
+		return this.simComputeCount.sum();
+	}
+	
+	
+	/**
+	 * Resetting the numbers of requested and calculated row similarities.
+	 */
+	public void resetSimCounts() {
+		this.simRequestCount.reset();
+		this.simComputeCount.reset();
+	}
+
+	
+	/**
+	 * Computing common field IDs of two rating vectors.
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @return common field IDs of two rating vectors.
+	 */
+	protected static Set<Integer> commonFieldIds(RatingVector vRating1, RatingVector vRating2) {
+		Set<Integer> common = Util.newSet();
+		common.addAll(vRating1.fieldIds(true));
+		common.retainAll(vRating2.fieldIds(true));
+		return common;
+	}
+
+	
+	/**
+	 * Computing union field IDs of two rating vectors.
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @return common field IDs of two rating vectors.
+	 */
+	protected static Set<Integer> unionFieldIds(RatingVector vRating1, RatingVector vRating2) {
+		Set<Integer> union = Util.newSet();
+		union.addAll(vRating1.fieldIds(true));
+		union.addAll(vRating2.fieldIds(true));
+		return union;
+	}
+
+	
+	@Override
+	public DataConfig createDefaultConfig() {
+		DataConfig tempConfig = super.createDefaultConfig();
+		tempConfig.put(SUPPORT_CACHE_FIELD, SUPPORT_CACHE_DEFAULT);
+		tempConfig.put(MEASURE, getDefaultMeasure()); tempConfig.addReadOnly(MEASURE);
+		tempConfig.put(HYBRID, false);
+		tempConfig.put(HYBRID_WEIGHT_FIELD, HYBRID_WEIGHT_DEFAULT);
+		tempConfig.put(COSINE_NORMALIZED_FIELD, COSINE_NORMALIZED_DEFAULT);
+		tempConfig.put(MSD_FRACTION_FIELD, MSD_FRACTION_DEFAULT);
+		tempConfig.put(RATING_SNAPSHOT_FIELD, RATING_SNAPSHOT_DEFAULT);
+		tempConfig.put(SNAPSHOT_FILE_FIELD, SNAPSHOT_FILE_DEFAULT);
+		tempConfig.put(SNAPSHOT_VERIFY_FIELD, SNAPSHOT_VERIFY_DEFAULT);
+		tempConfig.put(METRICS_FIELD, METRICS_DEFAULT);
+		tempConfig.put(COMPOSITE_MEASURES_FIELD, COMPOSITE_MEASURES_DEFAULT);
+		tempConfig.put(OVERLAP_MATRIX_FIELD, OVERLAP_MATRIX_DEFAULT);
+
+		DataConfig config = new DataConfig() {
+
+			/**
+			 * Serial version UID for serializable class. 
+			 */
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public Serializable userEdit(Component comp, String key, Serializable defaultValue) {
+				// TODO Auto-generated method stub
+				if (key.equals(MEASURE)) {
+					String measure = getAsString(MEASURE);
+					measure = measure == null ? getDefaultMeasure() : measure;
+					return (Serializable) JOptionPane.showInputDialog(
+							comp, 
+							"Please choose one similar measure", 
+							"Choosing similar measure", 
+							JOptionPane.INFORMATION_MESSAGE, 
+							null, 
+							getSupportedMeasures().toArray(), 
+							measure);
+				}
+				else 
+					return tempConfig.userEdit(comp, key, defaultValue);
+			}
+			
+		};
+
+		config.putAll(tempConfig);
+		return config;
+	}
+
+
+}
@@ -1,1711 +1,2682 @@
-package net.hudup.alg.cf;
-
-import java.rmi.RemoteException;
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
-
-import net.hudup.core.Constants;
-import net.hudup.core.Util;
-import net.hudup.core.alg.cf.NeighborCF;
-import net.hudup.core.data.DataConfig;
-import net.hudup.core.data.Dataset;
-import net.hudup.core.data.Profile;
-import net.hudup.core.data.RatingVector;
-import net.hudup.core.logistic.DSUtil;
-import net.hudup.core.logistic.Inspector;
-import net.hudup.core.logistic.NextUpdate;
-import net.hudup.core.logistic.Vector2;
-import net.hudup.core.parser.TextParserUtil;
-import net.hudup.data.DocumentVector;
-import net.hudup.evaluate.ui.EvaluateGUI;
-
-/**
- * This class sets up an advanced version of neighbor collaborative filtering (Neighbor CF) algorithm with more similarity measures.
- * <br>
- * There are many authors who contributed measure to this class.<br>
- * Authors Haifeng Liu, Zheng Hu, Ahmad Mian, Hui Tian, Xuzhen Zhu contributed PSS measures and NHSM measure.<br>
- * Authors Bidyut Kr. Patra, Raimo Launonen, Ville Ollikainen, Sukumar Nandi contributed BC and BCF measures.<br>
- * Author Hyung Jun Ahn contributed PIP measure.<br>
- * Authors Keunho Choi and Yongmoo Suh contributed PC measure.<br>
- * Authors Suryakant and Tripti Mahara contributed MMD measure and CjacMD measure.<br>
- * Authors Junmei Feng, Xiaoyi Fengs, Ning Zhang, and Jinye Peng contributed Feng model.<br>
- * Authors Yi Mua, Nianhao Xiao, Ruichun Tang, Liang Luo, and Xiaohan Yin contributed Mu measure.<br>
- * Authors Yung-Shen Lin, Jung-Yi Jiang, Shie-Jue Lee contributed SMTP measure.<br>
- * Author Ali Amer contributed Amer and Amer2 measures.<br>
- * Author Loc Nguyen contributed TA (triangle area) measure.<br>
- * Authors Ali Amer and Loc Nguyen contributed quasi-TfIdf measure. Quasi-TfIdf measure is an extension of Amer2 measure and the ideology of TF and IDF.<br>
- * Author Ali Amer contributed numerical nearby similarity measure (MMNS).
- * 
- * @author Loc Nguyen
- * @version 1.0
- *
- */
-public abstract class NeighborCFExt extends NeighborCF {
-
-	
-	/**
-	 * Serial version UID for serializable class. 
-	 */
-	private static final long serialVersionUID = 1L;
-
-	
-	/**
-	 * Name of PSS measure.
-	 */
-	public static final String PSS = "pss";
-
-	
-	/**
-	 * Name of NHSM measure.
-	 */
-	public static final String NHSM = "nhsm";
-
-	
-	/**
-	 * Name of BCF measure.
-	 */
-	public static final String BCF = "bcf";
-
-	
-	/**
-	 * Name of BCFJ measure (BCF + Jaccard).
-	 */
-	public static final String BCFJ = "bcfj";
-
-	
-	/**
-	 * Name of SRC measure.
-	 */
-	public static final String SRC = "src";
-
-	
-	/**
-	 * Name of PIP measure.
-	 */
-	public static final String PIP = "pip";
-
-	
-	/**
-	 * Name of PC measure.
-	 */
-	public static final String PC = "pc";
-
-	
-	/**
-	 * Name of MMD measure.
-	 */
-	public static final String MMD = "mmd";
-
-	
-	/**
-	 * Name of CjacMD measure which is developed by Suryakant and Tripti Mahara.
-	 */
-	public static final String CJACMD = "mmd";
-
-	
-	/**
-	 * Name of Feng measure.
-	 */
-	public static final String FENG = "feng";
-
-	
-	/**
-	 * Name of Mu measure.
-	 */
-	public static final String MU = "mu";
-
-	
-	/**
-	 * Name of SMTP measure.
-	 */
-	public static final String SMTP = "smtp";
-
-	
-	/**
-	 * Name of Amer measure.
-	 */
-	public static final String AMER = "amer";
-
-	
-	/**
-	 * Name of Amer2 measure.
-	 */
-	public static final String AMER2 = "amer2";
-
-	
-	/**
-	 * Name of Amer2 + Jaccard measure.
-	 */
-	public static final String AMER2J = "amer2j";
-
-	
-	/**
-	 * Name of Quasi-TfIdf measure.
-	 */
-	public static final String QUASI_TFIDF = "qti";
-
-	
-	/**
-	 * Name of Quasi-TfIdf + Jaccard measure.
-	 */
-	public static final String QUASI_TFIDF_JACCARD = "qtij";
-
-	
-	/**
-	 * Name of triangle area measure.
-	 */
-	public static final String TA = "ta";
-
-	
-	/**
-	 * Name of triangle area + Jaccard measure.
-	 */
-	public static final String TAJ = "taj";
-
-	
-	/**
-	 * Name of Coco measure.
-	 */
-	public static final String COCO = "coco";
-
-	
-	/**
-	 * Name of numerical nearby similarity measure (MMNS).
-	 */
-	public static final String NNMS = "mmns";
-
-	
-	/**
-	 * Value bins.
-	 */
-	public static final String VALUE_BINS_FIELD = "value_bins";
-
-	
-	/**
-	 * Default value bins.
-	 */
-	public static final String VALUE_BINS_DEFAULT = "1, 2, 3, 4, 5";
-
-	
-	/**
-	 * BCF median mode.
-	 */
-	public static final String BCF_MEDIAN_MODE_FIELD = "bcf_median";
-
-	
-	/**
-	 * Default BCF median mode.
-	 */
-	public static final boolean BCF_MEDIAN_MODE_DEFAULT = true;
-
-	
-	/**
-	 * Mu alpha field.
-	 */
-	public static final String MU_ALPHA_FIELD = "mu_alpha";
-
-	
-	/**
-	 * Default Mu alpha.
-	 */
-	public static final double MU_ALPHA_DEFAULT = 0.5;
-
-	
-	/**
-	 * Name of lambda field.
-	 */
-	public static final String SMTP_LAMBDA_FIELD = "smtp_lambda";
-
-	
-	/**
-	 * Default lambda field.
-	 */
-	public static final double SMTP_LAMBDA_DEFAULT = 0.5;
-
-	
-	/**
-	 * Name of general variance field.
-	 */
-	public static final String SMTP_GENERAL_VAR_FIELD = "smtp_general_var";
-
-	
-	/**
-	 * Default general variance field.
-	 */
-	public static final boolean SMTP_GENERAL_VAR_DEFAULT = false;
-
-	
-	/**
-	 * TA normalized mode.
-	 */
-	public static final String TA_NORMALIZED_FIELD = "ta_normalized";
-
-	
-	/**
-	 * Default TA normalized mode.
-	 */
-	public static final boolean TA_NORMALIZED_DEFAULT = false;
-
-	
-	/**
-	 * Value bins.
-	 */
-	protected List<Double> valueBins = Util.newList();
-	
-	
-	/**
-	 * Rank bins.
-	 */
-	protected Map<Double, Integer> rankBins = Util.newMap();
-	
-	
-	/**
-	 * Column module (column vector length) cache.
-	 */
-	protected Map<Integer, Object> bcfColumnModuleCache = Util.newMap();
-
-	
-	/**
-	 * Default constructor.
-	 */
-	public NeighborCFExt() {
-		// TODO Auto-generated constructor stub
-	}
-
-
-	@Override
-	public synchronized void setup(Dataset dataset, Object...params) throws RemoteException {
-		// TODO Auto-generated method stub
-		super.setup(dataset, params);
-		
-		this.valueBins = extractConfigValueBins();
-		this.rankBins = convertValueBinsToRankBins(this.valueBins);
-	}
-
-
-	@Override
-	public synchronized void unsetup() throws RemoteException {
-		// TODO Auto-generated method stub
-		super.unsetup();
-		
-		this.rankBins.clear();
-		this.valueBins.clear();
-		
-		this.bcfColumnModuleCache.clear();
-	}
-
-
-	@Override
-	public List<String> getSupportedMeasures() {
-		// TODO Auto-generated method stub
-		List<String> measures = super.getSupportedMeasures();
-		Set<String> mSet = Util.newSet();
-		mSet.addAll(measures);
-		mSet.add(PSS);
-//		mSet.add(NHSM);
-		mSet.add(BCF);
-//		mSet.add(BCFJ);
-		mSet.add(SRC);
-		mSet.add(PIP);
-		mSet.add(PC);
-		mSet.add(MMD);
-//		mSet.add(CJACMD);
-		mSet.add(SMTP);
-		mSet.add(AMER);
-		mSet.add(AMER2);
-//		mSet.add(AMER2J);
-		mSet.add(QUASI_TFIDF);
-//		mSet.add(QUASI_TFIDF_JACCARD);
-		mSet.add(TA);
-//		mSet.add(TAJ);
-		mSet.add(COCO);
-		mSet.add(NNMS);
-		
-		measures.clear();
-		measures.addAll(mSet);
-		Collections.sort(measures);
-		return measures;
-	}
-
-
-	/**
-	 * Checking whether the similarity measure requires to declare discrete bins in configuration ({@link #VALUE_BINS_FIELD}).
-	 * @return true if the similarity measure requires to declare discrete bins in configuration ({@link #VALUE_BINS_FIELD}). Otherwise, return false.
-	 */
-	public boolean requireDiscreteRatingBins() {
-		return requireDiscreteRatingBins(getMeasure());
-	}
-	
-	
-	/**
-	 * Given specified measure, checking whether the similarity measure requires to declare discrete bins in configuration ({@link #VALUE_BINS_FIELD}).
-	 * @param measure specified measure.
-	 * @return true if the similarity measure requires to declare discrete bins in configuration ({@link #VALUE_BINS_FIELD}). Otherwise, return false.
-	 */
-	protected boolean requireDiscreteRatingBins(String measure) {
-		if (measure == null)
-			return false;
-		else if (measure.equals(BCF) || measure.equals(BCFJ) ||  measure.equals(MMD))
-			return true;
-		else
-			return false;
-	}
-
-	
-	@Override
-	protected boolean isCachedSim() {
-		// TODO Auto-generated method stub
-		String measure = getMeasure();
-		if (measure == null)
-			return false;
-		else if (measure.equals(PC))
-			return false;
-		else
-			return super.isCachedSim();
-	}
-
-
-	@Override
-	protected double sim0(String measure, RatingVector vRating1, RatingVector vRating2, Profile profile1, Profile profile2, Object...params) {
-		// TODO Auto-generated method stub
-		if (measure.equals(PSS))
-			return pss(vRating1, vRating2, profile1, profile2);
-		else if (measure.equals(NHSM))
-			return nhsm(vRating1, vRating2, profile1, profile2);
-		else if (measure.equals(BCF))
-			return bcf(vRating1, vRating2, profile1, profile2);
-		else if (measure.equals(BCFJ))
-			return bcfj(vRating1, vRating2, profile1, profile2);
-		else if (measure.equals(SRC))
-			return src(vRating1, vRating2, profile1, profile2);
-		else if (measure.equals(PIP))
-			return pip(vRating1, vRating2, profile1, profile2);
-		else if (measure.equals(PC)) {
-			if ((params == null) || (params.length < 1) || !(params[0] instanceof Number))
-				return Constants.UNUSED;
-			else {
-				int fixedColumnId = ((Number)(params[0])).intValue();
-				return pc(vRating1, vRating2, profile1, profile2, fixedColumnId);
-			}
-		}
-		else if (measure.equals(MMD))
-			return mmd(vRating1, vRating2, profile1, profile2);
-		else if (measure.equals(CJACMD))
-			return cosine(vRating1, vRating2, profile1, profile2) + mmd(vRating1, vRating2, profile1, profile2) + jaccard(vRating1, vRating2, profile1, profile2);
-		else if (measure.equals(FENG))
-			return feng(vRating1, vRating2, profile1, profile2);
-		else if (measure.equals(MU))
-			return mu(vRating1, vRating2, profile1, profile2);
-		else if (measure.equals(SMTP))
-			return smtp(vRating1, vRating2, profile1, profile2);
-		else if (measure.equals(AMER))
-			return amer(vRating1, vRating2, profile1, profile2, this.itemIds);
-		else if (measure.equals(AMER2))
-			return amer2(vRating1, vRating2, profile1, profile2);
-		else if (measure.equals(AMER2J))
-			return amer2j(vRating1, vRating2, profile1, profile2);
-		else if (measure.equals(QUASI_TFIDF))
-			return quasiTfIdf(vRating1, vRating2, profile1, profile2);
-		else if (measure.equals(QUASI_TFIDF_JACCARD))
-			return quasiTfIdfJaccard(vRating1, vRating2, profile1, profile2);
-		else if (measure.equals(TA))
-			return triangleArea(vRating1, vRating2, profile1, profile2);
-		else if (measure.equals(TAJ))
-			return triangleAreaJaccard(vRating1, vRating2, profile1, profile2);
-		else if (measure.equals(COCO))
-			return coco(vRating1, vRating2, profile1, profile2);
-		else if (measure.equals(NNMS))
-			return mmns(vRating1, vRating2, profile1, profile2);
-		else
-			return super.sim0(measure, vRating1, vRating2, profile1, profile2, params);
-	}
-
-	
-	/**
-	 * Calculating the PSS measure between two pairs. PSS measure is developed by Haifeng Liu, Zheng Hu, Ahmad Mian, Hui Tian, Xuzhen Zhu, and implemented by Loc Nguyen.
-	 * The first pair includes the first rating vector and the first profile.
-	 * The second pair includes the second rating vector and the second profile.
-	 * 
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @author Haifeng Liu, Zheng Hu, Ahmad Mian, Hui Tian, Xuzhen Zhu.
-	 * @return PSS measure between both two rating vectors and profiles.
-	 */
-	protected abstract double pss(RatingVector vRating1, RatingVector vRating2,
-			Profile profile1, Profile profile2);
-
-
-	/**
-	 * Calculating the PSS measure between two rating vectors. PSS measure is developed by Haifeng Liu, Zheng Hu, Ahmad Mian, Hui Tian, Xuzhen Zhu, and implemented by Loc Nguyen.
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param fieldMeans map of field means.
-	 * @author Haifeng Liu, Zheng Hu, Ahmad Mian, Hui Tian, Xuzhen Zhu.
-	 * @return PSS measure between two rating vectors.
-	 */
-	protected double pss(RatingVector vRating1, RatingVector vRating2, Map<Integer, Double> fieldMeans) {
-		Set<Integer> common = commonFieldIds(vRating1, vRating2);
-		if (common.size() == 0) return Constants.UNUSED;
-		
-		double pss = 0.0;
-		for (int id : common) {
-			double r1 = vRating1.get(id).value;
-			double r2 = vRating2.get(id).value;
-			
-			double pro = 1.0 - 1.0 / (1.0 + Math.exp(-Math.abs(r1-r2)));
-			//Note: I think that it is better to use mean instead of median for significant.
-			//At the worst case, median is always approximate to mean given symmetric distribution like normal distribution.
-			//Moreover, in fact, general user mean is equal to general item mean.
-			//However, I still use rating median because of respecting authors' ideas.
-			double sig = 1.0 / (1.0 + Math.exp(
-					-Math.abs(r1-ratingMedian)*Math.abs(r2-ratingMedian)));
-			double singular = 1.0 - 1.0 / (1.0 + Math.exp(-Math.abs((r1+r2)/2.0 - fieldMeans.get(id))));
-			
-			pss += pro * sig * singular;
-		}
-		
-		return pss;
-	}
-	
-	
-	/**
-	 * Calculating the NHSM measure between two pairs. NHSM measure is developed by Haifeng Liu, Zheng Hu, Ahmad Mian, Hui Tian, Xuzhen Zhu, and implemented by Loc Nguyen.
-	 * The first pair includes the first rating vector and the first profile.
-	 * The second pair includes the second rating vector and the second profile.
-	 * 
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @author Haifeng Liu, Zheng Hu, Ahmad Mian, Hui Tian, Xuzhen Zhu.
-	 * @return NHSM measure between both two rating vectors and profiles.
-	 */
-	protected double nhsm(RatingVector vRating1, RatingVector vRating2,
-			Profile profile1, Profile profile2) {
-		double urp = urp(vRating1, vRating2, profile1, profile2);
-		double jaccard2 = jaccard2(vRating1, vRating2, profile1, profile2);
-		return pss(vRating1, vRating2, profile1, profile2) * jaccard2 * urp;
-	}
-
-
-	/**
-	 * Calculate the Bhattacharyya measure from specified rating vectors. BC measure is modified by Bidyut Kr. Patra, Raimo Launonen, Ville Ollikainen, Sukumar Nandi, and implemented by Loc Nguyen.
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @author Bidyut Kr. Patra, Raimo Launonen, Ville Ollikainen, Sukumar Nandi.
-	 * @return Bhattacharyya measure from specified rating vectors.
-	 */
-	@NextUpdate
-	protected double bc(RatingVector vRating1, RatingVector vRating2,
-			Profile profile1, Profile profile2) {
-		Task task = new Task() {
-			
-			@Override
-			public Object perform(Object...params) {
-				List<Double> bins = valueBins;
-				if (bins.isEmpty())
-					bins = extractValueBins(vRating1, vRating2);
-				
-				Set<Integer> ids1 = vRating1.fieldIds(true);
-				Set<Integer> ids2 = vRating2.fieldIds(true);
-				int n1 = ids1.size();
-				int n2 = ids2.size();
-				if (n1 == 0 || n2 == 0) return Constants.UNUSED;
-				
-				double bc = 0;
-				for (double bin : bins) {
-					int count1 = 0, count2 = 0;
-					for (int id1 : ids1) {
-						if (vRating1.get(id1).value == bin)
-							count1++;
-					}
-					for (int id2 : ids2) {
-						if (vRating2.get(id2).value == bin)
-							count2++;
-					}
-					
-					bc += Math.sqrt( ((double)count1/(double)n1) * ((double)count2/(double)n2) ); 
-				}
-				
-				return bc;
-			}
-		};
-		
-		return (double)cacheTask(vRating1.id(), vRating2.id(), this.columnSimCache, task);
-	}
-
-	
-	/**
-	 * Calculating the advanced BCF measure between two pairs. BCF measure is developed by Bidyut Kr. Patra, Raimo Launonen, Ville Ollikainen, Sukumar Nandi, and implemented by Loc Nguyen.
-	 * The first pair includes the first rating vector and the first profile.
-	 * The second pair includes the second rating vector and the second profile.
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @author Bidyut Kr. Patra, Raimo Launonen, Ville Ollikainen, Sukumar Nandi.
-	 * @return BCF measure between both two rating vectors and profiles.
-	 */
-	@NextUpdate
-	protected double bcf(RatingVector vRating1, RatingVector vRating2,
-			Profile profile1, Profile profile2) {
-		
-		Set<Integer> columnIds1 = vRating1.fieldIds(true);
-		Set<Integer> columnIds2 = vRating2.fieldIds(true);
-		if (columnIds1.size() == 0 || columnIds2.size() == 0)
-			return Constants.UNUSED;
-		
-		double bcSum = 0;
-		boolean medianMode = getConfig().getAsBoolean(BCF_MEDIAN_MODE_FIELD);
-		for (int columnId1 : columnIds1) {
-			RatingVector columnVector1 = getColumnRating(columnId1);
-			if (columnVector1 == null) continue;
-			double columnModule1 = bcfCalcColumnModule(columnVector1);
-			if (!Util.isUsed(columnModule1) || columnModule1 == 0) continue;
-			
-			double value1 = medianMode? vRating1.get(columnId1).value-this.ratingMedian : vRating1.get(columnId1).value-vRating1.mean();
-			for (int columnId2 : columnIds2) {
-				RatingVector columnVector2 = columnId2 == columnId1 ? columnVector1 : getColumnRating(columnId2);
-				if (columnVector2 == null) continue;
-				double columnModule2 = bcfCalcColumnModule(columnVector2);
-				if (!Util.isUsed(columnModule2) || columnModule2 == 0) continue;
-				
-				double bc = bc(columnVector1, columnVector2, profile1, profile2);
-				if (!Util.isUsed(bc)) continue;
-
-				double value2 = medianMode? vRating2.get(columnId2).value-this.ratingMedian : vRating2.get(columnId2).value-vRating2.mean();
-				double loc = value1 * value2 / (columnModule1*columnModule2);
-				if (!Util.isUsed(loc)) continue;
-				
-				bcSum += bc * loc;
-			}
-		}
-		
-		return bcSum;
-	}
-
-	
-	/**
-	 * Calculating the advanced BCFJ measure (BCF + Jaccard) between two pairs. BCF measure is developed by Bidyut Kr. Patra, Raimo Launonen, Ville Ollikainen, Sukumar Nandi, and implemented by Loc Nguyen.
-	 * The first pair includes the first rating vector and the first profile.
-	 * The second pair includes the second rating vector and the second profile.
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @author Bidyut Kr. Patra, Raimo Launonen, Ville Ollikainen, Sukumar Nandi.
-	 * @return BCFJ measure between both two rating vectors and profiles.
-	 */
-	protected double bcfj(RatingVector vRating1, RatingVector vRating2,
-			Profile profile1, Profile profile2) {
-		return bcf(vRating1, vRating2, profile1, profile2) + jaccard(vRating1, vRating2, profile1, profile2);
-	}
-	
-	
-	/**
-	 * Calculating module (length) of column rating vector for BCF measure.
-	 * @param columnVector specified column rating vector.
-	 * @return module (length) of column rating vector.
-	 */
-	protected double bcfCalcColumnModule(RatingVector columnVector) {
-		double ratingMedian = this.ratingMedian;
-		Task task = new Task() {
-			
-			@Override
-			public Object perform(Object...params) {
-				if (columnVector == null) return Constants.UNUSED;
-				
-				Set<Integer> fieldIds = columnVector.fieldIds(true);
-				double columnModule = 0;
-				boolean medianMode = getConfig().getAsBoolean(BCF_MEDIAN_MODE_FIELD);
-				for (int fieldId : fieldIds) {
-					double deviate = medianMode ? columnVector.get(fieldId).value-ratingMedian : columnVector.get(fieldId).value;
-					columnModule += deviate * deviate;
-				}
-				
-				return Math.sqrt(columnModule);
-			}
-		};
-		
-		return (double)cacheTask(columnVector.id(), this.bcfColumnModuleCache, task);
-	}
-
-	
-	/**
-	 * Calculating the Spearman Rank Correlation (SRC) measure between two pairs.
-	 * The first pair includes the first rating vector and the first profile.
-	 * The second pair includes the second rating vector and the second profile.
-	 * 
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @return Spearman Rank Correlation (SRC) measure between both two rating vectors and profiles.
-	 */
-	protected double src(RatingVector vRating1, RatingVector vRating2,
-			Profile profile1, Profile profile2) {
-		Map<Double, Integer> bins = rankBins;
-		if (bins.isEmpty())
-			bins = extractRankBins(vRating1, vRating2);
-
-		Set<Integer> common = commonFieldIds(vRating1, vRating2);
-		if (common.size() == 0) return Constants.UNUSED;
-		
-		double sum = 0;
-		for (int id : common) {
-			double v1 = vRating1.get(id).value;
-			int r1 = bins.get(v1);
-			double v2 = vRating2.get(id).value;
-			int r2 = bins.get(v2);
-			
-			int d = r1 - r2;
-			sum += d*d;
-		}
-		
-		double n = common.size();
-		return 1.0 - 6*sum/(n*(n*n-1));
-	}
-	
-	
-	/**
-	 * Calculating the PIP measure between two pairs. PIP measure is developed by Hyung Jun Ahn, and implemented by Loc Nguyen.
-	 * The first pair includes the first rating vector and the first profile.
-	 * The second pair includes the second rating vector and the second profile.
-	 * 
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @author Hyung Jun Ahn.
-	 * @return NHSM measure between both two rating vectors and profiles.
-	 */
-	protected abstract double pip(RatingVector vRating1, RatingVector vRating2,
-			Profile profile1, Profile profile2);
-	
-	
-	/**
-	 * Calculating the PIP measure between two rating vectors. PIP measure is developed by Hyung Jun Ahn and implemented by Loc Nguyen.
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param fieldMeans map of field means.
-	 * @author Hyung Jun Ahn
-	 * @return PIP measure between two rating vectors.
-	 */
-	protected double pip(RatingVector vRating1, RatingVector vRating2, Map<Integer, Double> fieldMeans) {
-		Set<Integer> common = commonFieldIds(vRating1, vRating2);
-		if (common.size() == 0) return Constants.UNUSED;
-		
-		double pip = 0.0;
-		for (int id : common) {
-			double r1 = vRating1.get(id).value;
-			double r2 = vRating2.get(id).value;
-			boolean agreed = agree(r1, r2);
-			
-			double d = agreed ? Math.abs(r1-r2) : 2*Math.abs(r1-r2);
-			double pro = (2*(config.getMaxRating()-config.getMinRating())+1) - d;
-			pro = pro*pro;
-			
-			double impact = (Math.abs(r1-ratingMedian)+1) * (Math.abs(r2-ratingMedian)+1);
-			if (!agreed)
-				impact = 1 / impact;
-			
-			double mean = fieldMeans.get(id);
-			double pop = 1;
-			if ((r1 > mean && r2 > mean) || (r1 < mean && r2 < mean)) {
-				double bias = (r1+r2)/2 - mean;
-				pop = 1 + bias*bias;
-			}
-			
-			pip += pro * impact * pop;
-		}
-		
-		return pip;
-	}
-
-	
-	/**
-	 * Checking whether two ratings are agreed.
-	 * @param rating1 first rating.
-	 * @param rating2 second rating.
-	 * @return true if two ratings are agreed.
-	 */
-	protected boolean agree(double rating1, double rating2) {
-		if ( (rating1 > this.ratingMedian && rating2 < this.ratingMedian) || (rating1 < this.ratingMedian && rating2 > this.ratingMedian) )
-			return false;
-		else
-			return true;
-	}
-	
-	
-	/**
-	 * Calculating the PC measure between two rating vectors. PC measure is developed by Keunho Choi and Yongmoo Suh. It implemented by Loc Nguyen.
-	 * The first pair includes the first rating vector and the first profile.
-	 * The second pair includes the second rating vector and the second profile.
-	 * 
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @param fixedColumnId fixed column identifier.
-	 * @author Hyung Jun Ahn.
-	 * @return PC measure between both two rating vectors and profiles.
-	 */
-	protected abstract double pc(RatingVector vRating1, RatingVector vRating2,
-			Profile profile1, Profile profile2, int fixedColumnId);
-	
-	
-	/**
-	 * Calculating the PC measure between two rating vectors. PC measure is developed by Keunho Choi and Yongmoo Suh. It implemented by Loc Nguyen.
-	 * @param vRating1 the first rating vectors.
-	 * @param vRating2 the second rating vectors.
-	 * @param fixedColumnId fixed field (column) identifier.
-	 * @param fieldMeans mean value of field ratings.
-	 * @author Keunho Choi, Yongmoo Suh
-	 * @return PC measure between two rating vectors.
-	 */
-	protected double pc(RatingVector vRating1, RatingVector vRating2, int fixedColumnId, Map<Integer, Double> fieldMeans) {
-		Set<Integer> common = commonFieldIds(vRating1, vRating2);
-		if (common.size() == 0) return Constants.UNUSED;
-
-		double vx = 0, vy = 0;
-		double vxy = 0;
-		for (int fieldId : common) {
-			double mean = fieldMeans.get(fieldId);
-			double d1 = vRating1.get(fieldId).value - mean;
-			double d2 = vRating2.get(fieldId).value - mean;
-			
-			Task columnSimTask = new Task() {
-				
-				@Override
-				public Object perform(Object...params) {
-					RatingVector fixedColumnVector = getColumnRating(fixedColumnId);
-					RatingVector columnVector = getColumnRating(fieldId);
-					
-					if (fixedColumnVector == null || columnVector == null)
-						return Constants.UNUSED;
-					else
-						return fixedColumnVector.corr(columnVector);
-				}
-			};
-			double columnSim = (double)cacheTask(fixedColumnId, fieldId, this.columnSimCache, columnSimTask);
-			columnSim = columnSim * columnSim;
-			
-			vx  += d1 * d1 * columnSim;
-			vy  += d2 * d2 * columnSim;
-			vxy += d1 * d2 * columnSim;
-		}
-		
-		if (vx == 0 || vy == 0)
-			return Constants.UNUSED;
-		else
-			return vxy / Math.sqrt(vx * vy);
-	}
-
-	
-	/**
-	 * Calculating the Mean Measure of Divergence (MMD) measure between two pairs.
-	 * Suryakant and Tripti Mahara proposed use of MMD for collaborative filtering. Loc Nguyen implements it.
-	 * The first pair includes the first rating vector and the first profile.
-	 * The second pair includes the second rating vector and the second profile.
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @author Suryakant, Tripti Mahara
-	 * @return MMD measure between both two rating vectors and profiles.
-	 */
-	protected double mmd(RatingVector vRating1, RatingVector vRating2,
-			Profile profile1, Profile profile2) {
-		Set<Integer> ids1 = vRating1.fieldIds(true);
-		Set<Integer> ids2 = vRating2.fieldIds(true);
-		int N1 = ids1.size();
-		int N2 = ids2.size();
-		if (N1 == 0 || N2 == 0) return Constants.UNUSED;
-		
-		List<Double> bins = valueBins;
-		if (bins.isEmpty())
-			bins = extractValueBins(vRating1, vRating2);
-		double sum = 0;
-		for (double bin : bins) {
-			int n1 = 0, n2 = 0;
-			for (int id1 : ids1) {
-				if (vRating1.get(id1).value == bin)
-					n1++;
-			}
-			for (int id2 : ids2) {
-				if (vRating2.get(id2).value == bin)
-					n2++;
-			}
-			
-			double thetaBias = mmdTheta(n1, N1) - mmdTheta(n2, N2);
-			sum += thetaBias*thetaBias - 1/(0.5+n1) - 1/(0.5+n2); 
-		}
-		
-		return 1 / (1 + sum/bins.size());
-	}
-	
-	
-	/**
-	 * Theta transformation of Mean Measure of Divergence (MMD) measure.
-	 * The default implementation is Grewal transformation.
-	 * @param n number of observations having a trait.
-	 * @param N number of observations
-	 * @return Theta transformation of Mean Measure of Devergence (MMD) measure.
-	 */
-	protected double mmdTheta(int n, int N) {
-		return 1 / Math.sin(1-2*(n/N));
-	}
-
-	
-	/**
-	 * Calculating the Feng measure between two pairs.
-	 * Junmei Feng, Xiaoyi Fengs, Ning Zhang, and Jinye Peng developed the Triangle measure. Loc Nguyen implements it.
-	 * The first pair includes the first rating vector and the first profile.
-	 * The second pair includes the second rating vector and the second profile.
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @author Junmei Feng, Xiaoyi Fengs, Ning Zhang, Jinye Peng
-	 * @return Feng measure between both two rating vectors and profiles.
-	 */
-	protected double feng(RatingVector vRating1, RatingVector vRating2,
-			Profile profile1, Profile profile2) {
-		
-		double s1 = coj(vRating1, vRating2, profile1, profile2);
-
-		Set<Integer> ids1 = vRating1.fieldIds(true);
-		Set<Integer> ids2 = vRating2.fieldIds(true);
-		Set<Integer> common = Util.newSet();
-		common.addAll(ids1);
-		common.retainAll(ids2);
-		double s2 = 1 / ( 1 + Math.exp(-common.size()*common.size()/(ids1.size()*ids2.size())) );
-		
-		double s3 = urp(vRating1, vRating2, profile1, profile2);
-		
-		return s1 * s2 * s3;
-	}
-	
-	
-	/**
-	 * Calculating the Mu measure between two pairs.
-	 * Yi Mua, Nianhao Xiao, Ruichun Tang, Liang Luo, and Xiaohan Yin developed Mu measure. Loc Nguyen implements it.
-	 * The first pair includes the first rating vector and the first profile.
-	 * The second pair includes the second rating vector and the second profile.
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @author Yi Mua, Nianhao Xiao, Ruichun Tang, Liang Luo, Xiaohan Yin
-	 * @return Mu measure between both two rating vectors and profiles.
-	 */
-	@NextUpdate
-	protected double mu(RatingVector vRating1, RatingVector vRating2,
-			Profile profile1, Profile profile2) {
-		double alpha = config.getAsReal(MU_ALPHA_FIELD);
-		double pearson = corr(vRating1, vRating2, profile1, profile2);
-		double hg = 1 - bc(vRating1, vRating2, profile1, profile2);
-//		double hg = bc(vRating1, vRating2, profile1, profile2);
-		double jaccard = jaccard(vRating1, vRating2, profile1, profile2);
-		
-		return alpha*pearson + (1-alpha)*(hg+jaccard);
-	}
-	
-	
-	/**
-	 * Calculating the SMTP measure between two pairs. SMTP is developed by Yung-Shen Lin, Jung-Yi Jiang, Shie-Jue Lee, and implemented by Loc Nguyen.
-	 * The first pair includes the first rating vector and the first profile.
-	 * The second pair includes the second rating vector and the second profile.
-	 * 
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @author Yung-Shen Lin, Jung-Yi Jiang, Shie-Jue Lee.
-	 * @return SMTP measure between both two rating vectors.
-	 */
-	protected double smtp(
-			RatingVector vRating1, RatingVector vRating2,
-			Profile profile1, Profile profile2) {
-		
-		List<Integer> common = commonFieldIdsAsList(vRating1, vRating2);
-		common.retainAll(this.itemVars.keySet());
-		if (common.size() == 0) return Constants.UNUSED;
-		
-		double[] data1 = new double[common.size()];
-		double[] data2 = new double[common.size()];
-		double[] vars = new double[common.size()];
-		boolean useGeneralVar = getConfig().getAsBoolean(SMTP_GENERAL_VAR_FIELD);
-		for (int i = 0; i < common.size(); i++) {
-			int id = common.get(i);
-			
-			data1[i] = vRating1.get(id).value; 
-			data2[i] = vRating2.get(id).value;
-			if (useGeneralVar)
-				vars[i] = this.ratingVar;
-			else
-				vars[i] = this.itemVars.get(id);
-		}
-
-		DocumentVector vector1 = new DocumentVector(data1);
-		DocumentVector vector2 = new DocumentVector(data2);
-		
-		double lamda = getConfig().getAsReal(SMTP_LAMBDA_FIELD);
-		return vector1.smtp(vector2, lamda, vars);
-	}
-	
-	
-	/**
-	 * Calculating the Amer measure between two pairs. Amer measure is developed by Ali Amer, and implemented by Loc Nguyen.
-	 * The first pair includes the first rating vector and the first profile.
-	 * The second pair includes the second rating vector and the second profile.
-	 * 
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @param itemIds set of all item identifiers
-	 * @author Ali Amer.
-	 * @return Amer measure between both two rating vectors and profiles.
-	 */
-	protected double amer(
-			RatingVector vRating1, RatingVector vRating2,
-			Profile profile1, Profile profile2, Set<Integer> itemIds) {
-		if (itemIds == null)
-			itemIds = Util.newSet();
-		itemIds.addAll(unionFieldIds(vRating1, vRating2));
-		int N = itemIds.size();
-		if (N == 0) return Constants.UNUSED;
-		
-		int Na = 0, Nb = 0, Nab = 0, F = 0;
-		for (int itemId : itemIds) {
-			boolean rated1 = vRating1.isRated(itemId);
-			boolean rated2 = vRating2.isRated(itemId);
-			
-			if (rated1) Na++;
-			if (rated2) Nb++;
-			if (rated1 && rated2) Nab++;
-			if ((rated1 && !rated2) || (!rated1 && rated2)) F++;
-		}
-		
-		return ((1.0 - F/N) + (2.0*Nab / (Na + Nb))) / 2.0;
-	}
-	
-	
-	/**
-	 * Calculating the Amer2 measure between two pairs. Amer2 measure is developed by Ali Amer, and implemented by Loc Nguyen.
-	 * Amer2 measure is only applied into positive ratings.
-	 * The first pair includes the first rating vector and the first profile.
-	 * The second pair includes the second rating vector and the second profile.
-	 * 
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @author Ali Amer.
-	 * @return Amer2 measure between both two rating vectors and profiles.
-	 */
-	protected double amer2(
-			RatingVector vRating1, RatingVector vRating2,
-			Profile profile1, Profile profile2) {
-		Set<Integer> itemIds = unionFieldIds(vRating1, vRating2);
-		if (itemIds.size() == 0) return Constants.UNUSED;
-		
-		double X = 0, Y = 0, U = 0, V = 0;
-		for (int itemId : itemIds) {
-			boolean rated1 = vRating1.isRated(itemId);
-			boolean rated2 = vRating2.isRated(itemId);
-			
-			if (rated1) {
-				double value = vRating1.get(itemId).value;
-				U += value;
-				if (!rated2) X += value;
-			}
-			if (rated2) {
-				double value = vRating2.get(itemId).value;
-				V += value;
-				if (!rated1) Y += value;
-			}
-		}
-		
-		double F = X * Y;
-		double N = U * V;
-		return 1.0 - (F + 1.0) / N;
-	}
-
-	
-	/**
-	 * Calculating the Amer2 + Jaccard measure between two pairs. Amer2 measure is developed by Ali Amer, and implemented by Loc Nguyen.
-	 * Amer2 + Jaccard measure is only applied into positive ratings.
-	 * The first pair includes the first rating vector and the first profile.
-	 * The second pair includes the second rating vector and the second profile.
-	 * 
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @author Ali Amer.
-	 * @return Amer2 + Jaccard measure between both two rating vectors and profiles.
-	 */
-	protected double amer2j(
-			RatingVector vRating1, RatingVector vRating2,
-			Profile profile1, Profile profile2) {
-		return amer2(vRating1, vRating2, profile1, profile2) * jaccard(vRating1, vRating2, profile1, profile2);
-	}
-	
-	
-	/**
-	 * Calculating the quasi-TfIdf measure between two pairs. Quasi-TfIdf measure is developed by Ali Amer and Loc Nguyen.
-	 * Quasi-TfIdf measure is an extension of Amer2 measure and the ideology of TF and IDF.
-	 * Quasi-TfIdf measure is only applied into positive ratings.
-	 * The first pair includes the first rating vector and the first profile.
-	 * The second pair includes the second rating vector and the second profile.
-	 * 
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @author Ali Amer, Loc Nguyen.
-	 * @return Quasi-TfIdf measure between both two rating vectors.
-	 */
-	protected double quasiTfIdf(
-			RatingVector vRating1, RatingVector vRating2,
-			Profile profile1, Profile profile2) {
-		Set<Integer> itemIds = unionFieldIds(vRating1, vRating2);
-		if (itemIds.size() == 0) return Constants.UNUSED;
-		
-		double X1 = 0, Y1 = 0, X2 = 0, Y2 = 0, U = 0, V = 0;
-		for (int itemId : itemIds) {
-			boolean rated1 = vRating1.isRated(itemId);
-			boolean rated2 = vRating2.isRated(itemId);
-			
-			if (rated1) {
-				double value1 = vRating1.get(itemId).value;
-				U += value1;
-				if (rated2)
-					X1 += value1;
-				else if (!rated2)
-					X2 += value1;
-			}
-			
-			if (rated2) {
-				double value2 = vRating2.get(itemId).value;
-				V += value2;
-				if (rated1)
-					Y1 += value2;
-				else if (!rated1)
-					Y2 += value2;
-			}
-		}
-		
-		double N = U * V;
-		return ((X1*Y1)/N) * (1.0 - (X2*Y2)/N);
-	}
-
-	
-	/**
-	 * Calculating the quasi-TfIdf + Jaccard measure between two pairs. Quasi-TfIdf measure is developed by Ali Amer and Loc Nguyen.
-	 * Quasi-TfIdf + Jaccard measure is an extension of Amer2 measure and the ideology of TF and IDF.
-	 * Quasi-TfIdf + Jaccard measure is only applied into positive ratings.
-	 * The first pair includes the first rating vector and the first profile.
-	 * The second pair includes the second rating vector and the second profile.
-	 * 
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @author Ali Amer, Loc Nguyen.
-	 * @return Quasi-TfIdf + Jaccard measure between both two rating vectors.
-	 */
-	protected double quasiTfIdfJaccard(
-			RatingVector vRating1, RatingVector vRating2,
-			Profile profile1, Profile profile2) {
-		Set<Integer> itemIds = unionFieldIds(vRating1, vRating2);
-		if (itemIds.size() == 0) return Constants.UNUSED;
-		
-		double X1 = 0, Y1 = 0, X2 = 0, Y2 = 0, U = 0, V = 0;
-		int commonCount = 0;
-		for (int itemId : itemIds) {
-			boolean rated1 = vRating1.isRated(itemId);
-			boolean rated2 = vRating2.isRated(itemId);
-			
-			if (rated1) {
-				double value1 = vRating1.get(itemId).value;
-				U += value1;
-				if (rated2) {
-					X1 += value1;
-					commonCount ++;
-				}
-				else if (!rated2)
-					X2 += value1;
-			}
-			
-			if (rated2) {
-				double value2 = vRating2.get(itemId).value;
-				V += value2;
-				if (rated1)
-					Y1 += value2;
-				else if (!rated1)
-					Y2 += value2;
-			}
-		}
-		
-		double N = U * V;
-		double jac = (double)commonCount / (double)itemIds.size();
-		return ((X1*Y1)*jac/N) * (1.0 - (X2*Y2)*(1.0-jac)/N);
-	}
-
-	
-	/**
-	 * Calculating the TA (triangle area) measure between two pairs. TA is developed by Loc Nguyen.
-	 * The first pair includes the first rating vector and the first profile.
-	 * The second pair includes the second rating vector and the second profile.
-	 * The current version does not support positive cosine. The next version will fix it.
-	 * 
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @author Loc Nguyen.
-	 * @return TA measure between both two rating vectors and profiles.
-	 */
-	protected double triangleArea(RatingVector vRating1, RatingVector vRating2,
-			Profile profile1, Profile profile2) {
-		Set<Integer> common = commonFieldIds(vRating1, vRating2);
-		if (common.size() == 0) return Constants.UNUSED;
-		
-		Vector2 v1 = new Vector2(common.size(), 0);
-		Vector2 v2 = new Vector2(common.size(), 0);
-		boolean normalized = getConfig().getAsBoolean(TA_NORMALIZED_FIELD);
-		if (normalized) {//Normalized mode
-			for (int id : common) {
-				v1.add(vRating1.get(id).value - this.ratingMedian);
-				v2.add(vRating2.get(id).value - this.ratingMedian);
-			}
-		}
-		else {
-			for (int id : common) {
-				v1.add(vRating1.get(id).value);
-				v2.add(vRating2.get(id).value);
-			}
-		}
-		
-		double a = v1.module();
-		double b = v2.module();
-		if (a == 0 || b == 0) return Constants.UNUSED;
-		
-		double p = v1.product(v2);
-		if (p >= 0) {
-			if (a < b)
-				return p*p / (a*b*b*b);
-			else
-				return p*p / (a*a*a*b);
-		}
-		else {
-			if (a < b)
-				return p / (b*b);
-			else
-				return p / (a*a);
-		}
-	}
-
-	
-	/**
-	 * Calculating the TAJ (triangle area + Jaccard) measure between two pairs. TAJ is developed by Loc Nguyen.
-	 * The first pair includes the first rating vector and the first profile.
-	 * The second pair includes the second rating vector and the second profile.
-	 * The current version does not support positive cosine. The next version will fix it.
-	 * 
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @author Loc Nguyen
-	 * @return TAJ measure between both two rating vectors and profiles.
-	 */
-	protected double triangleAreaJaccard(RatingVector vRating1, RatingVector vRating2,
-			Profile profile1, Profile profile2) {
-		return triangleArea(vRating1, vRating2, profile1, profile2) * jaccard(vRating1, vRating2, profile1, profile2);
-	}
-
-	
-	/**
-	 * Calculating the circle dot product of two rating vectors given two sets of field identifiers.
-	 * @param vRating1 rating vector 1.
-	 * @param vRating2 rating vector 1.
-	 * @param fieldIds1 set 1 of field identifiers.
-	 * @param fieldIds2 set 1 of field identifiers.
-	 * @return circle dot product of two rating vectors given two sets of field identifiers.
-	 */
-	private double circleDotProduct0(RatingVector vRating1, RatingVector vRating2, Set<Integer> fieldIds1, Set<Integer> fieldIds2) {
-		double product = 0;
-		for (int fieldId1 : fieldIds1) {
-			double value1 = vRating1.get(fieldId1).value;
-			
-			for (int fieldId2 : fieldIds2) {
-				double value2 = vRating2.get(fieldId2).value;
-				product += value1 * value2;
-			}
-		}
-		
-		return product;
-	}
-	
-	
-	/**
-	 * Calculating the circle dot product of two rating vectors given two sets of field identifiers.
-	 * @param vRating1 rating vector 1.
-	 * @param vRating2 rating vector 1.
-	 * @param fieldIds1 set 1 of field identifiers.
-	 * @param fieldIds2 set 1 of field identifiers.
-	 * @return circle dot product of two rating vectors given two sets of field identifiers.
-	 */
-	protected double circleDotProduct(RatingVector vRating1, RatingVector vRating2, Set<Integer> fieldIds1, Set<Integer> fieldIds2) {
-		double product = 0;
-		for (int fieldId1 : fieldIds1) {
-			if (!vRating1.isRated(fieldId1)) continue;
-			
-			double value1 = vRating1.get(fieldId1).value;
-			for (int fieldId2 : fieldIds2) {
-				if (!vRating2.isRated(fieldId2)) continue;
-
-				double value2 = vRating2.get(fieldId2).value;
-				product += value1 * value2;
-			}
-		}
-		
-		return product;
-	}
-
-	
-	/**
-	 * Calculating the circle dot product of two rating vectors.
-	 * @param vRating1 rating vector 1.
-	 * @param vRating2 rating vector 1.
-	 * @return circle dot product of two rating vectors.
-	 */
-	protected double circleDotProduct(RatingVector vRating1, RatingVector vRating2) {
-		return circleDotProduct0(vRating1, vRating2,
-				vRating1.fieldIds(true), vRating2.fieldIds(true));
-	}
-
-	
-	/**
-	 * Calculating the circle dot length of specified rating vector given field identifiers.
-	 * @param vRating specified rating vector.
-	 * @param fieldIds given field identifiers.
-	 * @return circle dot length of specified rating vector given field identifiers.
-	 */
-	private double circleLength0(RatingVector vRating, Set<Integer> fieldIds) {
-		double length = 0;
-		for (int fieldId : fieldIds) {
-			double value = vRating.get(fieldId).value;
-			length += value*value;
-		}
-		
-		return Math.sqrt(length);
-	}
-
-	
-	/**
-	 * Calculating the circle length of specified rating vector given field identifiers.
-	 * @param vRating specified rating vector.
-	 * @param fieldIds given field identifiers.
-	 * @return circle length of specified rating vector given field identifiers.
-	 */
-	protected double circleLength(RatingVector vRating, Set<Integer> fieldIds) {
-		double length = 0;
-		for (int fieldId : fieldIds) {
-			if (!vRating.isRated(fieldId)) continue;
-			
-			double value = vRating.get(fieldId).value;
-			length += value*value;
-		}
-		
-		return Math.sqrt(length);
-	}
-
-	
-	/**
-	 * Calculating the circle length of specified rating vector.
-	 * @param vRating specified rating vector.
-	 * @return circle length of specified rating vector.
-	 */
-	protected double circleLength(RatingVector vRating) {
-		return circleLength0(vRating, vRating.fieldIds(true));
-	}
-
-	
-	/**
-	 * Calculating the coco measure of two rating vectors given two sets of field identifiers.
-	 * @param vRating1 rating vector 1.
-	 * @param vRating2 rating vector 1.
-	 * @param fieldIds1 set 1 of field identifiers.
-	 * @param fieldIds2 set 1 of field identifiers.
-	 * @return coco measure of two rating vectors given two sets of field identifiers.
-	 */
-	protected double coco(RatingVector vRating1, RatingVector vRating2, Set<Integer> fieldIds1, Set<Integer> fieldIds2) {
-		return circleDotProduct(vRating1, vRating2, fieldIds1, fieldIds2) /
-				(circleLength(vRating1, fieldIds1)*circleLength(vRating2, fieldIds2));
-	}
-
-	
-	/**
-	 * Calculating the Coco measure between two pairs. Coco is developed by Loc Nguyen.
-	 * The first pair includes the first rating vector and the first profile.
-	 * The second pair includes the second rating vector and the second profile.
-	 * 
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @author Loc Nguyen
-	 * @return Coco measure between both two rating vectors and profiles.
-	 */
-	protected double coco(RatingVector vRating1, RatingVector vRating2,
-			Profile profile1, Profile profile2) {
-		Set<Integer> fieldIds1 = vRating1.fieldIds(true);
-		double length1 = 0;
-		for (int fieldId1 : fieldIds1) {
-			double value1 = vRating1.get(fieldId1).value;
-			length1 += value1*value1;
-		}
-		
-		Set<Integer> fieldIds2 = vRating2.fieldIds(true);
-		double length2 = 0;
-		for (int fieldId2 : fieldIds2) {
-			double value2 = vRating2.get(fieldId2).value;
-			length2 += value2*value2;
-		}
-		
-		return (vRating1.sum()*vRating2.sum()) / Math.sqrt(length1*length2);
-	}
-
-	
-	/**
-	 * Calculating the numerical nearby similarity measure (MMNS) between two pairs. MMNS is developed by Ali Amer.
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @param profile1 first profile.
-	 * @param profile2 second profile.
-	 * @author Ali Amer
-	 * @return numerical nearby similarity measure (MMNS) between both two rating vectors and profiles.
-	 */
-	protected double mmns(
-			RatingVector vRating1, RatingVector vRating2,
-			Profile profile1, Profile profile2) {
-		
-		Set<Integer> fieldIds = commonFieldIds(vRating1, vRating2);
-		int n = fieldIds.size();
-		double product = 0;
-		for (int fieldId : fieldIds) {
-			double value1 = vRating1.get(fieldId).value;
-			double value2 = vRating2.get(fieldId).value;
-			product += value1 * value2;
-		}
-		
-		double sum1 = vRating1.sum();
-		int n1 = vRating1.count(true);
-		double sum2 = vRating2.sum();
-		int n2 = vRating2.count(true);
-		
-		return (n*product) / (n1*sum1+n2*sum2);
-	}
-	
-	
-	/**
-	 * Getting rating vector given column ID (item ID or user ID) for BCF measure.
-	 * @param columnId specified column ID (item ID or user ID).
-	 * @return rating vector given column ID (item ID or user ID).
-	 */
-	protected abstract RatingVector getColumnRating(int columnId);
-
-	
-//	/**
-//	 * Calculating the ITA (inverse triangle area) measure between two pairs. ITA is developed by Loc Nguyen.
-//	 * The first pair includes the first rating vector and the first profile.
-//	 * The second pair includes the second rating vector and the second profile.
-//	 * 
-//	 * @param vRating1 first rating vector.
-//	 * @param vRating2 second rating vector.
-//	 * @param profile1 first profile.
-//	 * @param profile2 second profile.
-//	 * @author Loc Nguyen.
-//	 * @return ITA measure between both two rating vectors and profiles.
-//	 */
-//	@Deprecated
-//	protected double inverseTriangleArea(RatingVector vRating1, RatingVector vRating2,
-//			Profile profile1, Profile profile2) {
-//		
-//		Set<Integer> common = commonFieldIds(vRating1, vRating2);
-//		if (common.size() == 0) return Constants.UNUSED;
-//		
-//		Vector2 v1 = new Vector2(common.size(), 0);
-//		Vector2 v2 = new Vector2(common.size(), 0);
-//		for (int id : common) {
-//			v1.add(vRating1.get(id).value / 5.0); //Fix here
-//			v2.add(vRating2.get(id).value / 5.0); //Fix here
-//		}
-//
-//		double cos = v1.cosine(v2);
-//		double sin = Math.sqrt(1 - cos*cos); //Fix here
-//		return 1 - v1.module() * v2.module() * sin;
-//		
-////		double cos2 = Math.abs(cos);
-////		double c = a > b ? b/a : a/b;
-////		double sin = Math.sqrt(1 - cos2*cos2);
-////		double area = Math.abs(cos2 - c) * sin;
-////		return (1 - area) * cos;
-//		
-////		double c = a > b ? b/a : a/b;
-////		double area = Math.abs(cos2 - c);
-////		if (area < 0) {
-////			int i = 0;
-////			i = 1;
-////		}
-////		return (1 - area) * cos;
-//		
-////		double c = a > b ? b/a : a/b;
-////		return c*cos*cos;
-//		
-////		double acos = a*cos;
-////		double bcos = b*cos;
-////		if (acos == b || bcos == a)
-////			return cos;
-////		else if (acos < b)
-////			return (acos/b)*cos;
-////		else
-////			return (bcos/a)*cos;
-//		
-////		if (taMode == TAMODE_MINPROJECT) {
-////			double acos = a*cos;
-////			double bcos = b*cos;
-////			if (acos <= b && bcos <= a) {
-////				double acoeff = acos/b;
-////				double bcoeff = bcos/a;
-////				if (acoeff < bcoeff)
-////					coeff = acoeff;
-////				else
-////					coeff = bcoeff; 
-////			}
-////			else if (acos < b)
-////				coeff = acos/b;
-////			else
-////				coeff = bcos/a;
-////		}
-////		else if (taMode == TAMODE_MAXPROJECT) {
-////			double acos = a*cos;
-////			double bcos = b*cos;
-////			if (acos == b || bcos == a)
-////				coeff = 1;
-////			else if (acos < b && bcos < a) {
-////				double acoeff = acos/b;
-////				double bcoeff = bcos/a;
-////				if (acoeff < bcoeff)
-////					coeff = bcoeff;
-////				else
-////					coeff = acoeff; 
-////			}
-////			else if (acos < b)
-////				coeff = acos/b;
-////			else
-////				coeff = bcos/a;
-////		}
-////		else if (taMode == TAMODE_EQUALRADIUS) {
-////			coeff = a < b ? a / b : b / a;
-////		}
-//	}
-	
-
-	/**
-	 * Computing common field IDs of two rating vectors as list.
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @return common field IDs of two rating vectors.
-	 */
-	private static List<Integer> commonFieldIdsAsList(RatingVector vRating1, RatingVector vRating2) {
-		List<Integer> common = Util.newList();
-		common.addAll(vRating1.fieldIds(true));
-		common.retainAll(vRating2.fieldIds(true));
-		return common;
-	}
-
-	
-	/**
-	 * Converting value bins into rank bins.
-	 * @param valueBins value bins
-	 * @return rank bins.
-	 */
-	protected static Map<Double, Integer> convertValueBinsToRankBins(List<Double> valueBins) {
-		if (valueBins == null || valueBins.size() == 0)
-			return Util.newMap();
-		
-		Collections.sort(valueBins);
-		Map<Double, Integer> rankBins = Util.newMap();
-		int n = valueBins.size();
-		for (int i = 0; i < n; i++) {
-			rankBins.put(valueBins.get(i), n-i);
-		}
-		
-		return rankBins;
-	}
-	
-	
-	/**
-	 * Extracting value bins from two specified rating vectors.
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @return Extracted value bins from two specified rating vectors.
-	 */
-	protected static List<Double> extractValueBins(RatingVector vRating1, RatingVector vRating2) {
-		Set<Double> values = Util.newSet();
-		
-		Set<Integer> ids1 = vRating1.fieldIds(true);
-		for (int id1 : ids1) {
-			double value1 = vRating1.get(id1).value;
-			values.add(value1);
-		}
-		
-		Set<Integer> ids2 = vRating2.fieldIds(true);
-		for (int id2 : ids2) {
-			double value2 = vRating2.get(id2).value;
-			values.add(value2);
-		}
-		
-		List<Double> bins = DSUtil.toDoubleList(values);
-		Collections.sort(bins);
-		return bins;
-	}
-	
-	
-	/**
-	 * Extracting rank bins from two specified rating vectors.
-	 * @param vRating1 first rating vector.
-	 * @param vRating2 second rating vector.
-	 * @return Extracted rank bins from two specified rating vectors.
-	 */
-	protected static Map<Double, Integer> extractRankBins(RatingVector vRating1, RatingVector vRating2) {
-		List<Double> valueBins = extractValueBins(vRating1, vRating2);
-		return convertValueBinsToRankBins(valueBins);
-	}
-	
-	
-	/**
-	 * Extracting value bins from configuration.
-	 * @return extracted value bins from configuration.
-	 */
-	protected List<Double> extractConfigValueBins() {
-		if (!getConfig().containsKey(VALUE_BINS_FIELD))
-			return Util.newList();
-		
-		return TextParserUtil.parseListByClass(
-				getConfig().getAsString(VALUE_BINS_FIELD),
-				Double.class,
-				",");
-	}
-	
-	
-	/**
-	 * Extracting rank bins from configuration.
-	 * @return extracted SRC rank bins from configuration.
-	 */
-	protected Map<Double, Integer> extractConfigRankBins() {
-		List<Double> valueBins = extractConfigValueBins();
-		return convertValueBinsToRankBins(valueBins);
-	}
-
-	
-//	/**
-//	 * Computing similarity matrix.
-//	 * @param cf referred neighbor collaborative filtering.
-//	 * @param vFetcher fetcher of ratings.
-//	 * @return similarity matrix.
-//	 */
-//	protected static Map<Integer, Map<Integer, Double>> computeSimMatrix(NeighborCF cf, Fetcher<RatingVector> vFetcher) {
-//		if (vFetcher == null) return Util.newMap();
-//		int size = -1;
-//		try {
-//			size = vFetcher.getMetadata().getSize();
-//		}
-//		catch (Throwable e) {
-//			e.printStackTrace();
-//			size = -1;
-//		}
-//		List<RatingVector> vRatings = size <= 0 ? Util.newList() : Util.newList(size);
-//		FetcherUtil.fillCollection(vRatings, vFetcher, false);
-//		try {
-//			vFetcher.reset();
-//		}
-//		catch (Exception e) {
-//			// TODO Auto-generated catch block
-//			e.printStackTrace();
-//		}
-//		if (vRatings.size() < 2) return Util.newMap();
-//		
-//		int n = vRatings.size();
-//		Map<Integer, Map<Integer, Double>> simMatrix = Util.newMap(n);
-//		for (int i = 0; i < n; i++) {
-//			RatingVector v1 = vRatings.get(i);
-//			if (v1 == null || v1.size() == 0) continue;
-//			
-//			for (int j = i; j < n; j++) {
-//				RatingVector v2 = vRatings.get(j);
-//				if (v2 == null || v2.size() == 0) continue;
-//				
-//				double sim = cf.similar(v1, v2, null, null);
-//				if (!Util.isUsed(sim)) continue;
-//				
-//				if (simMatrix.containsKey(v1.id()))
-//					simMatrix.get(v1.id()).put(v2.id(), sim);
-//				else {
-//					Map<Integer, Double> map = Util.newMap(n);
-//					simMatrix.put(v1.id(), map);
-//					map.put(v2.id(), sim);
-//				}
-//				
-//				if (i != j) {
-//					if (simMatrix.containsKey(v2.id()))
-//						simMatrix.get(v2.id()).put(v1.id(), sim);
-//					else {
-//						Map<Integer, Double> map = Util.newMap(n);
-//						simMatrix.put(v2.id(), map);
-//						map.put(v1.id(), sim);
-//					}
-//				}
-//			}
-//		}
-//		
-//		vRatings.clear();
-//		return simMatrix;
-//	}
-
-	
-	@Override
-	public Inspector getInspector() {
-		// TODO Auto-generated method stub
-		return EvaluateGUI.createInspector(this);
-	}
-
-	
-	@Override
-	public DataConfig createDefaultConfig() {
-		// TODO Auto-generated method stub
-		DataConfig config = super.createDefaultConfig();
-		config.put(VALUE_BINS_FIELD, VALUE_BINS_DEFAULT);
-		config.put(BCF_MEDIAN_MODE_FIELD, BCF_MEDIAN_MODE_DEFAULT);
-		config.put(MU_ALPHA_FIELD, MU_ALPHA_DEFAULT);
-		config.put(SMTP_LAMBDA_FIELD, SMTP_LAMBDA_DEFAULT);
-		config.put(SMTP_GENERAL_VAR_FIELD, SMTP_GENERAL_VAR_DEFAULT);
-		config.put(TA_NORMALIZED_FIELD, TA_NORMALIZED_DEFAULT);
-		
-		return config;
-	}
-
-
-}
+package net.hudup.alg.cf;
+
+import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.hudup.core.Constants;
+import net.hudup.core.Util;
+import net.hudup.core.alg.cf.FieldStatistics;
+import net.hudup.core.alg.cf.HeapFootprint;
+import net.hudup.core.alg.cf.IdDictionary;
+import net.hudup.core.alg.cf.MeasureExpression;
+import net.hudup.core.alg.cf.NeighborCF;
+import net.hudup.core.alg.cf.NeighborMetrics;
+import net.hudup.core.alg.cf.OverlapMatrix;
+import net.hudup.core.alg.cf.PairStatistics;
+import net.hudup.core.alg.cf.PreparedVector;
+import net.hudup.core.alg.cf.RatingSnapshot;
+import net.hudup.core.alg.cf.ScratchPool;
+import net.hudup.core.alg.cf.SimilarityKernel;
+import net.hudup.core.alg.cf.VersionStamps;
+import net.hudup.core.data.DataConfig;
+import net.hudup.core.data.Profile;
+import net.hudup.core.data.RatingVector;
+import net.hudup.core.data.UserRating;
+import net.hudup.core.logistic.DSUtil;
+import net.hudup.core.logistic.Inspector;
+import net.hudup.core.logistic.NextUpdate;
+import net.hudup.core.logistic.Vector2;
+import net.hudup.core.parser.TextParserUtil;
+import net.hudup.evaluate.ui.EvaluateGUI;
+
+/**
+ * This class sets up an advanced version of neighbor collaborative filtering (Neighbor CF) algorithm with more similarity measures.
+ * <br>
+ * There are many authors who contributed measure to this class.<br>
+ * Authors Haifeng Liu, Zheng Hu, Ahmad Mian, Hui Tian, Xuzhen Zhu contributed PSS measures and NHSM measure.<br>
+ * Authors Bidyut Kr. Patra, Raimo Launonen, Ville Ollikainen, Sukumar Nandi contributed BC and BCF measures.<br>
+ * Author Hyung Jun Ahn contributed PIP measure.<br>
+ * Authors Keunho Choi and Yongmoo Suh contributed PC measure.<br>
+ * Authors Suryakant and Tripti Mahara contributed MMD measure and CjacMD measure.<br>
+ * Authors Junmei Feng, Xiaoyi Fengs, Ning Zhang, and Jinye Peng contributed Feng model.<br>
+ * Authors Yi Mua, Nianhao Xiao, Ruichun Tang, Liang Luo, and Xiaohan Yin contributed Mu measure.<br>
+ * Authors Yung-Shen Lin, Jung-Yi Jiang, Shie-Jue Lee contributed SMTP measure.<br>
+ * Author Ali Amer contributed Amer and Amer2 measures.<br>
+ * Author Loc Nguyen contributed TA (triangle area) measure.<br>
+ * Authors Ali Amer and Loc Nguyen contributed quasi-TfIdf measure. Quasi-TfIdf measure is an extension of Amer2 measure and the ideology of TF and IDF.<br>
+ * Author Ali Amer contributed numerical nearby similarity measure (MMNS).
+ * 
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public abstract class NeighborCFExt extends NeighborCF {
+
+	
+	/**
+	 * Serial version UID for serializable class. 
+	 */
+	private static final long serialVersionUID = 1L;
+
+	
+	/**
+	 * Name of PSS measure.
+	 */
+	public static final String PSS = "pss";
+
+	
+	/**
+	 * Name of NHSM measure.
+	 */
+	public static final String NHSM = "nhsm";
+
+	
+	/**
+	 * Name of BCF measure.
+	 */
+	public static final String BCF = "bcf";
+
+	
+	/**
+	 * Name of BCFJ measure (BCF + Jaccard).
+	 */
+	public static final String BCFJ = "bcfj";
+
+	
+	/**
+	 * Name of SRC measure.
+	 */
+	public static final String SRC = "src";
+
+	
+	/**
+	 * Name of PIP measure.
+	 */
+	public static final String PIP = "pip";
+
+	
+	/**
+	 * Name of PC measure.
+	 */
+	public static final String PC = "pc";
+
+	
+	/**
+	 * Name of MMD measure.
+	 */
+	public static final String MMD = "mmd";
+
+	
+	/**
+	 * Name of CjacMD measure which is developed by Suryakant and Tripti Mahara.
+	 */
+	public static final String CJACMD = "cjacmd";
+
+	
+	/**
+	 * Name of Bhattacharyya measure, which is a component of Mu measure.
+	 */
+	public static final String BC = "bc";
+
+	
+	/**
+	 * Name of Feng measure.
+	 */
+	public static final String FENG = "feng";
+
+	
+	/**
+	 * Name of Mu measure.
+	 */
+	public static final String MU = "mu";
+
+	
+	/**
+	 * Name of SMTP measure.
+	 */
+	public static final String SMTP = "smtp";
+
+	
+	/**
+	 * Name of Amer measure.
+	 */
+	public static final String AMER = "amer";
+
+	
+	/**
+	 * Name of Amer2 measure.
+	 */
+	public static final String AMER2 = "amer2";
+
+	
+	/**
+	 * Name of Amer2 + Jaccard measure.
+	 */
+	public static final String AMER2J = "amer2j";
+
+	
+	/**
+	 * Name of Quasi-TfIdf measure.
+	 */
+	public static final String QUASI_TFIDF = "qti";
+
+	
+	/**
+	 * Name of Quasi-TfIdf + Jaccard measure.
+	 */
+	public static final String QUASI_TFIDF_JACCARD = "qtij";
+
+	
+	/**
+	 * Name of triangle area measure.
+	 */
+	public static final String TA = "ta";
+
+	
+	/**
+	 * Name of triangle area + Jaccard measure.
+	 */
+	public static final String TAJ = "taj";
+
+	
+	/**
+	 * Name of Coco measure.
+	 */
+	public static final String COCO = "coco";
+
+	
+	/**
+	 * Name of numerical nearby similarity measure (MMNS).
+	 */
+	public static final String NNMS = "mmns";
+
+	
+	/**
+	 * Value bins.
+	 */
+	public static final String VALUE_BINS_FIELD = "value_bins";
+
+	
+	/**
+	 * Default value bins.
+	 */
+	public static final String VALUE_BINS_DEFAULT = "1, 2, 3, 4, 5";
+
+	
+	/**
+	 * BCF median mode.
+	 */
+	public static final String BCF_MEDIAN_MODE_FIELD = "bcf_median";
+
+	
+	/**
+	 * Default BCF median mode.
+	 */
+	public static final boolean BCF_MEDIAN_MODE_DEFAULT = true;
+
+	
+	/**
+	 * Mu alpha field.
+	 */
+	public static final String MU_ALPHA_FIELD = "mu_alpha";
+
+	
+	/**
+	 * Default Mu alpha.
+	 */
+	public static final double MU_ALPHA_DEFAULT = 0.5;
+
+	
+	/**
+	 * Name of lambda field.
+	 */
+	public static final String SMTP_LAMBDA_FIELD = "smtp_lambda";
+
+	
+	/**
+	 * Default lambda field.
+	 */
+	public static final double SMTP_LAMBDA_DEFAULT = 0.5;
+
+	
+	/**
+	 * Name of general variance field.
+	 */
+	public static final String SMTP_GENERAL_VAR_FIELD = "smtp_general_var";
+
+	
+	/**
+	 * Default general variance field.
+	 */
+	public static final boolean SMTP_GENERAL_VAR_DEFAULT = false;
+
+	
+	/**
+	 * TA normalized mode.
+	 */
+	public static final String TA_NORMALIZED_FIELD = "ta_normalized";
+
+	
+	/**
+	 * Default TA normalized mode.
+	 */
+	public static final boolean TA_NORMALIZED_DEFAULT = false;
+
+	
+	/**
+	 * Quantized ratings mode. If it is true and rating snapshot mode is on, ratings of the snapshot are stored as byte codes into value bins ({@link #VALUE_BINS_FIELD}).
+	 * Ratings are stored as floats if some rating is outside the value bins.
+	 */
+	public static final String QUANTIZED_RATINGS_FIELD = "quantized_ratings";
+
+	
+	/**
+	 * Default quantized ratings mode.
+	 */
+	public static final boolean QUANTIZED_RATINGS_DEFAULT = false;
+	
+	
+	/**
+	 * Name of BCF column module cache which is used by metrics.
+	 */
+	public static final String BCF_COLUMN_MODULE_CACHE = "bcf_column_module";
+
+	
+	/**
+	 * Value bins.
+	 */
+	protected List<Double> valueBins = Util.newList();
+	
+	
+	/**
+	 * Rank bins.
+	 */
+	protected Map<Double, Integer> rankBins = Util.newMap();
+	
+	
+	/**
+	 * Column module (column vector length) cache.
+	 */
+	protected Map<Integer, Object> bcfColumnModuleCache = new ConcurrentHashMap<>();
+
+	
+	/**
+	 * Sorted value bins of pair tables, which are the grid of discrete ratings.
+	 */
+	protected double[] tableBins = new double[0];
+
+	
+	/**
+	 * Table of products of proximity and significance of PSS measure for every pair of value bins, in row-major order of (bins x bins).
+	 */
+	protected double[] pssPairTable = new double[0];
+
+	
+	/**
+	 * Table of products of proximity and impact of PIP measure for every pair of value bins, in row-major order of (bins x bins).
+	 */
+	protected double[] pipPairTable = new double[0];
+
+	
+	/**
+	 * Lamda parameter of SMTP measure, which is read from configuration at setup.
+	 */
+	protected double smtpLamda = SMTP_LAMBDA_DEFAULT;
+
+	
+	/**
+	 * Flag to indicate whether SMTP measure uses general variance, which is read from configuration at setup.
+	 */
+	protected boolean smtpGeneralVar = SMTP_GENERAL_VAR_DEFAULT;
+
+	
+	/**
+	 * Default constructor.
+	 */
+	public NeighborCFExt() {
+		// TODO Auto-generated constructor stub
+	}
+
+
+	@Override
+	protected void updateConfigState() {
+		// TODO Auto-generated method stub
+		super.updateConfigState();
+		
+		this.valueBins = extractConfigValueBins();
+		this.rankBins = convertValueBinsToRankBins(this.valueBins);
+		updatePairTables();
+		this.smtpLamda = getConfig().getAsReal(SMTP_LAMBDA_FIELD);
+		this.smtpGeneralVar = getConfig().getAsBoolean(SMTP_GENERAL_VAR_FIELD);
+	}
+
+	
+	@Override
+	protected QueryModel newQueryModel(String measure) {
+		// TODO Auto-generated method stub
+		if (this.snapshot != null && isColumnMeasure(measure))
+			this.snapshot.buildColumns();
+		return super.newQueryModel(measure);
+	}
+
+	
+	@Override
+	protected double[][] simBatchMulti(QueryModel model, RatingVector vActive, List<RatingVector> candidates, List<String> measures, Object...parameters) {
+		// TODO Auto-generated method stub
+		if (this.snapshot != null) {
+			for (String measure : measures) {
+				if (!isColumnMeasure(measure)) continue;
+				this.snapshot.buildColumns(); //Column measures which are not the current measure read the column layout too.
+				break;
+			}
+		}
+		return super.simBatchMulti(model, vActive, candidates, measures, parameters);
+	}
+
+	
+	@Override
+	public synchronized void unsetup() throws RemoteException {
+		// TODO Auto-generated method stub
+		super.unsetup();
+		
+		this.rankBins = Util.newMap();
+		this.valueBins = Util.newList();
+		
+		if (this.metrics.isEnabled())
+			this.metrics.recordEvictions(BCF_COLUMN_MODULE_CACHE, this.bcfColumnModuleCache.size());
+		this.bcfColumnModuleCache = new ConcurrentHashMap<>();
+		this.tableBins = new double[0];
+		this.pssPairTable = new double[0];
+		this.pipPairTable = new double[0];
+	}
+
+	
+	@Override
+	protected void installState(NeighborCF source) {
+		// TODO Auto-generated method stub
+		super.installState(source);
+		
+		NeighborCFExt ext = (NeighborCFExt)source;
+		this.valueBins = ext.valueBins;
+		this.rankBins = ext.rankBins;
+		this.tableBins = ext.tableBins;
+		this.pssPairTable = ext.pssPairTable;
+		this.pipPairTable = ext.pipPairTable;
+		this.smtpLamda = ext.smtpLamda;
+		this.smtpGeneralVar = ext.smtpGeneralVar;
+		this.bcfColumnModuleCache = ext.bcfColumnModuleCache;
+	}
+
+	
+	@Override
+	protected void collectCaches(List<Map<?, ?>> caches) {
+		// TODO Auto-generated method stub
+		super.collectCaches(caches);
+		caches.add(this.bcfColumnModuleCache);
+	}
+
+	
+	@Override
+	protected String cacheName(Object cache) {
+		// TODO Auto-generated method stub
+		if (cache == this.bcfColumnModuleCache)
+			return BCF_COLUMN_MODULE_CACHE;
+		else
+			return super.cacheName(cache);
+	}
+
+	
+	@Override
+	protected void updateCacheSizes() {
+		// TODO Auto-generated method stub
+		super.updateCacheSizes();
+		this.metrics.updateSize(BCF_COLUMN_MODULE_CACHE, this.bcfColumnModuleCache.size());
+	}
+
+	
+	@Override
+	protected void estimateFootprint(HeapFootprint footprint) {
+		// TODO Auto-generated method stub
+		super.estimateFootprint(footprint);
+		footprint.put("bcfColumnModuleCache", HeapFootprint.ofBoxedMap(this.bcfColumnModuleCache.size()));
+		footprint.put("valueBins", HeapFootprint.ofBoxedList(this.valueBins.size()));
+		footprint.put("rankBins", HeapFootprint.ofBoxedMap(this.rankBins.size()));
+		footprint.put("pairTables", HeapFootprint.ofArray(this.tableBins.length, 8) + HeapFootprint.ofArray(this.pssPairTable.length, 8) + HeapFootprint.ofArray(this.pipPairTable.length, 8));
+	}
+
+	
+	@Override
+	protected void projectFootprint(HeapFootprint footprint, int userCount, int itemCount, long ratingCount, long rowSims, long columnSims) {
+		// TODO Auto-generated method stub
+		super.projectFootprint(footprint, userCount, itemCount, ratingCount, rowSims, columnSims);
+		String measure = getMeasure();
+		boolean bcf = isColumnMeasure(measure) && !PC.equals(measure);
+		footprint.put("bcfColumnModuleCache", HeapFootprint.ofBoxedMap(bcf && isCached() ? itemCount : 0));
+		
+		int bins = extractConfigValueBins().size();
+		footprint.put("valueBins", HeapFootprint.ofBoxedList(bins));
+		footprint.put("rankBins", HeapFootprint.ofBoxedMap(bins));
+		footprint.put("pairTables", HeapFootprint.ofArray(bins, 8) + 2 * HeapFootprint.ofArray((long)bins * bins, 8));
+	}
+
+	
+	@Override
+	protected double[] getSnapshotValueBins() {
+		// TODO Auto-generated method stub
+		if (!getConfig().getAsBoolean(QUANTIZED_RATINGS_FIELD))
+			return null;
+		
+		List<Double> bins = extractConfigValueBins();
+		if (bins.isEmpty())
+			return null;
+		
+		double[] valueBins = new double[bins.size()];
+		for (int i = 0; i < valueBins.length; i++)
+			valueBins[i] = bins.get(i);
+		return valueBins;
+	}
+
+	
+	@Override
+	public List<String> getSupportedMeasures() {
+		// TODO Auto-generated method stub
+		List<String> measures = super.getSupportedMeasures();
+		Set<String> mSet = Util.newSet();
+		mSet.addAll(measures);
+		mSet.add(PSS);
+//		mSet.add(NHSM);
+		mSet.add(BCF);
+//		mSet.add(BCFJ);
+		mSet.add(SRC);
+		mSet.add(PIP);
+		mSet.add(PC);
+		mSet.add(MMD);
+//		mSet.add(CJACMD);
+		mSet.add(SMTP);
+		mSet.add(AMER);
+		mSet.add(AMER2);
+//		mSet.add(AMER2J);
+		mSet.add(QUASI_TFIDF);
+//		mSet.add(QUASI_TFIDF_JACCARD);
+		mSet.add(TA);
+//		mSet.add(TAJ);
+		mSet.add(COCO);
+		mSet.add(NNMS);
+		
+		measures.clear();
+		measures.addAll(mSet);
+		Collections.sort(measures);
+		return measures;
+	}
+
+
+	/**
+	 * Checking whether the similarity measure requires to declare discrete bins in configuration ({@link #VALUE_BINS_FIELD}).
+	 * @return true if the similarity measure requires to declare discrete bins in configuration ({@link #VALUE_BINS_FIELD}). Otherwise, return false.
+	 */
+	public boolean requireDiscreteRatingBins() {
+		return requireDiscreteRatingBins(getMeasure());
+	}
+	
+	
+	/**
+	 * Given specified measure, checking whether the similarity measure requires to declare discrete bins in configuration ({@link #VALUE_BINS_FIELD}).
+	 * @param measure specified measure.
+	 * @return true if the similarity measure requires to declare discrete bins in configuration ({@link #VALUE_BINS_FIELD}). Otherwise, return false.
+	 */
+	protected boolean requireDiscreteRatingBins(String measure) {
+		if (measure == null)
+			return false;
+		else if (measure.equals(BCF) ||  measure.equals(MMD))
+			return true;
+		
+		MeasureExpression composite = getCompositeMeasures().get(measure);
+		if (composite == null) return false;
+		for (String identifier : composite.getIdentifiers()) {
+			if (compositeParameter(identifier) == null && requireDiscreteRatingBins(identifier)) return true;
+		}
+		return false;
+	}
+	
+	
+	/**
+	 * Checking whether specified measure is Bhattacharyya measure or a composite measure of it, which caches Bhattacharyya coefficients of rows in column similarity cache.
+	 * @param measure specified measure.
+	 * @return whether specified measure is Bhattacharyya measure or a composite measure of it.
+	 */
+	protected boolean isBhattacharyyaMeasure(String measure) {
+		if (measure == null) return false;
+		if (measure.equals(BC)) return true;
+		
+		MeasureExpression composite = getCompositeMeasures().get(measure);
+		if (composite == null) return false;
+		for (String identifier : composite.getIdentifiers()) {
+			if (compositeParameter(identifier) == null && isBhattacharyyaMeasure(identifier)) return true;
+		}
+		return false;
+	}
+
+	
+	@Override
+	protected boolean isCachedSim() {
+		// TODO Auto-generated method stub
+		String measure = getMeasure();
+		if (measure == null)
+			return false;
+		else if (measure.equals(PC))
+			return false;
+		else
+			return super.isCachedSim();
+	}
+
+	
+	@Override
+	protected boolean isExpensiveMeasure(String measure) {
+		// TODO Auto-generated method stub
+		return measure != null && (measure.equals(BCF) || measure.equals(PC) || measure.equals(SMTP) || measure.equals(NHSM) || super.isExpensiveMeasure(measure));
+	}
+
+	
+	@Override
+	protected boolean isFieldDependentMeasure(String measure) {
+		// TODO Auto-generated method stub
+		if (measure != null && measure.equals(SMTP))
+			return !this.smtpGeneralVar;
+		else
+			return measure != null && (isColumnMeasure(measure) || measure.equals(PSS) || measure.equals(NHSM) || measure.equals(PIP) || super.isFieldDependentMeasure(measure));
+	}
+
+	
+	@Override
+	protected boolean isGlobalDependentMeasure(String measure) {
+		// TODO Auto-generated method stub
+		return measure != null && ((measure.equals(SMTP) && this.smtpGeneralVar) || super.isGlobalDependentMeasure(measure));
+	}
+
+	
+	@Override
+	protected boolean isCatalogDependentMeasure(String measure) {
+		// TODO Auto-generated method stub
+		return measure != null && (measure.equals(AMER) || super.isCatalogDependentMeasure(measure));
+	}
+
+	
+	@Override
+	protected VersionStamps versionsOf(Object cache) {
+		// TODO Auto-generated method stub
+		if (cache == this.bcfColumnModuleCache)
+			return this.columnVersions;
+		else
+			return super.versionsOf(cache);
+	}
+
+	
+	@Override
+	protected void invalidateCaches(Set<Integer> userIds, Set<Integer> itemIds, boolean all) {
+		// TODO Auto-generated method stub
+		if (all) {
+			if (this.metrics.isEnabled())
+				this.metrics.recordEvictions(BCF_COLUMN_MODULE_CACHE, this.bcfColumnModuleCache.size());
+			this.bcfColumnModuleCache.clear();
+		}
+		else {
+			long evictions = 0;
+			for (int itemId : itemIds) {
+				if (this.bcfColumnModuleCache.remove(itemId) != null) evictions++;
+			}
+			if (this.metrics.isEnabled())
+				this.metrics.recordEvictions(BCF_COLUMN_MODULE_CACHE, evictions);
+			
+			if (isBhattacharyyaMeasure(getMeasure())) { //Mu caches Bhattacharyya coefficients of users in column similarity cache.
+				this.columnVersions.stamp(userIds);
+				evictions = evictCache(this.columnSimCache, userIds);
+				if (this.metrics.isEnabled())
+					this.metrics.recordEvictions(NeighborMetrics.COLUMN_SIM_CACHE, evictions);
+			}
+		}
+		
+		super.invalidateCaches(userIds, itemIds, all);
+	}
+
+	
+	@Override
+	protected double sim0(String measure, RatingVector vRating1, RatingVector vRating2, Profile profile1, Profile profile2, Object...params) {
+		// TODO Auto-generated method stub
+		if (measure.equals(PSS))
+			return pss(vRating1, vRating2, profile1, profile2);
+		else if (measure.equals(NHSM))
+			return nhsm(vRating1, vRating2, profile1, profile2);
+		else if (measure.equals(BCF))
+			return bcf(vRating1, vRating2, profile1, profile2);
+		else if (measure.equals(BC))
+			return bc(vRating1, vRating2, profile1, profile2);
+		else if (measure.equals(SRC))
+			return src(vRating1, vRating2, profile1, profile2);
+		else if (measure.equals(PIP))
+			return pip(vRating1, vRating2, profile1, profile2);
+		else if (measure.equals(PC)) {
+			if ((params == null) || (params.length < 1) || !(params[0] instanceof Number))
+				return Constants.UNUSED;
+			else {
+				int fixedColumnId = ((Number)(params[0])).intValue();
+				return pc(vRating1, vRating2, profile1, profile2, fixedColumnId);
+			}
+		}
+		else if (measure.equals(MMD))
+			return mmd(vRating1, vRating2, profile1, profile2);
+		else if (measure.equals(FENG))
+			return feng(vRating1, vRating2, profile1, profile2);
+		else if (measure.equals(SMTP))
+			return smtp(vRating1, vRating2, profile1, profile2);
+		else if (measure.equals(AMER))
+			return amer(vRating1, vRating2, profile1, profile2, this.itemIds);
+		else if (measure.equals(AMER2))
+			return amer2(vRating1, vRating2, profile1, profile2);
+		else if (measure.equals(AMER2J))
+			return amer2j(vRating1, vRating2, profile1, profile2);
+		else if (measure.equals(QUASI_TFIDF))
+			return quasiTfIdf(vRating1, vRating2, profile1, profile2);
+		else if (measure.equals(QUASI_TFIDF_JACCARD))
+			return quasiTfIdfJaccard(vRating1, vRating2, profile1, profile2);
+		else if (measure.equals(TA))
+			return triangleArea(vRating1, vRating2, profile1, profile2);
+		else if (measure.equals(TAJ))
+			return triangleAreaJaccard(vRating1, vRating2, profile1, profile2);
+		else if (measure.equals(COCO))
+			return coco(vRating1, vRating2, profile1, profile2);
+		else if (measure.equals(NNMS))
+			return mmns(vRating1, vRating2, profile1, profile2);
+		else
+			return super.sim0(measure, vRating1, vRating2, profile1, profile2, params);
+	}
+
+	
+	@Override
+	protected String getBuiltinCompositeDefinitions() {
+		// TODO Auto-generated method stub
+		return super.getBuiltinCompositeDefinitions() + "; "
+			+ BCFJ + " = " + BCF + " + " + JACCARD + "; "
+			+ CJACMD + " = " + COSINE + " + " + MMD + " + " + JACCARD + "; "
+			+ MU + " = " + MU_ALPHA_FIELD + " * " + PEARSON + " + (1 - " + MU_ALPHA_FIELD + ") * (1 - " + BC + " + " + JACCARD + ")";
+	}
+	
+	
+	@Override
+	protected SimilarityKernel compileKernel(String measure) {
+		// TODO Auto-generated method stub
+		if (measure == null)
+			return null;
+		else if (measure.equals(SMTP)) {
+			IdDictionary itemIndex = this.itemIndex;
+			double[] itemVars = this.smtpGeneralVar ? null : this.itemVarArray;
+			double generalVar = this.ratingVar, lamda = this.smtpLamda;
+			return (active, candidate) -> smtp(active, candidate, itemIndex, itemVars, generalVar, lamda);
+		}
+		else if (measure.equals(AMER)) {
+			IdDictionary catalog = this.itemIndex;
+			return (active, candidate) -> {
+				int common = 0, outside = 0;
+				for (int i = 0; i < candidate.size(); i++) {
+					int fieldId = candidate.fieldId(i);
+					if (Util.isUsed(active.lookup(fieldId)))
+						common++;
+					else if (!catalog.contains(fieldId))
+						outside++;
+				}
+				for (int i = 0; i < active.size(); i++) {
+					if (!catalog.contains(active.fieldId(i))) outside++;
+				}
+				
+				return amer(active.size(), candidate.size(), common, catalog.size() + outside);
+			};
+		}
+		else if (measure.equals(AMER2) || measure.equals(AMER2J)) {
+			boolean withJaccard = measure.equals(AMER2J);
+			return (active, candidate) -> {
+				int common = 0;
+				double commonSum1 = 0, commonSum2 = 0;
+				for (int i = 0; i < candidate.size(); i++) {
+					double value1 = active.lookup(candidate.fieldId(i));
+					if (!Util.isUsed(value1)) continue;
+					
+					common++;
+					commonSum1 += value1;
+					commonSum2 += candidate.value(i);
+				}
+				if (active.size() + candidate.size() == 0) return Constants.UNUSED;
+				
+				double U = active.sum(), V = candidate.sum();
+				double F = (U - commonSum1) * (V - commonSum2);
+				double N = U * V;
+				double amer2 = 1.0 - (F + 1.0) / N;
+				return withJaccard ? amer2 * jaccard(active, candidate, common) : amer2;
+			};
+		}
+		else if (measure.equals(QUASI_TFIDF) || measure.equals(QUASI_TFIDF_JACCARD)) {
+			boolean withJaccard = measure.equals(QUASI_TFIDF_JACCARD);
+			return (active, candidate) -> {
+				int common = 0;
+				double X1 = 0, Y1 = 0;
+				for (int i = 0; i < candidate.size(); i++) {
+					double value1 = active.lookup(candidate.fieldId(i));
+					if (!Util.isUsed(value1)) continue;
+					
+					common++;
+					X1 += value1;
+					Y1 += candidate.value(i);
+				}
+				if (active.size() + candidate.size() == 0) return Constants.UNUSED;
+				
+				double U = active.sum(), V = candidate.sum();
+				double X2 = U - X1, Y2 = V - Y1;
+				double N = U * V;
+				if (!withJaccard)
+					return ((X1*Y1)/N) * (1.0 - (X2*Y2)/N);
+				
+				double jac = jaccard(active, candidate, common);
+				return ((X1*Y1)*jac/N) * (1.0 - (X2*Y2)*(1.0-jac)/N);
+			};
+		}
+		else if (measure.equals(COCO))
+			return (active, candidate) -> (active.sum()*candidate.sum()) / Math.sqrt(active.sumSquare()*candidate.sumSquare());
+		else if (measure.equals(NNMS))
+			return (active, candidate) -> mmns(active, candidate);
+		else if (measure.equals(TA) || measure.equals(TAJ)) {
+			double center = getConfig().getAsBoolean(TA_NORMALIZED_FIELD) ? this.ratingMedian : 0;
+			boolean withJaccard = measure.equals(TAJ);
+			return (active, candidate) -> triangleArea(active, candidate, center, withJaccard);
+		}
+		else if (measure.equals(MMD) || measure.equals(BC)) {
+			double[] bins = this.tableBins;
+			if (bins.length == 0) return null;
+			if (measure.equals(MMD))
+				return (active, candidate) -> mmd(active, candidate, bins);
+			else
+				return (active, candidate) -> bc(active, candidate, bins);
+		}
+		else if (measure.equals(PSS)) {
+			IdDictionary itemIndex = this.itemIndex;
+			double[] itemMeans = this.itemMeanArray;
+			return (active, candidate) -> pss(active, candidate, itemIndex, itemMeans);
+		}
+		else if (measure.equals(PIP)) {
+			IdDictionary itemIndex = this.itemIndex;
+			double[] itemMeans = this.itemMeanArray;
+			return (active, candidate) -> pip(active, candidate, itemIndex, itemMeans);
+		}
+		else if (measure.equals(BCF)) {
+			RatingSnapshot snapshot = this.snapshot;
+			if (snapshot == null || !snapshot.hasColumns()) return null;
+			return (active, candidate) -> bcf(snapshot, active, candidate);
+		}
+		else
+			return super.compileKernel(measure);
+	}
+	
+	
+	@Override
+	protected PairStatistics.Finisher compileFinisher(String measure, PairStatistics statistics) {
+		// TODO Auto-generated method stub
+		if (measure == null)
+			return null;
+		else if (measure.equals(AMER)) {
+			if (statistics.getCatalog() != this.itemIndex) return null;
+			int catalogSize = this.itemIndex.size();
+			return (active, candidate, stats) -> amer(active.size(), candidate.size(), stats.common, catalogSize + stats.activeOutside + stats.candidateOutside);
+		}
+		else if (measure.equals(AMER2) || measure.equals(AMER2J)) {
+			boolean withJaccard = measure.equals(AMER2J);
+			return (active, candidate, stats) -> {
+				if (active.size() + candidate.size() == 0) return Constants.UNUSED;
+				
+				double U = active.sum(), V = candidate.sum();
+				double F = (U - stats.commonSum1) * (V - stats.commonSum2);
+				double N = U * V;
+				double amer2 = 1.0 - (F + 1.0) / N;
+				return withJaccard ? amer2 * jaccard(active, candidate, stats.common) : amer2;
+			};
+		}
+		else if (measure.equals(QUASI_TFIDF) || measure.equals(QUASI_TFIDF_JACCARD)) {
+			boolean withJaccard = measure.equals(QUASI_TFIDF_JACCARD);
+			return (active, candidate, stats) -> {
+				if (active.size() + candidate.size() == 0) return Constants.UNUSED;
+				
+				double X1 = stats.commonSum1, Y1 = stats.commonSum2;
+				double U = active.sum(), V = candidate.sum();
+				double X2 = U - X1, Y2 = V - Y1;
+				double N = U * V;
+				if (!withJaccard)
+					return ((X1*Y1)/N) * (1.0 - (X2*Y2)/N);
+				
+				double jac = jaccard(active, candidate, stats.common);
+				return ((X1*Y1)*jac/N) * (1.0 - (X2*Y2)*(1.0-jac)/N);
+			};
+		}
+		else if (measure.equals(COCO))
+			return (active, candidate, stats) -> (active.sum()*candidate.sum()) / Math.sqrt(active.sumSquare()*candidate.sumSquare());
+		else if (measure.equals(NNMS))
+			return (active, candidate, stats) -> (stats.common*stats.commonProduct) / (active.size()*active.sum() + candidate.size()*candidate.sum());
+		else if (measure.equals(TA) || measure.equals(TAJ)) {
+			int k = statistics.addCenter(getConfig().getAsBoolean(TA_NORMALIZED_FIELD) ? this.ratingMedian : 0);
+			boolean withJaccard = measure.equals(TAJ);
+			return (active, candidate, stats) -> {
+				double ta = triangleArea(stats.common, Math.sqrt(stats.commonVX[k]), Math.sqrt(stats.commonVY[k]), stats.commonVXY[k]);
+				return withJaccard ? ta * jaccard(active, candidate, stats.common) : ta;
+			};
+		}
+		else if (measure.equals(PSS) || measure.equals(PIP)) {
+			if (statistics.getCatalog() != this.itemIndex) return null;
+			IdDictionary itemIndex = this.itemIndex;
+			double[] itemMeans = this.itemMeanArray, bins = this.tableBins;
+			int t;
+			if (measure.equals(PSS)) {
+				double[] table = this.pssPairTable;
+				t = statistics.addTerm((fieldId, r1, r2) -> {
+					double mean = fieldStat(itemIndex, itemMeans, fieldId);
+					return Util.isUsed(mean) ? pssTerm(r1, r2, mean, bins, table) : 0;
+				});
+			}
+			else {
+				double[] table = this.pipPairTable;
+				t = statistics.addTerm((fieldId, r1, r2) -> {
+					double mean = fieldStat(itemIndex, itemMeans, fieldId);
+					return Util.isUsed(mean) ? pipTerm(r1, r2, mean, bins, table) : 0;
+				});
+			}
+			return (active, candidate, stats) -> stats.common == 0 ? Constants.UNUSED : stats.termSums[t];
+		}
+		else
+			return super.compileFinisher(measure, statistics);
+	}
+	
+	
+	/**
+	 * Calculating the PSS measure between two pairs. PSS measure is developed by Haifeng Liu, Zheng Hu, Ahmad Mian, Hui Tian, Xuzhen Zhu, and implemented by Loc Nguyen.
+	 * The first pair includes the first rating vector and the first profile.
+	 * The second pair includes the second rating vector and the second profile.
+	 * 
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @author Haifeng Liu, Zheng Hu, Ahmad Mian, Hui Tian, Xuzhen Zhu.
+	 * @return PSS measure between both two rating vectors and profiles.
+	 */
+	protected abstract double pss(RatingVector vRating1, RatingVector vRating2,
+			Profile profile1, Profile profile2);
+
+
+	/**
+	 * Calculating the PSS measure between two rating vectors. PSS measure is developed by Haifeng Liu, Zheng Hu, Ahmad Mian, Hui Tian, Xuzhen Zhu, and implemented by Loc Nguyen.
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param fieldMeans map of field means.
+	 * @author Haifeng Liu, Zheng Hu, Ahmad Mian, Hui Tian, Xuzhen Zhu.
+	 * @return PSS measure between two rating vectors.
+	 */
+	protected double pss(RatingVector vRating1, RatingVector vRating2, Map<Integer, Double> fieldMeans) {
+		FieldStatistics means = FieldStatistics.of(fieldMeans);
+		return simPrepared(vRating1, vRating2, (active, candidate) -> pss(active, candidate, means.getIndex(), means.getValues()));
+	}
+	
+	
+	/**
+	 * Calculating the PSS measure between two prepared vectors in one loop over co-rated fields. PSS measure is developed by Haifeng Liu, Zheng Hu, Ahmad Mian, Hui Tian, Xuzhen Zhu, and implemented by Loc Nguyen.
+	 * Fields without mean are skipped.
+	 * @param active active vector, which is prepared by {@link PreparedVector#prepareActive()}.
+	 * @param candidate candidate vector.
+	 * @param fieldIndex dictionary of dense indices of fields.
+	 * @param fieldMeans dense array of field means indexed by the dictionary.
+	 * @author Haifeng Liu, Zheng Hu, Ahmad Mian, Hui Tian, Xuzhen Zhu.
+	 * @return PSS measure between two prepared vectors.
+	 */
+	protected double pss(PreparedVector active, PreparedVector candidate, IdDictionary fieldIndex, double[] fieldMeans) {
+		double[] bins = this.tableBins, table = this.pssPairTable;
+		int common = 0;
+		double pss = 0.0;
+		for (int i = 0; i < candidate.size(); i++) {
+			int fieldId = candidate.fieldId(i);
+			double r1 = active.lookup(fieldId);
+			if (!Util.isUsed(r1)) continue;
+			common++;
+			double mean = fieldStat(fieldIndex, fieldMeans, fieldId);
+			if (!Util.isUsed(mean)) continue;
+			
+			pss += pssTerm(r1, candidate.value(i), mean, bins, table);
+		}
+		
+		return common == 0 ? Constants.UNUSED : pss;
+	}
+	
+	
+	/**
+	 * Calculating the term of PSS measure of one co-rated field, whose product of proximity and significance is read from pre-computed table if both ratings are value bins.
+	 * @param r1 first rating.
+	 * @param r2 second rating.
+	 * @param mean mean of the field.
+	 * @param bins sorted value bins of the table.
+	 * @param table table of products of proximity and significance for every pair of value bins.
+	 * @author Haifeng Liu, Zheng Hu, Ahmad Mian, Hui Tian, Xuzhen Zhu.
+	 * @return term of PSS measure.
+	 */
+	protected double pssTerm(double r1, double r2, double mean, double[] bins, double[] table) {
+		int bin1 = Arrays.binarySearch(bins, r1), bin2 = Arrays.binarySearch(bins, r2);
+		double proSig = bin1 >= 0 && bin2 >= 0 ? table[bin1 * bins.length + bin2] : pssProSig(r1, r2);
+		double singular = 1.0 - 1.0 / (1.0 + Math.exp(-Math.abs((r1+r2)/2.0 - mean)));
+		return proSig * singular;
+	}
+	
+	
+	/**
+	 * Calculating the product of proximity and significance of PSS measure, which depends only on the pair of ratings.
+	 * @param r1 first rating.
+	 * @param r2 second rating.
+	 * @author Haifeng Liu, Zheng Hu, Ahmad Mian, Hui Tian, Xuzhen Zhu.
+	 * @return product of proximity and significance.
+	 */
+	protected double pssProSig(double r1, double r2) {
+		double pro = 1.0 - 1.0 / (1.0 + Math.exp(-Math.abs(r1-r2)));
+		//Note: I think that it is better to use mean instead of median for significant.
+		//At the worst case, median is always approximate to mean given symmetric distribution like normal distribution.
+		//Moreover, in fact, general user mean is equal to general item mean.
+		//However, I still use rating median because of respecting authors' ideas.
+		double sig = 1.0 / (1.0 + Math.exp(
+				-Math.abs(r1-ratingMedian)*Math.abs(r2-ratingMedian)));
+		return pro * sig;
+	}
+	
+	
+	/**
+	 * Calculating the NHSM measure between two pairs. NHSM measure is developed by Haifeng Liu, Zheng Hu, Ahmad Mian, Hui Tian, Xuzhen Zhu, and implemented by Loc Nguyen.
+	 * The first pair includes the first rating vector and the first profile.
+	 * The second pair includes the second rating vector and the second profile.
+	 * 
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @author Haifeng Liu, Zheng Hu, Ahmad Mian, Hui Tian, Xuzhen Zhu.
+	 * @return NHSM measure between both two rating vectors and profiles.
+	 */
+	protected double nhsm(RatingVector vRating1, RatingVector vRating2,
+			Profile profile1, Profile profile2) {
+		double urp = urp(vRating1, vRating2, profile1, profile2);
+		double jaccard2 = jaccard2(vRating1, vRating2, profile1, profile2);
+		return pss(vRating1, vRating2, profile1, profile2) * jaccard2 * urp;
+	}
+
+
+	/**
+	 * Calculate the Bhattacharyya measure from specified rating vectors. BC measure is modified by Bidyut Kr. Patra, Raimo Launonen, Ville Ollikainen, Sukumar Nandi, and implemented by Loc Nguyen.
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @author Bidyut Kr. Patra, Raimo Launonen, Ville Ollikainen, Sukumar Nandi.
+	 * @return Bhattacharyya measure from specified rating vectors.
+	 */
+	@NextUpdate
+	protected double bc(RatingVector vRating1, RatingVector vRating2,
+			Profile profile1, Profile profile2) {
+		Task task = new Task() {
+			
+			@Override
+			public Object perform(Object...params) {
+				List<Double> bins = valueBins;
+				if (bins.isEmpty())
+					bins = extractValueBins(vRating1, vRating2);
+				
+				Set<Integer> ids1 = vRating1.fieldIds(true);
+				Set<Integer> ids2 = vRating2.fieldIds(true);
+				int n1 = ids1.size();
+				int n2 = ids2.size();
+				if (n1 == 0 || n2 == 0) return Constants.UNUSED;
+				
+				double bc = 0;
+				for (double bin : bins) {
+					int count1 = 0, count2 = 0;
+					for (int id1 : ids1) {
+						if (vRating1.get(id1).value == bin)
+							count1++;
+					}
+					for (int id2 : ids2) {
+						if (vRating2.get(id2).value == bin)
+							count2++;
+					}
+					
+					bc += Math.sqrt( ((double)count1/(double)n1) * ((double)count2/(double)n2) ); 
+				}
+				
+				return bc;
+			}
+		};
+		
+		return (double)cacheTask(vRating1.id(), vRating2.id(), this.columnSimCache, task);
+	}
+
+	
+	/**
+	 * Calculating the Bhattacharyya measure between two prepared vectors over specified value bins, without allocation.
+	 * @param active active vector.
+	 * @param candidate candidate vector.
+	 * @param bins value bins.
+	 * @return Bhattacharyya measure between two prepared vectors.
+	 */
+	protected static double bc(PreparedVector active, PreparedVector candidate, double[] bins) {
+		int n1 = active.size(), n2 = candidate.size();
+		if (n1 == 0 || n2 == 0) return Constants.UNUSED;
+		
+		double bc = 0;
+		for (double bin : bins)
+			bc += Math.sqrt( ((double)binCount(active, bin)/(double)n1) * ((double)binCount(candidate, bin)/(double)n2) );
+		return bc;
+	}
+	
+	
+	/**
+	 * Counting ratings of specified prepared vector which are equal to specified value bin.
+	 * @param vector specified prepared vector.
+	 * @param bin specified value bin.
+	 * @return number of ratings equal to the bin.
+	 */
+	protected static int binCount(PreparedVector vector, double bin) {
+		int count = 0;
+		for (int i = 0; i < vector.size(); i++) {
+			if (vector.value(i) == bin) count++;
+		}
+		return count;
+	}
+
+	
+	/**
+	 * Calculating the advanced BCF measure between two pairs. BCF measure is developed by Bidyut Kr. Patra, Raimo Launonen, Ville Ollikainen, Sukumar Nandi, and implemented by Loc Nguyen.
+	 * The first pair includes the first rating vector and the first profile.
+	 * The second pair includes the second rating vector and the second profile.
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @author Bidyut Kr. Patra, Raimo Launonen, Ville Ollikainen, Sukumar Nandi.
+	 * @return BCF measure between both two rating vectors and profiles.
+	 */
+	@NextUpdate
+	protected double bcf(RatingVector vRating1, RatingVector vRating2,
+			Profile profile1, Profile profile2) {
+		RatingSnapshot snapshot = this.snapshot;
+		if (snapshot != null && snapshot.hasColumns() && vRating1 instanceof UserRating && vRating2 instanceof UserRating)
+			return bcf(snapshot, vRating1, vRating2);
+		
+		Set<Integer> columnIds1 = vRating1.fieldIds(true);
+		Set<Integer> columnIds2 = vRating2.fieldIds(true);
+		if (columnIds1.size() == 0 || columnIds2.size() == 0)
+			return Constants.UNUSED;
+		
+		double bcSum = 0;
+		boolean medianMode = getConfig().getAsBoolean(BCF_MEDIAN_MODE_FIELD);
+		for (int columnId1 : columnIds1) {
+			RatingVector columnVector1 = getColumnRating(columnId1);
+			if (columnVector1 == null) continue;
+			double columnModule1 = bcfCalcColumnModule(columnVector1);
+			if (!Util.isUsed(columnModule1) || columnModule1 == 0) continue;
+			
+			double value1 = medianMode? vRating1.get(columnId1).value-this.ratingMedian : vRating1.get(columnId1).value-vRating1.mean();
+			for (int columnId2 : columnIds2) {
+				RatingVector columnVector2 = columnId2 == columnId1 ? columnVector1 : getColumnRating(columnId2);
+				if (columnVector2 == null) continue;
+				double columnModule2 = bcfCalcColumnModule(columnVector2);
+				if (!Util.isUsed(columnModule2) || columnModule2 == 0) continue;
+				
+				double bc = bc(columnVector1, columnVector2, profile1, profile2);
+				if (!Util.isUsed(bc)) continue;
+
+				double value2 = medianMode? vRating2.get(columnId2).value-this.ratingMedian : vRating2.get(columnId2).value-vRating2.mean();
+				double loc = value1 * value2 / (columnModule1*columnModule2);
+				if (!Util.isUsed(loc)) continue;
+				
+				bcSum += bc * loc;
+			}
+		}
+		
+		return bcSum;
+	}
+
+	
+	/**
+	 * Calculating the advanced BCFJ measure (BCF + Jaccard) between two pairs. BCF measure is developed by Bidyut Kr. Patra, Raimo Launonen, Ville Ollikainen, Sukumar Nandi, and implemented by Loc Nguyen.
+	 * The first pair includes the first rating vector and the first profile.
+	 * The second pair includes the second rating vector and the second profile.
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @author Bidyut Kr. Patra, Raimo Launonen, Ville Ollikainen, Sukumar Nandi.
+	 * @return BCFJ measure between both two rating vectors and profiles.
+	 */
+	protected double bcfj(RatingVector vRating1, RatingVector vRating2,
+			Profile profile1, Profile profile2) {
+		return bcf(vRating1, vRating2, profile1, profile2) + jaccard(vRating1, vRating2, profile1, profile2);
+	}
+	
+	
+	/**
+	 * Calculating module (length) of column rating vector for BCF measure.
+	 * @param columnVector specified column rating vector.
+	 * @return module (length) of column rating vector.
+	 */
+	protected double bcfCalcColumnModule(RatingVector columnVector) {
+		double ratingMedian = this.ratingMedian;
+		Task task = new Task() {
+			
+			@Override
+			public Object perform(Object...params) {
+				if (columnVector == null) return Constants.UNUSED;
+				
+				Set<Integer> fieldIds = columnVector.fieldIds(true);
+				double columnModule = 0;
+				boolean medianMode = getConfig().getAsBoolean(BCF_MEDIAN_MODE_FIELD);
+				for (int fieldId : fieldIds) {
+					double deviate = medianMode ? columnVector.get(fieldId).value-ratingMedian : columnVector.get(fieldId).value;
+					columnModule += deviate * deviate;
+				}
+				
+				return Math.sqrt(columnModule);
+			}
+		};
+		
+		return (double)cacheTask(columnVector.id(), this.bcfColumnModuleCache, task);
+	}
+
+	
+	/**
+	 * Calculating the BCF measure between two user rating vectors whose item columns are read from column-major layout of specified rating snapshot.
+	 * Column modules and Bhattacharyya coefficients are calculated over column slices of the snapshot without converting columns into rating vectors,
+	 * and items which are not in the snapshot are ignored because no user of the snapshot rated them.
+	 * @param snapshot rating snapshot whose column-major layout is built.
+	 * @param vRating1 first user rating vector.
+	 * @param vRating2 second user rating vector.
+	 * @return BCF measure between both two rating vectors.
+	 */
+	protected double bcf(RatingSnapshot snapshot, RatingVector vRating1, RatingVector vRating2) {
+		ScratchPool.Scratch scratch = this.scratchPool.borrow();
+		try {
+			return bcf(snapshot, prepare(vRating1, scratch.active), prepare(vRating2, scratch.candidate));
+		}
+		finally {
+			this.scratchPool.release(scratch);
+		}
+	}
+	
+	
+	/**
+	 * Calculating the BCF measure between two prepared user vectors whose item columns are read from column-major layout of specified rating snapshot,
+	 * like {@link #bcf(RatingSnapshot, RatingVector, RatingVector)}.
+	 * @param snapshot rating snapshot whose column-major layout is built.
+	 * @param prepared1 first prepared user vector.
+	 * @param prepared2 second prepared user vector.
+	 * @return BCF measure between both two prepared vectors.
+	 */
+	protected double bcf(RatingSnapshot snapshot, PreparedVector prepared1, PreparedVector prepared2) {
+		int n1 = prepared1.size(), n2 = prepared2.size();
+		if (n1 == 0 || n2 == 0) return Constants.UNUSED;
+		
+		boolean medianMode = getConfig().getAsBoolean(BCF_MEDIAN_MODE_FIELD);
+		double center1 = medianMode ? this.ratingMedian : prepared1.mean();
+		double center2 = medianMode ? this.ratingMedian : prepared2.mean();
+		int[] columns2 = new int[n2];
+		double[] modules2 = new double[n2];
+		for (int j = 0; j < n2; j++) {
+			columns2[j] = snapshot.columnOf(prepared2.fieldId(j));
+			modules2[j] = columns2[j] < 0 ? Constants.UNUSED : bcfCalcColumnModule(snapshot, columns2[j]);
+		}
+		
+		double bcSum = 0;
+		for (int i = 0; i < n1; i++) {
+			int column1 = snapshot.columnOf(prepared1.fieldId(i));
+			if (column1 < 0) continue;
+			double columnModule1 = bcfCalcColumnModule(snapshot, column1);
+			if (!Util.isUsed(columnModule1) || columnModule1 == 0) continue;
+			
+			double value1 = prepared1.value(i) - center1;
+			for (int j = 0; j < n2; j++) {
+				double columnModule2 = modules2[j];
+				if (!Util.isUsed(columnModule2) || columnModule2 == 0) continue;
+				
+				double bc = bc(snapshot, column1, columns2[j]);
+				if (!Util.isUsed(bc)) continue;
+				
+				double loc = value1 * (prepared2.value(j) - center2) / (columnModule1*columnModule2);
+				if (!Util.isUsed(loc)) continue;
+				
+				bcSum += bc * loc;
+			}
+		}
+		
+		return bcSum;
+	}
+	
+	
+	/**
+	 * Calculating the Bhattacharyya coefficient between two columns of specified rating snapshot, which is cached like {@link #bc(RatingVector, RatingVector, Profile, Profile)}.
+	 * @param snapshot rating snapshot whose column-major layout is built.
+	 * @param column1 first dense column index.
+	 * @param column2 second dense column index.
+	 * @return Bhattacharyya coefficient between two columns.
+	 */
+	protected double bc(RatingSnapshot snapshot, int column1, int column2) {
+		Task task = new Task() {
+			
+			@Override
+			public Object perform(Object...params) {
+				int n1 = snapshot.columnLength(column1);
+				int n2 = snapshot.columnLength(column2);
+				if (n1 == 0 || n2 == 0) return Constants.UNUSED;
+				
+				double[] bins = tableBins;
+				if (bins.length == 0)
+					bins = columnValueBins(snapshot, column1, column2);
+				int[] counts1 = columnHistogram(snapshot, column1, bins);
+				int[] counts2 = columnHistogram(snapshot, column2, bins);
+				
+				double bc = 0;
+				for (int b = 0; b < bins.length; b++)
+					bc += Math.sqrt( ((double)counts1[b]/(double)n1) * ((double)counts2[b]/(double)n2) );
+				return bc;
+			}
+		};
+		
+		return (double)cacheTask(snapshot.columnId(column1), snapshot.columnId(column2), this.columnSimCache, task);
+	}
+	
+	
+	/**
+	 * Calculating module (length) of specified column of rating snapshot for BCF measure, which is cached like {@link #bcfCalcColumnModule(RatingVector)}.
+	 * @param snapshot rating snapshot whose column-major layout is built.
+	 * @param column dense column index.
+	 * @return module (length) of specified column.
+	 */
+	protected double bcfCalcColumnModule(RatingSnapshot snapshot, int column) {
+		double ratingMedian = this.ratingMedian;
+		Task task = new Task() {
+			
+			@Override
+			public Object perform(Object...params) {
+				boolean medianMode = getConfig().getAsBoolean(BCF_MEDIAN_MODE_FIELD);
+				double columnModule = 0;
+				for (int entry = snapshot.columnStart(column); entry < snapshot.columnEnd(column); entry++) {
+					double value = snapshot.value(snapshot.position(entry));
+					double deviate = medianMode ? value-ratingMedian : value;
+					columnModule += deviate * deviate;
+				}
+				
+				return Math.sqrt(columnModule);
+			}
+		};
+		
+		return (double)cacheTask(snapshot.columnId(column), this.bcfColumnModuleCache, task);
+	}
+	
+	
+	/**
+	 * Extracting sorted distinct rating values of two columns of specified rating snapshot, which are value bins when configured value bins are empty.
+	 * @param snapshot rating snapshot whose column-major layout is built.
+	 * @param column1 first dense column index.
+	 * @param column2 second dense column index.
+	 * @return sorted distinct rating values of two columns.
+	 */
+	private static double[] columnValueBins(RatingSnapshot snapshot, int column1, int column2) {
+		int n1 = snapshot.columnLength(column1);
+		double[] values = new double[n1 + snapshot.columnLength(column2)];
+		for (int i = 0; i < values.length; i++) {
+			int entry = i < n1 ? snapshot.columnStart(column1) + i : snapshot.columnStart(column2) + i - n1;
+			values[i] = snapshot.value(snapshot.position(entry));
+		}
+		Arrays.sort(values);
+		
+		int count = 0;
+		for (int i = 0; i < values.length; i++) {
+			if (count == 0 || values[i] != values[count - 1]) values[count++] = values[i];
+		}
+		return Arrays.copyOf(values, count);
+	}
+	
+	
+	/**
+	 * Counting rating values of specified column of rating snapshot in sorted value bins. Values which are not bins are not counted.
+	 * @param snapshot rating snapshot whose column-major layout is built.
+	 * @param column dense column index.
+	 * @param bins sorted value bins.
+	 * @return counts indexed by bins.
+	 */
+	private static int[] columnHistogram(RatingSnapshot snapshot, int column, double[] bins) {
+		int[] counts = new int[bins.length];
+		for (int entry = snapshot.columnStart(column); entry < snapshot.columnEnd(column); entry++) {
+			int b = Arrays.binarySearch(bins, snapshot.value(snapshot.position(entry)));
+			if (b >= 0) counts[b]++;
+		}
+		return counts;
+	}
+	
+	
+	/**
+	 * Calculating Pearson correlation between two columns of specified rating snapshot over their common rows, like {@link RatingVector#corr(RatingVector)} of column rating vectors.
+	 * Means are calculated over all ratings of each column, and rows within each column are sorted so that common rows are found by merging.
+	 * @param snapshot rating snapshot whose column-major layout is built.
+	 * @param column1 first dense column index.
+	 * @param column2 second dense column index.
+	 * @return Pearson correlation between two columns.
+	 */
+	protected static double columnCorr(RatingSnapshot snapshot, int column1, int column2) {
+		int start1 = snapshot.columnStart(column1), end1 = snapshot.columnEnd(column1);
+		int start2 = snapshot.columnStart(column2), end2 = snapshot.columnEnd(column2);
+		if (start1 == end1 || start2 == end2) return Constants.UNUSED;
+		
+		double sum1 = 0, sum2 = 0;
+		for (int entry = start1; entry < end1; entry++)
+			sum1 += snapshot.value(snapshot.position(entry));
+		for (int entry = start2; entry < end2; entry++)
+			sum2 += snapshot.value(snapshot.position(entry));
+		double mean1 = sum1 / (end1 - start1), mean2 = sum2 / (end2 - start2);
+		
+		double vx = 0, vy = 0, vxy = 0;
+		for (int entry1 = start1, entry2 = start2; entry1 < end1 && entry2 < end2;) {
+			int row1 = snapshot.row(entry1), row2 = snapshot.row(entry2);
+			if (row1 < row2)
+				entry1++;
+			else if (row1 > row2)
+				entry2++;
+			else {
+				double d1 = snapshot.value(snapshot.position(entry1++)) - mean1;
+				double d2 = snapshot.value(snapshot.position(entry2++)) - mean2;
+				vx  += d1 * d1;
+				vy  += d2 * d2;
+				vxy += d1 * d2;
+			}
+		}
+		
+		if (vx == 0 || vy == 0)
+			return Constants.UNUSED;
+		else
+			return vxy / Math.sqrt(vx * vy);
+	}
+	
+	
+	/**
+	 * Calculating the Spearman Rank Correlation (SRC) measure between two pairs.
+	 * The first pair includes the first rating vector and the first profile.
+	 * The second pair includes the second rating vector and the second profile.
+	 * 
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @return Spearman Rank Correlation (SRC) measure between both two rating vectors and profiles.
+	 */
+	protected double src(RatingVector vRating1, RatingVector vRating2,
+			Profile profile1, Profile profile2) {
+		Map<Double, Integer> bins = rankBins;
+		if (bins.isEmpty())
+			bins = extractRankBins(vRating1, vRating2);
+
+		Map<Double, Integer> rankBins = bins;
+		return simPrepared(vRating1, vRating2, (active, candidate) -> {
+			int common = 0;
+			double sum = 0;
+			for (int i = 0; i < candidate.size(); i++) {
+				double v1 = active.lookup(candidate.fieldId(i));
+				if (!Util.isUsed(v1)) continue;
+				
+				common++;
+				int d = rankBins.get(v1) - rankBins.get(candidate.value(i));
+				sum += d*d;
+			}
+			if (common == 0) return Constants.UNUSED;
+			
+			double n = common;
+			return 1.0 - 6*sum/(n*(n*n-1));
+		});
+	}
+	
+	
+	/**
+	 * Calculating the PIP measure between two pairs. PIP measure is developed by Hyung Jun Ahn, and implemented by Loc Nguyen.
+	 * The first pair includes the first rating vector and the first profile.
+	 * The second pair includes the second rating vector and the second profile.
+	 * 
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @author Hyung Jun Ahn.
+	 * @return NHSM measure between both two rating vectors and profiles.
+	 */
+	protected abstract double pip(RatingVector vRating1, RatingVector vRating2,
+			Profile profile1, Profile profile2);
+	
+	
+	/**
+	 * Calculating the PIP measure between two rating vectors. PIP measure is developed by Hyung Jun Ahn and implemented by Loc Nguyen.
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param fieldMeans map of field means.
+	 * @author Hyung Jun Ahn
+	 * @return PIP measure between two rating vectors.
+	 */
+	protected double pip(RatingVector vRating1, RatingVector vRating2, Map<Integer, Double> fieldMeans) {
+		FieldStatistics means = FieldStatistics.of(fieldMeans);
+		return simPrepared(vRating1, vRating2, (active, candidate) -> pip(active, candidate, means.getIndex(), means.getValues()));
+	}
+	
+	
+	/**
+	 * Calculating the PIP measure between two prepared vectors in one loop over co-rated fields. PIP measure is developed by Hyung Jun Ahn and implemented by Loc Nguyen.
+	 * Fields without mean are skipped.
+	 * @param active active vector, which is prepared by {@link PreparedVector#prepareActive()}.
+	 * @param candidate candidate vector.
+	 * @param fieldIndex dictionary of dense indices of fields.
+	 * @param fieldMeans dense array of field means indexed by the dictionary.
+	 * @author Hyung Jun Ahn
+	 * @return PIP measure between two prepared vectors.
+	 */
+	protected double pip(PreparedVector active, PreparedVector candidate, IdDictionary fieldIndex, double[] fieldMeans) {
+		double[] bins = this.tableBins, table = this.pipPairTable;
+		int common = 0;
+		double pip = 0.0;
+		for (int i = 0; i < candidate.size(); i++) {
+			int fieldId = candidate.fieldId(i);
+			double r1 = active.lookup(fieldId);
+			if (!Util.isUsed(r1)) continue;
+			common++;
+			double mean = fieldStat(fieldIndex, fieldMeans, fieldId);
+			if (!Util.isUsed(mean)) continue;
+			
+			pip += pipTerm(r1, candidate.value(i), mean, bins, table);
+		}
+		
+		return common == 0 ? Constants.UNUSED : pip;
+	}
+	
+	
+	/**
+	 * Calculating the term of PIP measure of one co-rated field, whose product of proximity and impact is read from pre-computed table if both ratings are value bins.
+	 * @param r1 first rating.
+	 * @param r2 second rating.
+	 * @param mean mean of the field.
+	 * @param bins sorted value bins of the table.
+	 * @param table table of products of proximity and impact for every pair of value bins.
+	 * @author Hyung Jun Ahn
+	 * @return term of PIP measure.
+	 */
+	protected double pipTerm(double r1, double r2, double mean, double[] bins, double[] table) {
+		int bin1 = Arrays.binarySearch(bins, r1), bin2 = Arrays.binarySearch(bins, r2);
+		double proImpact = bin1 >= 0 && bin2 >= 0 ? table[bin1 * bins.length + bin2] : pipProImpact(r1, r2);
+		
+		double pop = 1;
+		if ((r1 > mean && r2 > mean) || (r1 < mean && r2 < mean)) {
+			double bias = (r1+r2)/2 - mean;
+			pop = 1 + bias*bias;
+		}
+		return proImpact * pop;
+	}
+	
+	
+	/**
+	 * Calculating the product of proximity and impact of PIP measure, which depends only on the pair of ratings.
+	 * @param r1 first rating.
+	 * @param r2 second rating.
+	 * @author Hyung Jun Ahn
+	 * @return product of proximity and impact.
+	 */
+	protected double pipProImpact(double r1, double r2) {
+		boolean agreed = agree(r1, r2);
+		
+		double d = agreed ? Math.abs(r1-r2) : 2*Math.abs(r1-r2);
+		double pro = (2*(config.getMaxRating()-config.getMinRating())+1) - d;
+		pro = pro*pro;
+		
+		double impact = (Math.abs(r1-ratingMedian)+1) * (Math.abs(r2-ratingMedian)+1);
+		if (!agreed)
+			impact = 1 / impact;
+		
+		return pro * impact;
+	}
+	
+	
+	/**
+	 * Pre-computing tables of PSS and PIP terms which depend only on pairs of ratings, for every pair of value bins. This method is called at setup after value bins and rating median are set.
+	 * Ratings which are not value bins are calculated directly.
+	 */
+	protected void updatePairTables() {
+		double[] bins = new double[this.valueBins.size()];
+		for (int i = 0; i < bins.length; i++)
+			bins[i] = this.valueBins.get(i);
+		Arrays.sort(bins);
+		
+		double[] pssTable = new double[bins.length * bins.length];
+		double[] pipTable = new double[bins.length * bins.length];
+		for (int i = 0; i < bins.length; i++) {
+			for (int j = 0; j < bins.length; j++) {
+				pssTable[i * bins.length + j] = pssProSig(bins[i], bins[j]);
+				pipTable[i * bins.length + j] = pipProImpact(bins[i], bins[j]);
+			}
+		}
+		
+		this.tableBins = bins;
+		this.pssPairTable = pssTable;
+		this.pipPairTable = pipTable;
+	}
+
+	
+	/**
+	 * Checking whether two ratings are agreed.
+	 * @param rating1 first rating.
+	 * @param rating2 second rating.
+	 * @return true if two ratings are agreed.
+	 */
+	protected boolean agree(double rating1, double rating2) {
+		if ( (rating1 > this.ratingMedian && rating2 < this.ratingMedian) || (rating1 < this.ratingMedian && rating2 > this.ratingMedian) )
+			return false;
+		else
+			return true;
+	}
+	
+	
+	/**
+	 * Calculating the PC measure between two rating vectors. PC measure is developed by Keunho Choi and Yongmoo Suh. It implemented by Loc Nguyen.
+	 * The first pair includes the first rating vector and the first profile.
+	 * The second pair includes the second rating vector and the second profile.
+	 * 
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @param fixedColumnId fixed column identifier.
+	 * @author Hyung Jun Ahn.
+	 * @return PC measure between both two rating vectors and profiles.
+	 */
+	protected abstract double pc(RatingVector vRating1, RatingVector vRating2,
+			Profile profile1, Profile profile2, int fixedColumnId);
+	
+	
+	/**
+	 * Calculating the PC measure between two rating vectors. PC measure is developed by Keunho Choi and Yongmoo Suh. It implemented by Loc Nguyen.
+	 * @param vRating1 the first rating vectors.
+	 * @param vRating2 the second rating vectors.
+	 * @param fixedColumnId fixed field (column) identifier.
+	 * @param fieldMeans mean value of field ratings.
+	 * @author Keunho Choi, Yongmoo Suh
+	 * @return PC measure between two rating vectors.
+	 */
+	protected double pc(RatingVector vRating1, RatingVector vRating2, int fixedColumnId, Map<Integer, Double> fieldMeans) {
+		FieldStatistics means = FieldStatistics.of(fieldMeans);
+		boolean userBased = vRating1 instanceof UserRating;
+		return simPrepared(vRating1, vRating2, (active, candidate) -> pc(active, candidate, fixedColumnId, means.getIndex(), means.getValues(), userBased));
+	}
+	
+	
+	/**
+	 * Calculating the PC measure between two prepared vectors in one loop over co-rated fields. PC measure is developed by Keunho Choi and Yongmoo Suh. It implemented by Loc Nguyen.
+	 * Fields without mean are skipped.
+	 * @param active active vector, which is prepared by {@link PreparedVector#prepareActive()}.
+	 * @param candidate candidate vector.
+	 * @param fixedColumnId fixed field (column) identifier.
+	 * @param fieldIndex dictionary of dense indices of fields.
+	 * @param fieldMeans dense array of field means indexed by the dictionary.
+	 * @param userBased whether vectors are user rating vectors, whose fields are columns of rating snapshot.
+	 * @author Keunho Choi, Yongmoo Suh
+	 * @return PC measure between two prepared vectors.
+	 */
+	protected double pc(PreparedVector active, PreparedVector candidate, int fixedColumnId, IdDictionary fieldIndex, double[] fieldMeans, boolean userBased) {
+		RatingSnapshot snapshot = this.snapshot;
+		boolean sliced = snapshot != null && snapshot.hasColumns() && userBased;
+		int fixedColumn = sliced ? snapshot.columnOf(fixedColumnId) : -1;
+		double vx = 0, vy = 0;
+		double vxy = 0;
+		for (int i = 0; i < candidate.size(); i++) {
+			int fieldId = candidate.fieldId(i);
+			double value1 = active.lookup(fieldId);
+			if (!Util.isUsed(value1)) continue;
+			double mean = fieldStat(fieldIndex, fieldMeans, fieldId);
+			if (!Util.isUsed(mean)) continue;
+			double d1 = value1 - mean;
+			double d2 = candidate.value(i) - mean;
+			
+			Task columnSimTask = new Task() {
+				
+				@Override
+				public Object perform(Object...params) {
+					if (sliced) { //Columns are read from column-major layout of rating snapshot.
+						int column = snapshot.columnOf(fieldId);
+						return fixedColumn < 0 || column < 0 ? Constants.UNUSED : columnCorr(snapshot, fixedColumn, column);
+					}
+					
+					RatingVector fixedColumnVector = getColumnRating(fixedColumnId);
+					RatingVector columnVector = getColumnRating(fieldId);
+					
+					if (fixedColumnVector == null || columnVector == null)
+						return Constants.UNUSED;
+					else
+						return fixedColumnVector.corr(columnVector);
+				}
+			};
+			double columnSim = (double)cacheTask(fixedColumnId, fieldId, this.columnSimCache, columnSimTask);
+			columnSim = columnSim * columnSim;
+			
+			vx  += d1 * d1 * columnSim;
+			vy  += d2 * d2 * columnSim;
+			vxy += d1 * d2 * columnSim;
+		}
+		
+		if (vx == 0 || vy == 0)
+			return Constants.UNUSED;
+		else
+			return vxy / Math.sqrt(vx * vy);
+	}
+
+	
+	/**
+	 * Calculating the Mean Measure of Divergence (MMD) measure between two pairs.
+	 * Suryakant and Tripti Mahara proposed use of MMD for collaborative filtering. Loc Nguyen implements it.
+	 * The first pair includes the first rating vector and the first profile.
+	 * The second pair includes the second rating vector and the second profile.
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @author Suryakant, Tripti Mahara
+	 * @return MMD measure between both two rating vectors and profiles.
+	 */
+	protected double mmd(RatingVector vRating1, RatingVector vRating2,
+			Profile profile1, Profile profile2) {
+		Set<Integer> ids1 = vRating1.fieldIds(true);
+		Set<Integer> ids2 = vRating2.fieldIds(true);
+		int N1 = ids1.size();
+		int N2 = ids2.size();
+		if (N1 == 0 || N2 == 0) return Constants.UNUSED;
+		
+		List<Double> bins = valueBins;
+		if (bins.isEmpty())
+			bins = extractValueBins(vRating1, vRating2);
+		double sum = 0;
+		for (double bin : bins) {
+			int n1 = 0, n2 = 0;
+			for (int id1 : ids1) {
+				if (vRating1.get(id1).value == bin)
+					n1++;
+			}
+			for (int id2 : ids2) {
+				if (vRating2.get(id2).value == bin)
+					n2++;
+			}
+			
+			double thetaBias = mmdTheta(n1, N1) - mmdTheta(n2, N2);
+			sum += thetaBias*thetaBias - 1/(0.5+n1) - 1/(0.5+n2); 
+		}
+		
+		return 1 / (1 + sum/bins.size());
+	}
+	
+	
+	/**
+	 * Calculating the Mean Measure of Divergence (MMD) measure between two prepared vectors over specified value bins, without allocation.
+	 * Suryakant and Tripti Mahara proposed use of MMD for collaborative filtering. Loc Nguyen implements it.
+	 * @param active active vector.
+	 * @param candidate candidate vector.
+	 * @param bins value bins.
+	 * @author Suryakant, Tripti Mahara
+	 * @return MMD measure between two prepared vectors.
+	 */
+	protected double mmd(PreparedVector active, PreparedVector candidate, double[] bins) {
+		int N1 = active.size();
+		int N2 = candidate.size();
+		if (N1 == 0 || N2 == 0) return Constants.UNUSED;
+		
+		double sum = 0;
+		for (double bin : bins) {
+			int n1 = binCount(active, bin), n2 = binCount(candidate, bin);
+			double thetaBias = mmdTheta(n1, N1) - mmdTheta(n2, N2);
+			sum += thetaBias*thetaBias - 1/(0.5+n1) - 1/(0.5+n2); 
+		}
+		
+		return 1 / (1 + sum/bins.length);
+	}
+	
+	
+	/**
+	 * Theta transformation of Mean Measure of Divergence (MMD) measure.
+	 * The default implementation is Grewal transformation.
+	 * @param n number of observations having a trait.
+	 * @param N number of observations
+	 * @return Theta transformation of Mean Measure of Devergence (MMD) measure.
+	 */
+	protected double mmdTheta(int n, int N) {
+		return 1 / Math.sin(1-2*(n/N));
+	}
+
+	
+	/**
+	 * Calculating the Feng measure between two pairs.
+	 * Junmei Feng, Xiaoyi Fengs, Ning Zhang, and Jinye Peng developed the Triangle measure. Loc Nguyen implements it.
+	 * The first pair includes the first rating vector and the first profile.
+	 * The second pair includes the second rating vector and the second profile.
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @author Junmei Feng, Xiaoyi Fengs, Ning Zhang, Jinye Peng
+	 * @return Feng measure between both two rating vectors and profiles.
+	 */
+	protected double feng(RatingVector vRating1, RatingVector vRating2,
+			Profile profile1, Profile profile2) {
+		
+		double s1 = coj(vRating1, vRating2, profile1, profile2);
+
+		int[] counts = overlapCounts(vRating1, vRating2);
+		double s2 = 1 / ( 1 + Math.exp(-counts[2]*counts[2]/(counts[0]*counts[1])) );
+		
+		double s3 = urp(vRating1, vRating2, profile1, profile2);
+		
+		return s1 * s2 * s3;
+	}
+	
+	
+	/**
+	 * Calculating the Mu measure between two pairs.
+	 * Yi Mua, Nianhao Xiao, Ruichun Tang, Liang Luo, and Xiaohan Yin developed Mu measure. Loc Nguyen implements it.
+	 * The first pair includes the first rating vector and the first profile.
+	 * The second pair includes the second rating vector and the second profile.
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @author Yi Mua, Nianhao Xiao, Ruichun Tang, Liang Luo, Xiaohan Yin
+	 * @return Mu measure between both two rating vectors and profiles.
+	 */
+	@NextUpdate
+	protected double mu(RatingVector vRating1, RatingVector vRating2,
+			Profile profile1, Profile profile2) {
+		double alpha = config.getAsReal(MU_ALPHA_FIELD);
+		double pearson = corr(vRating1, vRating2, profile1, profile2);
+		double hg = 1 - bc(vRating1, vRating2, profile1, profile2);
+//		double hg = bc(vRating1, vRating2, profile1, profile2);
+		double jaccard = jaccard(vRating1, vRating2, profile1, profile2);
+		
+		return alpha*pearson + (1-alpha)*(hg+jaccard);
+	}
+	
+	
+	/**
+	 * Calculating the SMTP measure between two pairs. SMTP is developed by Yung-Shen Lin, Jung-Yi Jiang, Shie-Jue Lee, and implemented by Loc Nguyen.
+	 * The first pair includes the first rating vector and the first profile.
+	 * The second pair includes the second rating vector and the second profile.
+	 * 
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @author Yung-Shen Lin, Jung-Yi Jiang, Shie-Jue Lee.
+	 * @return SMTP measure between both two rating vectors.
+	 */
+	protected double smtp(
+			RatingVector vRating1, RatingVector vRating2,
+			Profile profile1, Profile profile2) {
+		
+		FieldStatistics itemVars = FieldStatistics.of(this.itemVars); //Dictionary and variances are read together from one view.
+		ScratchPool.Scratch scratch = this.scratchPool.borrow();
+		try {
+			PreparedVector active = prepare(vRating1, scratch.active).prepareActive();
+			PreparedVector candidate = prepare(vRating2, scratch.candidate);
+			return smtp(active, candidate, itemVars.getIndex(), this.smtpGeneralVar ? null : itemVars.getValues(), this.ratingVar, this.smtpLamda);
+		}
+		finally {
+			this.scratchPool.release(scratch);
+		}
+	}
+	
+	
+	/**
+	 * Calculating the SMTP measure between two prepared vectors in one fused loop over co-rated items without heap allocation. SMTP measure is developed by Yung-Shen Lin, Jung-Yi Jiang, Shie-Jue Lee, and implemented by Loc Nguyen.
+	 * For each co-rated item of the item index, the contribution is 0.5 * (1 + exp(-(r1 - r2)^2 / var)) if both ratings are non-zero, -lamda if only one rating is zero,
+	 * and nothing if both ratings are zero. The measure is (F + lamda) / (1 + lamda) where F is the sum of contributions divided by the number of contributing items.
+	 * @param active active vector which was prepared by {@link PreparedVector#prepareActive()}.
+	 * @param candidate candidate vector.
+	 * @param itemIndex dictionary of item identifiers. Items which are not in the dictionary are ignored.
+	 * @param itemVars dense array of item variances aligned with the item index. If it is null, the general variance is used for all items.
+	 * @param generalVar general variance of ratings.
+	 * @param lamda lamda parameter of SMTP measure.
+	 * @author Yung-Shen Lin, Jung-Yi Jiang, Shie-Jue Lee
+	 * @return SMTP measure between both two prepared vectors.
+	 */
+	protected static double smtp(PreparedVector active, PreparedVector candidate, IdDictionary itemIndex, double[] itemVars, double generalVar, double lamda) {
+		double sum = 0;
+		int count = 0, common = 0;
+		for (int i = 0; i < candidate.size(); i++) {
+			int fieldId = candidate.fieldId(i);
+			double value1 = active.lookup(fieldId);
+			if (!Util.isUsed(value1)) continue;
+			int index = itemIndex.indexOf(fieldId);
+			if (index < 0) continue;
+			
+			common++;
+			double value2 = candidate.value(i);
+			if (value1 != 0 && value2 != 0) {
+				double var = itemVars != null ? itemVars[index] : generalVar;
+				double d = value1 - value2;
+				sum += 0.5 * (1.0 + (var > 0 ? Math.exp(-d * d / var) : (d == 0 ? 1.0 : 0.0)));
+				count++;
+			}
+			else if (value1 != 0 || value2 != 0) {
+				sum -= lamda;
+				count++;
+			}
+		}
+		if (common == 0) return Constants.UNUSED;
+		
+		double F = count > 0 ? sum / count : 0;
+		return (F + lamda) / (1.0 + lamda);
+	}
+	
+	
+	/**
+	 * Calculating the Amer measure between two pairs. Amer measure is developed by Ali Amer, and implemented by Loc Nguyen.
+	 * The first pair includes the first rating vector and the first profile.
+	 * The second pair includes the second rating vector and the second profile.
+	 * The measure is calculated from the numbers of rated items of both vectors, their number of common rated items, and the size of the catalog of items
+	 * extended by rated items which are not in the catalog, so that the catalog is neither iterated nor modified.
+	 * 
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @param itemIds set of all item identifiers, which is not modified. It can be null.
+	 * @author Ali Amer.
+	 * @return Amer measure between both two rating vectors and profiles.
+	 */
+	protected double amer(
+			RatingVector vRating1, RatingVector vRating2,
+			Profile profile1, Profile profile2, Set<Integer> itemIds) {
+		OverlapMatrix overlaps = this.overlapMatrix;
+		if (overlaps != null && vRating1 instanceof UserRating && vRating2 instanceof UserRating && itemIds == this.itemIds && overlaps.getColumnIndex() == this.itemIndex) {
+			int[] counts = overlaps.counts(vRating1.id(), vRating2.id());
+			if (counts != null) return amer(counts[0], counts[1], counts[2], itemIds.size()); //All items of rows of the matrix are in the catalog.
+		}
+		
+		Set<Integer> ids1 = vRating1.fieldIds(true);
+		Set<Integer> ids2 = vRating2.fieldIds(true);
+		int Nab = 0, outside = 0;
+		for (int itemId : ids1) {
+			if (ids2.contains(itemId)) Nab++;
+			if (itemIds == null || !itemIds.contains(itemId)) outside++;
+		}
+		for (int itemId : ids2) {
+			if (!ids1.contains(itemId) && (itemIds == null || !itemIds.contains(itemId))) outside++;
+		}
+		
+		return amer(ids1.size(), ids2.size(), Nab, (itemIds != null ? itemIds.size() : 0) + outside);
+	}
+	
+	
+	/**
+	 * Calculating the Amer measure from cardinalities. Amer measure is developed by Ali Amer, and implemented by Loc Nguyen.
+	 * The number of items which are rated by only one vector is F = Na + Nb - 2*Nab.
+	 * @param Na number of items rated by the first vector.
+	 * @param Nb number of items rated by the second vector.
+	 * @param Nab number of items rated by both vectors.
+	 * @param N number of all items, which includes items rated by both vectors.
+	 * @author Ali Amer.
+	 * @return Amer measure.
+	 */
+	public static double amer(int Na, int Nb, int Nab, int N) {
+		if (N == 0) return Constants.UNUSED;
+		
+		int F = Na + Nb - 2*Nab;
+		return ((1.0 - F/N) + (2.0*Nab / (Na + Nb))) / 2.0;
+	}
+	
+	
+	/**
+	 * Calculating the Amer2 measure between two pairs. Amer2 measure is developed by Ali Amer, and implemented by Loc Nguyen.
+	 * Amer2 measure is only applied into positive ratings.
+	 * The first pair includes the first rating vector and the first profile.
+	 * The second pair includes the second rating vector and the second profile.
+	 * 
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @author Ali Amer.
+	 * @return Amer2 measure between both two rating vectors and profiles.
+	 */
+	protected double amer2(
+			RatingVector vRating1, RatingVector vRating2,
+			Profile profile1, Profile profile2) {
+		Set<Integer> itemIds = unionFieldIds(vRating1, vRating2);
+		if (itemIds.size() == 0) return Constants.UNUSED;
+		
+		double X = 0, Y = 0, U = 0, V = 0;
+		for (int itemId : itemIds) {
+			boolean rated1 = vRating1.isRated(itemId);
+			boolean rated2 = vRating2.isRated(itemId);
+			
+			if (rated1) {
+				double value = vRating1.get(itemId).value;
+				U += value;
+				if (!rated2) X += value;
+			}
+			if (rated2) {
+				double value = vRating2.get(itemId).value;
+				V += value;
+				if (!rated1) Y += value;
+			}
+		}
+		
+		double F = X * Y;
+		double N = U * V;
+		return 1.0 - (F + 1.0) / N;
+	}
+
+	
+	/**
+	 * Calculating the Amer2 + Jaccard measure between two pairs. Amer2 measure is developed by Ali Amer, and implemented by Loc Nguyen.
+	 * Amer2 + Jaccard measure is only applied into positive ratings.
+	 * The first pair includes the first rating vector and the first profile.
+	 * The second pair includes the second rating vector and the second profile.
+	 * 
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @author Ali Amer.
+	 * @return Amer2 + Jaccard measure between both two rating vectors and profiles.
+	 */
+	protected double amer2j(
+			RatingVector vRating1, RatingVector vRating2,
+			Profile profile1, Profile profile2) {
+		return amer2(vRating1, vRating2, profile1, profile2) * jaccard(vRating1, vRating2, profile1, profile2);
+	}
+	
+	
+	/**
+	 * Calculating the quasi-TfIdf measure between two pairs. Quasi-TfIdf measure is developed by Ali Amer and Loc Nguyen.
+	 * Quasi-TfIdf measure is an extension of Amer2 measure and the ideology of TF and IDF.
+	 * Quasi-TfIdf measure is only applied into positive ratings.
+	 * The first pair includes the first rating vector and the first profile.
+	 * The second pair includes the second rating vector and the second profile.
+	 * 
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @author Ali Amer, Loc Nguyen.
+	 * @return Quasi-TfIdf measure between both two rating vectors.
+	 */
+	protected double quasiTfIdf(
+			RatingVector vRating1, RatingVector vRating2,
+			Profile profile1, Profile profile2) {
+		Set<Integer> itemIds = unionFieldIds(vRating1, vRating2);
+		if (itemIds.size() == 0) return Constants.UNUSED;
+		
+		double X1 = 0, Y1 = 0, X2 = 0, Y2 = 0, U = 0, V = 0;
+		for (int itemId : itemIds) {
+			boolean rated1 = vRating1.isRated(itemId);
+			boolean rated2 = vRating2.isRated(itemId);
+			
+			if (rated1) {
+				double value1 = vRating1.get(itemId).value;
+				U += value1;
+				if (rated2)
+					X1 += value1;
+				else if (!rated2)
+					X2 += value1;
+			}
+			
+			if (rated2) {
+				double value2 = vRating2.get(itemId).value;
+				V += value2;
+				if (rated1)
+					Y1 += value2;
+				else if (!rated1)
+					Y2 += value2;
+			}
+		}
+		
+		double N = U * V;
+		return ((X1*Y1)/N) * (1.0 - (X2*Y2)/N);
+	}
+
+	
+	/**
+	 * Calculating the quasi-TfIdf + Jaccard measure between two pairs. Quasi-TfIdf measure is developed by Ali Amer and Loc Nguyen.
+	 * Quasi-TfIdf + Jaccard measure is an extension of Amer2 measure and the ideology of TF and IDF.
+	 * Quasi-TfIdf + Jaccard measure is only applied into positive ratings.
+	 * The first pair includes the first rating vector and the first profile.
+	 * The second pair includes the second rating vector and the second profile.
+	 * 
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @author Ali Amer, Loc Nguyen.
+	 * @return Quasi-TfIdf + Jaccard measure between both two rating vectors.
+	 */
+	protected double quasiTfIdfJaccard(
+			RatingVector vRating1, RatingVector vRating2,
+			Profile profile1, Profile profile2) {
+		Set<Integer> itemIds = unionFieldIds(vRating1, vRating2);
+		if (itemIds.size() == 0) return Constants.UNUSED;
+		
+		double X1 = 0, Y1 = 0, X2 = 0, Y2 = 0, U = 0, V = 0;
+		int commonCount = 0;
+		for (int itemId : itemIds) {
+			boolean rated1 = vRating1.isRated(itemId);
+			boolean rated2 = vRating2.isRated(itemId);
+			
+			if (rated1) {
+				double value1 = vRating1.get(itemId).value;
+				U += value1;
+				if (rated2) {
+					X1 += value1;
+					commonCount ++;
+				}
+				else if (!rated2)
+					X2 += value1;
+			}
+			
+			if (rated2) {
+				double value2 = vRating2.get(itemId).value;
+				V += value2;
+				if (rated1)
+					Y1 += value2;
+				else if (!rated1)
+					Y2 += value2;
+			}
+		}
+		
+		double N = U * V;
+		double jac = (double)commonCount / (double)itemIds.size();
+		return ((X1*Y1)*jac/N) * (1.0 - (X2*Y2)*(1.0-jac)/N);
+	}
+
+	
+	/**
+	 * Calculating the TA (triangle area) measure between two pairs. TA is developed by Loc Nguyen.
+	 * The first pair includes the first rating vector and the first profile.
+	 * The second pair includes the second rating vector and the second profile.
+	 * The current version does not support positive cosine. The next version will fix it.
+	 * 
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @author Loc Nguyen.
+	 * @return TA measure between both two rating vectors and profiles.
+	 */
+	protected double triangleArea(RatingVector vRating1, RatingVector vRating2,
+			Profile profile1, Profile profile2) {
+		double center = getConfig().getAsBoolean(TA_NORMALIZED_FIELD) ? this.ratingMedian : 0; //Normalized mode centers ratings at median.
+		return simPrepared(vRating1, vRating2, (active, candidate) -> triangleArea(active, candidate, center, false));
+	}
+	
+	
+	/**
+	 * Calculating the TA (triangle area) measure between two prepared vectors in one loop over co-rated fields, optionally multiplied by Jaccard measure from the same co-rated count.
+	 * @param active active vector, which is prepared by {@link PreparedVector#prepareActive()}.
+	 * @param candidate candidate vector.
+	 * @param center value which is subtracted from ratings, rating median in normalized mode and 0 otherwise.
+	 * @param withJaccard whether TA is multiplied by Jaccard measure.
+	 * @return TA measure between two prepared vectors.
+	 */
+	protected static double triangleArea(PreparedVector active, PreparedVector candidate, double center, boolean withJaccard) {
+		int common = 0;
+		double aa = 0, bb = 0, p = 0;
+		for (int i = 0; i < candidate.size(); i++) {
+			double value1 = active.lookup(candidate.fieldId(i));
+			if (!Util.isUsed(value1)) continue;
+			
+			common++;
+			double x = value1 - center, y = candidate.value(i) - center;
+			aa += x*x;
+			bb += y*y;
+			p += x*y;
+		}
+		
+		double ta = triangleArea(common, Math.sqrt(aa), Math.sqrt(bb), p);
+		return withJaccard ? ta * jaccard(active, candidate, common) : ta;
+	}
+	
+	
+	/**
+	 * Calculating the TA (triangle area) measure from lengths and dot product of two co-rated vectors.
+	 * @param common number of co-rated fields.
+	 * @param a length of the first co-rated vector.
+	 * @param b length of the second co-rated vector.
+	 * @param p dot product of two co-rated vectors.
+	 * @return TA measure from lengths and dot product of two co-rated vectors.
+	 */
+	private static double triangleArea(int common, double a, double b, double p) {
+		if (common == 0 || a == 0 || b == 0) return Constants.UNUSED;
+		
+		if (p >= 0) {
+			if (a < b)
+				return p*p / (a*b*b*b);
+			else
+				return p*p / (a*a*a*b);
+		}
+		else {
+			if (a < b)
+				return p / (b*b);
+			else
+				return p / (a*a);
+		}
+	}
+
+	
+	/**
+	 * Calculating the TAJ (triangle area + Jaccard) measure between two pairs. TAJ is developed by Loc Nguyen.
+	 * The first pair includes the first rating vector and the first profile.
+	 * The second pair includes the second rating vector and the second profile.
+	 * The current version does not support positive cosine. The next version will fix it.
+	 * 
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @author Loc Nguyen
+	 * @return TAJ measure between both two rating vectors and profiles.
+	 */
+	protected double triangleAreaJaccard(RatingVector vRating1, RatingVector vRating2,
+			Profile profile1, Profile profile2) {
+		return triangleArea(vRating1, vRating2, profile1, profile2) * jaccard(vRating1, vRating2, profile1, profile2);
+	}
+
+	
+	/**
+	 * Calculating the circle dot product of two rating vectors given two sets of field identifiers.
+	 * @param vRating1 rating vector 1.
+	 * @param vRating2 rating vector 1.
+	 * @param fieldIds1 set 1 of field identifiers.
+	 * @param fieldIds2 set 1 of field identifiers.
+	 * @return circle dot product of two rating vectors given two sets of field identifiers.
+	 */
+	private double circleDotProduct0(RatingVector vRating1, RatingVector vRating2, Set<Integer> fieldIds1, Set<Integer> fieldIds2) {
+		double product = 0;
+		for (int fieldId1 : fieldIds1) {
+			double value1 = vRating1.get(fieldId1).value;
+			
+			for (int fieldId2 : fieldIds2) {
+				double value2 = vRating2.get(fieldId2).value;
+				product += value1 * value2;
+			}
+		}
+		
+		return product;
+	}
+	
+	
+	/**
+	 * Calculating the circle dot product of two rating vectors given two sets of field identifiers.
+	 * @param vRating1 rating vector 1.
+	 * @param vRating2 rating vector 1.
+	 * @param fieldIds1 set 1 of field identifiers.
+	 * @param fieldIds2 set 1 of field identifiers.
+	 * @return circle dot product of two rating vectors given two sets of field identifiers.
+	 */
+	protected double circleDotProduct(RatingVector vRating1, RatingVector vRating2, Set<Integer> fieldIds1, Set<Integer> fieldIds2) {
+		double product = 0;
+		for (int fieldId1 : fieldIds1) {
+			if (!vRating1.isRated(fieldId1)) continue;
+			
+			double value1 = vRating1.get(fieldId1).value;
+			for (int fieldId2 : fieldIds2) {
+				if (!vRating2.isRated(fieldId2)) continue;
+
+				double value2 = vRating2.get(fieldId2).value;
+				product += value1 * value2;
+			}
+		}
+		
+		return product;
+	}
+
+	
+	/**
+	 * Calculating the circle dot product of two rating vectors.
+	 * @param vRating1 rating vector 1.
+	 * @param vRating2 rating vector 1.
+	 * @return circle dot product of two rating vectors.
+	 */
+	protected double circleDotProduct(RatingVector vRating1, RatingVector vRating2) {
+		return circleDotProduct0(vRating1, vRating2,
+				vRating1.fieldIds(true), vRating2.fieldIds(true));
+	}
+
+	
+	/**
+	 * Calculating the circle dot length of specified rating vector given field identifiers.
+	 * @param vRating specified rating vector.
+	 * @param fieldIds given field identifiers.
+	 * @return circle dot length of specified rating vector given field identifiers.
+	 */
+	private double circleLength0(RatingVector vRating, Set<Integer> fieldIds) {
+		double length = 0;
+		for (int fieldId : fieldIds) {
+			double value = vRating.get(fieldId).value;
+			length += value*value;
+		}
+		
+		return Math.sqrt(length);
+	}
+
+	
+	/**
+	 * Calculating the circle length of specified rating vector given field identifiers.
+	 * @param vRating specified rating vector.
+	 * @param fieldIds given field identifiers.
+	 * @return circle length of specified rating vector given field identifiers.
+	 */
+	protected double circleLength(RatingVector vRating, Set<Integer> fieldIds) {
+		double length = 0;
+		for (int fieldId : fieldIds) {
+			if (!vRating.isRated(fieldId)) continue;
+			
+			double value = vRating.get(fieldId).value;
+			length += value*value;
+		}
+		
+		return Math.sqrt(length);
+	}
+
+	
+	/**
+	 * Calculating the circle length of specified rating vector.
+	 * @param vRating specified rating vector.
+	 * @return circle length of specified rating vector.
+	 */
+	protected double circleLength(RatingVector vRating) {
+		return circleLength0(vRating, vRating.fieldIds(true));
+	}
+
+	
+	/**
+	 * Calculating the coco measure of two rating vectors given two sets of field identifiers.
+	 * @param vRating1 rating vector 1.
+	 * @param vRating2 rating vector 1.
+	 * @param fieldIds1 set 1 of field identifiers.
+	 * @param fieldIds2 set 1 of field identifiers.
+	 * @return coco measure of two rating vectors given two sets of field identifiers.
+	 */
+	protected double coco(RatingVector vRating1, RatingVector vRating2, Set<Integer> fieldIds1, Set<Integer> fieldIds2) {
+		return circleDotProduct(vRating1, vRating2, fieldIds1, fieldIds2) /
+				(circleLength(vRating1, fieldIds1)*circleLength(vRating2, fieldIds2));
+	}
+
+	
+	/**
+	 * Calculating the Coco measure between two pairs. Coco is developed by Loc Nguyen.
+	 * The first pair includes the first rating vector and the first profile.
+	 * The second pair includes the second rating vector and the second profile.
+	 * 
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @author Loc Nguyen
+	 * @return Coco measure between both two rating vectors and profiles.
+	 */
+	protected double coco(RatingVector vRating1, RatingVector vRating2,
+			Profile profile1, Profile profile2) {
+		Set<Integer> fieldIds1 = vRating1.fieldIds(true);
+		double length1 = 0;
+		for (int fieldId1 : fieldIds1) {
+			double value1 = vRating1.get(fieldId1).value;
+			length1 += value1*value1;
+		}
+		
+		Set<Integer> fieldIds2 = vRating2.fieldIds(true);
+		double length2 = 0;
+		for (int fieldId2 : fieldIds2) {
+			double value2 = vRating2.get(fieldId2).value;
+			length2 += value2*value2;
+		}
+		
+		return (vRating1.sum()*vRating2.sum()) / Math.sqrt(length1*length2);
+	}
+
+	
+	/**
+	 * Calculating the numerical nearby similarity measure (MMNS) between two pairs. MMNS is developed by Ali Amer.
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param profile1 first profile.
+	 * @param profile2 second profile.
+	 * @author Ali Amer
+	 * @return numerical nearby similarity measure (MMNS) between both two rating vectors and profiles.
+	 */
+	protected double mmns(
+			RatingVector vRating1, RatingVector vRating2,
+			Profile profile1, Profile profile2) {
+		return simPrepared(vRating1, vRating2, (active, candidate) -> mmns(active, candidate));
+	}
+	
+	
+	/**
+	 * Calculating the numerical nearby similarity measure (MMNS) between two prepared vectors in one loop over co-rated fields. MMNS is developed by Ali Amer.
+	 * @param active active vector, which is prepared by {@link PreparedVector#prepareActive()}.
+	 * @param candidate candidate vector.
+	 * @author Ali Amer
+	 * @return numerical nearby similarity measure (MMNS) between two prepared vectors.
+	 */
+	protected static double mmns(PreparedVector active, PreparedVector candidate) {
+		int n = 0;
+		double product = 0;
+		for (int i = 0; i < candidate.size(); i++) {
+			double value1 = active.lookup(candidate.fieldId(i));
+			if (!Util.isUsed(value1)) continue;
+			
+			n++;
+			product += value1 * candidate.value(i);
+		}
+		
+		return (n*product) / (active.size()*active.sum() + candidate.size()*candidate.sum());
+	}
+	
+	
+	/**
+	 * Getting rating vector given column ID (item ID or user ID) for BCF measure.
+	 * @param columnId specified column ID (item ID or user ID).
+	 * @return rating vector given column ID (item ID or user ID).
+	 */
+	protected abstract RatingVector getColumnRating(int columnId);
+
+	
+	/**
+	 * Checking whether specified measure reads column rating vectors, for which column-major layout of rating snapshot is built at setup.
+	 * @param measure specified measure.
+	 * @return whether specified measure reads column rating vectors.
+	 */
+	protected boolean isColumnMeasure(String measure) {
+		if (measure == null) return false;
+		if (measure.equals(BCF) || measure.equals(PC)) return true;
+		
+		MeasureExpression composite = getCompositeMeasures().get(measure);
+		if (composite == null) return false;
+		for (String identifier : composite.getIdentifiers()) {
+			if (compositeParameter(identifier) == null && isColumnMeasure(identifier)) return true;
+		}
+		return false;
+	}
+
+	
+//	/**
+//	 * Calculating the ITA (inverse triangle area) measure between two pairs. ITA is developed by Loc Nguyen.
+//	 * The first pair includes the first rating vector and the first profile.
+//	 * The second pair includes the second rating vector and the second profile.
+//	 * 
+//	 * @param vRating1 first rating vector.
+//	 * @param vRating2 second rating vector.
+//	 * @param profile1 first profile.
+//	 * @param profile2 second profile.
+//	 * @author Loc Nguyen.
+//	 * @return ITA measure between both two rating vectors and profiles.
+//	 */
+//	@Deprecated
+//	protected double inverseTriangleArea(RatingVector vRating1, RatingVector vRating2,
+//			Profile profile1, Profile profile2) {
+//		
+//		Set<Integer> common = commonFieldIds(vRating1, vRating2);
+//		if (common.size() == 0) return Constants.UNUSED;
+//		
+//		Vector2 v1 = new Vector2(common.size(), 0);
+//		Vector2 v2 = new Vector2(common.size(), 0);
+//		for (int id : common) {
+//			v1.add(vRating1.get(id).value / 5.0); //Fix here
+//			v2.add(vRating2.get(id).value / 5.0); //Fix here
+//		}
+//
+//		double cos = v1.cosine(v2);
+//		double sin = Math.sqrt(1 - cos*cos); //Fix here
+//		return 1 - v1.module() * v2.module() * sin;
+//		
+////		double cos2 = Math.abs(cos);
+////		double c = a > b ? b/a : a/b;
+////		double sin = Math.sqrt(1 - cos2*cos2);
+////		double area = Math.abs(cos2 - c) * sin;
+////		return (1 - area) * cos;
+//		
+////		double c = a > b ? b/a : a/b;
+////		double area = Math.abs(cos2 - c);
+////		if (area < 0) {
+////			int i = 0;
+////			i = 1;
+////		}
+////		return (1 - area) * cos;
+//		
+////		double c = a > b ? b/a : a/b;
+////		return c*cos*cos;
+//		
+////		double acos = a*cos;
+////		double bcos = b*cos;
+////		if (acos == b || bcos == a)
+////			return cos;
+////		else if (acos < b)
+////			return (acos/b)*cos;
+////		else
+////			return (bcos/a)*cos;
+//		
+////		if (taMode == TAMODE_MINPROJECT) {
+////			double acos = a*cos;
+////			double bcos = b*cos;
+////			if (acos <= b && bcos <= a) {
+////				double acoeff = acos/b;
+////				double bcoeff = bcos/a;
+////				if (acoeff < bcoeff)
+////					coeff = acoeff;
+////				else
+////					coeff = bcoeff; 
+////			}
+////			else if (acos < b)
+////				coeff = acos/b;
+////			else
+////				coeff = bcos/a;
+////		}
+////		else if (taMode == TAMODE_MAXPROJECT) {
+////			double acos = a*cos;
+////			double bcos = b*cos;
+////			if (acos == b || bcos == a)
+////				coeff = 1;
+////			else if (acos < b && bcos < a) {
+////				double acoeff = acos/b;
+////				double bcoeff = bcos/a;
+////				if (acoeff < bcoeff)
+////					coeff = bcoeff;
+////				else
+////					coeff = acoeff; 
+////			}
+////			else if (acos < b)
+////				coeff = acos/b;
+////			else
+////				coeff = bcos/a;
+////		}
+////		else if (taMode == TAMODE_EQUALRADIUS) {
+////			coeff = a < b ? a / b : b / a;
+////		}
+//	}
+	
+
+	/**
+	 * Converting value bins into rank bins.
+	 * @param valueBins value bins
+	 * @return rank bins.
+	 */
+	protected static Map<Double, Integer> convertValueBinsToRankBins(List<Double> valueBins) {
+		if (valueBins == null || valueBins.size() == 0)
+			return Util.newMap();
+		
+		Collections.sort(valueBins);
+		Map<Double, Integer> rankBins = Util.newMap();
+		int n = valueBins.size();
+		for (int i = 0; i < n; i++) {
+			rankBins.put(valueBins.get(i), n-i);
+		}
+		
+		return rankBins;
+	}
+	
+	
+	/**
+	 * Extracting value bins from two specified rating vectors.
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @return Extracted value bins from two specified rating vectors.
+	 */
+	protected static List<Double> extractValueBins(RatingVector vRating1, RatingVector vRating2) {
+		Set<Double> values = Util.newSet();
+		
+		Set<Integer> ids1 = vRating1.fieldIds(true);
+		for (int id1 : ids1) {
+			double value1 = vRating1.get(id1).value;
+			values.add(value1);
+		}
+		
+		Set<Integer> ids2 = vRating2.fieldIds(true);
+		for (int id2 : ids2) {
+			double value2 = vRating2.get(id2).value;
+			values.add(value2);
+		}
+		
+		List<Double> bins = DSUtil.toDoubleList(values);
+		Collections.sort(bins);
+		return bins;
+	}
+	
+	
+	/**
+	 * Extracting rank bins from two specified rating vectors.
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @return Extracted rank bins from two specified rating vectors.
+	 */
+	protected static Map<Double, Integer> extractRankBins(RatingVector vRating1, RatingVector vRating2) {
+		List<Double> valueBins = extractValueBins(vRating1, vRating2);
+		return convertValueBinsToRankBins(valueBins);
+	}
+	
+	
+	/**
+	 * Extracting value bins from configuration.
+	 * @return extracted value bins from configuration.
+	 */
+	protected List<Double> extractConfigValueBins() {
+		if (!getConfig().containsKey(VALUE_BINS_FIELD))
+			return Util.newList();
+		
+		return TextParserUtil.parseListByClass(
+				getConfig().getAsString(VALUE_BINS_FIELD),
+				Double.class,
+				",");
+	}
+	
+	
+	/**
+	 * Extracting rank bins from configuration.
+	 * @return extracted SRC rank bins from configuration.
+	 */
+	protected Map<Double, Integer> extractConfigRankBins() {
+		List<Double> valueBins = extractConfigValueBins();
+		return convertValueBinsToRankBins(valueBins);
+	}
+
+	
+//	/**
+//	 * Computing similarity matrix.
+//	 * @param cf referred neighbor collaborative filtering.
+//	 * @param vFetcher fetcher of ratings.
+//	 * @return similarity matrix.
+//	 */
+//	protected static Map<Integer, Map<Integer, Double>> computeSimMatrix(NeighborCF cf, Fetcher<RatingVector> vFetcher) {
+//		if (vFetcher == null) return Util.newMap();
+//		int size = -1;
+//		try {
+//			size = vFetcher.getMetadata().getSize();
+//		}
+//		catch (Throwable e) {
+//			e.printStackTrace();
+//			size = -1;
+//		}
+//		List<RatingVector> vRatings = size <= 0 ? Util.newList() : Util.newList(size);
+//		FetcherUtil.fillCollection(vRatings, vFetcher, false);
+//		try {
+//			vFetcher.reset();
+//		}
+//		catch (Exception e) {
+//			// TODO Auto-generated catch block
+//			e.printStackTrace();
+//		}
+//		if (vRatings.size() < 2) return Util.newMap();
+//		
+//		int n = vRatings.size();
+//		Map<Integer, Map<Integer, Double>> simMatrix = Util.newMap(n);
+//		for (int i = 0; i < n; i++) {
+//			RatingVector v1 = vRatings.get(i);
+//			if (v1 == null || v1.size() == 0) continue;
+//			
+//			for (int j = i; j < n; j++) {
+//				RatingVector v2 = vRatings.get(j);
+//				if (v2 == null || v2.size() == 0) continue;
+//				
+//				double sim = cf.similar(v1, v2, null, null);
+//				if (!Util.isUsed(sim)) continue;
+//				
+//				if (simMatrix.containsKey(v1.id()))
+//					simMatrix.get(v1.id()).put(v2.id(), sim);
+//				else {
+//					Map<Integer, Double> map = Util.newMap(n);
+//					simMatrix.put(v1.id(), map);
+//					map.put(v2.id(), sim);
+//				}
+//				
+//				if (i != j) {
+//					if (simMatrix.containsKey(v2.id()))
+//						simMatrix.get(v2.id()).put(v1.id(), sim);
+//					else {
+//						Map<Integer, Double> map = Util.newMap(n);
+//						simMatrix.put(v2.id(), map);
+//						map.put(v1.id(), sim);
+//					}
+//				}
+//			}
+//		}
+//		
+//		vRatings.clear();
+//		return simMatrix;
+//	}
+
+	
+	@Override
+	public Inspector getInspector() {
+		// TODO Auto-generated method stub
+		return EvaluateGUI.createInspector(this);
+	}
+
+	
+	@Override
+	public DataConfig createDefaultConfig() {
+		// TODO Auto-generated method stub
+		DataConfig config = super.createDefaultConfig();
+		config.put(VALUE_BINS_FIELD, VALUE_BINS_DEFAULT);
+		config.put(BCF_MEDIAN_MODE_FIELD, BCF_MEDIAN_MODE_DEFAULT);
+		config.put(MU_ALPHA_FIELD, MU_ALPHA_DEFAULT);
+		config.put(SMTP_LAMBDA_FIELD, SMTP_LAMBDA_DEFAULT);
+		config.put(SMTP_GENERAL_VAR_FIELD, SMTP_GENERAL_VAR_DEFAULT);
+		config.put(TA_NORMALIZED_FIELD, TA_NORMALIZED_DEFAULT);
+		config.put(QUANTIZED_RATINGS_FIELD, QUANTIZED_RATINGS_DEFAULT);
+		
+		return config;
+	}
+
+
+}
@@ -0,0 +1,199 @@
+/**
+ * HUDUP: A FRAMEWORK OF E-COMMERCIAL RECOMMENDATION ALGORITHMS
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: http://www.locnguyen.net/st/products/hudup
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.hudup.core.alg.cf;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * This utility class contains custom Java Flight Recorder events of neighbor collaborative filtering so that profiling sessions can tie CPU hotspots to setup phases,
+ * measures, users, and items. Events cost almost nothing when no recording is running because Flight Recorder disables them.
+ * Similarity events are sampled by {@link #SIM_SAMPLING} whereas cache misses of expensive measures such as BCF, PC, SMTP, and NHSM are always emitted.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public final class NeighborEvents {
+
+	
+	/**
+	 * One of this number of calculated similarities emits a {@link SimilarityEvent}. It is power of two.
+	 */
+	public static final int SIM_SAMPLING = 1024;
+
+	
+	/**
+	 * Private constructor to avoid initializing utility class.
+	 */
+	private NeighborEvents() {
+
+	}
+
+	
+	/**
+	 * This event covers one phase of setup which calculates means and variances of users or items.
+	 *
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	@Name("net.hudup.cf.SetupPhase")
+	@Label("Setup Phase")
+	@Category({"Hudup", "Neighbor CF"})
+	@Description("Calculation of means and variances of users or items during setup")
+	public static class SetupPhaseEvent extends Event {
+
+		/**
+		 * Phase name such as user, item, snapshot, overlap, profile, or ingest.
+		 */
+		@Label("Phase")
+		public String phase;
+
+		/**
+		 * Number of processed users or items.
+		 */
+		@Label("Count")
+		public int count;
+
+		/**
+		 * Number of processed ratings.
+		 */
+		@Label("Ratings")
+		public long ratings;
+
+	}
+
+	
+	/**
+	 * This event covers one sampled similarity calculation.
+	 *
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	@Name("net.hudup.cf.Similarity")
+	@Label("Similarity")
+	@Category({"Hudup", "Neighbor CF"})
+	@Description("Sampled similarity calculation with measure name and co-rated count")
+	@StackTrace(false)
+	public static class SimilarityEvent extends Event {
+
+		/**
+		 * Measure name.
+		 */
+		@Label("Measure")
+		public String measure;
+
+		/**
+		 * First vector identifier.
+		 */
+		@Label("First Id")
+		public int id1;
+
+		/**
+		 * Second vector identifier.
+		 */
+		@Label("Second Id")
+		public int id2;
+
+		/**
+		 * Number of fields rated by both vectors.
+		 */
+		@Label("Co-rated Count")
+		public int corated;
+
+	}
+
+	
+	/**
+	 * This event covers the calculation of a value which is missed by a cache of an expensive measure.
+	 *
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	@Name("net.hudup.cf.CacheMiss")
+	@Label("Cache Miss")
+	@Category({"Hudup", "Neighbor CF"})
+	@Description("Calculation of a value missed by cache of an expensive measure such as BCF, PC, SMTP, and NHSM")
+	public static class CacheMissEvent extends Event {
+
+		/**
+		 * Cache name.
+		 */
+		@Label("Cache")
+		public String cache;
+
+		/**
+		 * Measure name.
+		 */
+		@Label("Measure")
+		public String measure;
+
+		/**
+		 * First key, which is the identifier of the first vector or column.
+		 */
+		@Label("First Id")
+		public int id1;
+
+		/**
+		 * Second key, which is the identifier of the second vector or column, -1 for single-key caches.
+		 */
+		@Label("Second Id")
+		public int id2;
+
+	}
+
+	
+	/**
+	 * This event reports progress of building similarities of all pairs.
+	 *
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	@Name("net.hudup.cf.BuildProgress")
+	@Label("All-pairs Build Progress")
+	@Category({"Hudup", "Neighbor CF"})
+	@Description("Progress of building similarities of all pairs")
+	@StackTrace(false)
+	public static class BuildProgressEvent extends Event {
+
+		/**
+		 * Measure name.
+		 */
+		@Label("Measure")
+		public String measure;
+
+		/**
+		 * Shard index, 0 if the build is not sharded.
+		 */
+		@Label("Shard")
+		public int shard;
+
+		/**
+		 * Number of processed rows.
+		 */
+		@Label("Done")
+		public long done;
+
+		/**
+		 * Total number of rows.
+		 */
+		@Label("Total")
+		public long total;
+
+	}
+
+
+}
@@ -0,0 +1,589 @@
+package net.hudup.alg.cf;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+
+import net.hudup.core.Util;
+import net.hudup.core.alg.cf.NeighborCF;
+import net.hudup.core.alg.cf.NeighborEvents;
+import net.hudup.core.alg.cf.RatingSnapshot;
+import net.hudup.core.alg.cf.SnapshotFile;
+import net.hudup.core.logistic.LogUtil;
+
+/**
+ * This class computes the neighbor graph (top K most similar users of every user) of a large rating snapshot by sharding the all-pairs computation over local worker processes,
+ * so that the work is not limited by the heap of one Java virtual machine. Everything runs on one machine without external services.
+ * <br>
+ * The coordinator splits users into ranges of roughly equal numbers of ratings and, optionally, splits candidate users into blocks.
+ * Each shard is a pair of user range and candidate block, which is computed by a separate worker process that memory-maps the shared snapshot file written by
+ * {@link SnapshotFile} and writes partial top K lists of its users against its candidates. Shards are run by at most the given number of concurrent processes.
+ * After all shards finish, the coordinator merges the shard files by a k-way merge over users, merging partial lists of the same user from different candidate blocks,
+ * into the final neighbor index.
+ * <br>
+ * Measures which need a target item such as PC are not supported because all-pairs similarities are calculated without target.
+ * Worker progress is reported by {@link NeighborEvents.BuildProgressEvent} when Flight Recorder is running.
+ * <br>
+ * Usage: NeighborGraphJob --snapshot snapshot.bin --out neighbors.bin [--alg class] [--measure cosine] [--k 50] [--shards 8] [--candidate-blocks 1]
+ * [--processes 4] [--worker-heap 2g] [--work-dir dir] [--keep-shards false]
+ * <br>
+ * Usage of dumping neighbor index as text: NeighborGraphJob --dump neighbors.bin [--out neighbors.txt]
+ * <br>
+ * Index format (big-endian): magic {@link #INDEX_MAGIC}, K, number of users, then for each user: user identifier, number of neighbors, and pairs of neighbor identifier and similarity
+ * ordered by decreasing similarity.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class NeighborGraphJob {
+
+	
+	/**
+	 * Magic number of shard file.
+	 */
+	public static final int SHARD_MAGIC = 0x4E424753;
+
+	
+	/**
+	 * Magic number of neighbor index file.
+	 */
+	public static final int INDEX_MAGIC = 0x4E424749;
+
+	
+	/**
+	 * Default class name of algorithm.
+	 */
+	public static final String DEFAULT_ALG_CLASS = "net.hudup.alg.cf.NeighborCFUserBased";
+
+	
+	/**
+	 * Path of shared snapshot file.
+	 */
+	protected Path snapshotPath = null;
+
+	
+	/**
+	 * Path of output file.
+	 */
+	protected Path outPath = null;
+
+	
+	/**
+	 * Class name of algorithm.
+	 */
+	protected String algClass = DEFAULT_ALG_CLASS;
+
+	
+	/**
+	 * Similarity measure, null for default measure of algorithm.
+	 */
+	protected String measure = null;
+
+	
+	/**
+	 * Number of neighbors per user.
+	 */
+	protected int k = 50;
+
+	
+	/**
+	 * Number of user ranges.
+	 */
+	protected int shards = 0;
+
+	
+	/**
+	 * Number of candidate blocks.
+	 */
+	protected int candidateBlocks = 1;
+
+	
+	/**
+	 * Maximum number of concurrent worker processes.
+	 */
+	protected int processes = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+	
+	/**
+	 * Maximum heap of each worker process such as 2g, null for default heap.
+	 */
+	protected String workerHeap = null;
+
+	
+	/**
+	 * Directory of shard files, null for a directory next to output file.
+	 */
+	protected Path workDir = null;
+
+	
+	/**
+	 * Whether shard files are kept after merging.
+	 */
+	protected boolean keepShards = false;
+
+	
+	/**
+	 * Default constructor.
+	 */
+	public NeighborGraphJob() {
+
+	}
+
+	
+	/**
+	 * Running the coordinator: splitting work into shards, running worker processes, and merging shard files into the neighbor index.
+	 * @throws Exception if any error raises.
+	 */
+	public void coordinate() throws Exception {
+		long start = System.currentTimeMillis();
+		long checksum = SnapshotFile.readSourceChecksum(this.snapshotPath);
+		SnapshotFile file = SnapshotFile.map(this.snapshotPath, checksum, true);
+		RatingSnapshot snapshot = file.getSnapshot();
+		int shards = this.shards > 0 ? this.shards : this.processes;
+		int[] rowBounds = splitByRatings(snapshot, shards);
+		int[] candidateBounds = splitByRatings(snapshot, Math.max(1, this.candidateBlocks));
+		file = null;
+		snapshot = null;
+
+		Path workDir = this.workDir != null ? this.workDir : Paths.get(this.outPath.toString() + ".shards");
+		Files.createDirectories(workDir);
+		List<Path> shardPaths = Util.newList();
+		List<List<String>> commands = Util.newList();
+		for (int r = 0; r + 1 < rowBounds.length; r++) {
+			for (int c = 0; c + 1 < candidateBounds.length; c++) {
+				int shard = shardPaths.size();
+				Path shardPath = workDir.resolve(String.format("shard-%05d.bin", shard));
+				shardPaths.add(shardPath);
+				commands.add(workerCommand(shard, rowBounds[r], rowBounds[r + 1], candidateBounds[c], candidateBounds[c + 1], shardPath));
+			}
+		}
+
+		runWorkers(commands);
+		merge(shardPaths, this.outPath, this.k);
+		if (!this.keepShards) {
+			for (Path shardPath : shardPaths)
+				Files.deleteIfExists(shardPath);
+			if (this.workDir == null) Files.deleteIfExists(workDir);
+		}
+
+		LogUtil.info(String.format(Locale.US, "Neighbor index %s written from %d shards in %.1f s", this.outPath, shardPaths.size(), (System.currentTimeMillis() - start) / 1000.0));
+	}
+
+	
+	/**
+	 * Splitting rows into contiguous ranges of roughly equal numbers of ratings.
+	 * @param snapshot rating snapshot.
+	 * @param parts number of ranges.
+	 * @return bounds of ranges, range i is from bounds[i] inclusive to bounds[i + 1] exclusive. Empty ranges are dropped.
+	 */
+	protected static int[] splitByRatings(RatingSnapshot snapshot, int parts) {
+		int rowCount = snapshot.rowCount();
+		parts = Math.max(1, Math.min(parts, rowCount));
+		int[] bounds = new int[parts + 1];
+		int size = 1;
+		long total = snapshot.ratingCount(), seen = 0;
+		for (int row = 0; row < rowCount && size < parts; row++) {
+			seen += snapshot.rowLength(row);
+			if (seen * parts >= total * size && row + 1 > bounds[size - 1])
+				bounds[size++] = row + 1;
+		}
+		if (bounds[size - 1] < rowCount)
+			bounds[size++] = rowCount;
+		return Arrays.copyOf(bounds, size);
+	}
+
+	
+	/**
+	 * Creating command line of worker process which runs this class in worker mode with the same Java runtime and class path.
+	 * @param shard shard index.
+	 * @param rowFrom first row, inclusive.
+	 * @param rowTo last row, exclusive.
+	 * @param candidateFrom first candidate row, inclusive.
+	 * @param candidateTo last candidate row, exclusive.
+	 * @param shardPath path of shard file.
+	 * @return command line of worker process.
+	 */
+	protected List<String> workerCommand(int shard, int rowFrom, int rowTo, int candidateFrom, int candidateTo, Path shardPath) {
+		List<String> command = Util.newList();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		if (this.workerHeap != null) command.add("-Xmx" + this.workerHeap);
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(NeighborGraphJob.class.getName());
+		command.add("--worker");
+		command.add(String.valueOf(shard));
+		command.add("--snapshot");
+		command.add(this.snapshotPath.toString());
+		command.add("--alg");
+		command.add(this.algClass);
+		if (this.measure != null) {
+			command.add("--measure");
+			command.add(this.measure);
+		}
+		command.add("--k");
+		command.add(String.valueOf(this.k));
+		command.add("--rows");
+		command.add(rowFrom + ":" + rowTo);
+		command.add("--candidates");
+		command.add(candidateFrom + ":" + candidateTo);
+		command.add("--out");
+		command.add(shardPath.toString());
+		return command;
+	}
+
+	
+	/**
+	 * Running worker processes with at most {@link #processes} processes at the same time. Outputs of workers are inherited.
+	 * @param commands command lines of worker processes.
+	 * @throws Exception if some worker fails or any error raises.
+	 */
+	protected void runWorkers(List<List<String>> commands) throws Exception {
+		List<Process> running = Util.newList();
+		List<Integer> shards = Util.newList();
+		int next = 0, done = 0;
+		while (done < commands.size()) {
+			while (next < commands.size() && running.size() < Math.max(1, this.processes)) {
+				running.add(new ProcessBuilder(commands.get(next)).inheritIO().start());
+				shards.add(next++);
+			}
+
+			Process process = running.get(0);
+			int exit = process.waitFor();
+			int shard = shards.get(0);
+			running.remove(0);
+			shards.remove(0);
+			if (exit != 0) {
+				for (Process other : running)
+					other.destroy();
+				throw new IOException("Worker of shard " + shard + " failed with exit code " + exit);
+			}
+
+			done++;
+			LogUtil.info(String.format("Shard %d finished, %d of %d shards done", shard, done, commands.size()));
+		}
+	}
+
+	
+	/**
+	 * Running worker mode: computing partial top K lists of specified rows against specified candidate rows and writing them to shard file.
+	 * The snapshot is served from the mapping of the snapshot file by {@link SnapshotFile#map(Path, long, boolean)} rather than copied into the heap, and rows are compared
+	 * by {@link NeighborCF#simRows(int, int, int, double[])}, which loads them into reused buffers for the compiled kernel without boxing rating vectors.
+	 * @param shard shard index.
+	 * @param rowFrom first row, inclusive.
+	 * @param rowTo last row, exclusive.
+	 * @param candidateFrom first candidate row, inclusive.
+	 * @param candidateTo last candidate row, exclusive.
+	 * @throws Exception if any error raises.
+	 */
+	public void work(int shard, int rowFrom, int rowTo, int candidateFrom, int candidateTo) throws Exception {
+		long checksum = SnapshotFile.readSourceChecksum(this.snapshotPath);
+		RatingSnapshot snapshot = SnapshotFile.map(this.snapshotPath, checksum, false).getSnapshot();
+		NeighborCFExt alg = (NeighborCFExt) Class.forName(this.algClass).getDeclaredConstructor().newInstance();
+		if (this.measure != null) alg.setMeasure(this.measure);
+		alg.setCached(false);
+		alg.setupSnapshot(snapshot);
+
+		double[] sims = new double[candidateTo - candidateFrom];
+		int total = rowTo - rowFrom, step = Math.max(1, total / 100);
+		NeighborEvents.BuildProgressEvent event = new NeighborEvents.BuildProgressEvent();
+		event.begin();
+		Path temp = Paths.get(this.outPath.toString() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+			out.writeInt(SHARD_MAGIC);
+			out.writeInt(this.k);
+			for (int row = rowFrom; row < rowTo; row++) {
+				alg.simRows(row, candidateFrom, candidateTo, sims);
+				if (row >= candidateFrom && row < candidateTo)
+					sims[row - candidateFrom] = Double.NaN;
+				int[] top = NeighborCF.topK(sims, this.k);
+
+				out.writeInt(row);
+				out.writeInt(snapshot.rowId(row));
+				out.writeInt(top.length);
+				for (int position : top) {
+					out.writeInt(snapshot.rowId(candidateFrom + position));
+					out.writeDouble(sims[position]);
+				}
+
+				int done = row - rowFrom + 1;
+				if (done % step == 0 || done == total) {
+					event.end();
+					if (event.shouldCommit()) {
+						event.measure = alg.getMeasure();
+						event.shard = shard;
+						event.done = done;
+						event.total = total;
+						event.commit();
+					}
+					event = new NeighborEvents.BuildProgressEvent();
+					event.begin();
+				}
+			}
+			out.writeInt(-1);
+		}
+		Files.move(temp, this.outPath, StandardCopyOption.REPLACE_EXISTING);
+		alg.unsetup();
+	}
+
+	
+	/**
+	 * Merging shard files into neighbor index by k-way merge over rows. Each shard file lists rows in ascending order, and partial lists of the same row
+	 * from different candidate blocks are merged into one top K list.
+	 * @param shardPaths paths of shard files.
+	 * @param indexPath path of neighbor index.
+	 * @param k number of neighbors per user.
+	 * @throws IOException if any error raises.
+	 */
+	public static void merge(List<Path> shardPaths, Path indexPath, int k) throws IOException {
+		PriorityQueue<ShardCursor> queue = new PriorityQueue<>(Math.max(1, shardPaths.size()), Comparator.comparingInt(cursor -> cursor.row));
+		List<ShardCursor> cursors = Util.newList();
+		Path temp = Paths.get(indexPath.toString() + ".tmp");
+		int userCount = 0;
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+			for (Path shardPath : shardPaths) {
+				ShardCursor cursor = new ShardCursor(shardPath);
+				cursors.add(cursor);
+				if (cursor.next()) queue.add(cursor);
+			}
+
+			out.writeInt(INDEX_MAGIC);
+			out.writeInt(k);
+			out.writeInt(0); //Number of users is patched after merging.
+			List<ShardCursor> group = Util.newList();
+			int[] heads = new int[shardPaths.size()];
+			while (!queue.isEmpty()) {
+				group.clear();
+				ShardCursor first = queue.poll();
+				group.add(first);
+				while (!queue.isEmpty() && queue.peek().row == first.row)
+					group.add(queue.poll());
+
+				//K-way merge of partial lists which are ordered by decreasing similarity.
+				int total = 0;
+				for (ShardCursor cursor : group) total += cursor.count;
+				int count = Math.min(k, total);
+				out.writeInt(first.rowId);
+				out.writeInt(count);
+				for (int i = 0; i < group.size(); i++) heads[i] = 0;
+				for (int n = 0; n < count; n++) {
+					int best = -1;
+					for (int i = 0; i < group.size(); i++) {
+						ShardCursor cursor = group.get(i);
+						if (heads[i] < cursor.count && (best < 0 || cursor.sims[heads[i]] > group.get(best).sims[heads[best]]))
+							best = i;
+					}
+					ShardCursor cursor = group.get(best);
+					out.writeInt(cursor.ids[heads[best]]);
+					out.writeDouble(cursor.sims[heads[best]]);
+					heads[best]++;
+				}
+				userCount++;
+
+				for (ShardCursor cursor : group) {
+					if (cursor.next()) queue.add(cursor);
+				}
+			}
+		}
+		finally {
+			for (ShardCursor cursor : cursors)
+				cursor.close();
+		}
+
+		try (RandomAccessFile patch = new RandomAccessFile(temp.toFile(), "rw")) {
+			patch.seek(8);
+			patch.writeInt(userCount);
+		}
+		Files.move(temp, indexPath, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	
+	/**
+	 * Dumping neighbor index as text, one user per line: user identifier followed by pairs of neighbor identifier and similarity.
+	 * @param indexPath path of neighbor index.
+	 * @param writer text writer.
+	 * @throws IOException if any error raises.
+	 */
+	public static void dump(Path indexPath, PrintWriter writer) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexPath), 1 << 16))) {
+			if (in.readInt() != INDEX_MAGIC)
+				throw new IOException(indexPath + " is not a neighbor index");
+			in.readInt();
+			int userCount = in.readInt();
+			for (int u = 0; u < userCount; u++) {
+				StringBuilder line = new StringBuilder().append(in.readInt());
+				int count = in.readInt();
+				for (int n = 0; n < count; n++)
+					line.append(' ').append(in.readInt()).append(':').append(String.format(Locale.US, "%.6f", in.readDouble()));
+				writer.println(line);
+			}
+		}
+		writer.flush();
+	}
+
+	
+	/**
+	 * Main method.
+	 * @param args command line arguments as described in class comment.
+	 * @throws Exception if any error raises.
+	 */
+	public static void main(String[] args) throws Exception {
+		NeighborGraphJob job = new NeighborGraphJob();
+		int worker = -1;
+		Path dump = null;
+		int[] rows = null, candidates = null;
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			String key = args[i], value = args[i + 1];
+			if (key.equals("--snapshot"))
+				job.snapshotPath = Paths.get(value);
+			else if (key.equals("--out"))
+				job.outPath = Paths.get(value);
+			else if (key.equals("--alg"))
+				job.algClass = value;
+			else if (key.equals("--measure"))
+				job.measure = value;
+			else if (key.equals("--k"))
+				job.k = Integer.parseInt(value);
+			else if (key.equals("--shards"))
+				job.shards = Integer.parseInt(value);
+			else if (key.equals("--candidate-blocks"))
+				job.candidateBlocks = Integer.parseInt(value);
+			else if (key.equals("--processes"))
+				job.processes = Integer.parseInt(value);
+			else if (key.equals("--worker-heap"))
+				job.workerHeap = value;
+			else if (key.equals("--work-dir"))
+				job.workDir = Paths.get(value);
+			else if (key.equals("--keep-shards"))
+				job.keepShards = Boolean.parseBoolean(value);
+			else if (key.equals("--dump"))
+				dump = Paths.get(value);
+			else if (key.equals("--worker"))
+				worker = Integer.parseInt(value);
+			else if (key.equals("--rows"))
+				rows = parseRange(value);
+			else if (key.equals("--candidates"))
+				candidates = parseRange(value);
+			else
+				throw new IllegalArgumentException("Unknown option: " + key);
+		}
+
+		if (dump != null) {
+			try (PrintWriter writer = job.outPath != null ? new PrintWriter(job.outPath.toFile()) : new PrintWriter(System.out)) {
+				dump(dump, writer);
+			}
+		}
+		else if (job.snapshotPath == null || job.outPath == null)
+			throw new IllegalArgumentException("Options --snapshot and --out are required");
+		else if (worker >= 0)
+			job.work(worker, rows[0], rows[1], candidates[0], candidates[1]);
+		else
+			job.coordinate();
+	}
+
+	
+	/**
+	 * Parsing range in the form from:to.
+	 * @param value text of range.
+	 * @return array of two elements which are from and to.
+	 */
+	private static int[] parseRange(String value) {
+		String[] fields = value.split(":");
+		return new int[] {Integer.parseInt(fields[0]), Integer.parseInt(fields[1])};
+	}
+
+	
+	/**
+	 * This class reads records of shard file one by one.
+	 *
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	protected static class ShardCursor implements Closeable {
+
+		/**
+		 * Input stream of shard file.
+		 */
+		private DataInputStream in;
+
+		/**
+		 * Dense row of current record, -1 if the shard file is exhausted.
+		 */
+		private int row = -1;
+
+		/**
+		 * User identifier of current record.
+		 */
+		private int rowId = -1;
+
+		/**
+		 * Number of neighbors of current record.
+		 */
+		private int count = 0;
+
+		/**
+		 * Neighbor identifiers of current record.
+		 */
+		private int[] ids;
+
+		/**
+		 * Similarities of current record.
+		 */
+		private double[] sims;
+
+		/**
+		 * Constructor with path of shard file.
+		 * @param path path of shard file.
+		 * @throws IOException if the file is not a shard file or any error raises.
+		 */
+		protected ShardCursor(Path path) throws IOException {
+			this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16));
+			if (this.in.readInt() != SHARD_MAGIC)
+				throw new IOException(path + " is not a shard file");
+			int k = this.in.readInt();
+			this.ids = new int[k];
+			this.sims = new double[k];
+		}
+
+		/**
+		 * Reading next record.
+		 * @return whether there is next record.
+		 * @throws IOException if any error raises.
+		 */
+		protected boolean next() throws IOException {
+			this.row = this.in.readInt();
+			if (this.row < 0) return false;
+
+			this.rowId = this.in.readInt();
+			this.count = this.in.readInt();
+			for (int n = 0; n < this.count; n++) {
+				this.ids[n] = this.in.readInt();
+				this.sims[n] = this.in.readDouble();
+			}
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.in.close();
+		}
+
+	}
+
+
+}
@@ -0,0 +1,497 @@
+/**
+ * HUDUP: A FRAMEWORK OF E-COMMERCIAL RECOMMENDATION ALGORITHMS
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: http://www.locnguyen.net/st/products/hudup
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.hudup.core.alg.cf;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import net.hudup.core.Util;
+
+/**
+ * This class is a registry of run-time metrics of neighbor collaborative filtering, which includes latency histograms of similarity calculation per measure,
+ * hit, miss, size, and eviction counters per cache, and the distribution of co-rated lengths (numbers of fields rated by both compared vectors).
+ * Histograms use power-of-two buckets so that recording a value costs a few atomic increments without allocation.
+ * When the registry is disabled, which is the default, the algorithm checks one volatile flag and records nothing.
+ * The registry can be queried by {@link #getLatency(String)}, {@link #getCache(String)}, and {@link #getCorated()}, and exported as text by {@link #toText()}.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class NeighborMetrics implements Serializable {
+
+	
+	/**
+	 * Serial version UID for serializable class.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	
+	/**
+	 * Name of row similarity cache.
+	 */
+	public static final String ROW_SIM_CACHE = "row_sim";
+
+	
+	/**
+	 * Name of column similarity cache.
+	 */
+	public static final String COLUMN_SIM_CACHE = "column_sim";
+
+	
+	/**
+	 * Name of unknown cache.
+	 */
+	public static final String OTHER_CACHE = "other";
+
+	
+	/**
+	 * Co-rated lengths are recorded for one of this number of calculated similarities because counting co-rated fields costs as much as a cheap measure.
+	 */
+	public static final int CORATED_SAMPLING = 16;
+
+	
+	/**
+	 * Flag to indicate whether this registry records metrics.
+	 */
+	protected volatile boolean enabled = false;
+
+	
+	/**
+	 * Latency histograms in nanoseconds per measure.
+	 */
+	protected Map<String, Histogram> latencies = new ConcurrentHashMap<>();
+
+	
+	/**
+	 * Counters per cache.
+	 */
+	protected Map<String, CacheCounter> caches = new ConcurrentHashMap<>();
+
+	
+	/**
+	 * Distribution of co-rated lengths.
+	 */
+	protected Histogram corated = new Histogram();
+
+	
+	/**
+	 * Number of calculated similarities which is used to sample co-rated lengths.
+	 */
+	protected AtomicLong coratedTicks = new AtomicLong();
+
+	
+	/**
+	 * Default constructor.
+	 */
+	public NeighborMetrics() {
+
+	}
+
+	
+	/**
+	 * Checking whether this registry records metrics.
+	 * @return true if this registry records metrics.
+	 */
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	
+	/**
+	 * Enabling or disabling this registry.
+	 * @param enabled true to enable this registry.
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	
+	/**
+	 * Recording latency of similarity calculation of specified measure.
+	 * @param measure specified measure.
+	 * @param nanos latency in nanoseconds.
+	 */
+	public void recordLatency(String measure, long nanos) {
+		Histogram histogram = this.latencies.get(measure);
+		if (histogram == null)
+			histogram = this.latencies.computeIfAbsent(measure, key -> new Histogram());
+		histogram.record(nanos);
+	}
+
+	
+	/**
+	 * Checking whether the co-rated length of the current calculated similarity should be recorded, which is true for one of {@link #CORATED_SAMPLING} calls.
+	 * @return whether the co-rated length of the current calculated similarity should be recorded.
+	 */
+	public boolean sampleCorated() {
+		return this.coratedTicks.getAndIncrement() % CORATED_SAMPLING == 0;
+	}
+
+	
+	/**
+	 * Recording co-rated length.
+	 * @param length co-rated length.
+	 */
+	public void recordCorated(int length) {
+		this.corated.record(length);
+	}
+
+	
+	/**
+	 * Recording cache hit.
+	 * @param cache cache name.
+	 */
+	public void recordHit(String cache) {
+		getCache(cache).hits.incrementAndGet();
+	}
+
+	
+	/**
+	 * Recording cache miss.
+	 * @param cache cache name.
+	 */
+	public void recordMiss(String cache) {
+		getCache(cache).misses.incrementAndGet();
+	}
+
+	
+	/**
+	 * Recording cache evictions.
+	 * @param cache cache name.
+	 * @param count number of evicted entries.
+	 */
+	public void recordEvictions(String cache, long count) {
+		getCache(cache).evictions.addAndGet(count);
+	}
+
+	
+	/**
+	 * Updating cache size.
+	 * @param cache cache name.
+	 * @param size number of entries of the cache.
+	 */
+	public void updateSize(String cache, long size) {
+		getCache(cache).size = size;
+	}
+
+	
+	/**
+	 * Getting latency histogram of specified measure.
+	 * @param measure specified measure.
+	 * @return latency histogram in nanoseconds of specified measure, which is empty if nothing is recorded.
+	 */
+	public Histogram getLatency(String measure) {
+		Histogram histogram = this.latencies.get(measure);
+		return histogram != null ? histogram : new Histogram();
+	}
+
+	
+	/**
+	 * Getting measures which have recorded latencies.
+	 * @return sorted measures which have recorded latencies.
+	 */
+	public List<String> getMeasures() {
+		List<String> measures = Util.newList();
+		measures.addAll(this.latencies.keySet());
+		Collections.sort(measures);
+		return measures;
+	}
+
+	
+	/**
+	 * Getting counters of specified cache, which are created if absent.
+	 * @param cache cache name.
+	 * @return counters of specified cache.
+	 */
+	public CacheCounter getCache(String cache) {
+		CacheCounter counter = this.caches.get(cache);
+		if (counter == null)
+			counter = this.caches.computeIfAbsent(cache, key -> new CacheCounter());
+		return counter;
+	}
+
+	
+	/**
+	 * Getting names of caches which have counters.
+	 * @return sorted names of caches.
+	 */
+	public List<String> getCacheNames() {
+		List<String> names = Util.newList();
+		names.addAll(this.caches.keySet());
+		Collections.sort(names);
+		return names;
+	}
+
+	
+	/**
+	 * Getting distribution of co-rated lengths.
+	 * @return distribution of co-rated lengths.
+	 */
+	public Histogram getCorated() {
+		return this.corated;
+	}
+
+	
+	/**
+	 * Resetting all metrics. Cache sizes are kept because they reflect the current state of caches.
+	 */
+	public void reset() {
+		this.latencies.clear();
+		for (CacheCounter counter : this.caches.values()) {
+			counter.hits.set(0);
+			counter.misses.set(0);
+			counter.evictions.set(0);
+		}
+		this.corated.reset();
+		this.coratedTicks.set(0);
+	}
+
+	
+	/**
+	 * Exporting metrics as text snapshot, one line per measure or cache.
+	 * @return text snapshot of metrics.
+	 */
+	public String toText() {
+		StringBuilder buffer = new StringBuilder();
+		buffer.append("enabled=" + this.enabled + "\n");
+		for (String measure : getMeasures()) {
+			Histogram h = getLatency(measure);
+			buffer.append(String.format("latency measure=%s count=%d mean_ns=%.1f p50_ns=%d p90_ns=%d p99_ns=%d max_ns=%d\n",
+				measure, h.getCount(), h.getMean(), h.percentile(0.5), h.percentile(0.9), h.percentile(0.99), h.getMax()));
+		}
+		for (String cache : getCacheNames()) {
+			CacheCounter c = getCache(cache);
+			buffer.append(String.format("cache name=%s hits=%d misses=%d hit_rate=%.4f size=%d evictions=%d\n",
+				cache, c.getHits(), c.getMisses(), c.getHitRate(), c.getSize(), c.getEvictions()));
+		}
+		buffer.append(String.format("corated count=%d mean=%.1f p50=%d p90=%d p99=%d max=%d\n",
+			this.corated.getCount(), this.corated.getMean(), this.corated.percentile(0.5), this.corated.percentile(0.9), this.corated.percentile(0.99), this.corated.getMax()));
+
+		return buffer.toString();
+	}
+
+	
+	@Override
+	public String toString() {
+		return toText();
+	}
+
+	
+	/**
+	 * This class represents a histogram of non-negative values with power-of-two buckets. Bucket 0 holds 0 and bucket b holds values from 2^(b-1) to 2^b - 1.
+	 *
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	public static class Histogram implements Serializable {
+
+		/**
+		 * Serial version UID for serializable class.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Number of buckets.
+		 */
+		public static final int BUCKETS = 64;
+
+		/**
+		 * Bucket counts.
+		 */
+		protected AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+		/**
+		 * Number of recorded values.
+		 */
+		protected AtomicLong count = new AtomicLong();
+
+		/**
+		 * Sum of recorded values.
+		 */
+		protected AtomicLong sum = new AtomicLong();
+
+		/**
+		 * Maximum recorded value.
+		 */
+		protected AtomicLong max = new AtomicLong();
+
+		/**
+		 * Recording a value. Negative values are recorded as 0.
+		 * @param value recorded value.
+		 */
+		public void record(long value) {
+			value = Math.max(0, value);
+			this.buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(value));
+			this.count.incrementAndGet();
+			this.sum.addAndGet(value);
+			long current = this.max.get();
+			while (value > current && !this.max.compareAndSet(current, value))
+				current = this.max.get();
+		}
+
+		/**
+		 * Getting number of recorded values.
+		 * @return number of recorded values.
+		 */
+		public long getCount() {
+			return this.count.get();
+		}
+
+		/**
+		 * Getting sum of recorded values.
+		 * @return sum of recorded values.
+		 */
+		public long getSum() {
+			return this.sum.get();
+		}
+
+		/**
+		 * Getting mean of recorded values.
+		 * @return mean of recorded values, 0 if nothing is recorded.
+		 */
+		public double getMean() {
+			long count = getCount();
+			return count == 0 ? 0 : (double)getSum() / count;
+		}
+
+		/**
+		 * Getting maximum recorded value.
+		 * @return maximum recorded value.
+		 */
+		public long getMax() {
+			return this.max.get();
+		}
+
+		/**
+		 * Getting count of specified bucket.
+		 * @param bucket specified bucket.
+		 * @return count of specified bucket.
+		 */
+		public long getBucket(int bucket) {
+			return this.buckets.get(bucket);
+		}
+
+		/**
+		 * Getting approximate percentile, which is the upper bound of the bucket containing the percentile, capped by the maximum recorded value.
+		 * @param p percentile between 0 and 1.
+		 * @return approximate percentile.
+		 */
+		public long percentile(double p) {
+			long count = getCount();
+			if (count == 0) return 0;
+
+			long rank = Math.max(1, (long)Math.ceil(p * count));
+			long cumulative = 0;
+			for (int b = 0; b < BUCKETS; b++) {
+				cumulative += this.buckets.get(b);
+				if (cumulative >= rank)
+					return Math.min(getMax(), b == 0 ? 0 : (1L << b) - 1);
+			}
+			return getMax();
+		}
+
+		/**
+		 * Resetting this histogram.
+		 */
+		public void reset() {
+			for (int b = 0; b < BUCKETS; b++)
+				this.buckets.set(b, 0);
+			this.count.set(0);
+			this.sum.set(0);
+			this.max.set(0);
+		}
+
+	}
+
+	
+	/**
+	 * This class represents counters of a cache.
+	 *
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	public static class CacheCounter implements Serializable {
+
+		/**
+		 * Serial version UID for serializable class.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Number of hits.
+		 */
+		protected AtomicLong hits = new AtomicLong();
+
+		/**
+		 * Number of misses.
+		 */
+		protected AtomicLong misses = new AtomicLong();
+
+		/**
+		 * Number of evicted entries.
+		 */
+		protected AtomicLong evictions = new AtomicLong();
+
+		/**
+		 * Number of entries when the size was updated last time.
+		 */
+		protected volatile long size = 0;
+
+		/**
+		 * Getting number of hits.
+		 * @return number of hits.
+		 */
+		public long getHits() {
+			return this.hits.get();
+		}
+
+		/**
+		 * Getting number of misses.
+		 * @return number of misses.
+		 */
+		public long getMisses() {
+			return this.misses.get();
+		}
+
+		/**
+		 * Getting hit rate.
+		 * @return hit rate, 0 if there is no access.
+		 */
+		public double getHitRate() {
+			long hits = getHits(), total = hits + getMisses();
+			return total == 0 ? 0 : (double)hits / total;
+		}
+
+		/**
+		 * Getting number of evicted entries.
+		 * @return number of evicted entries.
+		 */
+		public long getEvictions() {
+			return this.evictions.get();
+		}
+
+		/**
+		 * Getting number of entries.
+		 * @return number of entries when the size was updated last time.
+		 */
+		public long getSize() {
+			return this.size;
+		}
+
+	}
+
+
+}
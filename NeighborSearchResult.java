@@ -0,0 +1,138 @@
+/**
+ * HUDUP: A FRAMEWORK OF E-COMMERCIAL RECOMMENDATION ALGORITHMS
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: http://www.locnguyen.net/st/products/hudup
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.hudup.core.alg.cf;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * This class is the result of a neighbor search bounded by time or work budget, which holds the best-so-far top K candidates and tells whether all candidates were scanned.
+ * If the search is not complete, the top K candidates are the best among scanned candidates, which were scanned in priority order.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class NeighborSearchResult implements Serializable {
+
+	
+	/**
+	 * Serial version UID for serializable class.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	
+	/**
+	 * Positions of the top K candidates in the list of candidates, ordered by decreasing similarity.
+	 */
+	protected int[] positions = new int[0];
+
+	
+	/**
+	 * Similarities of the top K candidates, aligned with positions.
+	 */
+	protected double[] sims = new double[0];
+
+	
+	/**
+	 * Number of scanned candidates.
+	 */
+	protected int scanned = 0;
+
+	
+	/**
+	 * Total number of candidates, excluding null candidates.
+	 */
+	protected int total = 0;
+
+	
+	/**
+	 * Elapsed time of the search in nanoseconds.
+	 */
+	protected long elapsedNanos = 0;
+
+	
+	/**
+	 * Constructor with specified positions, similarities, numbers of scanned and total candidates, and elapsed time.
+	 * @param positions positions of the top K candidates.
+	 * @param sims similarities of the top K candidates.
+	 * @param scanned number of scanned candidates.
+	 * @param total total number of candidates.
+	 * @param elapsedNanos elapsed time in nanoseconds.
+	 */
+	public NeighborSearchResult(int[] positions, double[] sims, int scanned, int total, long elapsedNanos) {
+		this.positions = positions;
+		this.sims = sims;
+		this.scanned = scanned;
+		this.total = total;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	
+	/**
+	 * Getting positions of the top K candidates in the list of candidates, ordered by decreasing similarity.
+	 * @return positions of the top K candidates.
+	 */
+	public int[] getPositions() {
+		return this.positions;
+	}
+
+	
+	/**
+	 * Getting similarities of the top K candidates, aligned with positions.
+	 * @return similarities of the top K candidates.
+	 */
+	public double[] getSims() {
+		return this.sims;
+	}
+
+	
+	/**
+	 * Getting number of scanned candidates.
+	 * @return number of scanned candidates.
+	 */
+	public int getScanned() {
+		return this.scanned;
+	}
+
+	
+	/**
+	 * Getting total number of candidates, excluding null candidates.
+	 * @return total number of candidates.
+	 */
+	public int getTotal() {
+		return this.total;
+	}
+
+	
+	/**
+	 * Checking whether all candidates were scanned before the budget ran out, in which case the top K candidates are exact.
+	 * @return whether the search is complete.
+	 */
+	public boolean isComplete() {
+		return this.scanned >= this.total;
+	}
+
+	
+	/**
+	 * Getting elapsed time of the search in nanoseconds.
+	 * @return elapsed time in nanoseconds.
+	 */
+	public long getElapsedNanos() {
+		return this.elapsedNanos;
+	}
+
+	
+	@Override
+	public String toString() {
+		// TODO Auto-generated method stub
+		return "complete=" + isComplete() + " scanned=" + this.scanned + "/" + this.total + " elapsed_ns=" + this.elapsedNanos + " positions=" + Arrays.toString(this.positions);
+	}
+
+
+}
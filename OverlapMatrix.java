@@ -0,0 +1,281 @@
+/**
+ * HUDUP: A FRAMEWORK OF E-COMMERCIAL RECOMMENDATION ALGORITHMS
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: http://www.locnguyen.net/st/products/hudup
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.hudup.core.alg.cf;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import net.hudup.core.Util;
+
+/**
+ * This class holds numbers of co-rated columns of all pairs of rows of a rating snapshot, which is the sparse self-product of the rating matrix with its transpose.
+ * The product is calculated at setup over posting lists of columns, so that measures needing the overlap of two rows read it by a binary search in a compact row
+ * instead of intersecting sets of rated fields. Because the product is symmetric, each row only keeps pairs with greater rows, sorted by row.
+ * Counts are stored as 16-bit unsigned values if no row has more than {@link Character#MAX_VALUE} ratings and as integers otherwise.
+ * Rows are identified by identifiers of the snapshot, which are assumed to identify the same rating vectors as at setup, as similarity caches assume.
+ * Rows whose ratings changed later are marked stale by {@link #withStale(Collection)}, so that their counts are calculated from rating vectors.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class OverlapMatrix implements Serializable {
+
+	
+	/**
+	 * Serial version UID for serializable class.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	
+	/**
+	 * Dictionary of row identifiers.
+	 */
+	protected IdDictionary rowIndex = null;
+
+	
+	/**
+	 * Dictionary of column identifiers.
+	 */
+	protected IdDictionary columnIndex = null;
+
+	
+	/**
+	 * Numbers of ratings of rows.
+	 */
+	protected int[] lengths = new int[0];
+
+	
+	/**
+	 * Greater rows which share some column with each row, sorted ascending.
+	 */
+	protected int[][] neighbors = new int[0][];
+
+	
+	/**
+	 * Narrow counts aligned with neighbors, null if counts are wide.
+	 */
+	protected char[][] narrowCounts = null;
+
+	
+	/**
+	 * Wide counts aligned with neighbors, null if counts are narrow.
+	 */
+	protected int[][] wideCounts = null;
+
+	
+	/**
+	 * Number of pairs of rows sharing some column.
+	 */
+	protected long pairCount = 0;
+
+	
+	/**
+	 * Identifiers of rows whose ratings changed after the matrix was built, whose counts are not read from the matrix.
+	 */
+	protected Set<Integer> staleIds = Collections.emptySet();
+
+	
+	/**
+	 * Constructor with specified dictionaries and numbers of ratings of rows. Rows of counts are filled by {@link #build(RatingSnapshot)}.
+	 * @param rowIndex dictionary of row identifiers.
+	 * @param columnIndex dictionary of column identifiers.
+	 * @param lengths numbers of ratings of rows.
+	 */
+	protected OverlapMatrix(IdDictionary rowIndex, IdDictionary columnIndex, int[] lengths) {
+		this.rowIndex = rowIndex;
+		this.columnIndex = columnIndex;
+		this.lengths = lengths;
+		this.neighbors = new int[lengths.length][];
+	}
+
+	
+	/**
+	 * Getting number of co-rated columns of two rows.
+	 * @param row1 first dense row.
+	 * @param row2 second dense row.
+	 * @return number of co-rated columns of two rows.
+	 */
+	public int count(int row1, int row2) {
+		if (row1 == row2) return this.lengths[row1];
+
+		int low = Math.min(row1, row2), high = Math.max(row1, row2);
+		int index = Arrays.binarySearch(this.neighbors[low], high);
+		if (index < 0)
+			return 0;
+		else
+			return this.narrowCounts != null ? this.narrowCounts[low][index] : this.wideCounts[low][index];
+	}
+
+	
+	/**
+	 * Getting numbers of ratings of two rows identified by identifiers and number of their co-rated columns.
+	 * @param id1 identifier of first row.
+	 * @param id2 identifier of second row.
+	 * @return array of number of ratings of first row, number of ratings of second row, and number of co-rated columns, null if some row is not in this matrix or is stale.
+	 */
+	public int[] counts(int id1, int id2) {
+		if (this.staleIds.contains(id1) || this.staleIds.contains(id2)) return null;
+		int row1 = this.rowIndex.indexOf(id1), row2 = this.rowIndex.indexOf(id2);
+		if (row1 < 0 || row2 < 0)
+			return null;
+		else
+			return new int[] {this.lengths[row1], this.lengths[row2], count(row1, row2)};
+	}
+
+	
+	/**
+	 * Creating a copy of this matrix which shares counts with this matrix and marks specified rows as stale in addition to stale rows of this matrix.
+	 * Counts of pairs involving stale rows change when ratings of stale rows change, whereas counts of other pairs remain valid. This matrix is not modified.
+	 * @param ids identifiers of rows whose ratings changed.
+	 * @return copy of this matrix with specified stale rows.
+	 */
+	public OverlapMatrix withStale(Collection<Integer> ids) {
+		OverlapMatrix matrix = new OverlapMatrix(this.rowIndex, this.columnIndex, this.lengths);
+		matrix.neighbors = this.neighbors;
+		matrix.narrowCounts = this.narrowCounts;
+		matrix.wideCounts = this.wideCounts;
+		matrix.pairCount = this.pairCount;
+		Set<Integer> staleIds = Util.newSet();
+		staleIds.addAll(this.staleIds);
+		staleIds.addAll(ids);
+		matrix.staleIds = staleIds;
+		return matrix;
+	}
+
+	
+	/**
+	 * Getting number of stale rows.
+	 * @return number of stale rows.
+	 */
+	public int getStaleCount() {
+		return this.staleIds.size();
+	}
+
+	
+	/**
+	 * Getting dictionary of row identifiers.
+	 * @return dictionary of row identifiers.
+	 */
+	public IdDictionary getRowIndex() {
+		return this.rowIndex;
+	}
+
+	
+	/**
+	 * Getting dictionary of column identifiers, which is the catalog of columns that rows are rated on.
+	 * @return dictionary of column identifiers.
+	 */
+	public IdDictionary getColumnIndex() {
+		return this.columnIndex;
+	}
+
+	
+	/**
+	 * Getting number of pairs of rows sharing some column.
+	 * @return number of pairs of rows sharing some column.
+	 */
+	public long getPairCount() {
+		return this.pairCount;
+	}
+
+	
+	/**
+	 * Estimating retained heap size of this matrix in bytes, excluding dictionaries which are shared with the snapshot.
+	 * @return estimated retained heap size in bytes.
+	 */
+	public long estimateBytes() {
+		int elementBytes = this.narrowCounts != null ? 2 : 4;
+		long bytes = HeapFootprint.ofArray(this.lengths.length, 4) + 2 * HeapFootprint.ofArray(this.neighbors.length, HeapFootprint.REFERENCE);
+		for (int[] row : this.neighbors)
+			bytes += HeapFootprint.ofArray(row.length, 4) + HeapFootprint.ofArray(row.length, elementBytes);
+		return bytes;
+	}
+
+	
+	/**
+	 * Building overlap matrix of specified snapshot by counting, for every row, the rows of posting lists of its columns. Column-major layout is built if it is not built yet.
+	 * Rows are split into blocks of similar amounts of work which are calculated in parallel, and each block reuses one dense counter.
+	 * @param snapshot specified snapshot.
+	 * @return overlap matrix of specified snapshot.
+	 */
+	public static OverlapMatrix build(RatingSnapshot snapshot) {
+		snapshot.buildColumns();
+		int rowCount = snapshot.rowCount();
+		int[] lengths = new int[rowCount];
+		long[] work = new long[rowCount + 1];
+		int maxLength = 0;
+		for (int row = 0; row < rowCount; row++) {
+			lengths[row] = snapshot.rowLength(row);
+			maxLength = Math.max(maxLength, lengths[row]);
+			long rowWork = 0;
+			for (int k = snapshot.rowStart(row); k < snapshot.rowEnd(row); k++)
+				rowWork += snapshot.columnLength(snapshot.column(k));
+			work[row + 1] = work[row] + rowWork;
+		}
+
+		OverlapMatrix matrix = new OverlapMatrix(snapshot.getRowIndex(), snapshot.getColumnIndex(), lengths);
+		boolean narrow = maxLength <= Character.MAX_VALUE;
+		if (narrow)
+			matrix.narrowCounts = new char[rowCount][];
+		else
+			matrix.wideCounts = new int[rowCount][];
+
+		int blocks = Math.max(1, Math.min(4 * ForkJoinPool.getCommonPoolParallelism(), rowCount));
+		int[] blockRows = new int[blocks + 1];
+		for (int b = 1, row = 0; b < blocks; b++) {
+			long target = work[rowCount] * b / blocks;
+			while (row < rowCount && work[row] < target) row++;
+			blockRows[b] = row;
+		}
+		blockRows[blocks] = rowCount;
+
+		long[] pairs = new long[blocks];
+		IntStream.range(0, blocks).parallel().forEach(b -> {
+			int[] counter = new int[rowCount];
+			int[] touched = new int[rowCount];
+			for (int row = blockRows[b]; row < blockRows[b + 1]; row++) {
+				int size = 0;
+				for (int k = snapshot.rowStart(row); k < snapshot.rowEnd(row); k++) {
+					int column = snapshot.column(k);
+					for (int entry = snapshot.columnEnd(column) - 1; entry >= snapshot.columnStart(column); entry--) {
+						int other = snapshot.row(entry);
+						if (other <= row) break; //Rows within each column are sorted ascending.
+						if (counter[other]++ == 0) touched[size++] = other;
+					}
+				}
+
+				Arrays.sort(touched, 0, size);
+				int[] rowNeighbors = Arrays.copyOf(touched, size);
+				if (narrow) {
+					char[] rowCounts = new char[size];
+					for (int i = 0; i < size; i++) rowCounts[i] = (char)counter[touched[i]];
+					matrix.narrowCounts[row] = rowCounts;
+				}
+				else {
+					int[] rowCounts = new int[size];
+					for (int i = 0; i < size; i++) rowCounts[i] = counter[touched[i]];
+					matrix.wideCounts[row] = rowCounts;
+				}
+				for (int i = 0; i < size; i++) counter[touched[i]] = 0;
+				matrix.neighbors[row] = rowNeighbors;
+				pairs[b] += size;
+			}
+		});
+
+		for (long blockPairs : pairs) matrix.pairCount += blockPairs;
+		return matrix;
+	}
+
+
+}
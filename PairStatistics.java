@@ -0,0 +1,327 @@
+/**
+ * HUDUP: A FRAMEWORK OF E-COMMERCIAL RECOMMENDATION ALGORITHMS
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: http://www.locnguyen.net/st/products/hudup
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.hudup.core.alg.cf;
+
+import java.util.Arrays;
+
+import net.hudup.core.Util;
+
+/**
+ * This class holds sufficient statistics of a pair of prepared vectors which are shared by many similarity measures, so that many measures are calculated from one merged pass.
+ * Statistics of co-rated fields include count, sums, product sum, and sum of squared differences. Sums of squared deviations and products of deviations are also accumulated
+ * for every registered center, both over co-rated fields and over all rated fields of each vector. If a catalog of fields is specified, fields outside the catalog are counted.
+ * Measures which sum a term of each co-rated field, such as PSS and PIP, register the term and read its sum.
+ * Statistics are accumulated in the same order as compiled kernels so that measures finished from statistics are identical to measures calculated by kernels.
+ * An instance is not thread-safe and is reused for many pairs.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class PairStatistics {
+
+	
+	/**
+	 * Catalog of fields, which can be null.
+	 */
+	protected IdDictionary catalog = null;
+
+	
+	/**
+	 * Registered centers.
+	 */
+	protected double[] centers = new double[0];
+
+	
+	/**
+	 * Number of co-rated fields.
+	 */
+	public int common = 0;
+
+	
+	/**
+	 * Sum of active values over co-rated fields.
+	 */
+	public double commonSum1 = 0;
+
+	
+	/**
+	 * Sum of candidate values over co-rated fields.
+	 */
+	public double commonSum2 = 0;
+
+	
+	/**
+	 * Sum of products of active values and candidate values over co-rated fields.
+	 */
+	public double commonProduct = 0;
+
+	
+	/**
+	 * Sum of squared differences between active values and candidate values over co-rated fields.
+	 */
+	public double squareDiff = 0;
+
+	
+	/**
+	 * Sums of squared deviations of active values from registered centers over co-rated fields.
+	 */
+	public double[] commonVX = new double[0];
+
+	
+	/**
+	 * Sums of squared deviations of candidate values from registered centers over co-rated fields.
+	 */
+	public double[] commonVY = new double[0];
+
+	
+	/**
+	 * Sums of products of deviations from registered centers over co-rated fields.
+	 */
+	public double[] commonVXY = new double[0];
+
+	
+	/**
+	 * Sums of squared deviations of all active values from registered centers.
+	 */
+	public double[] activeSquare = new double[0];
+
+	
+	/**
+	 * Sums of squared deviations of all candidate values from registered centers.
+	 */
+	public double[] candidateSquare = new double[0];
+
+	
+	/**
+	 * Number of active fields outside the catalog, 0 if catalog is not specified.
+	 */
+	public int activeOutside = 0;
+
+	
+	/**
+	 * Number of candidate fields outside the catalog which are not rated by active vector, 0 if catalog is not specified.
+	 */
+	public int candidateOutside = 0;
+
+	
+	/**
+	 * Registered terms of co-rated fields whose sums are accumulated.
+	 */
+	protected Term[] terms = new Term[0];
+
+	
+	/**
+	 * Sums of registered terms over co-rated fields, which are aligned with registered terms.
+	 */
+	public double[] termSums = new double[0];
+
+	
+	/**
+	 * Default constructor without catalog.
+	 */
+	public PairStatistics() {
+
+	}
+
+	
+	/**
+	 * Constructor with specified catalog.
+	 * @param catalog catalog of fields, which can be null.
+	 */
+	public PairStatistics(IdDictionary catalog) {
+		this.catalog = catalog;
+	}
+
+	
+	/**
+	 * Constructor which copies catalog, registered centers, and registered terms of specified statistics, whose accumulated values are not copied.
+	 * @param template specified statistics.
+	 */
+	public PairStatistics(PairStatistics template) {
+		this(template.catalog);
+		for (double center : template.centers) addCenter(center);
+		for (Term term : template.terms) addTerm(term);
+	}
+
+	
+	/**
+	 * Registering specified center whose deviations are accumulated. The center is registered once.
+	 * @param center specified center.
+	 * @return index of the center in arrays of deviations.
+	 */
+	public int addCenter(double center) {
+		for (int k = 0; k < this.centers.length; k++) {
+			if (Double.compare(this.centers[k], center) == 0) return k;
+		}
+
+		int k = this.centers.length;
+		this.centers = Arrays.copyOf(this.centers, k + 1);
+		this.centers[k] = center;
+		this.commonVX = new double[k + 1];
+		this.commonVY = new double[k + 1];
+		this.commonVXY = new double[k + 1];
+		this.activeSquare = new double[k + 1];
+		this.candidateSquare = new double[k + 1];
+		return k;
+	}
+
+	
+	/**
+	 * Registering specified term of co-rated fields whose sum is accumulated. The same term instance is registered once.
+	 * @param term specified term.
+	 * @return index of the term in {@link #termSums}.
+	 */
+	public int addTerm(Term term) {
+		for (int t = 0; t < this.terms.length; t++) {
+			if (this.terms[t] == term) return t;
+		}
+
+		int t = this.terms.length;
+		this.terms = Arrays.copyOf(this.terms, t + 1);
+		this.terms[t] = term;
+		this.termSums = new double[t + 1];
+		return t;
+	}
+
+	
+	/**
+	 * Getting catalog of fields.
+	 * @return catalog of fields, which can be null.
+	 */
+	public IdDictionary getCatalog() {
+		return this.catalog;
+	}
+
+	
+	/**
+	 * Setting specified active vector, whose statistics over all rated fields are calculated once for all candidates.
+	 * @param active active vector which was prepared by {@link PreparedVector#prepareActive()}.
+	 * @return this statistics.
+	 */
+	public PairStatistics setActive(PreparedVector active) {
+		for (int k = 0; k < this.centers.length; k++) {
+			double center = this.centers[k], sum = 0;
+			for (int i = 0; i < active.size(); i++) {
+				double deviate = active.value(i) - center;
+				sum += deviate * deviate;
+			}
+			this.activeSquare[k] = sum;
+		}
+
+		this.activeOutside = 0;
+		if (this.catalog != null) {
+			for (int i = 0; i < active.size(); i++) {
+				if (!this.catalog.contains(active.fieldId(i))) this.activeOutside++;
+			}
+		}
+
+		return this;
+	}
+
+	
+	/**
+	 * Accumulating statistics of pair of active vector and candidate vector in one pass over the candidate vector. Active vector must be set by {@link #setActive(PreparedVector)}.
+	 * @param active active vector which was prepared by {@link PreparedVector#prepareActive()}.
+	 * @param candidate candidate vector.
+	 * @return this statistics.
+	 */
+	public PairStatistics accumulate(PreparedVector active, PreparedVector candidate) {
+		this.common = 0;
+		this.commonSum1 = 0;
+		this.commonSum2 = 0;
+		this.commonProduct = 0;
+		this.squareDiff = 0;
+		this.candidateOutside = 0;
+		int centerCount = this.centers.length;
+		for (int k = 0; k < centerCount; k++) {
+			this.commonVX[k] = 0;
+			this.commonVY[k] = 0;
+			this.commonVXY[k] = 0;
+			this.candidateSquare[k] = 0;
+		}
+		int termCount = this.terms.length;
+		for (int t = 0; t < termCount; t++) this.termSums[t] = 0;
+
+		for (int i = 0; i < candidate.size(); i++) {
+			int fieldId = candidate.fieldId(i);
+			double value1 = active.lookup(fieldId);
+			double value2 = candidate.value(i);
+			for (int k = 0; k < centerCount; k++) {
+				double y = value2 - this.centers[k];
+				this.candidateSquare[k] += y * y;
+			}
+
+			if (!Util.isUsed(value1)) {
+				if (this.catalog != null && !this.catalog.contains(fieldId)) this.candidateOutside++;
+				continue;
+			}
+
+			this.common++;
+			this.commonSum1 += value1;
+			this.commonSum2 += value2;
+			this.commonProduct += value1 * value2;
+			double d = value1 - value2;
+			this.squareDiff += d * d;
+			for (int k = 0; k < centerCount; k++) {
+				double x = value1 - this.centers[k], y = value2 - this.centers[k];
+				this.commonVX[k] += x * x;
+				this.commonVY[k] += y * y;
+				this.commonVXY[k] += x * y;
+			}
+			for (int t = 0; t < termCount; t++)
+				this.termSums[t] += this.terms[t].term(fieldId, value1, value2);
+		}
+
+		return this;
+	}
+
+	
+	/**
+	 * This interface represents a similarity measure which is finished from statistics of a pair instead of iterating the pair again.
+	 *
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	public interface Finisher {
+
+		/**
+		 * Finishing similarity measure from statistics of active vector and candidate vector.
+		 * @param active active vector.
+		 * @param candidate candidate vector.
+		 * @param statistics statistics of the pair which were accumulated by {@link PairStatistics#accumulate(PreparedVector, PreparedVector)}.
+		 * @return similarity measure.
+		 */
+		double sim(PreparedVector active, PreparedVector candidate, PairStatistics statistics);
+
+	}
+
+	
+	/**
+	 * This interface represents a term of a co-rated field whose sum over co-rated fields is a similarity measure or a part of it.
+	 *
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	public interface Term {
+
+		/**
+		 * Calculating the term of specified co-rated field.
+		 * @param fieldId identifier of the co-rated field.
+		 * @param value1 value of active vector.
+		 * @param value2 value of candidate vector.
+		 * @return term of the field.
+		 */
+		double term(int fieldId, double value1, double value2);
+
+	}
+
+
+}
@@ -0,0 +1,384 @@
+/**
+ * HUDUP: A FRAMEWORK OF E-COMMERCIAL RECOMMENDATION ALGORITHMS
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: http://www.locnguyen.net/st/products/hudup
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.hudup.core.alg.cf;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Set;
+
+import net.hudup.core.Constants;
+import net.hudup.core.data.RatingVector;
+
+/**
+ * This class represents a rating vector which is prepared once so that it can be compared with many other vectors cheaply.
+ * Rated field identifiers and their values are stored in primitive arrays together with sufficient statistics such as sum and sum of squares.
+ * An active vector can be scattered into a dense array indexed by field identifier so that looking up the rating of a field costs one array access.
+ * Instances of this class are mutable buffers which can be reloaded with other vectors so as to avoid allocation when streaming candidates.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class PreparedVector implements Serializable {
+
+	
+	/**
+	 * Serial version UID for serializable class.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	
+	/**
+	 * Minimum span of field identifiers for which dense scatter array is always allowed.
+	 */
+	public static final int SCATTER_MIN_SPAN = 1 << 16;
+
+	
+	/**
+	 * Ratio between the span of field identifiers and the number of rated fields above {@link #SCATTER_MIN_SPAN} for which dense scatter array is still allowed.
+	 */
+	public static final int SCATTER_SPAN_RATIO = 8;
+
+	
+	/**
+	 * Vector identifier.
+	 */
+	protected int id = -1;
+
+	
+	/**
+	 * Rated field identifiers. Only the first {@link #size} elements are used.
+	 */
+	protected int[] fieldIds = new int[0];
+
+	
+	/**
+	 * Rated values. Only the first {@link #size} elements are used.
+	 */
+	protected double[] values = new double[0];
+
+	
+	/**
+	 * Number of rated fields.
+	 */
+	protected int size = 0;
+
+	
+	/**
+	 * Flag to indicate whether field identifiers are sorted ascending.
+	 */
+	protected boolean sorted = false;
+
+	
+	/**
+	 * Sum of rated values.
+	 */
+	protected double sum = 0;
+
+	
+	/**
+	 * Sum of squares of rated values.
+	 */
+	protected double sumSquare = 0;
+
+	
+	/**
+	 * Dense scatter array indexed by field identifier minus {@link #scatterBase}. Unrated fields hold {@link Constants#UNUSED}.
+	 */
+	protected double[] scatter = null;
+
+	
+	/**
+	 * Base field identifier of scatter array.
+	 */
+	protected int scatterBase = 0;
+
+	
+	/**
+	 * Flag to indicate whether the scatter array holds the current vector.
+	 */
+	protected boolean scattered = false;
+
+	
+	/**
+	 * Default constructor.
+	 */
+	public PreparedVector() {
+
+	}
+
+	
+	/**
+	 * Constructor with specified rating vector.
+	 * @param vRating specified rating vector.
+	 */
+	public PreparedVector(RatingVector vRating) {
+		load(vRating);
+	}
+
+	
+	/**
+	 * Loading specified rating vector into this prepared vector. Field identifiers are not sorted.
+	 * @param vRating specified rating vector.
+	 * @return this prepared vector.
+	 */
+	public PreparedVector load(RatingVector vRating) {
+		clear();
+		if (vRating == null) return this;
+
+		this.id = vRating.id();
+		Set<Integer> ids = vRating.fieldIds(true);
+		ensureCapacity(ids.size());
+		for (int fieldId : ids) {
+			double value = vRating.get(fieldId).value;
+			this.fieldIds[this.size] = fieldId;
+			this.values[this.size] = value;
+			this.size++;
+
+			this.sum += value;
+			this.sumSquare += value * value;
+		}
+
+		return this;
+	}
+
+	
+	/**
+	 * Loading specified arrays into this prepared vector.
+	 * @param id vector identifier.
+	 * @param fieldIds field identifiers.
+	 * @param values rated values.
+	 * @param from starting position in the arrays, inclusive.
+	 * @param to ending position in the arrays, exclusive.
+	 * @param sorted whether field identifiers in the range are sorted ascending.
+	 * @return this prepared vector.
+	 */
+	public PreparedVector load(int id, int[] fieldIds, double[] values, int from, int to, boolean sorted) {
+		clear();
+		this.id = id;
+		int n = Math.max(0, to - from);
+		ensureCapacity(n);
+		System.arraycopy(fieldIds, from, this.fieldIds, 0, n);
+		System.arraycopy(values, from, this.values, 0, n);
+		this.size = n;
+		this.sorted = sorted;
+
+		for (int i = 0; i < n; i++) {
+			double value = this.values[i];
+			this.sum += value;
+			this.sumSquare += value * value;
+		}
+
+		return this;
+	}
+
+	
+	/**
+	 * Loading specified row of rating snapshot into this prepared vector. Field identifiers are sorted because row slices of the snapshot are sorted.
+	 * @param snapshot rating snapshot.
+	 * @param row dense row index.
+	 * @return this prepared vector.
+	 */
+	public PreparedVector load(RatingSnapshot snapshot, int row) {
+		clear();
+		this.id = snapshot.rowId(row);
+		int start = snapshot.rowStart(row), end = snapshot.rowEnd(row);
+		ensureCapacity(end - start);
+		for (int k = start; k < end; k++) {
+			double value = snapshot.value(k);
+			this.fieldIds[this.size] = snapshot.columnId(snapshot.column(k));
+			this.values[this.size] = value;
+			this.size++;
+
+			this.sum += value;
+			this.sumSquare += value * value;
+		}
+		this.sorted = true;
+
+		return this;
+	}
+
+	
+	/**
+	 * Clearing this prepared vector but keeping its buffers.
+	 */
+	public void clear() {
+		if (this.scattered) {
+			for (int i = 0; i < this.size; i++)
+				this.scatter[this.fieldIds[i] - this.scatterBase] = Constants.UNUSED;
+		}
+
+		this.id = -1;
+		this.size = 0;
+		this.sorted = false;
+		this.sum = 0;
+		this.sumSquare = 0;
+		this.scattered = false;
+	}
+
+	
+	/**
+	 * Ensuring that internal buffers can hold specified number of fields.
+	 * @param capacity specified number of fields.
+	 */
+	private void ensureCapacity(int capacity) {
+		if (this.fieldIds.length >= capacity) return;
+
+		int newCapacity = Math.max(capacity, this.fieldIds.length * 2);
+		this.fieldIds = Arrays.copyOf(this.fieldIds, newCapacity);
+		this.values = Arrays.copyOf(this.values, newCapacity);
+	}
+
+	
+	/**
+	 * Sorting field identifiers ascending, which is necessary for lookup by binary search.
+	 * @return this prepared vector.
+	 */
+	public PreparedVector sort() {
+		if (this.sorted) return this;
+
+		long[] keys = new long[this.size];
+		for (int i = 0; i < this.size; i++)
+			keys[i] = ((long)this.fieldIds[i] << 32) | (i & 0xFFFFFFFFL);
+		Arrays.sort(keys);
+
+		double[] sortedValues = new double[this.values.length];
+		for (int i = 0; i < this.size; i++) {
+			int position = (int)keys[i];
+			this.fieldIds[i] = (int)(keys[i] >> 32);
+			sortedValues[i] = this.values[position];
+		}
+		this.values = sortedValues;
+
+		this.sorted = true;
+		return this;
+	}
+
+	
+	/**
+	 * Preparing this vector as active vector, which means that field identifiers are sorted and scattered into dense array if their span is small enough.
+	 * @return this prepared vector.
+	 */
+	public PreparedVector prepareActive() {
+		sort();
+		if (this.size == 0 || this.scattered) return this;
+
+		int minId = this.fieldIds[0];
+		int maxId = this.fieldIds[this.size - 1];
+		long span = (long)maxId - (long)minId + 1;
+		if (span > Math.max(SCATTER_MIN_SPAN, (long)SCATTER_SPAN_RATIO * this.size))
+			return this;
+
+		if (this.scatter == null || this.scatter.length < span) {
+			this.scatter = new double[(int)span];
+			Arrays.fill(this.scatter, Constants.UNUSED);
+		}
+		this.scatterBase = minId;
+		for (int i = 0; i < this.size; i++)
+			this.scatter[this.fieldIds[i] - minId] = this.values[i];
+
+		this.scattered = true;
+		return this;
+	}
+
+	
+	/**
+	 * Looking up the rated value of specified field.
+	 * If this vector is not scattered, field identifiers must be sorted by {@link #sort()} or {@link #prepareActive()} in advance.
+	 * @param fieldId specified field identifier.
+	 * @return the rated value of specified field, {@link Constants#UNUSED} if the field is not rated.
+	 */
+	public double lookup(int fieldId) {
+		if (this.scattered) {
+			int index = fieldId - this.scatterBase;
+			if (index < 0 || index >= this.scatter.length)
+				return Constants.UNUSED;
+			else
+				return this.scatter[index];
+		}
+
+		int index = Arrays.binarySearch(this.fieldIds, 0, this.size, fieldId);
+		return index < 0 ? Constants.UNUSED : this.values[index];
+	}
+
+	
+	/**
+	 * Getting identifier of this vector.
+	 * @return identifier of this vector.
+	 */
+	public int id() {
+		return this.id;
+	}
+
+	
+	/**
+	 * Getting number of rated fields.
+	 * @return number of rated fields.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	
+	/**
+	 * Getting field identifier at specified position.
+	 * @param index specified position.
+	 * @return field identifier at specified position.
+	 */
+	public int fieldId(int index) {
+		return this.fieldIds[index];
+	}
+
+	
+	/**
+	 * Getting rated value at specified position.
+	 * @param index specified position.
+	 * @return rated value at specified position.
+	 */
+	public double value(int index) {
+		return this.values[index];
+	}
+
+	
+	/**
+	 * Getting sum of rated values.
+	 * @return sum of rated values.
+	 */
+	public double sum() {
+		return this.sum;
+	}
+
+	
+	/**
+	 * Getting sum of squares of rated values.
+	 * @return sum of squares of rated values.
+	 */
+	public double sumSquare() {
+		return this.sumSquare;
+	}
+
+	
+	/**
+	 * Getting mean of rated values.
+	 * @return mean of rated values, {@link Constants#UNUSED} if there is no rated value.
+	 */
+	public double mean() {
+		return this.size == 0 ? Constants.UNUSED : this.sum / this.size;
+	}
+
+	
+	/**
+	 * Getting module (length) of this vector.
+	 * @return module (length) of this vector.
+	 */
+	public double module() {
+		return Math.sqrt(this.sumSquare);
+	}
+
+
+}
@@ -0,0 +1,300 @@
+/**
+ * HUDUP: A FRAMEWORK OF E-COMMERCIAL RECOMMENDATION ALGORITHMS
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: http://www.locnguyen.net/st/products/hudup
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.hudup.core.alg.cf;
+
+import java.io.Serializable;
+import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.List;
+
+import net.hudup.core.Constants;
+import net.hudup.core.Util;
+import net.hudup.core.data.Attribute;
+import net.hudup.core.data.Attribute.Type;
+import net.hudup.core.data.AttributeList;
+import net.hudup.core.data.Fetcher;
+import net.hudup.core.data.Profile;
+
+/**
+ * This class holds profiles encoded once into fixed-width numeric codes for hybrid similarity, which merges profile similarity into rating similarity.
+ * Only categorical attributes which are not key are encoded. Nominal values are normalized by {@link Profile#getNominalNormalizedValue(int)}, and other categorical values,
+ * such as integers and bits, are read as real numbers and min-max normalized by the range of each attribute gathered when profiles are encoded at setup, so that all codes are in [0, 1]. Missing values are encoded as {@link Constants#UNUSED}. Codes of all profiles are stored row by row in one flat array,
+ * so that similarity of two profiles is a dense loop over two slices without walking attribute lists.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class ProfileEncoding implements Serializable {
+
+	
+	/**
+	 * Serial version UID for serializable class.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	
+	/**
+	 * Dictionary from identifiers of profiles to rows of codes.
+	 */
+	protected IdDictionary index = new IdDictionary();
+
+	
+	/**
+	 * Positions of encoded attributes in attribute list.
+	 */
+	protected int[] attributes = new int[0];
+
+	
+	/**
+	 * Flags of encoded attributes which are nominal.
+	 */
+	protected boolean[] nominals = new boolean[0];
+
+	
+	/**
+	 * Minimums of encoded attributes which are not nominal, gathered from profiles encoded at setup.
+	 */
+	protected double[] mins = new double[0];
+
+	
+	/**
+	 * Ranges of encoded attributes which are not nominal, which are 0 if such attribute has only one value.
+	 */
+	protected double[] ranges = new double[0];
+
+	
+	/**
+	 * Codes of all profiles, stored row by row.
+	 */
+	protected double[] codes = new double[0];
+
+	
+	/**
+	 * Constructor with specified encoded attributes.
+	 * @param attributes positions of encoded attributes in attribute list.
+	 * @param nominals flags of encoded attributes which are nominal.
+	 */
+	protected ProfileEncoding(int[] attributes, boolean[] nominals) {
+		this.attributes = attributes;
+		this.nominals = nominals;
+		this.mins = new double[attributes.length];
+		this.ranges = new double[attributes.length];
+	}
+
+	
+	/**
+	 * Getting number of codes of each profile.
+	 * @return number of codes of each profile.
+	 */
+	public int width() {
+		return this.attributes.length;
+	}
+
+	
+	/**
+	 * Getting number of encoded profiles.
+	 * @return number of encoded profiles.
+	 */
+	public int size() {
+		return this.index.size();
+	}
+
+	
+	/**
+	 * Getting row of profile having specified identifier.
+	 * @param id identifier of profile.
+	 * @return row of profile, -1 if the profile is not encoded.
+	 */
+	public int rowOf(int id) {
+		return this.index.indexOf(id);
+	}
+
+	
+	/**
+	 * Encoding specified profile into specified array of codes, which is used for profiles which were not encoded at setup.
+	 * Values of attributes which are not nominal and are outside the range gathered at setup are clamped into [0, 1].
+	 * @param profile specified profile.
+	 * @param codes array of codes whose length is at least {@link #width()}.
+	 * @param offset offset of codes in the array.
+	 */
+	public void encode(Profile profile, double[] codes, int offset) {
+		for (int j = 0; j < this.attributes.length; j++) {
+			int attribute = this.attributes[j];
+			if (profile.isMissing(attribute))
+				codes[offset + j] = Constants.UNUSED;
+			else
+				codes[offset + j] = this.nominals[j] ? profile.getNominalNormalizedValue(attribute) : normalize(j, profile.getValueAsReal(attribute));
+		}
+	}
+
+	
+	/**
+	 * Normalizing specified value of encoded attribute which is not nominal by min-max normalization.
+	 * @param j position of encoded attribute.
+	 * @param value specified value.
+	 * @return normalized value in [0, 1], which is 0 if the range of the attribute is 0.
+	 */
+	private double normalize(int j, double value) {
+		if (this.ranges[j] <= 0) return 0;
+		return Math.min(1, Math.max(0, (value - this.mins[j]) / this.ranges[j]));
+	}
+
+	
+	/**
+	 * Calculating similarity of two encoded profiles, which is one minus the mean absolute difference of codes which are not missing in both profiles.
+	 * @param row1 row of first profile.
+	 * @param row2 row of second profile.
+	 * @return similarity of two profiles, {@link Constants#UNUSED} if some profile is not encoded or there is no attribute which is not missing in both profiles.
+	 */
+	public double sim(int row1, int row2) {
+		if (row1 < 0 || row2 < 0) return Constants.UNUSED;
+		return sim(this.codes, row1 * width(), this.codes, row2 * width(), width());
+	}
+
+	
+	/**
+	 * Calculating similarity of two profiles. Profiles are looked up by identifiers and they are encoded only if they were not encoded at setup.
+	 * @param id1 identifier of first profile.
+	 * @param id2 identifier of second profile.
+	 * @param profile1 first profile, which can be null.
+	 * @param profile2 second profile, which can be null.
+	 * @return similarity of two profiles, {@link Constants#UNUSED} if some profile is not found.
+	 */
+	public double sim(int id1, int id2, Profile profile1, Profile profile2) {
+		int row1 = rowOf(id1), row2 = rowOf(id2);
+		if (row1 >= 0 && row2 >= 0)
+			return sim(row1, row2);
+		if ((row1 < 0 && profile1 == null) || (row2 < 0 && profile2 == null))
+			return Constants.UNUSED;
+
+		int width = width();
+		double[] codes1 = this.codes, codes2 = this.codes;
+		int offset1 = row1 * width, offset2 = row2 * width;
+		if (row1 < 0) {
+			encode(profile1, codes1 = new double[width], offset1 = 0);
+		}
+		if (row2 < 0) {
+			encode(profile2, codes2 = new double[width], offset2 = 0);
+		}
+		return sim(codes1, offset1, codes2, offset2, width);
+	}
+
+	
+	/**
+	 * Calculating similarity of two slices of codes.
+	 * @param codes1 codes of first profile.
+	 * @param offset1 offset of first profile.
+	 * @param codes2 codes of second profile.
+	 * @param offset2 offset of second profile.
+	 * @param width number of codes of each profile.
+	 * @return similarity of two slices of codes.
+	 */
+	private static double sim(double[] codes1, int offset1, double[] codes2, int offset2, int width) {
+		int count = 0;
+		double diff = 0;
+		for (int j = 0; j < width; j++) {
+			double value1 = codes1[offset1 + j], value2 = codes2[offset2 + j];
+			if (!Util.isUsed(value1) || !Util.isUsed(value2)) continue;
+
+			count++;
+			diff += Math.abs(value1 - value2);
+		}
+
+		return count == 0 ? Constants.UNUSED : 1.0 - diff / count;
+	}
+
+	
+	/**
+	 * Estimating retained heap size of this encoding in bytes.
+	 * @return estimated retained heap size in bytes.
+	 */
+	public long estimateBytes() {
+		return HeapFootprint.ofArray(this.codes.length, 8) + HeapFootprint.ofArray(this.attributes.length, 4)
+				+ HeapFootprint.ofArray(this.nominals.length, 1) + HeapFootprint.ofArray(this.mins.length, 8) + HeapFootprint.ofArray(this.ranges.length, 8)
+				+ this.index.estimateBytes();
+	}
+
+	
+	/**
+	 * Encoding all profiles of specified fetcher. Encoded attributes are determined by attribute list of the first profile,
+	 * and ranges of attributes which are not nominal are gathered from all profiles before they are encoded.
+	 * @param profiles fetcher of profiles, which is not closed by this method.
+	 * @return encoding of all profiles, null if there is no profile or no categorical attribute.
+	 * @throws RemoteException if any error raises.
+	 */
+	public static ProfileEncoding build(Fetcher<Profile> profiles) throws RemoteException {
+		ProfileEncoding encoding = null;
+		List<Profile> rows = Util.newList();
+		while (profiles.next()) {
+			Profile profile = profiles.pick();
+			if (profile == null) continue;
+
+			if (encoding == null) {
+				encoding = create(profile.getAttRef());
+				if (encoding == null) return null;
+			}
+			if (encoding.index.contains(profile.getIdValue())) continue;
+
+			encoding.index.add(profile.getIdValue());
+			rows.add(profile);
+		}
+		if (encoding == null) return null;
+
+		int width = encoding.width();
+		double[] maxs = new double[width];
+		Arrays.fill(encoding.mins, Double.POSITIVE_INFINITY);
+		Arrays.fill(maxs, Double.NEGATIVE_INFINITY);
+		for (Profile profile : rows) {
+			for (int j = 0; j < width; j++) {
+				if (encoding.nominals[j] || profile.isMissing(encoding.attributes[j])) continue;
+				double value = profile.getValueAsReal(encoding.attributes[j]);
+				if (Double.isNaN(value)) continue;
+				encoding.mins[j] = Math.min(encoding.mins[j], value);
+				maxs[j] = Math.max(maxs[j], value);
+			}
+		}
+		for (int j = 0; j < width; j++) {
+			if (maxs[j] < encoding.mins[j]) encoding.mins[j] = maxs[j] = 0; //No value is gathered.
+			encoding.ranges[j] = maxs[j] - encoding.mins[j];
+		}
+
+
+		encoding.codes = new double[rows.size() * width];
+		for (int row = 0; row < rows.size(); row++)
+			encoding.encode(rows.get(row), encoding.codes, row * width);
+		encoding.index = encoding.index.optimize();
+		return encoding;
+	}
+
+	
+	/**
+	 * Creating empty encoding of categorical attributes of specified attribute list.
+	 * @param attRef specified attribute list.
+	 * @return empty encoding, null if there is no categorical attribute.
+	 */
+	private static ProfileEncoding create(AttributeList attRef) {
+		if (attRef == null) return null;
+
+		int[] attributes = new int[attRef.size()];
+		boolean[] nominals = new boolean[attRef.size()];
+		int width = 0;
+		for (int i = 0; i < attRef.size(); i++) {
+			Attribute att = attRef.get(i);
+			if (!att.isCategory() || att.isKey()) continue;
+
+			attributes[width] = i;
+			nominals[width] = att.getType() == Type.nominal;
+			width++;
+		}
+
+		return width == 0 ? null : new ProfileEncoding(Arrays.copyOf(attributes, width), Arrays.copyOf(nominals, width));
+	}
+
+
+}
@@ -0,0 +1,105 @@
+/**
+ * HUDUP: A FRAMEWORK OF E-COMMERCIAL RECOMMENDATION ALGORITHMS
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: http://www.locnguyen.net/st/products/hudup
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.hudup.core.alg.cf;
+
+import java.io.Serializable;
+
+import net.hudup.core.Constants;
+import net.hudup.core.Util;
+
+/**
+ * This class represents a change of one rating, which either sets the rating of a user on an item or removes it. Changes are ingested by {@link NeighborCF#applyRatings(java.util.List)}.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class RatingChange implements Serializable {
+
+	
+	/**
+	 * Serial version UID for serializable class.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	
+	/**
+	 * User identifier.
+	 */
+	protected int userId = -1;
+
+	
+	/**
+	 * Item identifier.
+	 */
+	protected int itemId = -1;
+
+	
+	/**
+	 * Rating value, {@link Constants#UNUSED} if the rating is removed.
+	 */
+	protected double value = Constants.UNUSED;
+
+	
+	/**
+	 * Constructor with specified user, item, and rating value.
+	 * @param userId user identifier.
+	 * @param itemId item identifier.
+	 * @param value rating value, {@link Constants#UNUSED} if the rating is removed.
+	 */
+	public RatingChange(int userId, int itemId, double value) {
+		this.userId = userId;
+		this.itemId = itemId;
+		this.value = value;
+	}
+
+	
+	/**
+	 * Getting user identifier.
+	 * @return user identifier.
+	 */
+	public int getUserId() {
+		return this.userId;
+	}
+
+	
+	/**
+	 * Getting item identifier.
+	 * @return item identifier.
+	 */
+	public int getItemId() {
+		return this.itemId;
+	}
+
+	
+	/**
+	 * Getting rating value.
+	 * @return rating value, {@link Constants#UNUSED} if the rating is removed.
+	 */
+	public double getValue() {
+		return this.value;
+	}
+
+	
+	/**
+	 * Checking whether this change removes the rating.
+	 * @return whether this change removes the rating.
+	 */
+	public boolean isRemoval() {
+		return !Util.isUsed(this.value);
+	}
+
+	
+	@Override
+	public String toString() {
+		// TODO Auto-generated method stub
+		return this.userId + "," + this.itemId + (isRemoval() ? "" : "," + this.value);
+	}
+
+
+}
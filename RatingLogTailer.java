@@ -0,0 +1,277 @@
+/**
+ * HUDUP: A FRAMEWORK OF E-COMMERCIAL RECOMMENDATION ALGORITHMS
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: http://www.locnguyen.net/st/products/hudup
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.hudup.core.alg.cf;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import net.hudup.core.Constants;
+import net.hudup.core.Util;
+import net.hudup.core.logistic.LogUtil;
+
+/**
+ * This class tails a local append-only log of ratings and ingests new ratings into a neighbor algorithm by {@link NeighborCF#applyRatings(List)}.
+ * Each line of the log is a rating change {@code userId,itemId,rating}, whose fields are separated by commas, tabs, or spaces. A line without rating, or whose rating is {@code -},
+ * removes the rating. Empty lines and lines starting with {@code #} are ignored, and malformed lines are counted and skipped. A line which is longer than {@link #MAX_POLL_BYTES}
+ * is malformed too, so it is counted and skipped until its line break instead of blocking the log.
+ * Only complete lines, which end with a line break, are read, so that a line which is being appended is read by a later poll.
+ * The log is polled periodically after {@link #start(long)} or explicitly by {@link #poll()}, and the offset of the next unread byte can be saved to resume later.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class RatingLogTailer implements AutoCloseable {
+
+	
+	/**
+	 * Default polling period in milliseconds.
+	 */
+	public static final long DEFAULT_POLL_MILLIS = 1000;
+
+	
+	/**
+	 * Maximum number of bytes which are read by one poll, so that a long backlog is ingested in several batches.
+	 */
+	public static final int MAX_POLL_BYTES = 1 << 22;
+
+	
+	/**
+	 * Neighbor algorithm which ingests ratings.
+	 */
+	protected NeighborCF alg = null;
+
+	
+	/**
+	 * Path of the log.
+	 */
+	protected Path path = null;
+
+	
+	/**
+	 * Offset of the next unread byte of the log.
+	 */
+	protected long offset = 0;
+
+	
+	/**
+	 * Number of applied changes.
+	 */
+	protected long appliedCount = 0;
+
+	
+	/**
+	 * Number of skipped malformed lines.
+	 */
+	protected long skippedCount = 0;
+
+	
+	/**
+	 * Flag indicating whether the rest of a line which is longer than {@link #MAX_POLL_BYTES} is being skipped.
+	 */
+	protected boolean skippingLine = false;
+
+	
+	/**
+	 * Timer which polls the log, null if polling is not started.
+	 */
+	protected ScheduledExecutorService timer = null;
+
+	
+	/**
+	 * Constructor with specified algorithm, path of the log, and offset of the next unread byte.
+	 * @param alg specified algorithm, which must be set up with rating snapshot.
+	 * @param path path of the log.
+	 * @param offset offset of the next unread byte, 0 to read the log from the beginning.
+	 */
+	public RatingLogTailer(NeighborCF alg, Path path, long offset) {
+		this.alg = alg;
+		this.path = path;
+		this.offset = Math.max(0, offset);
+	}
+
+	
+	/**
+	 * Starting to poll the log periodically with fixed delay. Errors of a poll are reported and do not stop later polls.
+	 * @param pollMillis polling period in milliseconds.
+	 */
+	public synchronized void start(long pollMillis) {
+		if (this.timer != null) return;
+
+		ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+			Thread thread = new Thread(r, "rating-log-tailer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long period = Math.max(1, pollMillis);
+		timer.scheduleWithFixedDelay(() -> {
+			try {
+				poll();
+			}
+			catch (Throwable e) {
+				LogUtil.error("Polling rating log " + this.path + " fails, caused by " + e.getMessage());
+			}
+		}, 0, period, TimeUnit.MILLISECONDS);
+		this.timer = timer;
+	}
+
+	
+	/**
+	 * Reading complete lines appended after the offset and applying their changes to the algorithm as one batch. If the log is shorter than the offset,
+	 * it is considered to be replaced and it is read from the beginning. If no line break is found in {@link #MAX_POLL_BYTES} bytes, the line is skipped by this poll and later polls.
+	 * @return number of applied changes.
+	 * @throws IOException if any error raises.
+	 */
+	public synchronized int poll() throws IOException {
+		if (!Files.exists(this.path)) return 0;
+
+		byte[] bytes = null;
+		try (FileChannel channel = FileChannel.open(this.path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < this.offset) {
+				LogUtil.info("Rating log " + this.path + " is shorter than offset " + this.offset + ", so it is read from the beginning");
+				this.offset = 0;
+				this.skippingLine = false;
+			}
+			if (size == this.offset) return 0;
+
+			ByteBuffer buffer = ByteBuffer.allocate((int)Math.min(MAX_POLL_BYTES, size - this.offset));
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, this.offset + buffer.position()) < 0) break;
+			}
+			bytes = Arrays.copyOf(buffer.array(), buffer.position());
+		}
+
+		int start = 0;
+		if (this.skippingLine) {
+			while (start < bytes.length && bytes[start] != '\n') start++;
+			if (start == bytes.length) {
+				this.offset += bytes.length;
+				return 0;
+			}
+			start++;
+			this.skippingLine = false;
+		}
+
+		int end = bytes.length;
+		while (end > start && bytes[end - 1] != '\n') end--;
+		if (end == start) {
+			if (start == 0 && bytes.length == MAX_POLL_BYTES) {
+				LogUtil.warn("Rating log line at offset " + this.offset + " of " + this.path + " is longer than " + MAX_POLL_BYTES + " bytes, so it is skipped");
+				this.skippedCount++;
+				this.skippingLine = true;
+				this.offset += bytes.length;
+			}
+			else
+				this.offset += start;
+			return 0;
+		}
+
+		List<RatingChange> changes = Util.newList();
+		for (String line : new String(bytes, start, end - start, StandardCharsets.UTF_8).split("\n")) {
+			try {
+				RatingChange change = parse(line);
+				if (change != null) changes.add(change);
+			}
+			catch (IllegalArgumentException e) {
+				this.skippedCount++;
+			}
+		}
+
+		if (changes.size() > 0) {
+			try {
+				this.alg.applyRatings(changes);
+			}
+			catch (RemoteException e) {
+				throw new IOException(e);
+			}
+		}
+		this.offset += end;
+		this.appliedCount += changes.size();
+		return changes.size();
+	}
+
+	
+	/**
+	 * Getting offset of the next unread byte of the log, which can be saved to resume tailing later.
+	 * @return offset of the next unread byte.
+	 */
+	public synchronized long getOffset() {
+		return this.offset;
+	}
+
+	
+	/**
+	 * Getting number of applied changes.
+	 * @return number of applied changes.
+	 */
+	public synchronized long getAppliedCount() {
+		return this.appliedCount;
+	}
+
+	
+	/**
+	 * Getting number of skipped malformed lines.
+	 * @return number of skipped malformed lines.
+	 */
+	public synchronized long getSkippedCount() {
+		return this.skippedCount;
+	}
+
+	
+	/**
+	 * Stopping to poll the log. The algorithm is not affected.
+	 */
+	@Override
+	public synchronized void close() {
+		// TODO Auto-generated method stub
+		if (this.timer != null) this.timer.shutdownNow();
+		this.timer = null;
+	}
+
+	
+	/**
+	 * Parsing specified line of the log.
+	 * @param line specified line.
+	 * @return rating change, null if the line is empty or a comment.
+	 * @throws IllegalArgumentException if the line is malformed.
+	 */
+	public static RatingChange parse(String line) {
+		line = line.trim();
+		if (line.isEmpty() || line.startsWith("#")) return null;
+
+		String[] fields = line.split("[,\\t ]+");
+		if (fields.length < 2)
+			throw new IllegalArgumentException("Malformed rating log line \"" + line + "\"");
+
+		try {
+			int userId = Integer.parseInt(fields[0]);
+			int itemId = Integer.parseInt(fields[1]);
+			double value = fields.length < 3 || fields[2].equals("-") ? Constants.UNUSED : Double.parseDouble(fields[2]);
+			if (fields.length >= 3 && !fields[2].equals("-") && !Double.isFinite(value))
+				throw new IllegalArgumentException("Malformed rating log line \"" + line + "\"");
+			return new RatingChange(userId, itemId, value);
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Malformed rating log line \"" + line + "\"", e);
+		}
+	}
+
+
+}
@@ -0,0 +1,772 @@
+/**
+ * HUDUP: A FRAMEWORK OF E-COMMERCIAL RECOMMENDATION ALGORITHMS
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: http://www.locnguyen.net/st/products/hudup
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.hudup.core.alg.cf;
+
+import java.io.Serializable;
+import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import net.hudup.core.Util;
+import net.hudup.core.data.Fetcher;
+import net.hudup.core.data.RatingVector;
+import net.hudup.core.data.UserRating;
+
+/**
+ * This class represents an immutable in-memory snapshot of rating vectors in compressed sparse row (CSR) layout.
+ * Each row (user) is a contiguous slice of dense column (item) indices sorted ascending and their rating values.
+ * Row identifiers and column identifiers are mapped to dense indices by two {@link IdDictionary} (s).
+ * Column identifiers are assigned dense indices in ascending order, so that a row slice is also sorted by external column identifier.
+ * Rating values are stored by {@link RatingValues}, which can be quantized into byte codes.
+ * Column-major (CSC) layout which shares rating values with row-major layout can be built by {@link #buildColumns()}.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class RatingSnapshot implements Serializable {
+
+	
+	/**
+	 * Serial version UID for serializable class.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	
+	/**
+	 * Minimum number of ratings so that column-major layout is built in parallel.
+	 */
+	public static final int PARALLEL_COLUMNS_THRESHOLD = 1 << 16;
+
+	
+	/**
+	 * Dictionary of row identifiers.
+	 */
+	protected IdDictionary rowIndex;
+
+	
+	/**
+	 * Dictionary of column identifiers.
+	 */
+	protected IdDictionary columnIndex;
+
+	
+	/**
+	 * Starting positions of rows. Row r occupies positions from rowStarts[r] inclusive to rowStarts[r + 1] exclusive.
+	 */
+	protected int[] rowStarts;
+
+	
+	/**
+	 * Dense column indices of ratings.
+	 */
+	protected int[] columns;
+
+	
+	/**
+	 * Rating values.
+	 */
+	protected RatingValues values;
+
+	
+	/**
+	 * Starting positions of columns in compressed sparse column (CSC) layout, which is null until columns are built.
+	 * Column c occupies CSC entries from columnStarts[c] inclusive to columnStarts[c + 1] exclusive.
+	 */
+	protected volatile int[] columnStarts = null;
+
+	
+	/**
+	 * Dense row indices of CSC entries, sorted ascending within each column.
+	 */
+	protected int[] rows = null;
+
+	
+	/**
+	 * Row-major positions of CSC entries so that rating values are shared between both layouts.
+	 */
+	protected int[] positions = null;
+
+	
+	/**
+	 * Constructor with specified internal structures.
+	 * @param rowIndex dictionary of row identifiers.
+	 * @param columnIndex dictionary of column identifiers.
+	 * @param rowStarts starting positions of rows, whose length is number of rows plus one.
+	 * @param columns dense column indices of ratings.
+	 * @param values rating values.
+	 */
+	public RatingSnapshot(IdDictionary rowIndex, IdDictionary columnIndex, int[] rowStarts, int[] columns, RatingValues values) {
+		this.rowIndex = rowIndex;
+		this.columnIndex = columnIndex;
+		this.rowStarts = rowStarts;
+		this.columns = columns;
+		this.values = values;
+	}
+
+	
+	/**
+	 * Constructor with specified internal structures including column-major layout.
+	 * @param rowIndex dictionary of row identifiers.
+	 * @param columnIndex dictionary of column identifiers.
+	 * @param rowStarts starting positions of rows, whose length is number of rows plus one.
+	 * @param columns dense column indices of ratings.
+	 * @param values rating values.
+	 * @param columnStarts starting positions of columns in CSC layout, whose length is number of columns plus one.
+	 * @param rows dense row indices of CSC entries.
+	 * @param positions row-major positions of CSC entries.
+	 */
+	public RatingSnapshot(IdDictionary rowIndex, IdDictionary columnIndex, int[] rowStarts, int[] columns, RatingValues values, int[] columnStarts, int[] rows, int[] positions) {
+		this(rowIndex, columnIndex, rowStarts, columns, values);
+		this.rows = rows;
+		this.positions = positions;
+		this.columnStarts = columnStarts;
+	}
+
+	
+	/**
+	 * Getting number of rows.
+	 * @return number of rows.
+	 */
+	public int rowCount() {
+		return this.rowIndex.size();
+	}
+
+	
+	/**
+	 * Getting number of columns.
+	 * @return number of columns.
+	 */
+	public int columnCount() {
+		return this.columnIndex.size();
+	}
+
+	
+	/**
+	 * Getting number of ratings.
+	 * @return number of ratings.
+	 */
+	public int ratingCount() {
+		return this.columns.length;
+	}
+
+	
+	/**
+	 * Getting dense row index of specified row identifier.
+	 * @param rowId specified row identifier.
+	 * @return dense row index of specified row identifier, -1 if the row does not exist.
+	 */
+	public int rowOf(int rowId) {
+		return this.rowIndex.indexOf(rowId);
+	}
+
+	
+	/**
+	 * Getting row identifier of specified dense row index.
+	 * @param row specified dense row index.
+	 * @return row identifier of specified dense row index.
+	 */
+	public int rowId(int row) {
+		return this.rowIndex.idOf(row);
+	}
+
+	
+	/**
+	 * Getting dense column index of specified column identifier.
+	 * @param columnId specified column identifier.
+	 * @return dense column index of specified column identifier, -1 if the column does not exist.
+	 */
+	public int columnOf(int columnId) {
+		return this.columnIndex.indexOf(columnId);
+	}
+
+	
+	/**
+	 * Getting column identifier of specified dense column index.
+	 * @param column specified dense column index.
+	 * @return column identifier of specified dense column index.
+	 */
+	public int columnId(int column) {
+		return this.columnIndex.idOf(column);
+	}
+
+	
+	/**
+	 * Getting starting position of specified row.
+	 * @param row specified dense row index.
+	 * @return starting position of specified row, inclusive.
+	 */
+	public int rowStart(int row) {
+		return this.rowStarts[row];
+	}
+
+	
+	/**
+	 * Getting ending position of specified row.
+	 * @param row specified dense row index.
+	 * @return ending position of specified row, exclusive.
+	 */
+	public int rowEnd(int row) {
+		return this.rowStarts[row + 1];
+	}
+
+	
+	/**
+	 * Getting number of ratings of specified row.
+	 * @param row specified dense row index.
+	 * @return number of ratings of specified row.
+	 */
+	public int rowLength(int row) {
+		return this.rowStarts[row + 1] - this.rowStarts[row];
+	}
+
+	
+	/**
+	 * Getting dense column index at specified position.
+	 * @param position specified position.
+	 * @return dense column index at specified position.
+	 */
+	public int column(int position) {
+		return this.columns[position];
+	}
+
+	
+	/**
+	 * Getting rating value at specified position.
+	 * @param position specified position.
+	 * @return rating value at specified position.
+	 */
+	public double value(int position) {
+		return this.values.get(position);
+	}
+
+	
+	/**
+	 * Converting specified row into rating vector whose field identifiers are column identifiers. Rows are assumed to be users.
+	 * @param row specified dense row index.
+	 * @return rating vector of specified row.
+	 */
+	public RatingVector rowVector(int row) {
+		RatingVector vRating = new UserRating(rowId(row));
+		for (int k = this.rowStarts[row]; k < this.rowStarts[row + 1]; k++)
+			vRating.put(columnId(this.columns[k]), this.values.get(k));
+		return vRating;
+	}
+
+	
+	/**
+	 * Checking whether column-major (CSC) layout is built.
+	 * @return whether column-major layout is built.
+	 */
+	public boolean hasColumns() {
+		return this.columnStarts != null;
+	}
+
+	
+	/**
+	 * Building column-major (CSC) layout by counting sort over row-major layout if it is not built yet. Rows within each column are sorted ascending.
+	 * If the snapshot has at least {@link #PARALLEL_COLUMNS_THRESHOLD} ratings, rows are split into blocks of similar numbers of ratings which are counted and scattered in parallel.
+	 * Each block counts its own column histogram, and the number of blocks is limited so that histograms are not larger than the ratings.
+	 * Since blocks are ordered by row and each block writes its own range of every column, rows within each column stay sorted.
+	 * The layout is checked without lock if it is built already, and only building locks this snapshot.
+	 * @return this snapshot.
+	 */
+	public RatingSnapshot buildColumns() {
+		if (this.columnStarts == null) buildColumns0();
+		return this;
+	}
+
+	
+	/**
+	 * Building column-major (CSC) layout under lock if it is not built yet. Column starts are assigned last so that other threads which read them see the whole layout.
+	 */
+	private synchronized void buildColumns0() {
+		if (this.columnStarts != null) return;
+
+		int rowCount = rowCount(), columnCount = columnCount(), count = ratingCount();
+		int blocks = 1;
+		if (count >= PARALLEL_COLUMNS_THRESHOLD)
+			blocks = Math.max(1, Math.min(Math.min(ForkJoinPool.getCommonPoolParallelism(), rowCount), count / Math.max(1, columnCount)));
+
+		int[] blockRows = new int[blocks + 1];
+		for (int b = 1, row = 0; b < blocks; b++) {
+			long target = (long)count * b / blocks;
+			while (row < rowCount && this.rowStarts[row] < target) row++;
+			blockRows[b] = row;
+		}
+		blockRows[blocks] = rowCount;
+
+		int[][] next = new int[blocks][];
+		IntStream.range(0, blocks).parallel().forEach(b -> {
+			int[] histogram = new int[columnCount];
+			for (int k = this.rowStarts[blockRows[b]]; k < this.rowStarts[blockRows[b + 1]]; k++)
+				histogram[this.columns[k]]++;
+			next[b] = histogram;
+		});
+
+		int[] starts = new int[columnCount + 1];
+		for (int column = 0; column < columnCount; column++) {
+			int entry = starts[column];
+			for (int b = 0; b < blocks; b++) {
+				int n = next[b][column];
+				next[b][column] = entry;
+				entry += n;
+			}
+			starts[column + 1] = entry;
+		}
+
+		int[] rows = new int[count];
+		int[] positions = new int[count];
+		IntStream.range(0, blocks).parallel().forEach(b -> {
+			int[] blockNext = next[b];
+			for (int row = blockRows[b]; row < blockRows[b + 1]; row++) {
+				for (int k = this.rowStarts[row]; k < this.rowStarts[row + 1]; k++) {
+					int entry = blockNext[this.columns[k]]++;
+					rows[entry] = row;
+					positions[entry] = k;
+				}
+			}
+		});
+
+		this.rows = rows;
+		this.positions = positions;
+		this.columnStarts = starts;
+	}
+
+	
+	/**
+	 * Getting starting CSC entry of specified column. Column-major layout must be built.
+	 * @param column specified dense column index.
+	 * @return starting CSC entry of specified column, inclusive.
+	 */
+	public int columnStart(int column) {
+		return this.columnStarts[column];
+	}
+
+	
+	/**
+	 * Getting ending CSC entry of specified column. Column-major layout must be built.
+	 * @param column specified dense column index.
+	 * @return ending CSC entry of specified column, exclusive.
+	 */
+	public int columnEnd(int column) {
+		return this.columnStarts[column + 1];
+	}
+
+	
+	/**
+	 * Getting number of ratings of specified column. Column-major layout must be built.
+	 * @param column specified dense column index.
+	 * @return number of ratings of specified column.
+	 */
+	public int columnLength(int column) {
+		return this.columnStarts[column + 1] - this.columnStarts[column];
+	}
+
+	
+	/**
+	 * Getting dense row index of specified CSC entry. Column-major layout must be built.
+	 * @param entry specified CSC entry.
+	 * @return dense row index of specified CSC entry.
+	 */
+	public int row(int entry) {
+		return this.rows[entry];
+	}
+
+	
+	/**
+	 * Getting row-major position of specified CSC entry, whose rating value is {@link #value(int)} of the position. Column-major layout must be built.
+	 * @param entry specified CSC entry.
+	 * @return row-major position of specified CSC entry.
+	 */
+	public int position(int entry) {
+		return this.positions[entry];
+	}
+
+	
+	/**
+	 * Getting dictionary of row identifiers.
+	 * @return dictionary of row identifiers.
+	 */
+	public IdDictionary getRowIndex() {
+		return this.rowIndex;
+	}
+
+	
+	/**
+	 * Getting dictionary of column identifiers.
+	 * @return dictionary of column identifiers.
+	 */
+	public IdDictionary getColumnIndex() {
+		return this.columnIndex;
+	}
+
+	
+	/**
+	 * Getting storage of rating values.
+	 * @return storage of rating values.
+	 */
+	public RatingValues getValues() {
+		return this.values;
+	}
+
+	
+	/**
+	 * Estimating retained heap size of this snapshot.
+	 * @param indexes whether dictionaries of row and column identifiers are counted. They are not counted if they are shared with and reported by the owner.
+	 * @return estimated size in bytes.
+	 */
+	public long estimateBytes(boolean indexes) {
+		long bytes = HeapFootprint.align(HeapFootprint.OBJECT_HEADER + 8 * HeapFootprint.REFERENCE)
+			+ HeapFootprint.ofArray(this.rowStarts.length, 4) + HeapFootprint.ofArray(this.columns.length, 4) + this.values.estimateBytes();
+		if (hasColumns())
+			bytes += HeapFootprint.ofArray(this.columnStarts.length, 4) + HeapFootprint.ofArray(this.rows.length, 4) + HeapFootprint.ofArray(this.positions.length, 4);
+		if (indexes)
+			bytes += this.rowIndex.estimateBytes() + this.columnIndex.estimateBytes();
+		return bytes;
+	}
+
+	
+	/**
+	 * Projecting retained heap size of snapshot of specified numbers of rows, columns, and ratings.
+	 * @param rowCount number of rows.
+	 * @param columnCount number of columns.
+	 * @param ratingCount number of ratings.
+	 * @param quantized whether rating values are quantized into byte codes.
+	 * @param indexes whether dictionaries of row and column identifiers are counted.
+	 * @return projected size in bytes.
+	 */
+	public static long projectBytes(int rowCount, int columnCount, long ratingCount, boolean quantized, boolean indexes) {
+		long bytes = HeapFootprint.align(HeapFootprint.OBJECT_HEADER + 8 * HeapFootprint.REFERENCE)
+			+ HeapFootprint.ofArray(rowCount + 1, 4) + HeapFootprint.ofArray(ratingCount, 4) + RatingValues.projectBytes(ratingCount, quantized);
+		if (indexes)
+			bytes += IdDictionary.projectBytes(rowCount) + IdDictionary.projectBytes(columnCount);
+		return bytes;
+	}
+
+	
+	/**
+	 * Building rating snapshot from specified fetcher of rating vectors. The fetcher is not closed.
+	 * @param fetcher specified fetcher of rating vectors.
+	 * @param valueBins value bins for quantized storage, which can be null for double storage.
+	 * @return rating snapshot built from specified fetcher.
+	 * @throws RemoteException if any error raises.
+	 */
+	public static RatingSnapshot build(Fetcher<RatingVector> fetcher, double[] valueBins) throws RemoteException {
+		int rowCount = 0;
+		int[] rowIds = new int[1024];
+		int[] rowStarts = new int[1025];
+		int count = 0;
+		int[] fieldIds = new int[1 << 16];
+		double[] values = new double[1 << 16];
+
+		while (fetcher.next()) {
+			RatingVector vRating = fetcher.pick();
+			if (vRating == null) continue;
+
+			Set<Integer> ids = vRating.fieldIds(true);
+			if (count + ids.size() > fieldIds.length) {
+				int capacity = Math.max(count + ids.size(), fieldIds.length * 2);
+				fieldIds = Arrays.copyOf(fieldIds, capacity);
+				values = Arrays.copyOf(values, capacity);
+			}
+			for (int id : ids) {
+				fieldIds[count] = id;
+				values[count] = vRating.get(id).value;
+				count++;
+			}
+
+			if (rowCount == rowIds.length) {
+				rowIds = Arrays.copyOf(rowIds, rowCount * 2);
+				rowStarts = Arrays.copyOf(rowStarts, rowCount * 2 + 1);
+			}
+			rowIds[rowCount] = vRating.id();
+			rowStarts[++rowCount] = count;
+		}
+
+		return build(rowIds, rowCount, rowStarts, fieldIds, values, valueBins);
+	}
+
+	
+	/**
+	 * Building rating snapshot from specified rows given in arrays. Ratings of row r are at positions from rowStarts[r] inclusive to rowStarts[r + 1] exclusive.
+	 * Within a row, field identifiers need not be sorted but must not be duplicated. Rows must not be duplicated.
+	 * @param rowIds row identifiers.
+	 * @param rowCount number of rows.
+	 * @param rowStarts starting positions of rows, whose length is at least number of rows plus one.
+	 * @param fieldIds field (column) identifiers of ratings.
+	 * @param values rating values.
+	 * @param valueBins value bins for quantized storage, which can be null for double storage.
+	 * @return rating snapshot built from specified rows.
+	 */
+	public static RatingSnapshot build(int[] rowIds, int rowCount, int[] rowStarts, int[] fieldIds, double[] values, double[] valueBins) {
+		IdDictionary rowIndex = new IdDictionary();
+		for (int row = 0; row < rowCount; row++)
+			rowIndex.add(rowIds[row]);
+		rowIndex.optimize();
+
+		int count = rowStarts[rowCount];
+		int[] distinct = Arrays.copyOf(fieldIds, count);
+		Arrays.sort(distinct);
+		int distinctCount = 0;
+		for (int i = 0; i < count; i++) {
+			if (distinctCount == 0 || distinct[distinctCount - 1] != distinct[i])
+				distinct[distinctCount++] = distinct[i];
+		}
+		IdDictionary columnIndex = new IdDictionary(Arrays.copyOf(distinct, distinctCount));
+
+		int[] columns = new int[count];
+		double[] sortedValues = new double[count];
+		long[] keys = new long[0];
+		for (int row = 0; row < rowCount; row++) {
+			int start = rowStarts[row], end = rowStarts[row + 1];
+			if (keys.length < end - start)
+				keys = new long[Math.max(end - start, keys.length * 2)];
+
+			for (int k = start; k < end; k++)
+				keys[k - start] = ((long)columnIndex.indexOf(fieldIds[k]) << 32) | (k - start);
+			Arrays.sort(keys, 0, end - start);
+			for (int k = start; k < end; k++) {
+				long key = keys[k - start];
+				columns[k] = (int)(key >>> 32);
+				sortedValues[k] = values[start + (int)key];
+			}
+		}
+
+		return new RatingSnapshot(rowIndex, columnIndex, Arrays.copyOf(rowStarts, rowCount + 1), columns, RatingValues.of(sortedValues, count, valueBins));
+	}
+
+	
+	/**
+	 * Applying specified rating changes to this snapshot, which produces a new snapshot and leaves this snapshot unchanged, so that readers of this snapshot are not disturbed.
+	 * Rows keep their dense indices and new rows are appended. If there are new columns, columns are re-indexed so that they remain sorted by identifier.
+	 * Rows and columns whose ratings are all removed are kept empty.
+	 * Later changes of the same rating override earlier ones, and removals of unknown ratings are ignored.
+	 * Unchanged runs of rows are copied in bulk, and rating values are copied in their stored form by {@link RatingValues#allocate(int, double[])} unless the storage must change,
+	 * so that only changed rows are merged. If column-major layout of this snapshot is built, that of the new snapshot is derived from it: entries of unchanged rows are shifted,
+	 * and only changed columns are merged, instead of sorting all ratings again.
+	 * @param changes specified rating changes, whose users are rows and items are columns.
+	 * @param valueBins value bins for quantized storage, which can be null for double storage.
+	 * @return new snapshot with specified changes.
+	 */
+	public RatingSnapshot apply(List<RatingChange> changes, double[] valueBins) {
+		IdDictionary rowIndex = new IdDictionary(this.rowIndex.ids());
+		Set<Integer> newColumnIds = Util.newSet();
+		for (RatingChange change : changes) {
+			if (!change.isRemoval() && !this.columnIndex.contains(change.getItemId()))
+				newColumnIds.add(change.getItemId());
+		}
+
+		IdDictionary columnIndex = this.columnIndex;
+		int[] remap = null, sources = null;
+		if (newColumnIds.size() > 0) {
+			int[] columnIds = Arrays.copyOf(this.columnIndex.ids(), this.columnIndex.size() + newColumnIds.size());
+			int size = this.columnIndex.size();
+			for (int columnId : newColumnIds) columnIds[size++] = columnId;
+			Arrays.sort(columnIds);
+			columnIndex = new IdDictionary(columnIds);
+			remap = new int[this.columnIndex.size()];
+			sources = new int[columnIndex.size()];
+			Arrays.fill(sources, -1);
+			for (int column = 0; column < remap.length; column++) {
+				remap[column] = columnIndex.indexOf(this.columnIndex.idOf(column));
+				sources[remap[column]] = column;
+			}
+		}
+
+		Map<Integer, TreeMap<Integer, Double>> edits = Util.newMap();
+		for (RatingChange change : changes) {
+			int column = columnIndex.indexOf(change.getItemId());
+			if (change.isRemoval() && (column < 0 || !rowIndex.contains(change.getUserId())))
+				continue;
+
+			int row = rowIndex.add(change.getUserId());
+			TreeMap<Integer, Double> rowEdits = edits.get(row);
+			if (rowEdits == null) edits.put(row, rowEdits = new TreeMap<>());
+			rowEdits.put(column, change.getValue());
+		}
+		rowIndex.optimize();
+
+		//Counting lengths of changed rows and columns
+		int oldRowCount = rowCount(), rowCount = rowIndex.size(), columnCount = columnIndex.size();
+		int[] rowStarts = new int[rowCount + 1];
+		int[] columnDeltas = new int[columnCount];
+		boolean[] changedRows = new boolean[rowCount];
+		for (int row = 0; row < rowCount; row++) {
+			int length = row < oldRowCount ? rowLength(row) : 0;
+			TreeMap<Integer, Double> rowEdits = edits.get(row);
+			if (rowEdits != null) {
+				changedRows[row] = true;
+				for (Map.Entry<Integer, Double> edit : rowEdits.entrySet()) {
+					int source = source(sources, edit.getKey());
+					boolean existing = row < oldRowCount && source >= 0 && Arrays.binarySearch(this.columns, rowStart(row), rowEnd(row), source) >= 0;
+					int delta = (Util.isUsed(edit.getValue()) ? 1 : 0) - (existing ? 1 : 0);
+					length += delta;
+					columnDeltas[edit.getKey()] += delta;
+				}
+			}
+			rowStarts[row + 1] = rowStarts[row] + length;
+		}
+
+		int count = rowStarts[rowCount];
+		RatingValues values = this.values.allocate(count, valueBins);
+		for (TreeMap<Integer, Double> rowEdits : edits.values()) {
+			for (double value : rowEdits.values()) {
+				if (values != null && Util.isUsed(value) && !values.accepts(value)) values = null;
+			}
+		}
+		boolean spliced = values != null;
+		if (!spliced) values = new RatingValues.DoubleValues(new double[count]);
+
+		//Copying unchanged runs of rows and merging changed rows
+		int[] columns = new int[count];
+		for (int row = 0; row < rowCount;) {
+			if (!changedRows[row]) {
+				int last = row;
+				while (last + 1 < rowCount && !changedRows[last + 1]) last++;
+				copyRange(rowStart(row), rowEnd(last), remap, columns, values, rowStarts[row]);
+				row = last + 1;
+				continue;
+			}
+
+			int k = row < oldRowCount ? rowStart(row) : 0, end = row < oldRowCount ? rowEnd(row) : 0;
+			int to = rowStarts[row];
+			for (Map.Entry<Integer, Double> edit : edits.get(row).entrySet()) {
+				int column = edit.getKey(), next = k;
+				while (next < end && remapped(remap, this.columns[next]) < column) next++;
+				to = copyRange(k, next, remap, columns, values, to);
+				k = next;
+				if (k < end && remapped(remap, this.columns[k]) == column) k++;
+				if (Util.isUsed(edit.getValue())) {
+					columns[to] = column;
+					values.set(to++, edit.getValue());
+				}
+			}
+			copyRange(k, end, remap, columns, values, to);
+			row++;
+		}
+		if (!spliced) values = RatingValues.of(((RatingValues.DoubleValues)values).values, count, valueBins);
+		if (!hasColumns())
+			return new RatingSnapshot(rowIndex, columnIndex, rowStarts, columns, values);
+
+		//Deriving column-major layout
+		Map<Integer, TreeMap<Integer, Double>> columnEdits = Util.newMap();
+		for (Map.Entry<Integer, TreeMap<Integer, Double>> rowEdits : edits.entrySet()) {
+			for (Map.Entry<Integer, Double> edit : rowEdits.getValue().entrySet()) {
+				TreeMap<Integer, Double> rowsOfColumn = columnEdits.get(edit.getKey());
+				if (rowsOfColumn == null) columnEdits.put(edit.getKey(), rowsOfColumn = new TreeMap<>());
+				rowsOfColumn.put(rowEdits.getKey(), edit.getValue());
+			}
+		}
+		int[] columnStarts = new int[columnCount + 1];
+		for (int column = 0; column < columnCount; column++) {
+			int source = source(sources, column);
+			columnStarts[column + 1] = columnStarts[column] + (source >= 0 ? columnLength(source) : 0) + columnDeltas[column];
+		}
+		int[] rows = new int[count];
+		int[] positions = new int[count];
+		for (int column = 0; column < columnCount; column++) {
+			int source = source(sources, column);
+			int entry = source >= 0 ? columnStart(source) : 0, end = source >= 0 ? columnEnd(source) : 0;
+			int to = columnStarts[column];
+			TreeMap<Integer, Double> rowsOfColumn = columnEdits.get(column);
+			if (rowsOfColumn != null) {
+				for (Map.Entry<Integer, Double> edit : rowsOfColumn.entrySet()) {
+					int row = edit.getKey();
+					for (; entry < end && this.rows[entry] < row; entry++, to++) {
+						rows[to] = this.rows[entry];
+						positions[to] = shiftedPosition(entry, column, rowStarts, columns, changedRows);
+					}
+					if (entry < end && this.rows[entry] == row) entry++;
+					if (Util.isUsed(edit.getValue())) {
+						rows[to] = row;
+						positions[to++] = Arrays.binarySearch(columns, rowStarts[row], rowStarts[row + 1], column);
+					}
+				}
+			}
+			for (; entry < end; entry++, to++) {
+				rows[to] = this.rows[entry];
+				positions[to] = shiftedPosition(entry, column, rowStarts, columns, changedRows);
+			}
+		}
+
+		return new RatingSnapshot(rowIndex, columnIndex, rowStarts, columns, values, columnStarts, rows, positions);
+	}
+
+	
+	/**
+	 * Copying specified range of row-major positions of this snapshot into specified arrays of a new snapshot.
+	 * @param from starting position of this snapshot, inclusive.
+	 * @param to ending position of this snapshot, exclusive.
+	 * @param remap new dense columns of old dense columns, null if columns are not re-indexed.
+	 * @param columns dense column indices of the new snapshot.
+	 * @param values rating values of the new snapshot, which are being filled.
+	 * @param target starting position of the new snapshot.
+	 * @return position of the new snapshot after the copied range.
+	 */
+	private int copyRange(int from, int to, int[] remap, int[] columns, RatingValues values, int target) {
+		int length = to - from;
+		if (length <= 0) return target;
+
+		if (remap == null)
+			System.arraycopy(this.columns, from, columns, target, length);
+		else {
+			for (int i = 0; i < length; i++) columns[target + i] = remap[this.columns[from + i]];
+		}
+		this.values.copy(from, values, target, length);
+		return target + length;
+	}
+
+	
+	/**
+	 * Getting row-major position in a new snapshot of specified CSC entry of this snapshot whose rating is kept.
+	 * Positions of unchanged rows are shifted by the difference of row starts, and positions of changed rows are searched in their new row slices.
+	 * @param entry CSC entry of this snapshot.
+	 * @param column new dense column of the entry.
+	 * @param rowStarts starting positions of rows of the new snapshot.
+	 * @param columns dense column indices of the new snapshot.
+	 * @param changedRows flags of changed rows.
+	 * @return row-major position in the new snapshot.
+	 */
+	private int shiftedPosition(int entry, int column, int[] rowStarts, int[] columns, boolean[] changedRows) {
+		int row = this.rows[entry];
+		if (changedRows[row])
+			return Arrays.binarySearch(columns, rowStarts[row], rowStarts[row + 1], column);
+		else
+			return this.positions[entry] - this.rowStarts[row] + rowStarts[row];
+	}
+
+	
+	/**
+	 * Getting old dense column of specified new dense column.
+	 * @param sources old dense columns of new dense columns, which are -1 for new columns, null if columns are not re-indexed.
+	 * @param column new dense column.
+	 * @return old dense column, -1 if the column is new.
+	 */
+	private static int source(int[] sources, int column) {
+		return sources != null ? sources[column] : column;
+	}
+
+	
+	/**
+	 * Mapping specified old dense column by specified re-indexing.
+	 * @param remap new dense columns of old dense columns, null if columns are not re-indexed.
+	 * @param column old dense column.
+	 * @return new dense column.
+	 */
+	private static int remapped(int[] remap, int column) {
+		return remap != null ? remap[column] : column;
+	}
+
+
+}
@@ -0,0 +1,378 @@
+/**
+ * HUDUP: A FRAMEWORK OF E-COMMERCIAL RECOMMENDATION ALGORITHMS
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: http://www.locnguyen.net/st/products/hudup
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.hudup.core.alg.cf;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * This abstract class represents compact storage of rating values of a {@link RatingSnapshot}.
+ * Rating values can be stored as doubles, as floats, or as byte codes into a small table of value bins.
+ * Because ratings of popular datasets are drawn from a small discrete set such as 1, 2, 3, 4, 5 (Movielens) or half stars (FilmTrust),
+ * quantized storage uses one byte per rating instead of eight bytes and decodes a rating by one lookup into the table of value bins.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public abstract class RatingValues implements Serializable {
+
+	
+	/**
+	 * Serial version UID for serializable class.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	
+	/**
+	 * Maximum number of value bins that quantized storage supports.
+	 */
+	public static final int MAX_BINS = 256;
+
+	
+	/**
+	 * Getting number of stored values.
+	 * @return number of stored values.
+	 */
+	public abstract int size();
+
+	
+	/**
+	 * Getting value at specified position.
+	 * @param index specified position.
+	 * @return value at specified position.
+	 */
+	public abstract double get(int index);
+
+	
+	/**
+	 * Checking whether values are stored as byte codes into value bins.
+	 * @return true if values are stored as byte codes into value bins.
+	 */
+	public boolean isQuantized() {
+		return false;
+	}
+
+	
+	/**
+	 * Estimating retained heap size of this storage.
+	 * @return estimated size in bytes.
+	 */
+	public abstract long estimateBytes();
+
+	
+	/**
+	 * Creating empty storage of the same kind with specified size, which is filled by {@link #copy(int, RatingValues, int, int)} and {@link #set(int, double)} before it is published,
+	 * so that a new snapshot copies ranges of this storage in their stored form instead of decoding and encoding every value.
+	 * @param size specified size.
+	 * @param valueBins value bins of the new storage, which can be null.
+	 * @return empty storage of the same kind, null if {@link #of(double[], int, double[])} with specified value bins would not create storage of the same kind.
+	 */
+	public abstract RatingValues allocate(int size, double[] valueBins);
+
+	
+	/**
+	 * Copying specified range of this storage into specified storage which is being filled.
+	 * @param from starting position in this storage.
+	 * @param target storage which is being filled.
+	 * @param to starting position in the target storage.
+	 * @param length number of copied values.
+	 */
+	protected void copy(int from, RatingValues target, int to, int length) {
+		for (int i = 0; i < length; i++)
+			target.set(to + i, get(from + i));
+	}
+
+	
+	/**
+	 * Setting value at specified position of this storage which is being filled and is not published yet.
+	 * @param index specified position.
+	 * @param value specified value, which must be accepted by {@link #accepts(double)}.
+	 */
+	protected abstract void set(int index, double value);
+
+	
+	/**
+	 * Checking whether specified value can be stored by this storage without loss.
+	 * @param value specified value.
+	 * @return whether specified value can be stored by this storage without loss.
+	 */
+	protected boolean accepts(double value) {
+		return true;
+	}
+
+	
+	/**
+	 * Projecting retained heap size of storage of specified number of values.
+	 * @param size number of values.
+	 * @param quantized whether values are quantized into byte codes. Otherwise they are stored as doubles.
+	 * @return projected size in bytes.
+	 */
+	public static long projectBytes(long size, boolean quantized) {
+		return HeapFootprint.align(HeapFootprint.OBJECT_HEADER + 2 * HeapFootprint.REFERENCE)
+			+ (quantized ? HeapFootprint.ofArray(size, 1) + HeapFootprint.ofArray(MAX_BINS, 8) : HeapFootprint.ofArray(size, 8));
+	}
+
+	
+	/**
+	 * Creating compact storage of specified values.
+	 * If value bins are specified, values are quantized into byte codes as long as every value is one of the bins.
+	 * If some value is outside the bins, storage falls back to floats automatically.
+	 * If value bins are not specified, values are stored as doubles.
+	 * @param values specified values.
+	 * @param size number of values counted from the beginning of the array.
+	 * @param valueBins value bins, which can be null.
+	 * @return compact storage of specified values.
+	 */
+	public static RatingValues of(double[] values, int size, double[] valueBins) {
+		if (valueBins == null || valueBins.length == 0)
+			return new DoubleValues(Arrays.copyOf(values, size));
+
+		double[] table = Arrays.stream(valueBins).distinct().sorted().toArray();
+		if (table.length <= MAX_BINS) {
+			byte[] codes = new byte[size];
+			boolean onGrid = true;
+			for (int i = 0; i < size; i++) {
+				int code = Arrays.binarySearch(table, values[i]);
+				if (code < 0) {
+					onGrid = false;
+					break;
+				}
+				codes[i] = (byte)code;
+			}
+
+			if (onGrid) return new QuantizedValues(codes, table);
+		}
+
+		float[] floats = new float[size];
+		for (int i = 0; i < size; i++)
+			floats[i] = (float)values[i];
+		return new FloatValues(floats);
+	}
+
+	
+	/**
+	 * This class stores rating values as doubles.
+	 *
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	public static class DoubleValues extends RatingValues {
+
+		/**
+		 * Serial version UID for serializable class.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Internal values.
+		 */
+		protected double[] values;
+
+		/**
+		 * Constructor with specified values.
+		 * @param values specified values.
+		 */
+		public DoubleValues(double[] values) {
+			this.values = values;
+		}
+
+		@Override
+		public RatingValues allocate(int size, double[] valueBins) {
+			return valueBins == null || valueBins.length == 0 ? new DoubleValues(new double[size]) : null;
+		}
+
+		@Override
+		protected void copy(int from, RatingValues target, int to, int length) {
+			if (target instanceof DoubleValues)
+				System.arraycopy(this.values, from, ((DoubleValues)target).values, to, length);
+			else
+				super.copy(from, target, to, length);
+		}
+
+		@Override
+		protected void set(int index, double value) {
+			this.values[index] = value;
+		}
+
+		@Override
+		public int size() {
+			return this.values.length;
+		}
+
+		@Override
+		public double get(int index) {
+			return this.values[index];
+		}
+
+		@Override
+		public long estimateBytes() {
+			return HeapFootprint.align(HeapFootprint.OBJECT_HEADER + HeapFootprint.REFERENCE) + HeapFootprint.ofArray(this.values.length, 8);
+		}
+
+	}
+
+	
+	/**
+	 * This class stores rating values as floats, which is the fall-back storage when some value is outside the value bins.
+	 *
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	public static class FloatValues extends RatingValues {
+
+		/**
+		 * Serial version UID for serializable class.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Internal values.
+		 */
+		protected float[] values;
+
+		/**
+		 * Constructor with specified values.
+		 * @param values specified values.
+		 */
+		public FloatValues(float[] values) {
+			this.values = values;
+		}
+
+		@Override
+		public RatingValues allocate(int size, double[] valueBins) {
+			return null; //Values may fit value bins again, which is decided by RatingValues.of.
+		}
+
+		@Override
+		protected void set(int index, double value) {
+			this.values[index] = (float)value;
+		}
+
+		@Override
+		public int size() {
+			return this.values.length;
+		}
+
+		@Override
+		public double get(int index) {
+			return this.values[index];
+		}
+
+		@Override
+		public long estimateBytes() {
+			return HeapFootprint.align(HeapFootprint.OBJECT_HEADER + HeapFootprint.REFERENCE) + HeapFootprint.ofArray(this.values.length, 4);
+		}
+
+	}
+
+	
+	/**
+	 * This class stores rating values as byte codes into a sorted table of value bins.
+	 *
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	public static class QuantizedValues extends RatingValues {
+
+		/**
+		 * Serial version UID for serializable class.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Byte codes which are positions in the table of value bins.
+		 */
+		protected byte[] codes;
+
+		/**
+		 * Sorted table of value bins.
+		 */
+		protected double[] table;
+
+		/**
+		 * Constructor with specified codes and table.
+		 * @param codes specified codes.
+		 * @param table sorted table of value bins.
+		 */
+		public QuantizedValues(byte[] codes, double[] table) {
+			this.codes = codes;
+			this.table = table;
+		}
+
+		@Override
+		public RatingValues allocate(int size, double[] valueBins) {
+			if (valueBins == null || !Arrays.equals(this.table, Arrays.stream(valueBins).distinct().sorted().toArray()))
+				return null;
+			else
+				return new QuantizedValues(new byte[size], this.table);
+		}
+
+		@Override
+		protected void copy(int from, RatingValues target, int to, int length) {
+			if (target instanceof QuantizedValues && ((QuantizedValues)target).table == this.table)
+				System.arraycopy(this.codes, from, ((QuantizedValues)target).codes, to, length);
+			else
+				super.copy(from, target, to, length);
+		}
+
+		@Override
+		protected void set(int index, double value) {
+			this.codes[index] = (byte)Arrays.binarySearch(this.table, value);
+		}
+
+		@Override
+		protected boolean accepts(double value) {
+			return Arrays.binarySearch(this.table, value) >= 0;
+		}
+
+		@Override
+		public int size() {
+			return this.codes.length;
+		}
+
+		@Override
+		public double get(int index) {
+			return this.table[this.codes[index] & 0xFF];
+		}
+
+		@Override
+		public boolean isQuantized() {
+			return true;
+		}
+
+		@Override
+		public long estimateBytes() {
+			return HeapFootprint.align(HeapFootprint.OBJECT_HEADER + 2 * HeapFootprint.REFERENCE)
+				+ HeapFootprint.ofArray(this.codes.length, 1) + HeapFootprint.ofArray(this.table.length, 8);
+		}
+
+		/**
+		 * Getting code at specified position.
+		 * @param index specified position.
+		 * @return code at specified position, which is position of the value in the table of value bins.
+		 */
+		public int code(int index) {
+			return this.codes[index] & 0xFF;
+		}
+
+		/**
+		 * Getting copy of the table of value bins.
+		 * @return copy of the table of value bins.
+		 */
+		public double[] table() {
+			return Arrays.copyOf(this.table, this.table.length);
+		}
+
+	}
+
+
+}
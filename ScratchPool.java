@@ -0,0 +1,119 @@
+/**
+ * HUDUP: A FRAMEWORK OF E-COMMERCIAL RECOMMENDATION ALGORITHMS
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: http://www.locnguyen.net/st/products/hudup
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.hudup.core.alg.cf;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class is a lock-free pool of scratch buffers for concurrent similarity queries. A query borrows a scratch, which holds prepared vectors of the active vector
+ * and of candidates together with their internal arrays, and releases it afterwards, so that buffers are reused without allocation and without thread-local storage.
+ * Thread-local storage is avoided because virtual threads are created per request, so a buffer per thread would never be reused.
+ * The pool keeps at most its capacity of idle scratches. When the pool is empty, a new scratch is created.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class ScratchPool {
+
+	
+	/**
+	 * Idle scratches.
+	 */
+	protected ConcurrentLinkedQueue<Scratch> idle = new ConcurrentLinkedQueue<>();
+
+	
+	/**
+	 * Number of idle scratches, which is tracked separately because {@link ConcurrentLinkedQueue#size()} is not constant-time.
+	 */
+	protected AtomicInteger idleCount = new AtomicInteger(0);
+
+	
+	/**
+	 * Maximum number of idle scratches.
+	 */
+	protected int capacity;
+
+	
+	/**
+	 * Default constructor whose capacity is four times the number of processors.
+	 */
+	public ScratchPool() {
+		this(4 * Runtime.getRuntime().availableProcessors());
+	}
+
+	
+	/**
+	 * Constructor with specified capacity.
+	 * @param capacity maximum number of idle scratches.
+	 */
+	public ScratchPool(int capacity) {
+		this.capacity = Math.max(1, capacity);
+	}
+
+	
+	/**
+	 * Borrowing a scratch from this pool, which is created if the pool is empty.
+	 * @return borrowed scratch.
+	 */
+	public Scratch borrow() {
+		Scratch scratch = this.idle.poll();
+		if (scratch == null) return new Scratch();
+
+		this.idleCount.decrementAndGet();
+		return scratch;
+	}
+
+	
+	/**
+	 * Releasing specified scratch back to this pool. The scratch is dropped if the pool is full. The scratch must not be used after releasing.
+	 * @param scratch specified scratch.
+	 */
+	public void release(Scratch scratch) {
+		if (scratch == null) return;
+
+		if (this.idleCount.incrementAndGet() <= this.capacity)
+			this.idle.offer(scratch);
+		else
+			this.idleCount.decrementAndGet();
+	}
+
+	
+	/**
+	 * Getting number of idle scratches.
+	 * @return number of idle scratches.
+	 */
+	public int getIdleCount() {
+		return this.idleCount.get();
+	}
+
+	
+	/**
+	 * This class holds scratch buffers of one query.
+	 *
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	public static class Scratch {
+
+		/**
+		 * Prepared active vector.
+		 */
+		public final PreparedVector active = new PreparedVector();
+
+		/**
+		 * Prepared candidate vector.
+		 */
+		public final PreparedVector candidate = new PreparedVector();
+
+	}
+
+
+}
@@ -0,0 +1,344 @@
+/**
+ * HUDUP: A FRAMEWORK OF E-COMMERCIAL RECOMMENDATION ALGORITHMS
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: http://www.locnguyen.net/st/products/hudup
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.hudup.core.alg.cf;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import net.hudup.core.Constants;
+import net.hudup.core.data.RatingVector;
+
+/**
+ * This class is an asynchronous similarity service which coalesces many small similarity requests into batched one-to-many calculations.
+ * Pair requests are queued in groups by active vector. A group is flushed when its time window elapses or when it reaches the maximum batch size,
+ * and then all its candidates are calculated by one call of {@link NeighborCF#simBatchConcurrent(RatingVector, List, Object...)}, which prepares the active vector once.
+ * Duplicate requests of the same pair of vector instances within a window share one future. Groups and requests are keyed by identity of vectors rather than by their identifiers,
+ * so that vectors which share an identifier but hold other ratings, such as query vectors of users outside the model or updated copies of users, are never answered with each other's similarities. Therefore, throughput increases under load at the cost of a latency bounded by the window.
+ * The algorithm must be set up before requests are submitted and must not be unset up while requests are pending.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class SimilarityBatcher implements AutoCloseable {
+
+	
+	/**
+	 * Default time window in microseconds.
+	 */
+	public static final long DEFAULT_WINDOW_MICROS = 500;
+
+	
+	/**
+	 * Default maximum number of candidates of a batch.
+	 */
+	public static final int DEFAULT_MAX_BATCH = 256;
+
+	
+	/**
+	 * Neighbor algorithm which calculates similarities.
+	 */
+	protected NeighborCF alg = null;
+
+	
+	/**
+	 * Time window in microseconds.
+	 */
+	protected long windowMicros = DEFAULT_WINDOW_MICROS;
+
+	
+	/**
+	 * Maximum number of candidates of a batch.
+	 */
+	protected int maxBatch = DEFAULT_MAX_BATCH;
+
+	
+	/**
+	 * Executor which calculates batches.
+	 */
+	protected Executor executor = null;
+
+	
+	/**
+	 * Timer which flushes groups when their windows elapse.
+	 */
+	protected ScheduledExecutorService timer = null;
+
+	
+	/**
+	 * Pending groups by identity of active vector.
+	 */
+	protected Map<VectorKey, Group> pending = new ConcurrentHashMap<>();
+
+	
+	/**
+	 * Flag to indicate whether this service is closed.
+	 */
+	protected volatile boolean closed = false;
+
+	
+	/**
+	 * Constructor with specified algorithm, default window, default maximum batch size, and common fork-join pool.
+	 * @param alg specified algorithm.
+	 */
+	public SimilarityBatcher(NeighborCF alg) {
+		this(alg, DEFAULT_WINDOW_MICROS, DEFAULT_MAX_BATCH, ForkJoinPool.commonPool());
+	}
+
+	
+	/**
+	 * Constructor with specified algorithm, window, maximum batch size, and executor.
+	 * @param alg specified algorithm.
+	 * @param windowMicros time window in microseconds. Zero window flushes a group as soon as the timer runs.
+	 * @param maxBatch maximum number of candidates of a batch.
+	 * @param executor executor which calculates batches, for example executor of virtual threads.
+	 */
+	public SimilarityBatcher(NeighborCF alg, long windowMicros, int maxBatch, Executor executor) {
+		this.alg = alg;
+		this.windowMicros = Math.max(0, windowMicros);
+		this.maxBatch = Math.max(1, maxBatch);
+		this.executor = executor != null ? executor : ForkJoinPool.commonPool();
+
+		ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+			Thread thread = new Thread(r, "similarity-batcher");
+			thread.setDaemon(true);
+			return thread;
+		});
+		timer.setRemoveOnCancelPolicy(true);
+		this.timer = timer;
+	}
+
+	
+	/**
+	 * Submitting a request of similarity between an active vector and a candidate vector.
+	 * @param vActive active rating vector.
+	 * @param vCandidate candidate rating vector.
+	 * @return future of similarity, which is shared by duplicate requests of the same vector instances in the same window.
+	 */
+	public CompletableFuture<Double> submit(RatingVector vActive, RatingVector vCandidate) {
+		if (this.closed) {
+			CompletableFuture<Double> future = new CompletableFuture<>();
+			future.completeExceptionally(new RejectedExecutionException("Similarity batcher is closed"));
+			return future;
+		}
+
+		VectorKey key = new VectorKey(vActive);
+		while (true) {
+			Group group = this.pending.computeIfAbsent(key, k -> newGroup(vActive));
+			CompletableFuture<Double> future = null;
+			boolean full = false;
+			synchronized (group) {
+				if (group.flushed) {
+					this.pending.remove(key, group); //The group may be flushed before it is put into pending groups.
+					continue;
+				}
+
+				future = group.requests.get(vCandidate);
+				if (future == null) {
+					future = new CompletableFuture<>();
+					group.requests.put(vCandidate, future);
+					group.candidates.add(vCandidate);
+				}
+				full = group.requests.size() >= this.maxBatch;
+			}
+
+			if (full) flush(group);
+			return future;
+		}
+	}
+
+	
+	/**
+	 * Submitting a request of top-K neighbors of an active vector among candidates. Similarities of candidates are requested by {@link #submit(RatingVector, RatingVector)}
+	 * so that they are coalesced with other requests of the same active vector.
+	 * @param vActive active rating vector.
+	 * @param candidates list of candidate rating vectors.
+	 * @param k number of neighbors.
+	 * @return future of indexes of top-K candidates in descending order of similarity, as in {@link NeighborCF#topK(double[], int)}.
+	 */
+	public CompletableFuture<int[]> submitTopK(RatingVector vActive, List<RatingVector> candidates, int k) {
+		List<CompletableFuture<Double>> futures = new ArrayList<>(candidates.size());
+		for (RatingVector vCandidate : candidates)
+			futures.add(vCandidate != null ? submit(vActive, vCandidate) : null);
+
+		CompletableFuture<?>[] all = futures.stream().filter(future -> future != null).toArray(CompletableFuture<?>[]::new);
+		return CompletableFuture.allOf(all).thenApply(v -> {
+			double[] sims = new double[futures.size()];
+			for (int i = 0; i < sims.length; i++) {
+				CompletableFuture<Double> future = futures.get(i);
+				sims[i] = future != null ? future.join() : Constants.UNUSED;
+			}
+			return NeighborCF.topK(sims, k);
+		});
+	}
+
+	
+	/**
+	 * Creating new group of specified active vector and scheduling its flush after the window.
+	 * @param vActive specified active vector.
+	 * @return new group.
+	 */
+	private Group newGroup(RatingVector vActive) {
+		Group group = new Group(vActive);
+		try {
+			this.timer.schedule(() -> flush(group), this.windowMicros, TimeUnit.MICROSECONDS);
+		}
+		catch (RejectedExecutionException e) {
+			this.executor.execute(() -> flush(group));
+		}
+		return group;
+	}
+
+	
+	/**
+	 * Flushing specified group, which is removed from pending groups and calculated by the executor. Flushing a group twice has no effect.
+	 * @param group specified group.
+	 */
+	protected void flush(Group group) {
+		synchronized (group) {
+			if (group.flushed) return;
+			group.flushed = true;
+		}
+		this.pending.remove(new VectorKey(group.active), group);
+
+		try {
+			this.executor.execute(() -> calculate(group));
+		}
+		catch (RejectedExecutionException e) {
+			calculate(group);
+		}
+	}
+
+	
+	/**
+	 * Calculating similarities of flushed group and completing its futures.
+	 * @param group flushed group.
+	 */
+	protected void calculate(Group group) {
+		try {
+			double[] sims = this.alg.simBatchConcurrent(group.active, group.candidates);
+			for (int i = 0; i < sims.length; i++)
+				group.requests.get(group.candidates.get(i)).complete(sims[i]);
+		}
+		catch (Throwable e) {
+			for (CompletableFuture<Double> future : group.requests.values())
+				future.completeExceptionally(e);
+		}
+	}
+
+	
+	/**
+	 * Getting number of pending groups.
+	 * @return number of pending groups.
+	 */
+	public int getPendingCount() {
+		return this.pending.size();
+	}
+
+	
+	/**
+	 * Closing this service. Pending groups are flushed and new requests are rejected.
+	 */
+	@Override
+	public void close() {
+		// TODO Auto-generated method stub
+		this.closed = true;
+		this.timer.shutdownNow();
+		for (Group group : new ArrayList<>(this.pending.values()))
+			flush(group);
+	}
+
+	
+	/**
+	 * This class is a group of pending requests which share the same active vector.
+	 *
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	protected static class Group {
+
+		/**
+		 * Active rating vector.
+		 */
+		protected RatingVector active = null;
+
+		/**
+		 * Futures by identity of candidate vector.
+		 */
+		protected Map<RatingVector, CompletableFuture<Double>> requests = new IdentityHashMap<>();
+
+		/**
+		 * Candidate vectors in the order of requests.
+		 */
+		protected List<RatingVector> candidates = new ArrayList<>();
+
+		/**
+		 * Flag to indicate whether this group is flushed, after which no request is added.
+		 */
+		protected boolean flushed = false;
+
+		/**
+		 * Constructor with specified active vector.
+		 * @param active specified active vector.
+		 */
+		public Group(RatingVector active) {
+			this.active = active;
+		}
+
+	}
+
+	
+	/**
+	 * This class is a key of pending groups which compares rating vectors by identity.
+	 *
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	protected static class VectorKey {
+
+		/**
+		 * Rating vector.
+		 */
+		protected RatingVector vector = null;
+
+		/**
+		 * Constructor with specified rating vector.
+		 * @param vector specified rating vector.
+		 */
+		public VectorKey(RatingVector vector) {
+			this.vector = vector;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			// TODO Auto-generated method stub
+			return obj instanceof VectorKey && ((VectorKey)obj).vector == this.vector;
+		}
+
+		@Override
+		public int hashCode() {
+			// TODO Auto-generated method stub
+			return System.identityHashCode(this.vector);
+		}
+
+	}
+
+
+}
@@ -0,0 +1,32 @@
+/**
+ * HUDUP: A FRAMEWORK OF E-COMMERCIAL RECOMMENDATION ALGORITHMS
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: http://www.locnguyen.net/st/products/hudup
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.hudup.core.alg.cf;
+
+/**
+ * This interface represents a similarity measure compiled for batch calculation.
+ * A compiled measure reads every configuration value it needs at compiling time and then only works on {@link PreparedVector} (s),
+ * which means that it never builds sets of field identifiers nor looks up the configuration for each pair.
+ * The active vector is always prepared by {@link PreparedVector#prepareActive()} so that its ratings can be looked up by one array access.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public interface SimilarityKernel {
+
+	
+	/**
+	 * Calculating the similarity between active vector and candidate vector.
+	 * @param active active vector which was prepared by {@link PreparedVector#prepareActive()}.
+	 * @param candidate candidate vector.
+	 * @return similarity between active vector and candidate vector.
+	 */
+	double sim(PreparedVector active, PreparedVector candidate);
+
+
+}
@@ -0,0 +1,1133 @@
+/**
+ * HUDUP: A FRAMEWORK OF E-COMMERCIAL RECOMMENDATION ALGORITHMS
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: http://www.locnguyen.net/st/products/hudup
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.hudup.core.alg.cf;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import net.hudup.core.data.RatingVector;
+import net.hudup.core.data.UserRating;
+
+/**
+ * This class represents a binary file of rating snapshot which contains identifiers of rows and columns, row-major (CSR) layout, column-major (CSC) layout,
+ * and precomputed moments (means and variances of rows, columns, and all ratings). The file is written once after the first setup from dataset,
+ * and on later setups it is memory-mapped by {@link #map(Path, long, boolean)}, so that ratings and both layouts are served from the mapping without parsing, boxing, or copying them into the heap.
+ * Tools which prefer primitive arrays in the heap read the file by {@link #read(Path, long, boolean)}, which bulk-copies its sections.
+ * <br>
+ * The header stores the checksum of the source dataset so that a file built from other data is rejected,
+ * and the CRC32 checksum of the body which is validated on demand. Numbers are stored in little-endian order and every section is aligned to 8 bytes.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class SnapshotFile {
+
+	
+	/**
+	 * Magic number at the beginning of the file, which is "HUDSNAP1" in ASCII.
+	 */
+	public static final long MAGIC = 0x48554453_4E415031L;
+
+	
+	/**
+	 * Version of file format.
+	 */
+	public static final int VERSION = 1;
+
+	
+	/**
+	 * Size of header in bytes.
+	 */
+	public static final int HEADER_SIZE = 96;
+
+	
+	/**
+	 * Storage kind of rating values as doubles.
+	 */
+	protected static final int DOUBLE_VALUES = 0;
+
+	
+	/**
+	 * Storage kind of rating values as floats.
+	 */
+	protected static final int FLOAT_VALUES = 1;
+
+	
+	/**
+	 * Storage kind of rating values as byte codes into value bins.
+	 */
+	protected static final int QUANTIZED_VALUES = 2;
+
+	
+	/**
+	 * Maximum number of bytes mapped at once.
+	 */
+	private static final int CHUNK = 1 << 30;
+
+	
+	/**
+	 * Rating snapshot whose column-major layout is built.
+	 */
+	protected RatingSnapshot snapshot;
+
+	
+	/**
+	 * Means of rows.
+	 */
+	protected double[] rowMeans;
+
+	
+	/**
+	 * Variances of rows.
+	 */
+	protected double[] rowVars;
+
+	
+	/**
+	 * Means of columns.
+	 */
+	protected double[] columnMeans;
+
+	
+	/**
+	 * Variances of columns.
+	 */
+	protected double[] columnVars;
+
+	
+	/**
+	 * Mean of all ratings.
+	 */
+	protected double ratingMean;
+
+	
+	/**
+	 * Variance of all ratings.
+	 */
+	protected double ratingVar;
+
+	
+	/**
+	 * Checksum of source dataset.
+	 */
+	protected long sourceChecksum;
+
+	
+	/**
+	 * Constructor with specified snapshot, moments, and checksum of source dataset.
+	 * @param snapshot rating snapshot.
+	 * @param rowMeans means of rows.
+	 * @param rowVars variances of rows.
+	 * @param columnMeans means of columns.
+	 * @param columnVars variances of columns.
+	 * @param ratingMean mean of all ratings.
+	 * @param ratingVar variance of all ratings.
+	 * @param sourceChecksum checksum of source dataset.
+	 */
+	public SnapshotFile(RatingSnapshot snapshot, double[] rowMeans, double[] rowVars, double[] columnMeans, double[] columnVars, double ratingMean, double ratingVar, long sourceChecksum) {
+		this.snapshot = snapshot;
+		this.rowMeans = rowMeans;
+		this.rowVars = rowVars;
+		this.columnMeans = columnMeans;
+		this.columnVars = columnVars;
+		this.ratingMean = ratingMean;
+		this.ratingVar = ratingVar;
+		this.sourceChecksum = sourceChecksum;
+	}
+
+	
+	/**
+	 * Getting rating snapshot.
+	 * @return rating snapshot.
+	 */
+	public RatingSnapshot getSnapshot() {
+		return this.snapshot;
+	}
+
+	
+	/**
+	 * Getting means of rows.
+	 * @return means of rows.
+	 */
+	public double[] getRowMeans() {
+		return this.rowMeans;
+	}
+
+	
+	/**
+	 * Getting variances of rows.
+	 * @return variances of rows.
+	 */
+	public double[] getRowVars() {
+		return this.rowVars;
+	}
+
+	
+	/**
+	 * Getting means of columns.
+	 * @return means of columns.
+	 */
+	public double[] getColumnMeans() {
+		return this.columnMeans;
+	}
+
+	
+	/**
+	 * Getting variances of columns.
+	 * @return variances of columns.
+	 */
+	public double[] getColumnVars() {
+		return this.columnVars;
+	}
+
+	
+	/**
+	 * Getting mean of all ratings.
+	 * @return mean of all ratings.
+	 */
+	public double getRatingMean() {
+		return this.ratingMean;
+	}
+
+	
+	/**
+	 * Getting variance of all ratings.
+	 * @return variance of all ratings.
+	 */
+	public double getRatingVar() {
+		return this.ratingVar;
+	}
+
+	
+	/**
+	 * Getting checksum of source dataset.
+	 * @return checksum of source dataset.
+	 */
+	public long getSourceChecksum() {
+		return this.sourceChecksum;
+	}
+
+	
+	/**
+	 * Writing this file to specified path. Column-major layout of the snapshot is built if it is not built yet.
+	 * The file is written to a temporary file next to specified path and then moved, so that readers never see a partial file.
+	 * @param path specified path.
+	 * @throws IOException if any error raises.
+	 */
+	public void write(Path path) throws IOException {
+		RatingSnapshot snapshot = this.snapshot.buildColumns();
+		RatingValues values = snapshot.getValues();
+		int kind = values instanceof RatingValues.QuantizedValues ? QUANTIZED_VALUES : (values instanceof RatingValues.FloatValues ? FLOAT_VALUES : DOUBLE_VALUES);
+		double[] bins = kind == QUANTIZED_VALUES ? ((RatingValues.QuantizedValues)values).table : new double[0];
+		int rowCount = snapshot.rowCount(), columnCount = snapshot.columnCount(), count = snapshot.ratingCount();
+
+		Path parent = path.toAbsolutePath().getParent();
+		if (parent != null) Files.createDirectories(parent);
+		Path temp = Paths.get(path.toString() + ".tmp");
+		try (Output output = new Output(FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))) {
+			output.channel.position(HEADER_SIZE);
+			output.ints(snapshot.rowIndex.ids(), rowCount);
+			output.ints(snapshot.columnIndex.ids(), columnCount);
+			output.ints(snapshot.rowStarts, rowCount + 1);
+			output.ints(snapshot.columns, count);
+			if (kind == QUANTIZED_VALUES) {
+				output.doubles(bins, bins.length);
+				output.bytes(((RatingValues.QuantizedValues)values).codes, count);
+			}
+			else if (kind == FLOAT_VALUES)
+				output.floats(((RatingValues.FloatValues)values).values, count);
+			else
+				output.doubles(((RatingValues.DoubleValues)values).values, count);
+			output.ints(snapshot.columnStarts, columnCount + 1);
+			output.ints(snapshot.rows, count);
+			output.ints(snapshot.positions, count);
+			output.doubles(this.rowMeans, rowCount);
+			output.doubles(this.rowVars, rowCount);
+			output.doubles(this.columnMeans, columnCount);
+			output.doubles(this.columnVars, columnCount);
+			output.flush();
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			header.putLong(MAGIC).putInt(VERSION).putInt(kind);
+			header.putInt(rowCount).putInt(columnCount).putInt(count).putInt(bins.length);
+			header.putLong(this.sourceChecksum).putLong(output.crc.getValue());
+			header.putDouble(this.ratingMean).putDouble(this.ratingVar);
+			header.putLong(output.length);
+			header.clear();
+			output.channel.position(0);
+			while (header.hasRemaining())
+				output.channel.write(header);
+			output.channel.force(false);
+		}
+
+		try {
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	
+	/**
+	 * Reading file at specified path by memory mapping.
+	 * @param path specified path.
+	 * @param sourceChecksum expected checksum of source dataset.
+	 * @param verify whether the CRC32 checksum of the body is validated, which costs one pass over the file.
+	 * @return file read from specified path, null if the file does not exist, is not a snapshot file of current version, or is built from other source dataset.
+	 * @throws IOException if the file is truncated, its body is corrupted, or any other error raises.
+	 */
+	public static SnapshotFile read(Path path, long sourceChecksum, boolean verify) throws IOException {
+		if (!Files.isRegularFile(path)) return null;
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE) return null;
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			if (header.getLong() != MAGIC || header.getInt() != VERSION) return null;
+			int kind = header.getInt();
+			int rowCount = header.getInt(), columnCount = header.getInt(), count = header.getInt(), binCount = header.getInt();
+			long storedSourceChecksum = header.getLong(), bodyChecksum = header.getLong();
+			double ratingMean = header.getDouble(), ratingVar = header.getDouble();
+			long bodyLength = header.getLong();
+			if (storedSourceChecksum != sourceChecksum) return null;
+			if (channel.size() != HEADER_SIZE + bodyLength)
+				throw new IOException("Snapshot file " + path + " is truncated");
+
+			Input input = new Input(channel);
+			if (verify && input.checksum(bodyLength) != bodyChecksum)
+				throw new IOException("Snapshot file " + path + " is corrupted");
+
+			int[] rowIds = input.ints(rowCount);
+			int[] columnIds = input.ints(columnCount);
+			int[] rowStarts = input.ints(rowCount + 1);
+			int[] columns = input.ints(count);
+			RatingValues values = null;
+			if (kind == QUANTIZED_VALUES) {
+				double[] bins = input.doubles(binCount);
+				values = new RatingValues.QuantizedValues(input.bytes(count), bins);
+			}
+			else if (kind == FLOAT_VALUES)
+				values = new RatingValues.FloatValues(input.floats(count));
+			else
+				values = new RatingValues.DoubleValues(input.doubles(count));
+			int[] columnStarts = input.ints(columnCount + 1);
+			int[] rows = input.ints(count);
+			int[] positions = input.ints(count);
+
+			RatingSnapshot snapshot = new RatingSnapshot(new IdDictionary(rowIds), new IdDictionary(columnIds), rowStarts, columns, values, columnStarts, rows, positions);
+			return new SnapshotFile(snapshot, input.doubles(rowCount), input.doubles(rowCount), input.doubles(columnCount), input.doubles(columnCount), ratingMean, ratingVar, sourceChecksum);
+		}
+	}
+
+	
+	/**
+	 * Mapping file at specified path without copying its sections into the heap. Identifiers of rows and columns and the moments are read into arrays,
+	 * whereas ratings and both layouts stay in the mapping and are read on demand by {@link MappedSnapshot}.
+	 * @param path specified path.
+	 * @param sourceChecksum expected checksum of source dataset.
+	 * @param verify whether the CRC32 checksum of the body is validated, which costs one pass over the file.
+	 * @return file mapped from specified path, null if the file does not exist, is not a snapshot file of current version, or is built from other source dataset.
+	 * @throws IOException if the file is truncated, its body is corrupted, or any other error raises.
+	 */
+	public static SnapshotFile map(Path path, long sourceChecksum, boolean verify) throws IOException {
+		if (!Files.isRegularFile(path)) return null;
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE) return null;
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			if (header.getLong() != MAGIC || header.getInt() != VERSION) return null;
+			int kind = header.getInt();
+			int rowCount = header.getInt(), columnCount = header.getInt(), count = header.getInt(), binCount = header.getInt();
+			long storedSourceChecksum = header.getLong(), bodyChecksum = header.getLong();
+			double ratingMean = header.getDouble(), ratingVar = header.getDouble();
+			long bodyLength = header.getLong();
+			if (storedSourceChecksum != sourceChecksum) return null;
+			if (channel.size() != HEADER_SIZE + bodyLength)
+				throw new IOException("Snapshot file " + path + " is truncated");
+
+			Input input = new Input(channel);
+			if (verify && input.checksum(bodyLength) != bodyChecksum)
+				throw new IOException("Snapshot file " + path + " is corrupted");
+
+			int[] rowIds = input.ints(rowCount);
+			int[] columnIds = input.ints(columnCount);
+			Section rowStarts = input.section(rowCount + 1, 4);
+			Section columns = input.section(count, 4);
+			double[] bins = kind == QUANTIZED_VALUES ? input.doubles(binCount) : null;
+			MappedValues values = new MappedValues(input.section(count, kind == QUANTIZED_VALUES ? 1 : (kind == FLOAT_VALUES ? 4 : 8)), kind, bins);
+			Section columnStarts = input.section(columnCount + 1, 4);
+			Section rows = input.section(count, 4);
+			Section positions = input.section(count, 4);
+
+			MappedSnapshot snapshot = new MappedSnapshot(new IdDictionary(rowIds), new IdDictionary(columnIds), rowStarts, columns, values, columnStarts, rows, positions);
+			return new SnapshotFile(snapshot, input.doubles(rowCount), input.doubles(rowCount), input.doubles(columnCount), input.doubles(columnCount), ratingMean, ratingVar, sourceChecksum);
+		}
+	}
+
+	
+	/**
+	 * Reading checksum of source dataset stored in the header of file at specified path, which lets tools open a snapshot file without the source dataset.
+	 * @param path specified path.
+	 * @return checksum of source dataset stored in the header.
+	 * @throws IOException if the file is not a snapshot file of current version or any other error raises.
+	 */
+	public static long readSourceChecksum(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE)
+				throw new IOException(path + " is not a snapshot file");
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			if (header.getLong() != MAGIC || header.getInt() != VERSION)
+				throw new IOException(path + " is not a snapshot file of version " + VERSION);
+			return header.getLong(32);
+		}
+	}
+
+	
+	/**
+	 * This class writes sections of body through a direct buffer and calculates the CRC32 checksum of the body.
+	 *
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	private static class Output implements Closeable {
+
+		/**
+		 * File channel.
+		 */
+		private FileChannel channel;
+
+		/**
+		 * Direct buffer.
+		 */
+		private ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+
+		/**
+		 * CRC32 checksum of written body.
+		 */
+		private CRC32 crc = new CRC32();
+
+		/**
+		 * Number of written bytes of body.
+		 */
+		private long length = 0;
+
+		/**
+		 * Constructor with file channel.
+		 * @param channel file channel.
+		 */
+		private Output(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		/**
+		 * Writing first elements of specified array as a section.
+		 * @param array specified array.
+		 * @param count number of elements.
+		 * @throws IOException if any error raises.
+		 */
+		private void ints(int[] array, int count) throws IOException {
+			for (int i = 0; i < count; i++) {
+				ensure(4);
+				this.buffer.putInt(array[i]);
+			}
+			pad(4L * count);
+		}
+
+		/**
+		 * Writing first elements of specified array as a section.
+		 * @param array specified array.
+		 * @param count number of elements.
+		 * @throws IOException if any error raises.
+		 */
+		private void floats(float[] array, int count) throws IOException {
+			for (int i = 0; i < count; i++) {
+				ensure(4);
+				this.buffer.putFloat(array[i]);
+			}
+			pad(4L * count);
+		}
+
+		/**
+		 * Writing first elements of specified array as a section.
+		 * @param array specified array.
+		 * @param count number of elements.
+		 * @throws IOException if any error raises.
+		 */
+		private void doubles(double[] array, int count) throws IOException {
+			for (int i = 0; i < count; i++) {
+				ensure(8);
+				this.buffer.putDouble(array[i]);
+			}
+			pad(8L * count);
+		}
+
+		/**
+		 * Writing first elements of specified array as a section.
+		 * @param array specified array.
+		 * @param count number of elements.
+		 * @throws IOException if any error raises.
+		 */
+		private void bytes(byte[] array, int count) throws IOException {
+			for (int i = 0; i < count; i++) {
+				ensure(1);
+				this.buffer.put(array[i]);
+			}
+			pad(count);
+		}
+
+		/**
+		 * Padding the section of specified size to 8 bytes.
+		 * @param size size of the section in bytes.
+		 * @throws IOException if any error raises.
+		 */
+		private void pad(long size) throws IOException {
+			this.length += size;
+			while (this.length % 8 != 0) {
+				ensure(1);
+				this.buffer.put((byte)0);
+				this.length++;
+			}
+		}
+
+		/**
+		 * Flushing the buffer if it has not enough room for specified number of bytes.
+		 * @param bytes specified number of bytes.
+		 * @throws IOException if any error raises.
+		 */
+		private void ensure(int bytes) throws IOException {
+			if (this.buffer.remaining() < bytes) flush();
+		}
+
+		/**
+		 * Flushing the buffer to the channel.
+		 * @throws IOException if any error raises.
+		 */
+		private void flush() throws IOException {
+			this.buffer.flip();
+			this.crc.update(this.buffer.duplicate());
+			while (this.buffer.hasRemaining())
+				this.channel.write(this.buffer);
+			this.buffer.clear();
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.channel.close();
+		}
+
+	}
+
+	
+	/**
+	 * This class reads sections of body by mapping them in chunks of at most {@link SnapshotFile#CHUNK} bytes.
+	 *
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	private static class Input {
+
+		/**
+		 * File channel.
+		 */
+		private FileChannel channel;
+
+		/**
+		 * Current position in the file.
+		 */
+		private long position = HEADER_SIZE;
+
+		/**
+		 * Constructor with file channel.
+		 * @param channel file channel.
+		 */
+		private Input(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		/**
+		 * Mapping next chunk of the current section.
+		 * @param elements number of remaining elements of the section.
+		 * @param elementBytes size of element in bytes.
+		 * @return mapped chunk.
+		 * @throws IOException if any error raises.
+		 */
+		private ByteBuffer map(int elements, int elementBytes) throws IOException {
+			int n = Math.min(elements, CHUNK / elementBytes);
+			MappedByteBuffer chunk = this.channel.map(FileChannel.MapMode.READ_ONLY, this.position, (long)n * elementBytes);
+			this.position += (long)n * elementBytes;
+			return chunk.order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		/**
+		 * Skipping padding at the end of the current section.
+		 */
+		private void pad() {
+			this.position = (this.position + 7) / 8 * 8;
+		}
+
+		/**
+		 * Reading section of integers.
+		 * @param count number of elements.
+		 * @return array of read elements.
+		 * @throws IOException if any error raises.
+		 */
+		private int[] ints(int count) throws IOException {
+			int[] array = new int[count];
+			for (int done = 0; done < count;) {
+				ByteBuffer chunk = map(count - done, 4);
+				int n = chunk.remaining() / 4;
+				chunk.asIntBuffer().get(array, done, n);
+				done += n;
+			}
+			pad();
+			return array;
+		}
+
+		/**
+		 * Mapping section without copying it.
+		 * @param count number of elements.
+		 * @param elementBytes size of element in bytes, which is 1, 4, or 8.
+		 * @return mapped section.
+		 * @throws IOException if any error raises.
+		 */
+		private Section section(int count, int elementBytes) throws IOException {
+			ByteBuffer[] chunks = new ByteBuffer[Math.max(1, (int)(((long)count * elementBytes + CHUNK - 1) / CHUNK))];
+			int done = 0;
+			for (int i = 0; i < chunks.length; i++) {
+				chunks[i] = map(count - done, elementBytes);
+				done += chunks[i].remaining() / elementBytes;
+			}
+			pad();
+			return new Section(chunks, elementBytes);
+		}
+
+		/**
+		 * Reading section of floats.
+		 * @param count number of elements.
+		 * @return array of read elements.
+		 * @throws IOException if any error raises.
+		 */
+		private float[] floats(int count) throws IOException {
+			float[] array = new float[count];
+			for (int done = 0; done < count;) {
+				ByteBuffer chunk = map(count - done, 4);
+				int n = chunk.remaining() / 4;
+				chunk.asFloatBuffer().get(array, done, n);
+				done += n;
+			}
+			pad();
+			return array;
+		}
+
+		/**
+		 * Reading section of doubles.
+		 * @param count number of elements.
+		 * @return array of read elements.
+		 * @throws IOException if any error raises.
+		 */
+		private double[] doubles(int count) throws IOException {
+			double[] array = new double[count];
+			for (int done = 0; done < count;) {
+				ByteBuffer chunk = map(count - done, 8);
+				int n = chunk.remaining() / 8;
+				chunk.asDoubleBuffer().get(array, done, n);
+				done += n;
+			}
+			pad();
+			return array;
+		}
+
+		/**
+		 * Reading section of bytes.
+		 * @param count number of elements.
+		 * @return array of read elements.
+		 * @throws IOException if any error raises.
+		 */
+		private byte[] bytes(int count) throws IOException {
+			byte[] array = new byte[count];
+			for (int done = 0; done < count;) {
+				ByteBuffer chunk = map(count - done, 1);
+				int n = chunk.remaining();
+				chunk.get(array, done, n);
+				done += n;
+			}
+			pad();
+			return array;
+		}
+
+		/**
+		 * Calculating the CRC32 checksum of body without moving the current position.
+		 * @param length length of body in bytes.
+		 * @return CRC32 checksum of body.
+		 * @throws IOException if any error raises.
+		 */
+		private long checksum(long length) throws IOException {
+			CRC32 crc = new CRC32();
+			for (long done = 0; done < length;) {
+				long n = Math.min(length - done, CHUNK);
+				crc.update(this.channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + done, n));
+				done += n;
+			}
+			return crc.getValue();
+		}
+
+	}
+
+	
+	/**
+	 * This class reads elements of a mapped section by absolute positions, so that it can be read by many threads at the same time.
+	 * A section is mapped in chunks of {@link SnapshotFile#CHUNK} bytes.
+	 *
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	private static class Section {
+
+		/**
+		 * Mapped chunks.
+		 */
+		private ByteBuffer[] chunks;
+
+		/**
+		 * Binary logarithm of number of elements per chunk.
+		 */
+		private int shift;
+
+		/**
+		 * Mask of position of element within chunk.
+		 */
+		private int mask;
+
+		/**
+		 * Binary logarithm of size of element in bytes.
+		 */
+		private int elementShift;
+
+		/**
+		 * Constructor with mapped chunks and size of element.
+		 * @param chunks mapped chunks.
+		 * @param elementBytes size of element in bytes, which is 1, 4, or 8.
+		 */
+		private Section(ByteBuffer[] chunks, int elementBytes) {
+			this.chunks = chunks;
+			this.elementShift = Integer.numberOfTrailingZeros(elementBytes);
+			this.shift = Integer.numberOfTrailingZeros(CHUNK) - this.elementShift;
+			this.mask = (1 << this.shift) - 1;
+		}
+
+		/**
+		 * Getting integer at specified position.
+		 * @param index specified position.
+		 * @return integer at specified position.
+		 */
+		private int getInt(int index) {
+			return this.chunks[index >>> this.shift].getInt((index & this.mask) << this.elementShift);
+		}
+
+		/**
+		 * Getting float at specified position.
+		 * @param index specified position.
+		 * @return float at specified position.
+		 */
+		private float getFloat(int index) {
+			return this.chunks[index >>> this.shift].getFloat((index & this.mask) << this.elementShift);
+		}
+
+		/**
+		 * Getting double at specified position.
+		 * @param index specified position.
+		 * @return double at specified position.
+		 */
+		private double getDouble(int index) {
+			return this.chunks[index >>> this.shift].getDouble((index & this.mask) << this.elementShift);
+		}
+
+		/**
+		 * Getting byte at specified position.
+		 * @param index specified position.
+		 * @return byte at specified position.
+		 */
+		private byte getByte(int index) {
+			return this.chunks[index >>> this.shift].get(index & this.mask);
+		}
+
+		/**
+		 * Copying first elements of this section into an array.
+		 * @param count number of elements.
+		 * @return array of copied elements.
+		 */
+		private int[] ints(int count) {
+			int[] array = new int[count];
+			for (int i = 0, done = 0; done < count; i++) {
+				IntBuffer chunk = chunk(i).asIntBuffer();
+				int n = Math.min(count - done, chunk.remaining());
+				chunk.get(array, done, n);
+				done += n;
+			}
+			return array;
+		}
+
+		/**
+		 * Copying first elements of this section into an array.
+		 * @param count number of elements.
+		 * @return array of copied elements.
+		 */
+		private float[] floats(int count) {
+			float[] array = new float[count];
+			for (int i = 0, done = 0; done < count; i++) {
+				FloatBuffer chunk = chunk(i).asFloatBuffer();
+				int n = Math.min(count - done, chunk.remaining());
+				chunk.get(array, done, n);
+				done += n;
+			}
+			return array;
+		}
+
+		/**
+		 * Copying first elements of this section into an array.
+		 * @param count number of elements.
+		 * @return array of copied elements.
+		 */
+		private double[] doubles(int count) {
+			double[] array = new double[count];
+			for (int i = 0, done = 0; done < count; i++) {
+				DoubleBuffer chunk = chunk(i).asDoubleBuffer();
+				int n = Math.min(count - done, chunk.remaining());
+				chunk.get(array, done, n);
+				done += n;
+			}
+			return array;
+		}
+
+		/**
+		 * Copying first elements of this section into an array.
+		 * @param count number of elements.
+		 * @return array of copied elements.
+		 */
+		private byte[] bytes(int count) {
+			byte[] array = new byte[count];
+			for (int i = 0, done = 0; done < count; i++) {
+				ByteBuffer chunk = chunk(i);
+				int n = Math.min(count - done, chunk.remaining());
+				chunk.get(array, done, n);
+				done += n;
+			}
+			return array;
+		}
+
+		/**
+		 * Getting view of chunk at specified position, whose position is independent of other readers.
+		 * @param index specified position.
+		 * @return view of chunk at specified position.
+		 */
+		private ByteBuffer chunk(int index) {
+			return this.chunks[index].duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+	}
+
+	
+	/**
+	 * This class represents rating values which are read from a mapped section of snapshot file. It is read-only, so {@link #allocate(int, double[])} creates storage
+	 * of the same kind in the heap, and a snapshot derived from it stores its values there.
+	 *
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	protected static class MappedValues extends RatingValues {
+
+		/**
+		 * Serial version UID for serializable class.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Mapped section of values or byte codes.
+		 */
+		private transient Section section;
+
+		/**
+		 * Storage kind of rating values.
+		 */
+		private int kind;
+
+		/**
+		 * Sorted table of value bins of quantized values, null otherwise.
+		 */
+		private double[] table;
+
+		/**
+		 * Number of values.
+		 */
+		private int size;
+
+		/**
+		 * Constructor with mapped section, storage kind, and table of value bins.
+		 * @param section mapped section.
+		 * @param kind storage kind of rating values.
+		 * @param table sorted table of value bins of quantized values, null otherwise.
+		 */
+		private MappedValues(Section section, int kind, double[] table) {
+			this.section = section;
+			this.kind = kind;
+			this.table = table;
+			long bytes = 0;
+			for (ByteBuffer chunk : section.chunks) bytes += chunk.capacity();
+			this.size = (int)(bytes >>> section.elementShift);
+		}
+
+		@Override
+		public int size() {
+			return this.size;
+		}
+
+		@Override
+		public double get(int index) {
+			if (this.kind == QUANTIZED_VALUES)
+				return this.table[this.section.getByte(index) & 0xFF];
+			else if (this.kind == FLOAT_VALUES)
+				return this.section.getFloat(index);
+			else
+				return this.section.getDouble(index);
+		}
+
+		@Override
+		public boolean isQuantized() {
+			return this.kind == QUANTIZED_VALUES;
+		}
+
+		@Override
+		public long estimateBytes() {
+			return HeapFootprint.align(HeapFootprint.OBJECT_HEADER + 8 + 2 * HeapFootprint.REFERENCE) + (this.table != null ? HeapFootprint.ofArray(this.table.length, 8) : 0);
+		}
+
+		@Override
+		public RatingValues allocate(int size, double[] valueBins) {
+			if (this.kind == QUANTIZED_VALUES) {
+				if (valueBins == null || !Arrays.equals(this.table, Arrays.stream(valueBins).distinct().sorted().toArray()))
+					return null;
+				else
+					return new RatingValues.QuantizedValues(new byte[size], this.table);
+			}
+			else if (this.kind == FLOAT_VALUES)
+				return null; //Values may fit value bins again, which is decided by RatingValues.of.
+			else
+				return valueBins == null || valueBins.length == 0 ? new RatingValues.DoubleValues(new double[size]) : null;
+		}
+
+		/**
+		 * Copying these values into storage of the same kind in the heap.
+		 * @return storage of the same kind in the heap.
+		 */
+		private RatingValues toHeap() {
+			if (this.kind == QUANTIZED_VALUES)
+				return new RatingValues.QuantizedValues(this.section.bytes(this.size), this.table);
+			else if (this.kind == FLOAT_VALUES)
+				return new RatingValues.FloatValues(this.section.floats(this.size));
+			else
+				return new RatingValues.DoubleValues(this.section.doubles(this.size));
+		}
+
+		/**
+		 * Mapped values are never filled, because {@link #allocate(int, double[])} creates storage in the heap and {@link MappedSnapshot#apply(List, double[])}
+		 * applies changes to a copy in the heap. Calling this method is an error of the caller.
+		 * @param index specified position.
+		 * @param value specified value.
+		 * @throws UnsupportedOperationException always.
+		 */
+		@Override
+		protected void set(int index, double value) {
+			throw new UnsupportedOperationException("Mapped rating values are read-only");
+		}
+
+	}
+
+	
+	/**
+	 * This class represents a rating snapshot which is served from the mapping of snapshot file. Its column-major layout is always built,
+	 * and only the dictionaries of row and column identifiers are held in the heap. It is read by the same accessors as other snapshots.
+	 * Since the mapping is read-only, {@link #apply(List, double[])} copies the snapshot into the heap by {@link #toHeap()} first and applies changes to the copy.
+	 *
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	public static class MappedSnapshot extends RatingSnapshot {
+
+		/**
+		 * Serial version UID for serializable class.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Mapped starting positions of rows.
+		 */
+		private transient Section rowStarts;
+
+		/**
+		 * Mapped dense column indices of ratings.
+		 */
+		private transient Section columns;
+
+		/**
+		 * Mapped starting positions of columns in CSC layout.
+		 */
+		private transient Section columnStarts;
+
+		/**
+		 * Mapped dense row indices of CSC entries.
+		 */
+		private transient Section rows;
+
+		/**
+		 * Mapped row-major positions of CSC entries.
+		 */
+		private transient Section positions;
+
+		/**
+		 * Number of ratings.
+		 */
+		private int count;
+
+		/**
+		 * Constructor with dictionaries and mapped sections.
+		 * @param rowIndex dictionary of row identifiers.
+		 * @param columnIndex dictionary of column identifiers.
+		 * @param rowStarts mapped starting positions of rows.
+		 * @param columns mapped dense column indices of ratings.
+		 * @param values mapped rating values.
+		 * @param columnStarts mapped starting positions of columns in CSC layout.
+		 * @param rows mapped dense row indices of CSC entries.
+		 * @param positions mapped row-major positions of CSC entries.
+		 */
+		private MappedSnapshot(IdDictionary rowIndex, IdDictionary columnIndex, Section rowStarts, Section columns, MappedValues values, Section columnStarts, Section rows, Section positions) {
+			super(rowIndex, columnIndex, null, null, values);
+			this.rowStarts = rowStarts;
+			this.columns = columns;
+			this.columnStarts = columnStarts;
+			this.rows = rows;
+			this.positions = positions;
+			this.count = values.size();
+		}
+
+		@Override
+		public int ratingCount() {
+			return this.count;
+		}
+
+		@Override
+		public int rowStart(int row) {
+			return this.rowStarts.getInt(row);
+		}
+
+		@Override
+		public int rowEnd(int row) {
+			return this.rowStarts.getInt(row + 1);
+		}
+
+		@Override
+		public int rowLength(int row) {
+			return this.rowStarts.getInt(row + 1) - this.rowStarts.getInt(row);
+		}
+
+		@Override
+		public int column(int position) {
+			return this.columns.getInt(position);
+		}
+
+		@Override
+		public RatingVector rowVector(int row) {
+			RatingVector vRating = new UserRating(rowId(row));
+			for (int k = rowStart(row); k < rowEnd(row); k++)
+				vRating.put(columnId(column(k)), value(k));
+			return vRating;
+		}
+
+		@Override
+		public boolean hasColumns() {
+			return true;
+		}
+
+		@Override
+		public RatingSnapshot buildColumns() {
+			return this;
+		}
+
+		@Override
+		public int columnStart(int column) {
+			return this.columnStarts.getInt(column);
+		}
+
+		@Override
+		public int columnEnd(int column) {
+			return this.columnStarts.getInt(column + 1);
+		}
+
+		@Override
+		public int columnLength(int column) {
+			return this.columnStarts.getInt(column + 1) - this.columnStarts.getInt(column);
+		}
+
+		@Override
+		public int row(int entry) {
+			return this.rows.getInt(entry);
+		}
+
+		@Override
+		public int position(int entry) {
+			return this.positions.getInt(entry);
+		}
+
+		@Override
+		public long estimateBytes(boolean indexes) {
+			long bytes = HeapFootprint.align(HeapFootprint.OBJECT_HEADER + 4 + 13 * HeapFootprint.REFERENCE) + this.values.estimateBytes();
+			if (indexes)
+				bytes += this.rowIndex.estimateBytes() + this.columnIndex.estimateBytes();
+			return bytes;
+		}
+
+		@Override
+		public RatingSnapshot apply(List<RatingChange> changes, double[] valueBins) {
+			return toHeap().apply(changes, valueBins);
+		}
+
+		/**
+		 * Copying this snapshot into the heap by bulk copies of its mapped sections. Dictionaries of row and column identifiers are shared with the copy.
+		 * @return snapshot in the heap whose column-major layout is built.
+		 */
+		public RatingSnapshot toHeap() {
+			int rowCount = rowCount(), columnCount = columnCount();
+			return new RatingSnapshot(this.rowIndex, this.columnIndex, this.rowStarts.ints(rowCount + 1), this.columns.ints(this.count), ((MappedValues)this.values).toHeap(),
+				this.columnStarts.ints(columnCount + 1), this.rows.ints(this.count), this.positions.ints(this.count));
+		}
+
+	}
+
+
+}
@@ -0,0 +1,101 @@
+/**
+ * HUDUP: A FRAMEWORK OF E-COMMERCIAL RECOMMENDATION ALGORITHMS
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: http://www.locnguyen.net/st/products/hudup
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.hudup.core.alg.cf;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class holds version stamps of identifiers, which tell whether data of an identifier changed after a moment.
+ * A stamp is the value of a monotonic clock when data of the identifier last changed, and identifiers which never changed have the stamp of the last change of all identifiers.
+ * A query reads the clock before calculating and caches its result only if stamps of the involved identifiers are not newer, so that a result calculated from old data
+ * is not cached after its entries were invalidated. This class is thread-safe.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class VersionStamps {
+
+	
+	/**
+	 * Monotonic clock.
+	 */
+	protected AtomicLong clock = new AtomicLong(0);
+
+	
+	/**
+	 * Stamp of the last change of all identifiers.
+	 */
+	protected volatile long floor = 0;
+
+	
+	/**
+	 * Stamps of identifiers which changed, which are overridden by the floor if the floor is newer.
+	 */
+	protected ConcurrentMap<Integer, Long> stamps = new ConcurrentHashMap<>();
+
+	
+	/**
+	 * Getting current value of the clock.
+	 * @return current value of the clock.
+	 */
+	public long current() {
+		return this.clock.get();
+	}
+
+	
+	/**
+	 * Getting stamp of specified identifier.
+	 * @param id specified identifier.
+	 * @return stamp of specified identifier.
+	 */
+	public long get(int id) {
+		Long stamp = this.stamps.get(id);
+		return stamp != null ? Math.max(stamp, this.floor) : this.floor;
+	}
+
+	
+	/**
+	 * Checking whether data of two identifiers did not change after specified moment.
+	 * @param id1 first identifier.
+	 * @param id2 second identifier.
+	 * @param moment specified moment which was read by {@link #current()}.
+	 * @return whether data of two identifiers did not change after specified moment.
+	 */
+	public boolean isUnchanged(int id1, int id2, long moment) {
+		return get(id1) <= moment && get(id2) <= moment;
+	}
+
+	
+	/**
+	 * Stamping specified identifiers with a new value of the clock.
+	 * @param ids specified identifiers.
+	 * @return new value of the clock.
+	 */
+	public long stamp(Collection<Integer> ids) {
+		long version = this.clock.incrementAndGet();
+		for (int id : ids) this.stamps.put(id, version);
+		return version;
+	}
+
+	
+	/**
+	 * Stamping all identifiers with a new value of the clock.
+	 * @return new value of the clock.
+	 */
+	public long stampAll() {
+		long version = this.clock.incrementAndGet();
+		this.floor = version;
+		return version;
+	}
+
+
+}
@@ -0,0 +1,132 @@
+package net.hudup.alg.cf.bench;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import net.hudup.alg.cf.NeighborCFExt;
+import net.hudup.core.alg.cf.RatingSnapshot;
+import net.hudup.core.data.RatingVector;
+import net.hudup.core.data.UserRating;
+
+/**
+ * This utility class provides common functions for benchmarks of neighbor collaborative filtering algorithms.
+ * Algorithms are created by class name so that benchmarks can be run against any concrete subclass of {@link NeighborCFExt} on the class path.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public final class BenchmarkSupport {
+
+	
+	/**
+	 * Default class name of benchmarked algorithm.
+	 */
+	public static final String DEFAULT_ALG_CLASS = "net.hudup.alg.cf.NeighborCFUserBased";
+
+	
+	/**
+	 * Light/light pair shape, which pairs two users from the lowest quartile of degrees.
+	 */
+	public static final String LIGHT_LIGHT = "light-light";
+
+	
+	/**
+	 * Light/heavy pair shape, which pairs a user from the lowest quartile of degrees with a user from the highest twentieth of degrees.
+	 */
+	public static final String LIGHT_HEAVY = "light-heavy";
+
+	
+	/**
+	 * Heavy/heavy pair shape, which pairs two users from the highest twentieth of degrees.
+	 */
+	public static final String HEAVY_HEAVY = "heavy-heavy";
+
+	
+	/**
+	 * Private constructor to avoid initializing utility class.
+	 */
+	private BenchmarkSupport() {
+
+	}
+
+	
+	/**
+	 * Creating algorithm by class name.
+	 * @param algClass class name of algorithm.
+	 * @param measure similarity measure, null for default measure.
+	 * @param cached whether similarities are cached.
+	 * @return created algorithm.
+	 * @throws Exception if any error raises.
+	 */
+	public static NeighborCFExt newAlgorithm(String algClass, String measure, boolean cached) throws Exception {
+		NeighborCFExt alg = (NeighborCFExt) Class.forName(algClass).getDeclaredConstructor().newInstance();
+		if (measure != null) alg.setMeasure(measure);
+		alg.setCached(cached);
+		return alg;
+	}
+
+	
+	/**
+	 * Converting specified row of rating snapshot into user rating vector.
+	 * @param snapshot rating snapshot whose rows are users.
+	 * @param row dense row index.
+	 * @return user rating vector.
+	 */
+	public static RatingVector toRatingVector(RatingSnapshot snapshot, int row) {
+		RatingVector vRating = new UserRating(snapshot.rowId(row));
+		for (int k = snapshot.rowStart(row); k < snapshot.rowEnd(row); k++)
+			vRating.put(snapshot.columnId(snapshot.column(k)), snapshot.value(k));
+
+		return vRating;
+	}
+
+	
+	/**
+	 * Getting rows of a degree class.
+	 * @param snapshot rating snapshot.
+	 * @param heavy true for the highest twentieth of degrees, false for the lowest quartile of degrees.
+	 * @return rows of the degree class.
+	 */
+	public static int[] rowsByDegree(RatingSnapshot snapshot, boolean heavy) {
+		int n = snapshot.rowCount();
+		long[] keys = new long[n];
+		for (int row = 0; row < n; row++)
+			keys[row] = ((long)snapshot.rowLength(row) << 32) | row;
+		Arrays.sort(keys);
+
+		int size = heavy ? Math.max(1, n / 20) : Math.max(1, n / 4);
+		int[] rows = new int[size];
+		for (int i = 0; i < size; i++)
+			rows[i] = (int)(heavy ? keys[n - 1 - i] : keys[i]);
+
+		return rows;
+	}
+
+	
+	/**
+	 * Drawing pairs of rows of specified shape.
+	 * @param snapshot rating snapshot.
+	 * @param shape pair shape which is one of {@link #LIGHT_LIGHT}, {@link #LIGHT_HEAVY}, and {@link #HEAVY_HEAVY}.
+	 * @param count number of pairs.
+	 * @param seed random seed.
+	 * @return array of two arrays which are first rows and second rows of pairs.
+	 */
+	public static int[][] drawPairs(RatingSnapshot snapshot, String shape, int count, long seed) {
+		int[] light = rowsByDegree(snapshot, false);
+		int[] heavy = rowsByDegree(snapshot, true);
+		int[] firsts = shape.equals(HEAVY_HEAVY) ? heavy : light;
+		int[] seconds = shape.equals(LIGHT_LIGHT) ? light : heavy;
+
+		Random random = new Random(seed);
+		int[][] pairs = new int[2][count];
+		for (int i = 0; i < count; i++) {
+			pairs[0][i] = firsts[random.nextInt(firsts.length)];
+			pairs[1][i] = seconds[random.nextInt(seconds.length)];
+		}
+
+		return pairs;
+	}
+
+
+}
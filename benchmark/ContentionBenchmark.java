@@ -0,0 +1,461 @@
+package net.hudup.alg.cf.bench;
+
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import net.hudup.alg.cf.NeighborCFExt;
+import net.hudup.core.Util;
+import net.hudup.core.alg.cf.RatingSnapshot;
+import net.hudup.core.data.RatingVector;
+
+/**
+ * This benchmark measures contention of many threads calling {@link NeighborCFExt#sim(RatingVector, RatingVector, net.hudup.core.data.Profile, net.hudup.core.data.Profile, Object...)}
+ * on one shared algorithm instance, like a serving tier does. It sweeps thread counts, measures, and target cache hit ratios.
+ * A request hits cache with the target probability by drawing its pair from a hot set of pairs which are cached in advance; otherwise it draws a random pair
+ * of users, which is almost always a miss. Each cell reports throughput, p50 and p99 latency, the measured hit ratio, and lock contention taken from
+ * {@link ThreadMXBean} as the number of times workers were blocked on monitors and the fraction of worker time spent blocked.
+ * <br>
+ * Usage: ContentionBenchmark [--shape movielens-100k] [--scale 1] [--alg class] [--measures cosine,pearson,...] [--threads 1,2,4,8,16]
+ * [--hit-ratios 0,0.5,0.9] [--seconds 2] [--warmup-seconds 1] [--seed 1] [--out contention.csv]
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class ContentionBenchmark {
+
+	
+	/**
+	 * Header of CSV output.
+	 */
+	public static final String CSV_HEADER = "shape,scale,algorithm,measure,threads,target_hit_ratio,hit_ratio,requests,ops_per_sec,"
+			+ "latency_us_p50,latency_us_p99,blocked_count,blocked_ms,blocked_fraction";
+
+	
+	/**
+	 * Number of hot pairs.
+	 */
+	public static final int HOT_PAIRS = 4096;
+
+	
+	/**
+	 * Maximum number of recorded latencies per worker.
+	 */
+	public static final int MAX_SAMPLES = 1 << 20;
+
+	
+	/**
+	 * Shape name of synthetic data.
+	 */
+	protected String shape = SyntheticRatings.MOVIELENS_100K;
+
+	
+	/**
+	 * Scaling factor of synthetic data.
+	 */
+	protected double scale = 1;
+
+	
+	/**
+	 * Class name of benchmarked algorithm.
+	 */
+	protected String algClass = BenchmarkSupport.DEFAULT_ALG_CLASS;
+
+	
+	/**
+	 * Benchmarked measures. Empty list means all supported measures of the algorithm.
+	 */
+	protected List<String> measures = Util.newList();
+
+	
+	/**
+	 * Thread counts.
+	 */
+	protected int[] threads = {1, 2, 4, 8, 16};
+
+	
+	/**
+	 * Target cache hit ratios.
+	 */
+	protected double[] hitRatios = {0, 0.5, 0.9};
+
+	
+	/**
+	 * Measured duration per cell in seconds.
+	 */
+	protected double seconds = 2;
+
+	
+	/**
+	 * Warming up duration per cell in seconds.
+	 */
+	protected double warmupSeconds = 1;
+
+	
+	/**
+	 * Random seed.
+	 */
+	protected long seed = 1;
+
+	
+	/**
+	 * Default constructor.
+	 */
+	public ContentionBenchmark() {
+
+	}
+
+	
+	/**
+	 * Running the sweep and writing CSV rows to specified writer. The header is not written.
+	 * @param out specified writer.
+	 * @throws Exception if any error raises.
+	 */
+	public void run(PrintWriter out) throws Exception {
+		List<String> measures = this.measures.size() > 0 ? this.measures : BenchmarkSupport.newAlgorithm(this.algClass, null, false).getSupportedMeasures();
+		RatingSnapshot snapshot = SyntheticRatings.of(this.shape).scale(this.scale).setSeed(this.seed).generate(null);
+		RatingVector[] vectors = new RatingVector[snapshot.rowCount()];
+		Object[][] params = new Object[vectors.length][];
+		for (int row = 0; row < vectors.length; row++) {
+			vectors[row] = BenchmarkSupport.toRatingVector(snapshot, row);
+			params[row] = snapshot.rowLength(row) > 0 ? new Object[] {snapshot.columnId(snapshot.column(snapshot.rowStart(row)))} : new Object[0];
+		}
+
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		if (threadBean.isThreadContentionMonitoringSupported())
+			threadBean.setThreadContentionMonitoringEnabled(true);
+
+		for (String measure : measures) {
+			for (double hitRatio : this.hitRatios) {
+				for (int threadCount : this.threads) {
+					NeighborCFExt alg = BenchmarkSupport.newAlgorithm(this.algClass, measure, true);
+					alg.setupSnapshot(snapshot);
+					int[][] hot = BenchmarkSupport.drawPairs(snapshot, BenchmarkSupport.LIGHT_HEAVY, HOT_PAIRS, this.seed);
+					for (int i = 0; i < HOT_PAIRS; i++)
+						alg.sim(vectors[hot[0][i]], vectors[hot[1][i]], null, null, params[hot[0][i]]);
+
+					runCell(alg, vectors, params, hot, hitRatio, threadCount, this.warmupSeconds, threadBean);
+					alg.resetSimCounts();
+					Cell cell = runCell(alg, vectors, params, hot, hitRatio, threadCount, this.seconds, threadBean);
+					long requests = alg.getSimRequestCount(), computations = alg.getSimComputeCount();
+					alg.unsetup();
+
+					out.println(String.format(Locale.US, "%s,%.0f,%s,%s,%d,%.2f,%.4f,%d,%.0f,%.2f,%.2f,%d,%d,%.4f",
+						this.shape, this.scale, this.algClass, measure, threadCount, hitRatio,
+						requests == 0 ? 0 : (double)(requests - computations) / requests, cell.requests, cell.requests / cell.seconds,
+						cell.percentile(0.5) / 1000.0, cell.percentile(0.99) / 1000.0,
+						cell.blockedCount, cell.blockedMillis, cell.blockedMillis / (cell.seconds * 1000.0 * threadCount)));
+					out.flush();
+				}
+			}
+		}
+	}
+
+	
+	/**
+	 * Running one cell with specified number of threads for specified duration.
+	 * @param alg shared algorithm.
+	 * @param vectors rating vectors indexed by dense row.
+	 * @param params extra parameters indexed by dense row, which is the fixed column identifier required by PC measure.
+	 * @param hot hot pairs which are cached in advance.
+	 * @param hitRatio target cache hit ratio.
+	 * @param threadCount number of threads.
+	 * @param seconds duration in seconds.
+	 * @param threadBean thread bean for contention monitoring.
+	 * @return result of the cell.
+	 * @throws InterruptedException if interrupted.
+	 */
+	protected Cell runCell(NeighborCFExt alg, RatingVector[] vectors, Object[][] params, int[][] hot, double hitRatio, int threadCount, double seconds, ThreadMXBean threadBean)
+			throws InterruptedException {
+		Worker[] workers = new Worker[threadCount];
+		CountDownLatch ready = new CountDownLatch(threadCount);
+		CountDownLatch go = new CountDownLatch(1);
+		long duration = (long)(seconds * 1e9);
+		for (int t = 0; t < threadCount; t++) {
+			workers[t] = new Worker(alg, vectors, params, hot, hitRatio, this.seed + t + 1, ready, go, duration);
+			workers[t].start();
+		}
+
+		ready.await();
+		long[] blockedCounts = new long[threadCount], blockedTimes = new long[threadCount];
+		for (int t = 0; t < threadCount; t++) {
+			ThreadInfo info = threadBean.getThreadInfo(workers[t].getId());
+			blockedCounts[t] = info != null ? info.getBlockedCount() : 0;
+			blockedTimes[t] = info != null ? info.getBlockedTime() : 0;
+		}
+		long start = System.nanoTime();
+		go.countDown();
+
+		Cell cell = new Cell();
+		for (int t = 0; t < threadCount; t++) {
+			while (!workers[t].finished) Thread.sleep(1);
+			ThreadInfo info = threadBean.getThreadInfo(workers[t].getId());
+			if (info != null) {
+				cell.blockedCount += info.getBlockedCount() - blockedCounts[t];
+				cell.blockedMillis += Math.max(0, info.getBlockedTime() - blockedTimes[t]);
+			}
+			workers[t].release.countDown();
+			workers[t].join();
+		}
+		cell.seconds = (System.nanoTime() - start) / 1e9;
+
+		int total = 0;
+		for (Worker worker : workers) {
+			cell.requests += worker.requests;
+			total += worker.sampleCount;
+		}
+		cell.latencies = new long[total];
+		int position = 0;
+		for (Worker worker : workers) {
+			System.arraycopy(worker.samples, 0, cell.latencies, position, worker.sampleCount);
+			position += worker.sampleCount;
+		}
+		Arrays.sort(cell.latencies);
+
+		return cell;
+	}
+
+	
+	/**
+	 * Main method.
+	 * @param args command line arguments as described in class comment.
+	 * @throws Exception if any error raises.
+	 */
+	public static void main(String[] args) throws Exception {
+		ContentionBenchmark benchmark = new ContentionBenchmark();
+		String out = null;
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			String key = args[i], value = args[i + 1];
+			if (key.equals("--shape"))
+				benchmark.shape = value;
+			else if (key.equals("--scale"))
+				benchmark.scale = Double.parseDouble(value);
+			else if (key.equals("--alg"))
+				benchmark.algClass = value;
+			else if (key.equals("--measures"))
+				benchmark.measures = Arrays.asList(value.split("\\s*,\\s*"));
+			else if (key.equals("--threads"))
+				benchmark.threads = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+			else if (key.equals("--hit-ratios"))
+				benchmark.hitRatios = Arrays.stream(value.split(",")).mapToDouble(Double::parseDouble).toArray();
+			else if (key.equals("--seconds"))
+				benchmark.seconds = Double.parseDouble(value);
+			else if (key.equals("--warmup-seconds"))
+				benchmark.warmupSeconds = Double.parseDouble(value);
+			else if (key.equals("--seed"))
+				benchmark.seed = Long.parseLong(value);
+			else if (key.equals("--out"))
+				out = value;
+			else
+				throw new IllegalArgumentException("Unknown option: " + key);
+		}
+
+		try (PrintWriter writer = out != null ? new PrintWriter(new FileWriter(out)) : new PrintWriter(System.out)) {
+			writer.println(CSV_HEADER);
+			benchmark.run(writer);
+		}
+	}
+
+	
+	/**
+	 * This class holds result of one cell.
+	 *
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	protected static class Cell {
+
+		/**
+		 * Number of requests.
+		 */
+		protected long requests = 0;
+
+		/**
+		 * Elapsed seconds.
+		 */
+		protected double seconds = 0;
+
+		/**
+		 * Sorted latencies in nanoseconds.
+		 */
+		protected long[] latencies = new long[0];
+
+		/**
+		 * Number of times workers were blocked on monitors.
+		 */
+		protected long blockedCount = 0;
+
+		/**
+		 * Time workers were blocked on monitors in milliseconds, which is 0 if contention monitoring is not supported.
+		 */
+		protected long blockedMillis = 0;
+
+		/**
+		 * Getting latency percentile.
+		 * @param p percentile between 0 and 1.
+		 * @return latency percentile in nanoseconds.
+		 */
+		protected double percentile(double p) {
+			if (this.latencies.length == 0) return 0;
+			return this.latencies[Math.min(this.latencies.length - 1, (int)(this.latencies.length * p))];
+		}
+
+	}
+
+	
+	/**
+	 * This thread sends requests to the shared algorithm until its duration elapses.
+	 *
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	protected static class Worker extends Thread {
+
+		/**
+		 * Shared algorithm.
+		 */
+		private NeighborCFExt alg;
+
+		/**
+		 * Rating vectors indexed by dense row.
+		 */
+		private RatingVector[] vectors;
+
+		/**
+		 * Extra parameters indexed by dense row.
+		 */
+		private Object[][] params;
+
+		/**
+		 * Hot pairs.
+		 */
+		private int[][] hot;
+
+		/**
+		 * Target cache hit ratio.
+		 */
+		private double hitRatio;
+
+		/**
+		 * Random generator.
+		 */
+		private Random random;
+
+		/**
+		 * Latch counted down when this worker is ready.
+		 */
+		private CountDownLatch ready;
+
+		/**
+		 * Latch to start sending requests.
+		 */
+		private CountDownLatch go;
+
+		/**
+		 * Latch to let this worker terminate after its contention counters are read.
+		 */
+		protected CountDownLatch release = new CountDownLatch(1);
+
+		/**
+		 * Duration in nanoseconds.
+		 */
+		private long duration;
+
+		/**
+		 * Flag to indicate that sending requests finished.
+		 */
+		protected volatile boolean finished = false;
+
+		/**
+		 * Number of requests.
+		 */
+		protected long requests = 0;
+
+		/**
+		 * Recorded latencies.
+		 */
+		protected long[] samples = new long[1024];
+
+		/**
+		 * Number of recorded latencies.
+		 */
+		protected int sampleCount = 0;
+
+		/**
+		 * Constructor with shared algorithm and workload.
+		 * @param alg shared algorithm.
+		 * @param vectors rating vectors indexed by dense row.
+		 * @param params extra parameters indexed by dense row.
+		 * @param hot hot pairs.
+		 * @param hitRatio target cache hit ratio.
+		 * @param seed random seed.
+		 * @param ready latch counted down when this worker is ready.
+		 * @param go latch to start sending requests.
+		 * @param duration duration in nanoseconds.
+		 */
+		protected Worker(NeighborCFExt alg, RatingVector[] vectors, Object[][] params, int[][] hot, double hitRatio, long seed, CountDownLatch ready, CountDownLatch go, long duration) {
+			this.alg = alg;
+			this.vectors = vectors;
+			this.params = params;
+			this.hot = hot;
+			this.hitRatio = hitRatio;
+			this.random = new Random(seed);
+			this.ready = ready;
+			this.go = go;
+			this.duration = duration;
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			try {
+				this.ready.countDown();
+				this.go.await();
+				long end = System.nanoTime() + this.duration;
+				int n = this.vectors.length;
+				while (true) {
+					int row1, row2;
+					if (this.random.nextDouble() < this.hitRatio) {
+						int i = this.random.nextInt(this.hot[0].length);
+						row1 = this.hot[0][i];
+						row2 = this.hot[1][i];
+					}
+					else {
+						row1 = this.random.nextInt(n);
+						row2 = this.random.nextInt(n);
+					}
+
+					long start = System.nanoTime();
+					this.alg.sim(this.vectors[row1], this.vectors[row2], null, null, this.params[row1]);
+					long now = System.nanoTime();
+					this.requests++;
+					if (this.sampleCount < MAX_SAMPLES) {
+						if (this.sampleCount == this.samples.length)
+							this.samples = Arrays.copyOf(this.samples, this.samples.length * 2);
+						this.samples[this.sampleCount++] = now - start;
+					}
+					if (now >= end) break;
+				}
+
+				this.finished = true;
+				this.release.await();
+			}
+			catch (InterruptedException e) {
+				this.finished = true;
+			}
+		}
+
+	}
+
+
+}
@@ -0,0 +1,535 @@
+package net.hudup.alg.cf.bench;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import net.hudup.alg.cf.NeighborCFExt;
+import net.hudup.core.Constants;
+import net.hudup.core.Util;
+import net.hudup.core.alg.cf.NeighborCF;
+import net.hudup.core.alg.cf.RatingSnapshot;
+import net.hudup.core.data.RatingVector;
+import net.hudup.core.logistic.LogUtil;
+
+/**
+ * This headless harness replays the user-based evaluations reported in analyze-*.xlsx (Movielens 100K, Movielens 1M, FilmTrust) for a chosen list of measures
+ * and records cost next to quality so that measures can be chosen by cost versus quality.
+ * For each training ratio, each measure, and each cache mode, the algorithm is set up from the training set and every testing rating is predicted
+ * by {@link NeighborCF#estimate(RatingVector, int, List, double[], int[], int)} over the K most similar users who rated the item. Rows of the CSV output contain
+ * setup time, number of requested and calculated similarities, cache hit rate, predictions per second, and peak heap together with
+ * coverage, MAE, MSE, RMSE, R (correlation between predicted and real ratings), precision, recall, and F1 for each K.
+ * Similarities do not depend on K, so all K are evaluated in one pass and rows of the same pass share the timing columns.
+ * <br>
+ * Usage: EvaluationHarness --data u.data [--name movielens-100k] [--alg class] [--measures cosine,pearson,...] [--ratios 0.7,0.9] [--ks 5,20,50]
+ * [--cached true,false] [--relevant 3] [--max-test 0] [--seed 1] [--out result.csv]
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class EvaluationHarness {
+
+	
+	/**
+	 * Header of CSV output.
+	 */
+	public static final String CSV_HEADER = "dataset,algorithm,measure,train_ratio,cached,k,setup_ms,sim_requests,sim_computations,cache_hit_rate,"
+			+ "predictions,predict_ms,predictions_per_sec,peak_heap_mb,coverage,mae,mse,rmse,r,precision,recall,f1";
+
+	
+	/**
+	 * Class name of evaluated algorithm.
+	 */
+	protected String algClass = BenchmarkSupport.DEFAULT_ALG_CLASS;
+
+	
+	/**
+	 * Evaluated measures. Empty list means all supported measures of the algorithm.
+	 */
+	protected List<String> measures = Util.newList();
+
+	
+	/**
+	 * Training ratios.
+	 */
+	protected double[] ratios = {0.7, 0.9};
+
+	
+	/**
+	 * Numbers of neighbors.
+	 */
+	protected int[] ks = {5, 20, 50};
+
+	
+	/**
+	 * Cache modes.
+	 */
+	protected boolean[] cachedModes = {true, false};
+
+	
+	/**
+	 * Threshold from which a rating is relevant. {@link Double#NaN} means the middle of the rating range.
+	 */
+	protected double relevant = Double.NaN;
+
+	
+	/**
+	 * Maximum number of predicted testing ratings per pass, 0 for all testing ratings.
+	 */
+	protected int maxTest = 0;
+
+	
+	/**
+	 * Random seed of splitting.
+	 */
+	protected long seed = 1;
+
+	
+	/**
+	 * Default constructor.
+	 */
+	public EvaluationHarness() {
+
+	}
+
+	
+	/**
+	 * Evaluating specified ratings and writing CSV rows to specified writer. The header is not written.
+	 * @param name dataset name.
+	 * @param ratings specified ratings.
+	 * @param out specified writer.
+	 * @throws Exception if any error raises.
+	 */
+	public void evaluate(String name, RatingTriples ratings, PrintWriter out) throws Exception {
+		List<String> measures = this.measures.size() > 0 ? this.measures : BenchmarkSupport.newAlgorithm(this.algClass, null, false).getSupportedMeasures();
+		double relevant = Double.isNaN(this.relevant) ? (ratings.minValue() + ratings.maxValue()) / 2.0 : this.relevant;
+
+		for (double ratio : this.ratios) {
+			RatingTriples[] split = ratings.split(ratio, this.seed);
+			Fold fold = new Fold(split[0], split[1], this.maxTest);
+			for (String measure : measures) {
+				for (boolean cached : this.cachedModes) {
+					Pass pass = run(fold, measure, cached, relevant);
+					for (int i = 0; i < this.ks.length; i++) {
+						out.println(String.format(Locale.US, "%s,%s,%s,%.2f,%b,%d,%d,%d,%d,%.4f,%d,%d,%.1f,%.1f,%s",
+							name, this.algClass, measure, ratio, cached, this.ks[i],
+							pass.setupMillis, pass.simRequests, pass.simComputations, pass.cacheHitRate(),
+							pass.predictions, pass.predictMillis, pass.predictionsPerSecond(), pass.peakHeap / (1024.0 * 1024.0),
+							pass.accuracies[i].toCsv()));
+					}
+					out.flush();
+				}
+			}
+		}
+	}
+
+	
+	/**
+	 * Running one pass of specified measure and cache mode over specified fold.
+	 * @param fold specified fold.
+	 * @param measure specified measure.
+	 * @param cached cache mode.
+	 * @param relevant threshold from which a rating is relevant.
+	 * @return result of the pass.
+	 * @throws Exception if any error raises.
+	 */
+	protected Pass run(Fold fold, String measure, boolean cached, double relevant) throws Exception {
+		Pass pass = new Pass(this.ks.length, relevant);
+		int maxK = 0;
+		for (int k : this.ks)
+			maxK = Math.max(maxK, k);
+
+		NeighborCFExt alg = BenchmarkSupport.newAlgorithm(this.algClass, measure, cached);
+		alg.getConfig().setMinRating(fold.minValue);
+		alg.getConfig().setMaxRating(fold.maxValue);
+		System.gc();
+		resetPeakHeap();
+
+		long start = System.nanoTime();
+		alg.setupSnapshot(fold.snapshot);
+		pass.setupMillis = (System.nanoTime() - start) / 1000000;
+
+		alg.resetSimCounts();
+		start = System.nanoTime();
+		for (int t = 0; t < fold.testRows.length; t++) {
+			int row = fold.testRows[t];
+			List<RatingVector> candidates = fold.itemRaters.get(fold.testColumns[t]);
+			int itemId = fold.test.itemId(fold.testPositions[t]);
+			double real = fold.test.value(fold.testPositions[t]);
+			double[] sims = alg.simBatch(fold.rows[row], candidates, itemId);
+			int[] top = NeighborCF.topK(sims, maxK);
+
+			for (int i = 0; i < this.ks.length; i++) {
+				double predicted = alg.estimate(fold.rows[row], itemId, candidates, sims, top, this.ks[i]);
+				pass.accuracies[i].add(predicted, real);
+			}
+			pass.predictions++;
+		}
+		pass.predictMillis = (System.nanoTime() - start) / 1000000;
+		pass.simRequests = alg.getSimRequestCount();
+		pass.simComputations = alg.getSimComputeCount();
+		pass.peakHeap = peakHeap();
+
+		alg.unsetup();
+		return pass;
+	}
+
+	
+	/**
+	 * Resetting peak usage of heap memory pools.
+	 */
+	protected static void resetPeakHeap() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+		}
+	}
+
+	
+	/**
+	 * Getting peak heap usage since the last reset, which is the sum of peak usages of heap memory pools.
+	 * @return peak heap usage in bytes.
+	 */
+	protected static long peakHeap() {
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) peak += pool.getPeakUsage().getUsed();
+		}
+		return peak;
+	}
+
+	
+	/**
+	 * Main method.
+	 * @param args command line arguments as described in class comment.
+	 * @throws Exception if any error raises.
+	 */
+	public static void main(String[] args) throws Exception {
+		EvaluationHarness harness = new EvaluationHarness();
+		String data = null, name = null, out = null;
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			String key = args[i], value = args[i + 1];
+			if (key.equals("--data"))
+				data = value;
+			else if (key.equals("--name"))
+				name = value;
+			else if (key.equals("--out"))
+				out = value;
+			else if (key.equals("--alg"))
+				harness.algClass = value;
+			else if (key.equals("--measures"))
+				harness.measures = Arrays.asList(value.split("\\s*,\\s*"));
+			else if (key.equals("--ratios"))
+				harness.ratios = Arrays.stream(value.split(",")).mapToDouble(Double::parseDouble).toArray();
+			else if (key.equals("--ks"))
+				harness.ks = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+			else if (key.equals("--cached")) {
+				String[] modes = value.split(",");
+				harness.cachedModes = new boolean[modes.length];
+				for (int j = 0; j < modes.length; j++)
+					harness.cachedModes[j] = Boolean.parseBoolean(modes[j].trim());
+			}
+			else if (key.equals("--relevant"))
+				harness.relevant = Double.parseDouble(value);
+			else if (key.equals("--max-test"))
+				harness.maxTest = Integer.parseInt(value);
+			else if (key.equals("--seed"))
+				harness.seed = Long.parseLong(value);
+			else
+				throw new IllegalArgumentException("Unknown option: " + key);
+		}
+		if (data == null)
+			throw new IllegalArgumentException("Option --data is required");
+		if (name == null)
+			name = new File(data).getName();
+
+		RatingTriples ratings = RatingTriples.read(data);
+		try (PrintWriter writer = out != null ? new PrintWriter(new FileWriter(out)) : new PrintWriter(System.out)) {
+			writer.println(CSV_HEADER);
+			harness.evaluate(name, ratings, writer);
+		}
+		catch (IOException e) {
+			LogUtil.error("Evaluation result cannot be written to " + (out != null ? out : "standard output") + ", caused by " + e.getMessage());
+			throw e;
+		}
+	}
+
+	
+	/**
+	 * This class holds a training set prepared as rating snapshot together with testing ratings which can be predicted from it.
+	 *
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	protected static class Fold {
+
+		/**
+		 * Testing triples.
+		 */
+		protected RatingTriples test;
+
+		/**
+		 * Training snapshot whose rows are users.
+		 */
+		protected RatingSnapshot snapshot;
+
+		/**
+		 * Training rating vectors indexed by dense row.
+		 */
+		protected RatingVector[] rows;
+
+		/**
+		 * Training users who rated each item, indexed by dense column.
+		 */
+		protected List<List<RatingVector>> itemRaters;
+
+		/**
+		 * Positions of predicted testing triples.
+		 */
+		protected int[] testPositions;
+
+		/**
+		 * Dense rows of predicted testing triples.
+		 */
+		protected int[] testRows;
+
+		/**
+		 * Dense columns of predicted testing triples.
+		 */
+		protected int[] testColumns;
+
+		/**
+		 * Minimum rating value.
+		 */
+		protected double minValue;
+
+		/**
+		 * Maximum rating value.
+		 */
+		protected double maxValue;
+
+		/**
+		 * Constructor with training set and testing set. Testing ratings of users or items absent from training set are not predicted.
+		 * @param train training set.
+		 * @param test testing set.
+		 * @param maxTest maximum number of predicted testing ratings, 0 for all testing ratings.
+		 */
+		protected Fold(RatingTriples train, RatingTriples test, int maxTest) {
+			this.test = test;
+			this.snapshot = train.toSnapshot(null);
+			this.minValue = train.minValue();
+			this.maxValue = train.maxValue();
+
+			int rowCount = this.snapshot.rowCount();
+			this.rows = new RatingVector[rowCount];
+			int columnCount = this.snapshot.columnCount();
+			this.itemRaters = Util.newList(columnCount);
+			for (int column = 0; column < columnCount; column++)
+				this.itemRaters.add(Util.newList());
+			for (int row = 0; row < rowCount; row++) {
+				this.rows[row] = BenchmarkSupport.toRatingVector(this.snapshot, row);
+				for (int k = this.snapshot.rowStart(row); k < this.snapshot.rowEnd(row); k++)
+					this.itemRaters.get(this.snapshot.column(k)).add(this.rows[row]);
+			}
+
+			int limit = maxTest > 0 ? Math.min(maxTest, test.size()) : test.size();
+			this.testPositions = new int[limit];
+			this.testRows = new int[limit];
+			this.testColumns = new int[limit];
+			int count = 0;
+			for (int i = 0; i < test.size() && count < limit; i++) {
+				int row = this.snapshot.rowOf(test.userId(i));
+				int column = this.snapshot.columnOf(test.itemId(i));
+				if (row < 0 || column < 0) continue;
+
+				this.testPositions[count] = i;
+				this.testRows[count] = row;
+				this.testColumns[count] = column;
+				count++;
+			}
+			this.testPositions = Arrays.copyOf(this.testPositions, count);
+			this.testRows = Arrays.copyOf(this.testRows, count);
+			this.testColumns = Arrays.copyOf(this.testColumns, count);
+		}
+
+	}
+
+	
+	/**
+	 * This class holds cost and accuracy of one pass.
+	 *
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	protected static class Pass {
+
+		/**
+		 * Setup time in milliseconds.
+		 */
+		protected long setupMillis = 0;
+
+		/**
+		 * Prediction time in milliseconds.
+		 */
+		protected long predictMillis = 0;
+
+		/**
+		 * Number of predicted testing ratings.
+		 */
+		protected long predictions = 0;
+
+		/**
+		 * Number of requested similarities.
+		 */
+		protected long simRequests = 0;
+
+		/**
+		 * Number of calculated similarities.
+		 */
+		protected long simComputations = 0;
+
+		/**
+		 * Peak heap usage in bytes.
+		 */
+		protected long peakHeap = 0;
+
+		/**
+		 * Accuracies aligned with numbers of neighbors.
+		 */
+		protected Accuracy[] accuracies;
+
+		/**
+		 * Constructor with number of accuracies.
+		 * @param count number of accuracies.
+		 * @param relevant threshold from which a rating is relevant.
+		 */
+		protected Pass(int count, double relevant) {
+			this.accuracies = new Accuracy[count];
+			for (int i = 0; i < count; i++)
+				this.accuracies[i] = new Accuracy(relevant);
+		}
+
+		/**
+		 * Getting cache hit rate.
+		 * @return cache hit rate.
+		 */
+		protected double cacheHitRate() {
+			return this.simRequests == 0 ? 0 : (double)(this.simRequests - this.simComputations) / this.simRequests;
+		}
+
+		/**
+		 * Getting number of predictions per second.
+		 * @return number of predictions per second.
+		 */
+		protected double predictionsPerSecond() {
+			return this.predictMillis == 0 ? 0 : this.predictions * 1000.0 / this.predictMillis;
+		}
+
+	}
+
+	
+	/**
+	 * This class accumulates accuracy metrics of predictions.
+	 *
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	protected static class Accuracy {
+
+		/**
+		 * Threshold from which a rating is relevant.
+		 */
+		protected double relevant;
+
+		/**
+		 * Number of predictions including uncovered predictions.
+		 */
+		protected long total = 0;
+
+		/**
+		 * Number of covered predictions.
+		 */
+		protected long count = 0;
+
+		/**
+		 * Sums of absolute errors, squared errors, predicted values, real values, squared predicted values, squared real values, and products.
+		 */
+		protected double sumAbs = 0, sumSquare = 0, sumP = 0, sumR = 0, sumPP = 0, sumRR = 0, sumPR = 0;
+
+		/**
+		 * True positives, false positives, and false negatives with regard to relevance.
+		 */
+		protected long truePositive = 0, falsePositive = 0, falseNegative = 0;
+
+		/**
+		 * Constructor with relevance threshold.
+		 * @param relevant threshold from which a rating is relevant.
+		 */
+		protected Accuracy(double relevant) {
+			this.relevant = relevant;
+		}
+
+		/**
+		 * Adding a prediction.
+		 * @param predicted predicted rating, {@link Constants#UNUSED} if uncovered.
+		 * @param real real rating.
+		 */
+		protected void add(double predicted, double real) {
+			this.total++;
+			if (!Util.isUsed(predicted)) {
+				if (real >= this.relevant) this.falseNegative++;
+				return;
+			}
+
+			this.count++;
+			double error = predicted - real;
+			this.sumAbs += Math.abs(error);
+			this.sumSquare += error * error;
+			this.sumP += predicted;
+			this.sumR += real;
+			this.sumPP += predicted * predicted;
+			this.sumRR += real * real;
+			this.sumPR += predicted * real;
+
+			boolean predictedRelevant = predicted >= this.relevant, realRelevant = real >= this.relevant;
+			if (predictedRelevant && realRelevant)
+				this.truePositive++;
+			else if (predictedRelevant)
+				this.falsePositive++;
+			else if (realRelevant)
+				this.falseNegative++;
+		}
+
+		/**
+		 * Formatting coverage, MAE, MSE, RMSE, R, precision, recall, and F1 as CSV fields.
+		 * @return CSV fields.
+		 */
+		protected String toCsv() {
+			double n = this.count;
+			double mse = n > 0 ? this.sumSquare / n : Double.NaN;
+			double cov = n * this.sumPR - this.sumP * this.sumR;
+			double var = Math.sqrt(n * this.sumPP - this.sumP * this.sumP) * Math.sqrt(n * this.sumRR - this.sumR * this.sumR);
+			double precision = this.truePositive + this.falsePositive > 0 ? (double)this.truePositive / (this.truePositive + this.falsePositive) : Double.NaN;
+			double recall = this.truePositive + this.falseNegative > 0 ? (double)this.truePositive / (this.truePositive + this.falseNegative) : Double.NaN;
+			double f1 = precision + recall > 0 ? 2 * precision * recall / (precision + recall) : Double.NaN;
+
+			return String.format(Locale.US, "%.4f,%.4f,%.4f,%.4f,%.4f,%.4f,%.4f,%.4f",
+				this.total > 0 ? n / this.total : Double.NaN,
+				n > 0 ? this.sumAbs / n : Double.NaN, mse, Math.sqrt(mse), var > 0 ? cov / var : Double.NaN,
+				precision, recall, f1);
+		}
+
+	}
+
+
+}
@@ -0,0 +1,238 @@
+package net.hudup.alg.cf.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.hudup.alg.cf.NeighborCFExt;
+import net.hudup.core.Util;
+import net.hudup.core.alg.cf.RatingSnapshot;
+import net.hudup.core.data.RatingVector;
+
+/**
+ * This JMH benchmark measures the cost of every similarity measure supported by {@link NeighborCFExt}.
+ * Pairs of users are drawn from realistic degree classes (light/light, light/heavy, heavy/heavy) of synthetic data shaped like Movielens 100K,
+ * and each measure is run with cache on and cache off.
+ * Running {@link #main(String[])} takes the measure list from {@link NeighborCFExt#getSupportedMeasures()} of the benchmarked algorithm and attaches the GC profiler,
+ * so that the report shows ns/op together with allocation rate (gc.alloc.rate.norm).
+ * Extra JMH command line options such as -p users=6040 are passed through.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MeasureBenchmark {
+
+	
+	/**
+	 * Number of pairs which are cycled by the benchmark. It is power of two.
+	 */
+	public static final int PAIR_COUNT = 1024;
+
+	
+	/**
+	 * Number of candidates per batch of the batch benchmark.
+	 */
+	public static final int BATCH_SIZE = 64;
+
+	
+	/**
+	 * Class name of benchmarked algorithm.
+	 */
+	@Param({BenchmarkSupport.DEFAULT_ALG_CLASS})
+	public String algClass;
+
+	
+	/**
+	 * Similarity measure. The default list is replaced by supported measures of the algorithm when running {@link #main(String[])}.
+	 */
+	@Param({"amer", "amer2", "bcf", "coco", "cod", "coj", "cosine", "cpc", "jaccard", "jaccard2", "mmd", "mmns", "msd",
+		"pc", "pearson", "pip", "pss", "qti", "smtp", "spc", "src", "ta", "triangle", "urp", "wpc"})
+	public String measure;
+
+	
+	/**
+	 * Pair shape.
+	 */
+	@Param({BenchmarkSupport.LIGHT_LIGHT, BenchmarkSupport.LIGHT_HEAVY, BenchmarkSupport.HEAVY_HEAVY})
+	public String pairs;
+
+	
+	/**
+	 * Whether similarities are cached.
+	 */
+	@Param({"true", "false"})
+	public boolean cached;
+
+	
+	/**
+	 * Number of users of synthetic data.
+	 */
+	@Param({"943"})
+	public int users;
+
+	
+	/**
+	 * Number of items of synthetic data.
+	 */
+	@Param({"1682"})
+	public int items;
+
+	
+	/**
+	 * Number of ratings of synthetic data.
+	 */
+	@Param({"100000"})
+	public long ratings;
+
+	
+	/**
+	 * Benchmarked algorithm.
+	 */
+	protected NeighborCFExt alg;
+
+	
+	/**
+	 * First vectors of pairs.
+	 */
+	protected RatingVector[] firsts;
+
+	
+	/**
+	 * Second vectors of pairs.
+	 */
+	protected RatingVector[] seconds;
+
+	
+	/**
+	 * Extra parameters of pairs, which is the fixed column identifier required by PC measure.
+	 */
+	protected Object[][] params;
+
+	
+	/**
+	 * Candidate batches aligned with first vectors.
+	 */
+	protected List<List<RatingVector>> batches;
+
+	
+	/**
+	 * Position of next pair.
+	 */
+	protected int next = 0;
+
+	
+	/**
+	 * Setting up the algorithm and drawing pairs.
+	 * @throws Exception if any error raises.
+	 */
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		RatingSnapshot snapshot = new SyntheticRatings(this.users, this.items, this.ratings).generate(null);
+		this.alg = BenchmarkSupport.newAlgorithm(this.algClass, this.measure, this.cached);
+		this.alg.setupSnapshot(snapshot);
+
+		int[][] rows = BenchmarkSupport.drawPairs(snapshot, this.pairs, PAIR_COUNT, 1);
+		this.firsts = new RatingVector[PAIR_COUNT];
+		this.seconds = new RatingVector[PAIR_COUNT];
+		this.params = new Object[PAIR_COUNT][];
+		for (int i = 0; i < PAIR_COUNT; i++) {
+			this.firsts[i] = BenchmarkSupport.toRatingVector(snapshot, rows[0][i]);
+			this.seconds[i] = BenchmarkSupport.toRatingVector(snapshot, rows[1][i]);
+			this.params[i] = new Object[] {snapshot.columnId(snapshot.column(snapshot.rowStart(rows[0][i])))};
+		}
+
+		this.batches = Util.newList(PAIR_COUNT);
+		for (int i = 0; i < PAIR_COUNT; i++) {
+			List<RatingVector> batch = Util.newList(BATCH_SIZE);
+			for (int j = 0; j < BATCH_SIZE; j++)
+				batch.add(this.seconds[(i + j) & (PAIR_COUNT - 1)]);
+			this.batches.add(batch);
+		}
+	}
+
+	
+	/**
+	 * Tearing down the algorithm.
+	 * @throws Exception if any error raises.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		this.alg.unsetup();
+	}
+
+	
+	/**
+	 * Measuring one similarity calculation.
+	 * @return similarity.
+	 */
+	@Benchmark
+	public double sim() {
+		int i = this.next;
+		this.next = (i + 1) & (PAIR_COUNT - 1);
+		return this.alg.sim(this.firsts[i], this.seconds[i], null, null, this.params[i]);
+	}
+
+	
+	/**
+	 * Measuring one-to-many similarity calculation, reported per candidate.
+	 * @return similarities.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(BATCH_SIZE)
+	public double[] simBatch() {
+		int i = this.next;
+		this.next = (i + 1) & (PAIR_COUNT - 1);
+		return this.alg.simBatch(this.firsts[i], this.batches.get(i), this.params[i]);
+	}
+
+	
+	/**
+	 * Main method to run the benchmark over supported measures of the algorithm with GC profiler.
+	 * @param args JMH command line options. Option -p algClass=... selects the algorithm.
+	 * @throws Exception if any error raises.
+	 */
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		String algClass = BenchmarkSupport.DEFAULT_ALG_CLASS;
+		for (String arg : args) {
+			if (arg.startsWith("algClass="))
+				algClass = arg.substring("algClass=".length());
+		}
+
+		List<String> measures = BenchmarkSupport.newAlgorithm(algClass, null, false).getSupportedMeasures();
+		new Runner(new OptionsBuilder()
+				.parent(commandLine)
+				.include(MeasureBenchmark.class.getSimpleName())
+				.param("algClass", algClass)
+				.param("measure", measures.toArray(new String[0]))
+				.addProfiler(GCProfiler.class)
+				.build()).run();
+	}
+
+
+}
@@ -0,0 +1,224 @@
+package net.hudup.alg.cf.bench;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import net.hudup.core.alg.cf.RatingSnapshot;
+
+/**
+ * This class holds ratings as primitive triples (user identifier, item identifier, rating value) so that they can be split into training and testing sets cheaply.
+ * Rating files of Movielens 100K (tab separated), Movielens 1M (separated by double colons), FilmTrust (space separated), and CSV files are read by {@link #read(String)}.
+ * Each pair of user and item is assumed to occur once.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class RatingTriples {
+
+	
+	/**
+	 * User identifiers.
+	 */
+	protected int[] userIds;
+
+	
+	/**
+	 * Item identifiers.
+	 */
+	protected int[] itemIds;
+
+	
+	/**
+	 * Rating values.
+	 */
+	protected double[] values;
+
+	
+	/**
+	 * Number of triples.
+	 */
+	protected int size = 0;
+
+	
+	/**
+	 * Constructor with initial capacity.
+	 * @param capacity initial capacity.
+	 */
+	public RatingTriples(int capacity) {
+		capacity = Math.max(capacity, 16);
+		this.userIds = new int[capacity];
+		this.itemIds = new int[capacity];
+		this.values = new double[capacity];
+	}
+
+	
+	/**
+	 * Adding a triple.
+	 * @param userId user identifier.
+	 * @param itemId item identifier.
+	 * @param value rating value.
+	 */
+	public void add(int userId, int itemId, double value) {
+		if (this.size == this.userIds.length) {
+			int capacity = this.size * 2;
+			this.userIds = Arrays.copyOf(this.userIds, capacity);
+			this.itemIds = Arrays.copyOf(this.itemIds, capacity);
+			this.values = Arrays.copyOf(this.values, capacity);
+		}
+
+		this.userIds[this.size] = userId;
+		this.itemIds[this.size] = itemId;
+		this.values[this.size] = value;
+		this.size++;
+	}
+
+	
+	/**
+	 * Getting number of triples.
+	 * @return number of triples.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	
+	/**
+	 * Getting user identifier at specified position.
+	 * @param index specified position.
+	 * @return user identifier at specified position.
+	 */
+	public int userId(int index) {
+		return this.userIds[index];
+	}
+
+	
+	/**
+	 * Getting item identifier at specified position.
+	 * @param index specified position.
+	 * @return item identifier at specified position.
+	 */
+	public int itemId(int index) {
+		return this.itemIds[index];
+	}
+
+	
+	/**
+	 * Getting rating value at specified position.
+	 * @param index specified position.
+	 * @return rating value at specified position.
+	 */
+	public double value(int index) {
+		return this.values[index];
+	}
+
+	
+	/**
+	 * Getting minimum rating value.
+	 * @return minimum rating value, {@link Double#NaN} if there is no triple.
+	 */
+	public double minValue() {
+		double min = Double.NaN;
+		for (int i = 0; i < this.size; i++)
+			min = Double.isNaN(min) ? this.values[i] : Math.min(min, this.values[i]);
+		return min;
+	}
+
+	
+	/**
+	 * Getting maximum rating value.
+	 * @return maximum rating value, {@link Double#NaN} if there is no triple.
+	 */
+	public double maxValue() {
+		double max = Double.NaN;
+		for (int i = 0; i < this.size; i++)
+			max = Double.isNaN(max) ? this.values[i] : Math.max(max, this.values[i]);
+		return max;
+	}
+
+	
+	/**
+	 * Splitting triples randomly into training set and testing set.
+	 * @param trainRatio ratio of training triples.
+	 * @param seed random seed.
+	 * @return array of two triples which are training set and testing set.
+	 */
+	public RatingTriples[] split(double trainRatio, long seed) {
+		Random random = new Random(seed);
+		RatingTriples train = new RatingTriples((int)(this.size * trainRatio) + 1);
+		RatingTriples test = new RatingTriples((int)(this.size * (1 - trainRatio)) + 1);
+		for (int i = 0; i < this.size; i++) {
+			if (random.nextDouble() < trainRatio)
+				train.add(this.userIds[i], this.itemIds[i], this.values[i]);
+			else
+				test.add(this.userIds[i], this.itemIds[i], this.values[i]);
+		}
+
+		return new RatingTriples[] {train, test};
+	}
+
+	
+	/**
+	 * Building rating snapshot whose rows are users and whose columns are items.
+	 * @param valueBins value bins for quantized storage, null for double storage.
+	 * @return rating snapshot.
+	 */
+	public RatingSnapshot toSnapshot(double[] valueBins) {
+		long[] keys = new long[this.size];
+		for (int i = 0; i < this.size; i++)
+			keys[i] = ((long)this.userIds[i] << 32) | i;
+		Arrays.sort(keys);
+
+		int[] rowIds = new int[this.size];
+		int[] rowStarts = new int[this.size + 1];
+		int[] fieldIds = new int[this.size];
+		double[] values = new double[this.size];
+		int rowCount = 0;
+		for (int k = 0; k < this.size; k++) {
+			int i = (int)keys[k];
+			if (rowCount == 0 || rowIds[rowCount - 1] != this.userIds[i]) {
+				rowIds[rowCount] = this.userIds[i];
+				rowStarts[rowCount] = k;
+				rowCount++;
+			}
+			fieldIds[k] = this.itemIds[i];
+			values[k] = this.values[i];
+		}
+		rowStarts[rowCount] = this.size;
+
+		return RatingSnapshot.build(rowIds, rowCount, rowStarts, fieldIds, values, valueBins);
+	}
+
+	
+	/**
+	 * Reading triples from rating file whose lines start with user identifier, item identifier, and rating value.
+	 * Fields are separated by tabs, spaces, commas, or double colons. Lines which cannot be parsed such as headers are skipped.
+	 * @param path path of rating file.
+	 * @return triples read from rating file.
+	 * @throws IOException if any error raises.
+	 */
+	public static RatingTriples read(String path) throws IOException {
+		RatingTriples triples = new RatingTriples(1 << 16);
+		try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
+			String line = null;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.trim().split("::|[\\t ,;]+");
+				if (fields.length < 3) continue;
+
+				try {
+					triples.add(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]), Double.parseDouble(fields[2]));
+				}
+				catch (NumberFormatException e) {
+					continue;
+				}
+			}
+		}
+
+		return triples;
+	}
+
+
+}
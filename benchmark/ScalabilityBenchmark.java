@@ -0,0 +1,326 @@
+package net.hudup.alg.cf.bench;
+
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import net.hudup.alg.cf.NeighborCFExt;
+import net.hudup.core.Util;
+import net.hudup.core.alg.cf.RatingSnapshot;
+import net.hudup.core.data.RatingVector;
+
+/**
+ * This benchmark sweeps synthetic data of a real shape (Movielens 100K, Movielens 1M, FilmTrust) over scaling factors of users, items, and ratings
+ * and records how setup time, per-query latency, and cache memory grow for each measure, so that scaling curves can be plotted from its CSV output.
+ * A query is the similarity calculation between an active user and the users who rated a target item, which is what a user-based prediction requires.
+ * Query targets are drawn by rating so that popular items are queried proportionally to their popularity, and raters of each target are capped
+ * by the maximum number of candidates so that candidate rating vectors fit in memory at large scales.
+ * Cache memory is the growth of used heap after garbage collection while running queries with cache on.
+ * <br>
+ * Usage: ScalabilityBenchmark [--shape movielens-1m] [--scales 1,10,100] [--alg class] [--measures cosine,pearson,...] [--queries 200]
+ * [--max-candidates 2000] [--quantized true] [--seed 1] [--out scalability.csv]
+ * <br>
+ * The 100 times scale of Movielens 1M holds about 100 million ratings and needs a heap of several gigabytes.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class ScalabilityBenchmark {
+
+	
+	/**
+	 * Header of CSV output.
+	 */
+	public static final String CSV_HEADER = "shape,scale,users,items,ratings,algorithm,measure,generate_ms,setup_ms,queries,candidates_per_query,"
+			+ "query_us_mean,query_us_p50,query_us_p99,sims_per_sec,cache_entries,cache_mb,snapshot_heap_mb";
+
+	
+	/**
+	 * Shape name of synthetic data.
+	 */
+	protected String shape = SyntheticRatings.MOVIELENS_1M;
+
+	
+	/**
+	 * Scaling factors.
+	 */
+	protected double[] scales = {1, 10, 100};
+
+	
+	/**
+	 * Class name of benchmarked algorithm.
+	 */
+	protected String algClass = BenchmarkSupport.DEFAULT_ALG_CLASS;
+
+	
+	/**
+	 * Benchmarked measures. Empty list means all supported measures of the algorithm.
+	 */
+	protected List<String> measures = Util.newList();
+
+	
+	/**
+	 * Number of measured queries per measure.
+	 */
+	protected int queries = 200;
+
+	
+	/**
+	 * Maximum number of candidates per query.
+	 */
+	protected int maxCandidates = 2000;
+
+	
+	/**
+	 * Whether rating values of snapshot are quantized.
+	 */
+	protected boolean quantized = true;
+
+	
+	/**
+	 * Random seed.
+	 */
+	protected long seed = 1;
+
+	
+	/**
+	 * Default constructor.
+	 */
+	public ScalabilityBenchmark() {
+
+	}
+
+	
+	/**
+	 * Running the sweep and writing CSV rows to specified writer. The header is not written.
+	 * @param out specified writer.
+	 * @throws Exception if any error raises.
+	 */
+	public void run(PrintWriter out) throws Exception {
+		List<String> measures = this.measures.size() > 0 ? this.measures : BenchmarkSupport.newAlgorithm(this.algClass, null, false).getSupportedMeasures();
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+		for (double scale : this.scales) {
+			long baseHeap = usedHeap(memory);
+			long start = System.nanoTime();
+			SyntheticRatings generator = SyntheticRatings.of(this.shape).scale(scale).setSeed(this.seed);
+			RatingSnapshot snapshot = generator.generate(this.quantized ? generator.getValueBins() : null);
+			long generateMillis = (System.nanoTime() - start) / 1000000;
+			double snapshotHeap = (usedHeap(memory) - baseHeap) / (1024.0 * 1024.0);
+
+			Workload workload = new Workload(snapshot, this.queries, this.maxCandidates, this.seed);
+			for (String measure : measures) {
+				//Warming up without cache so that measured queries do not run in interpreter.
+				NeighborCFExt warm = BenchmarkSupport.newAlgorithm(this.algClass, measure, false);
+				warm.setupSnapshot(snapshot);
+				workload.run(warm, Math.min(20, workload.size()));
+				warm.unsetup();
+
+				NeighborCFExt alg = BenchmarkSupport.newAlgorithm(this.algClass, measure, true);
+				start = System.nanoTime();
+				alg.setupSnapshot(snapshot);
+				long setupMillis = (System.nanoTime() - start) / 1000000;
+
+				alg.resetSimCounts();
+				long heapBefore = usedHeap(memory);
+				long[] latencies = workload.run(alg, workload.size());
+				long cacheBytes = Math.max(0, usedHeap(memory) - heapBefore);
+				long sims = alg.getSimRequestCount(), entries = alg.getSimComputeCount();
+				alg.unsetup();
+
+				long total = 0;
+				for (long latency : latencies)
+					total += latency;
+				Arrays.sort(latencies);
+				int n = latencies.length;
+				out.println(String.format(Locale.US, "%s,%.0f,%d,%d,%d,%s,%s,%d,%d,%d,%.1f,%.1f,%.1f,%.1f,%.0f,%d,%.1f,%.1f",
+					this.shape, scale, snapshot.rowCount(), snapshot.columnCount(), snapshot.ratingCount(), this.algClass, measure,
+					generateMillis, setupMillis, n, n == 0 ? 0 : (double)sims / n,
+					n == 0 ? 0 : total / 1000.0 / n, n == 0 ? 0 : latencies[n / 2] / 1000.0, n == 0 ? 0 : latencies[Math.min(n - 1, (int)(n * 0.99))] / 1000.0,
+					total == 0 ? 0 : sims * 1e9 / total, entries, cacheBytes / (1024.0 * 1024.0), snapshotHeap));
+				out.flush();
+			}
+		}
+	}
+
+	
+	/**
+	 * Getting used heap after garbage collection.
+	 * @param memory memory bean.
+	 * @return used heap in bytes.
+	 */
+	protected static long usedHeap(MemoryMXBean memory) {
+		System.gc();
+		System.gc();
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+
+	
+	/**
+	 * Main method.
+	 * @param args command line arguments as described in class comment.
+	 * @throws Exception if any error raises.
+	 */
+	public static void main(String[] args) throws Exception {
+		ScalabilityBenchmark benchmark = new ScalabilityBenchmark();
+		String out = null;
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			String key = args[i], value = args[i + 1];
+			if (key.equals("--shape"))
+				benchmark.shape = value;
+			else if (key.equals("--scales"))
+				benchmark.scales = Arrays.stream(value.split(",")).mapToDouble(Double::parseDouble).toArray();
+			else if (key.equals("--alg"))
+				benchmark.algClass = value;
+			else if (key.equals("--measures"))
+				benchmark.measures = Arrays.asList(value.split("\\s*,\\s*"));
+			else if (key.equals("--queries"))
+				benchmark.queries = Integer.parseInt(value);
+			else if (key.equals("--max-candidates"))
+				benchmark.maxCandidates = Integer.parseInt(value);
+			else if (key.equals("--quantized"))
+				benchmark.quantized = Boolean.parseBoolean(value);
+			else if (key.equals("--seed"))
+				benchmark.seed = Long.parseLong(value);
+			else if (key.equals("--out"))
+				out = value;
+			else
+				throw new IllegalArgumentException("Unknown option: " + key);
+		}
+
+		try (PrintWriter writer = out != null ? new PrintWriter(new FileWriter(out)) : new PrintWriter(System.out)) {
+			writer.println(CSV_HEADER);
+			benchmark.run(writer);
+		}
+	}
+
+	
+	/**
+	 * This class holds queries drawn from a rating snapshot. Each query is an active user together with the users who rated a target item.
+	 *
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	protected static class Workload {
+
+		/**
+		 * Active rating vectors.
+		 */
+		protected RatingVector[] actives;
+
+		/**
+		 * Target item identifiers.
+		 */
+		protected int[] targets;
+
+		/**
+		 * Candidate rating vectors of queries.
+		 */
+		protected List<List<RatingVector>> candidates = Util.newList();
+
+		/**
+		 * Constructor with specified snapshot.
+		 * @param snapshot rating snapshot whose rows are users.
+		 * @param count number of queries.
+		 * @param maxCandidates maximum number of candidates per query.
+		 * @param seed random seed.
+		 */
+		protected Workload(RatingSnapshot snapshot, int count, int maxCandidates, long seed) {
+			Random random = new Random(seed);
+			int ratingCount = snapshot.ratingCount();
+			count = Math.min(count, ratingCount);
+			int[] rows = new int[count], columns = new int[count];
+			for (int q = 0; q < count; q++) {
+				columns[q] = snapshot.column(random.nextInt(ratingCount));
+				rows[q] = random.nextInt(snapshot.rowCount());
+			}
+
+			//Collecting raters of target columns in one pass over the snapshot.
+			int[] queryOfColumn = new int[snapshot.columnCount()];
+			Arrays.fill(queryOfColumn, -1);
+			int[][] raters = new int[count][];
+			int[] raterCounts = new int[count];
+			for (int q = 0; q < count; q++) {
+				raters[q] = new int[Math.max(1, maxCandidates)];
+				if (queryOfColumn[columns[q]] < 0) queryOfColumn[columns[q]] = q;
+			}
+			long[] seen = new long[count];
+			for (int row = 0; row < snapshot.rowCount(); row++) {
+				for (int k = snapshot.rowStart(row); k < snapshot.rowEnd(row); k++) {
+					int q = queryOfColumn[snapshot.column(k)];
+					if (q < 0) continue;
+
+					//Reservoir sampling keeps a uniform sample of raters when they exceed the cap.
+					seen[q]++;
+					if (raterCounts[q] < maxCandidates)
+						raters[q][raterCounts[q]++] = row;
+					else {
+						long slot = (long)(random.nextDouble() * seen[q]);
+						if (slot < maxCandidates) raters[q][(int)slot] = row;
+					}
+				}
+			}
+
+			this.actives = new RatingVector[count];
+			this.targets = new int[count];
+			RatingVector[] vectors = new RatingVector[snapshot.rowCount()];
+			for (int q = 0; q < count; q++) {
+				int first = queryOfColumn[columns[q]];
+				this.actives[q] = vectorOf(snapshot, vectors, rows[q]);
+				this.targets[q] = snapshot.columnId(columns[q]);
+				List<RatingVector> list = Util.newList(raterCounts[first]);
+				for (int i = 0; i < raterCounts[first]; i++) {
+					if (raters[first][i] != rows[q]) list.add(vectorOf(snapshot, vectors, raters[first][i]));
+				}
+				this.candidates.add(list);
+			}
+		}
+
+		/**
+		 * Getting rating vector of specified row, which is converted once.
+		 * @param snapshot rating snapshot.
+		 * @param vectors converted rating vectors.
+		 * @param row dense row.
+		 * @return rating vector of specified row.
+		 */
+		private static RatingVector vectorOf(RatingSnapshot snapshot, RatingVector[] vectors, int row) {
+			if (vectors[row] == null)
+				vectors[row] = BenchmarkSupport.toRatingVector(snapshot, row);
+			return vectors[row];
+		}
+
+		/**
+		 * Getting number of queries.
+		 * @return number of queries.
+		 */
+		protected int size() {
+			return this.actives.length;
+		}
+
+		/**
+		 * Running first queries against specified algorithm.
+		 * @param alg specified algorithm.
+		 * @param count number of queries.
+		 * @return latencies of queries in nanoseconds.
+		 */
+		protected long[] run(NeighborCFExt alg, int count) {
+			long[] latencies = new long[count];
+			for (int q = 0; q < count; q++) {
+				long start = System.nanoTime();
+				alg.simBatch(this.actives[q], this.candidates.get(q), this.targets[q]);
+				latencies[q] = System.nanoTime() - start;
+			}
+			return latencies;
+		}
+
+	}
+
+
+}
@@ -0,0 +1,421 @@
+package net.hudup.alg.cf.bench;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import net.hudup.core.alg.cf.RatingSnapshot;
+
+/**
+ * This class generates synthetic rating data whose shape resembles real rating datasets such as Movielens and FilmTrust.
+ * User degrees (numbers of ratings per user) and item popularities follow power laws, the total number of ratings matches a target sparsity,
+ * and rating values follow a given histogram over value bins.
+ * Each item has a latent quality bin so that ratings of different users on the same item are correlated, which keeps correlation-based measures meaningful.
+ * Users are identified from 1 to the number of users and items are identified from 1 to the number of items like Movielens.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class SyntheticRatings {
+
+	
+	/**
+	 * Five-star value bins.
+	 */
+	public static final double[] STAR_BINS = {1, 2, 3, 4, 5};
+
+	
+	/**
+	 * Histogram of five-star ratings of Movielens 100K.
+	 */
+	public static final double[] MOVIELENS_HISTOGRAM = {0.061, 0.114, 0.271, 0.342, 0.212};
+
+	
+	/**
+	 * Histogram of five-star ratings of Movielens 1M.
+	 */
+	public static final double[] MOVIELENS_1M_HISTOGRAM = {0.056, 0.108, 0.261, 0.349, 0.226};
+
+	
+	/**
+	 * Value bins of FilmTrust, from 0.5 to 4 with step 0.5.
+	 */
+	public static final double[] FILMTRUST_BINS = {0.5, 1, 1.5, 2, 2.5, 3, 3.5, 4};
+
+	
+	/**
+	 * Histogram of ratings of FilmTrust over {@link #FILMTRUST_BINS}.
+	 */
+	public static final double[] FILMTRUST_HISTOGRAM = {0.033, 0.051, 0.034, 0.092, 0.081, 0.222, 0.198, 0.289};
+
+	
+	/**
+	 * Name of Movielens 100K shape.
+	 */
+	public static final String MOVIELENS_100K = "movielens-100k";
+
+	
+	/**
+	 * Name of Movielens 1M shape.
+	 */
+	public static final String MOVIELENS_1M = "movielens-1m";
+
+	
+	/**
+	 * Name of FilmTrust shape.
+	 */
+	public static final String FILMTRUST = "filmtrust";
+
+	
+	/**
+	 * Number of users.
+	 */
+	protected int userCount = 943;
+
+	
+	/**
+	 * Number of items.
+	 */
+	protected int itemCount = 1682;
+
+	
+	/**
+	 * Target number of ratings.
+	 */
+	protected long ratingCount = 100000;
+
+	
+	/**
+	 * Exponent of power law of user degrees.
+	 */
+	protected double userExponent = 0.8;
+
+	
+	/**
+	 * Exponent of power law of item popularities.
+	 */
+	protected double itemExponent = 1.0;
+
+	
+	/**
+	 * Minimum number of ratings per user.
+	 */
+	protected int minUserDegree = 20;
+
+	
+	/**
+	 * Value bins.
+	 */
+	protected double[] valueBins = STAR_BINS;
+
+	
+	/**
+	 * Histogram of values over value bins.
+	 */
+	protected double[] valueHistogram = MOVIELENS_HISTOGRAM;
+
+	
+	/**
+	 * Probability that a rating equals the latent quality bin of the item instead of a random draw from the histogram.
+	 */
+	protected double itemAgreement = 0.5;
+
+	
+	/**
+	 * Random seed.
+	 */
+	protected long seed = 1;
+
+	
+	/**
+	 * Default constructor with the shape of Movielens 100K.
+	 */
+	public SyntheticRatings() {
+
+	}
+
+	
+	/**
+	 * Constructor with specified size.
+	 * @param userCount number of users.
+	 * @param itemCount number of items.
+	 * @param ratingCount target number of ratings.
+	 */
+	public SyntheticRatings(int userCount, int itemCount, long ratingCount) {
+		this.userCount = userCount;
+		this.itemCount = itemCount;
+		this.ratingCount = ratingCount;
+	}
+
+	
+	/**
+	 * Creating generator of specified shape.
+	 * @param shape shape name which is one of {@link #MOVIELENS_100K}, {@link #MOVIELENS_1M}, and {@link #FILMTRUST}.
+	 * @return generator of specified shape.
+	 */
+	public static SyntheticRatings of(String shape) {
+		if (shape.equals(MOVIELENS_100K))
+			return new SyntheticRatings();
+		else if (shape.equals(MOVIELENS_1M))
+			return new SyntheticRatings(6040, 3706, 1000209).setValues(STAR_BINS, MOVIELENS_1M_HISTOGRAM);
+		else if (shape.equals(FILMTRUST))
+			return new SyntheticRatings(1508, 2071, 35497).setExponents(1.0, 1.2).setMinUserDegree(1).setValues(FILMTRUST_BINS, FILMTRUST_HISTOGRAM);
+		else
+			throw new IllegalArgumentException("Unknown shape: " + shape);
+	}
+
+	
+	/**
+	 * Scaling numbers of users, items, and ratings by specified factor, which keeps the average number of ratings per user and the shape of distributions.
+	 * Sparsity decreases by the factor like real data whose catalog grows together with user base.
+	 * @param factor scaling factor.
+	 * @return this generator.
+	 */
+	public SyntheticRatings scale(double factor) {
+		this.userCount = (int)Math.max(1, Math.round(this.userCount * factor));
+		this.itemCount = (int)Math.max(1, Math.round(this.itemCount * factor));
+		this.ratingCount = Math.max(1, Math.round(this.ratingCount * factor));
+		return this;
+	}
+
+	
+	/**
+	 * Setting exponents of power laws.
+	 * @param userExponent exponent of power law of user degrees.
+	 * @param itemExponent exponent of power law of item popularities.
+	 * @return this generator.
+	 */
+	public SyntheticRatings setExponents(double userExponent, double itemExponent) {
+		this.userExponent = userExponent;
+		this.itemExponent = itemExponent;
+		return this;
+	}
+
+	
+	/**
+	 * Setting minimum number of ratings per user.
+	 * @param minUserDegree minimum number of ratings per user.
+	 * @return this generator.
+	 */
+	public SyntheticRatings setMinUserDegree(int minUserDegree) {
+		this.minUserDegree = minUserDegree;
+		return this;
+	}
+
+	
+	/**
+	 * Setting value bins and their histogram.
+	 * @param valueBins value bins.
+	 * @param valueHistogram histogram of values over value bins, which need not be normalized.
+	 * @return this generator.
+	 */
+	public SyntheticRatings setValues(double[] valueBins, double[] valueHistogram) {
+		this.valueBins = valueBins;
+		this.valueHistogram = valueHistogram;
+		return this;
+	}
+
+	
+	/**
+	 * Setting random seed.
+	 * @param seed random seed.
+	 * @return this generator.
+	 */
+	public SyntheticRatings setSeed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	
+	/**
+	 * Getting number of users.
+	 * @return number of users.
+	 */
+	public int getUserCount() {
+		return this.userCount;
+	}
+
+	
+	/**
+	 * Getting number of items.
+	 * @return number of items.
+	 */
+	public int getItemCount() {
+		return this.itemCount;
+	}
+
+	
+	/**
+	 * Getting target number of ratings.
+	 * @return target number of ratings.
+	 */
+	public long getRatingCount() {
+		return this.ratingCount;
+	}
+
+	
+	/**
+	 * Getting value bins.
+	 * @return value bins.
+	 */
+	public double[] getValueBins() {
+		return this.valueBins;
+	}
+
+	
+	/**
+	 * Generating rating snapshot whose rows are users and whose columns are items.
+	 * @param quantizedBins value bins for quantized storage of the snapshot, null for double storage.
+	 * @return generated rating snapshot.
+	 */
+	public RatingSnapshot generate(double[] quantizedBins) {
+		Random random = new Random(this.seed);
+		int maxDegree = Math.max(1, (int)(this.itemCount * 0.9));
+		int[] degrees = powerLawDegrees(this.userCount, this.userExponent, this.ratingCount, Math.min(this.minUserDegree, maxDegree), maxDegree);
+		shuffle(degrees, random);
+
+		double[] itemCdf = cumulative(powerLawWeights(this.itemCount, this.itemExponent));
+		int[] itemIds = new int[this.itemCount];
+		for (int i = 0; i < this.itemCount; i++)
+			itemIds[i] = i + 1;
+		shuffle(itemIds, random);
+
+		double[] valueCdf = cumulative(this.valueHistogram);
+		int[] itemQualities = new int[this.itemCount];
+		for (int i = 0; i < this.itemCount; i++)
+			itemQualities[i] = sample(valueCdf, random);
+
+		long total = 0;
+		for (int degree : degrees)
+			total += degree;
+		if (total > Integer.MAX_VALUE - 8)
+			throw new IllegalArgumentException("Too many ratings for one snapshot: " + total);
+
+		int[] rowIds = new int[this.userCount];
+		int[] rowStarts = new int[this.userCount + 1];
+		int[] fieldIds = new int[(int)total];
+		double[] values = new double[(int)total];
+		int[] stamps = new int[this.itemCount];
+		Arrays.fill(stamps, -1);
+		int count = 0;
+		for (int user = 0; user < this.userCount; user++) {
+			rowIds[user] = user + 1;
+			for (int k = 0; k < degrees[user]; k++) {
+				int item = sample(itemCdf, random);
+				while (stamps[item] == user)
+					item = random.nextInt(this.itemCount);
+				stamps[item] = user;
+
+				int bin = random.nextDouble() < this.itemAgreement ? itemQualities[item] : sample(valueCdf, random);
+				fieldIds[count] = itemIds[item];
+				values[count] = this.valueBins[bin];
+				count++;
+			}
+			rowStarts[user + 1] = count;
+		}
+
+		return RatingSnapshot.build(rowIds, this.userCount, rowStarts, fieldIds, values, quantizedBins);
+	}
+
+	
+	/**
+	 * Calculating power-law degrees whose sum approximates specified total.
+	 * @param count number of degrees.
+	 * @param exponent exponent of power law.
+	 * @param total target sum of degrees.
+	 * @param min minimum degree.
+	 * @param max maximum degree.
+	 * @return power-law degrees ordered decreasingly.
+	 */
+	public static int[] powerLawDegrees(int count, double exponent, long total, int min, int max) {
+		double[] weights = powerLawWeights(count, exponent);
+		double low = 0, high = (double)total * 2;
+		int[] degrees = new int[count];
+		for (int iteration = 0; iteration < 64; iteration++) {
+			double scale = (low + high) / 2;
+			long sum = 0;
+			for (int i = 0; i < count; i++) {
+				degrees[i] = (int)Math.max(min, Math.min(max, Math.round(scale * weights[i])));
+				sum += degrees[i];
+			}
+
+			if (sum == total)
+				break;
+			else if (sum < total)
+				low = scale;
+			else
+				high = scale;
+		}
+
+		return degrees;
+	}
+
+	
+	/**
+	 * Calculating power-law weights (i + 1)^(-exponent).
+	 * @param count number of weights.
+	 * @param exponent exponent of power law.
+	 * @return power-law weights normalized to sum 1.
+	 */
+	private static double[] powerLawWeights(int count, double exponent) {
+		double[] weights = new double[count];
+		double sum = 0;
+		for (int i = 0; i < count; i++) {
+			weights[i] = Math.pow(i + 1, -exponent);
+			sum += weights[i];
+		}
+		for (int i = 0; i < count; i++)
+			weights[i] = weights[i] / sum;
+
+		return weights;
+	}
+
+	
+	/**
+	 * Calculating cumulative distribution of specified weights.
+	 * @param weights specified weights which need not be normalized.
+	 * @return cumulative distribution whose last element is 1.
+	 */
+	private static double[] cumulative(double[] weights) {
+		double[] cdf = new double[weights.length];
+		double sum = 0;
+		for (int i = 0; i < weights.length; i++) {
+			sum += weights[i];
+			cdf[i] = sum;
+		}
+		for (int i = 0; i < cdf.length; i++)
+			cdf[i] = cdf[i] / sum;
+
+		return cdf;
+	}
+
+	
+	/**
+	 * Sampling a position from cumulative distribution.
+	 * @param cdf cumulative distribution.
+	 * @param random random generator.
+	 * @return sampled position.
+	 */
+	private static int sample(double[] cdf, Random random) {
+		int index = Arrays.binarySearch(cdf, random.nextDouble());
+		index = index < 0 ? -index - 1 : index;
+		return Math.min(index, cdf.length - 1);
+	}
+
+	
+	/**
+	 * Shuffling specified array.
+	 * @param array specified array.
+	 * @param random random generator.
+	 */
+	private static void shuffle(int[] array, Random random) {
+		for (int i = array.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int temp = array[i];
+			array[i] = array[j];
+			array[j] = temp;
+		}
+	}
+
+
+}
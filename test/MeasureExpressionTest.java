@@ -0,0 +1,159 @@
+/**
+ * HUDUP: A FRAMEWORK OF E-COMMERCIAL RECOMMENDATION ALGORITHMS
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: http://www.locnguyen.net/st/products/hudup
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.hudup.core.alg.cf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import net.hudup.core.Constants;
+import net.hudup.core.Util;
+import net.hudup.core.data.RatingVector;
+
+/**
+ * This class tests parsing and evaluating composite measure expressions and definitions, and composite measures configured into neighbor algorithm.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class MeasureExpressionTest {
+
+	
+	/**
+	 * Testing precedence and associativity of operators, unary minus, parentheses, and numbers.
+	 */
+	@Test
+	public void testArithmetic() {
+		assertEquals(7, evaluate("1 + 2 * 3"), 0);
+		assertEquals(9, evaluate("(1 + 2) * 3"), 0);
+		assertEquals(-5, evaluate("2 - 3 - 4"), 0);
+		assertEquals(1, evaluate("8 / 4 / 2"), 0);
+		assertEquals(6, evaluate("-2 * -3"), 0);
+		assertEquals(-1, evaluate("-(2 - 1)"), 0);
+		assertEquals(15, evaluate("1.5e1"), 0);
+		assertEquals(0.25, evaluate(".5 * 0.5"), 0);
+		assertEquals(2.5e-3, evaluate("2.5E-3"), 0);
+		assertTrue(Double.isInfinite(evaluate("1 / 0")));
+	}
+
+	
+	/**
+	 * Testing identifiers, which are distinct in the order of appearance and are evaluated from aligned values.
+	 */
+	@Test
+	public void testIdentifiers() {
+		MeasureExpression expression = new MeasureExpression(" mu_alpha * pearson + (1 - mu_alpha) * (1 - bc + jaccard) ");
+		assertEquals(Arrays.asList("mu_alpha", "pearson", "bc", "jaccard"), expression.getIdentifiers());
+		assertEquals("mu_alpha * pearson + (1 - mu_alpha) * (1 - bc + jaccard)", expression.getText());
+		assertEquals(0.5 * 0.8 + 0.5 * (1 - 0.3 + 0.4), expression.evaluate(new double[] {0.5, 0.8, 0.3, 0.4}), 0);
+		
+		expression = new MeasureExpression("cosine*jaccard+cosine");
+		assertEquals(Arrays.asList("cosine", "jaccard"), expression.getIdentifiers());
+		assertEquals(0.5 * 0.2 + 0.5, expression.evaluate(new double[] {0.5, 0.2}), 0);
+		assertEquals(Arrays.asList("a.b_1"), new MeasureExpression("a.b_1").getIdentifiers());
+	}
+
+	
+	/**
+	 * Testing that invalid expressions are rejected.
+	 */
+	@Test
+	public void testInvalid() {
+		for (String text : new String[] {"", "  ", "1 +", "(1 + 2", "1 + 2)", "1 2", "cosine jaccard", "cosine $ 2", "1..2", "* 2", "()"}) {
+			try {
+				new MeasureExpression(text);
+				fail("Expression \"" + text + "\" is accepted");
+			}
+			catch (IllegalArgumentException e) {
+				assertTrue(e.getMessage().startsWith("Invalid measure expression"));
+			}
+		}
+	}
+
+	
+	/**
+	 * Testing parsing definitions of composite measures.
+	 */
+	@Test
+	public void testDefinitions() {
+		Map<String, MeasureExpression> definitions = MeasureExpression.parseDefinitions(" b = cosine * jaccard ; a = 1 - b;; ");
+		assertEquals(Arrays.asList("b", "a"), new ArrayList<>(definitions.keySet()));
+		assertEquals("cosine * jaccard", definitions.get("b").getText());
+		assertEquals(Arrays.asList("b"), definitions.get("a").getIdentifiers());
+		assertTrue(MeasureExpression.parseDefinitions(null).isEmpty());
+		assertTrue(MeasureExpression.parseDefinitions("").isEmpty());
+		
+		for (String text : new String[] {"cosine", "= cosine", "9a = cosine", "a b = cosine", "a = ", "a = cosine +"}) {
+			try {
+				MeasureExpression.parseDefinitions(text);
+				fail("Definitions \"" + text + "\" are accepted");
+			}
+			catch (IllegalArgumentException e) {
+				assertTrue(e.getMessage().startsWith("Invalid measure"));
+			}
+		}
+	}
+
+	
+	/**
+	 * Testing composite measures configured into neighbor algorithm, which are evaluated from their components. Cyclic and invalid definitions are ignored.
+	 * @throws Exception if any error raises.
+	 */
+	@Test
+	public void testConfiguredComposites() throws Exception {
+		NeighborCF alg = RatingFixtures.newAlgorithm();
+		alg.setCached(false);
+		alg.setupSnapshot(RatingFixtures.snapshot(null));
+		alg.getConfig().put(NeighborCF.COMPOSITE_MEASURES_FIELD, "half = 0.5 * cosine + 0.5 * jaccard; loop1 = loop2 * 2; loop2 = loop1 + cosine");
+		Map<String, MeasureExpression> composites = alg.getCompositeMeasures();
+		assertTrue(composites.containsKey("half"));
+		assertFalse(composites.containsKey("loop1"));
+		assertFalse(composites.containsKey("loop2"));
+		assertTrue(alg.getSupportedMeasures().contains("half"));
+		
+		List<RatingVector> vectors = RatingFixtures.vectors();
+		alg.setMeasure("half");
+		for (RatingVector vRating1 : vectors) {
+			double[] sims = alg.simBatch(vRating1, vectors);
+			for (int i = 0; i < vectors.size(); i++) {
+				double cosine = alg.sim0(NeighborCF.COSINE, vRating1, vectors.get(i), null, null);
+				double jaccard = alg.sim0(NeighborCF.JACCARD, vRating1, vectors.get(i), null, null);
+				double expected = Util.isUsed(cosine) && Util.isUsed(jaccard) ? 0.5 * cosine + 0.5 * jaccard : Constants.UNUSED;
+				assertEquals(expected, alg.sim0("half", vRating1, vectors.get(i), null, null), 1e-12);
+				assertEquals(expected, sims[i], 1e-12);
+			}
+		}
+		
+		alg.getConfig().put(NeighborCF.COMPOSITE_MEASURES_FIELD, "half = cosine +");
+		assertFalse(alg.getCompositeMeasures().containsKey("half"));
+		assertTrue(alg.getCompositeMeasures().containsKey(NeighborCF.COSINEJ));
+	}
+
+	
+	/**
+	 * Evaluating expression without identifiers.
+	 * @param text text of expression.
+	 * @return value of expression.
+	 */
+	private static double evaluate(String text) {
+		MeasureExpression expression = new MeasureExpression(text);
+		assertTrue(expression.getIdentifiers().isEmpty());
+		return expression.evaluate(new double[0]);
+	}
+
+
+}
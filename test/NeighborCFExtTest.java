@@ -0,0 +1,241 @@
+package net.hudup.alg.cf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import net.hudup.core.Constants;
+import net.hudup.core.Util;
+import net.hudup.core.alg.cf.IdDictionary;
+import net.hudup.core.alg.cf.PreparedVector;
+import net.hudup.core.alg.cf.RatingFixtures;
+import net.hudup.core.alg.cf.SimilarityKernel;
+import net.hudup.core.data.RatingVector;
+import net.hudup.core.data.UserRating;
+import net.hudup.data.DocumentVector;
+
+/**
+ * This class tests measures of extended neighbor algorithm whose fast paths replaced direct formulas: SMTP measure calculated in one fused loop,
+ * Amer measure calculated from set cardinalities, and PSS and PIP measures whose pair terms are read from tables over value bins.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class NeighborCFExtTest {
+
+	
+	/**
+	 * Tolerance of similarities which are calculated by formulas written in different orders.
+	 */
+	protected static final double DELTA = 1e-12;
+
+	
+	/**
+	 * Testing SMTP measure against the formula of Lin, Jiang, and Lee calculated by hand, including ratings which are zero and pairs without co-rated items.
+	 */
+	@Test
+	public void testSmtpFormula() {
+		IdDictionary itemIndex = new IdDictionary(new int[] {10, 11, 12, 13});
+		double[] itemVars = {1.0, 2.0, 0.5, 1.5};
+		double lamda = 0.5;
+		
+		double F = (0.5 * (1.0 + Math.exp(-1.0 / 1.0)) + 1.0) / 2.0;
+		assertEquals((F + lamda) / (1.0 + lamda),
+			smtp(vector(1, 10, 5, 11, 3, 12, 4), vector(2, 10, 4, 11, 3, 13, 2), itemIndex, itemVars, 0, lamda), DELTA);
+		
+		F = (0.5 * (1.0 + Math.exp(-4.0 / 0.8)) + 0.5 * (1.0 + Math.exp(-1.0 / 0.8))) / 2.0;
+		assertEquals((F + lamda) / (1.0 + lamda),
+			smtp(vector(1, 10, 5, 12, 2), vector(2, 10, 3, 12, 3), itemIndex, null, 0.8, lamda), DELTA);
+		
+		F = (1.0 - lamda) / 2.0;
+		assertEquals((F + lamda) / (1.0 + lamda),
+			smtp(vector(1, 10, 5, 11, 0, 12, 0), vector(2, 10, 5, 11, 2, 12, 0), itemIndex, itemVars, 0, lamda), DELTA);
+		
+		assertEquals(0.0, smtp(vector(1, 10, 0, 11, 3), vector(2, 10, 2, 11, 0), itemIndex, itemVars, 0, lamda), DELTA);
+		assertEquals(Constants.UNUSED, smtp(vector(1, 10, 5), vector(2, 11, 5), itemIndex, itemVars, 0, lamda), 0);
+		assertEquals(Constants.UNUSED, smtp(vector(1, 99, 5), vector(2, 99, 5), itemIndex, itemVars, 0, lamda), 0);
+	}
+
+	
+	/**
+	 * Testing SMTP measure of fixed ratings against {@link DocumentVector#smtp(DocumentVector, double, double[])}, which calculated SMTP measure before the fused loop.
+	 * @throws Exception if any error raises.
+	 */
+	@Test
+	public void testSmtpDocumentVector() throws Exception {
+		for (boolean generalVar : new boolean[] {false, true}) {
+			StatisticsUserBased alg = new StatisticsUserBased();
+			alg.getConfig().put(NeighborCFExt.SMTP_GENERAL_VAR_FIELD, generalVar);
+			alg.setupSnapshot(RatingFixtures.snapshot(null));
+			double lamda = alg.getConfig().getAsReal(NeighborCFExt.SMTP_LAMBDA_FIELD);
+			List<RatingVector> vectors = RatingFixtures.vectors();
+			for (RatingVector vRating1 : vectors) {
+				for (RatingVector vRating2 : vectors) {
+					List<Integer> common = Util.newList();
+					common.addAll(vRating1.fieldIds(true));
+					common.retainAll(vRating2.fieldIds(true));
+					double sim = alg.smtp(vRating1, vRating2, null, null);
+					if (common.size() == 0) {
+						assertEquals(Constants.UNUSED, sim, 0);
+						continue;
+					}
+					
+					double[] data1 = new double[common.size()], data2 = new double[common.size()], vars = new double[common.size()];
+					for (int i = 0; i < common.size(); i++) {
+						int id = common.get(i);
+						data1[i] = vRating1.get(id).value;
+						data2[i] = vRating2.get(id).value;
+						vars[i] = generalVar ? alg.getRatingVar() : alg.getItemVar(id);
+					}
+					double expected = new DocumentVector(data1).smtp(new DocumentVector(data2), lamda, vars);
+					assertEquals("smtp of users " + vRating1.id() + " and " + vRating2.id(), expected, sim, DELTA);
+				}
+			}
+		}
+	}
+
+	
+	/**
+	 * Testing compiled Amer measure against its definition over sets of rated items, including items which are outside the catalog.
+	 * @throws Exception if any error raises.
+	 */
+	@Test
+	public void testAmer() throws Exception {
+		StatisticsUserBased alg = new StatisticsUserBased();
+		alg.setupSnapshot(RatingFixtures.snapshot(null));
+		alg.setMeasure(NeighborCFExt.AMER);
+		SimilarityKernel kernel = alg.compileKernel(NeighborCFExt.AMER);
+		assertTrue(kernel != null);
+		
+		List<RatingVector> vectors = RatingFixtures.vectors();
+		vectors.add(vector(100, 10, 4, 98, 2, 99, 5));
+		vectors.add(vector(101, 99, 3));
+		for (RatingVector vRating1 : vectors) {
+			for (RatingVector vRating2 : vectors) {
+				Set<Integer> ids1 = vRating1.fieldIds(true), ids2 = vRating2.fieldIds(true);
+				Set<Integer> common = Util.newSet(), union = Util.newSet();
+				common.addAll(ids1);
+				common.retainAll(ids2);
+				union.addAll(alg.getItemIds());
+				union.addAll(ids1);
+				union.addAll(ids2);
+				double expected = NeighborCFExt.amer(ids1.size(), ids2.size(), common.size(), union.size());
+				
+				String message = "amer of users " + vRating1.id() + " and " + vRating2.id();
+				assertEquals(message, expected, kernel.sim(new PreparedVector(vRating1).prepareActive(), new PreparedVector(vRating2)), 0);
+				assertEquals(message, expected, alg.amer(vRating1, vRating2, null, null, alg.getItemIds()), 0);
+			}
+		}
+	}
+
+	
+	/**
+	 * Testing terms of PSS and PIP measures which are read from tables over value bins against terms which are calculated directly.
+	 * Ratings which are not value bins are calculated directly.
+	 * @throws Exception if any error raises.
+	 */
+	@Test
+	public void testPairTables() throws Exception {
+		NeighborCFExt alg = new StatisticsUserBased();
+		alg.setupSnapshot(RatingFixtures.snapshot(RatingFixtures.VALUE_BINS));
+		assertTrue(alg.tableBins.length > 0);
+		
+		double[] ratings = {1, 1.5, 2, 3, 3.5, 4, 5};
+		double[] none = new double[0];
+		for (double mean : new double[] {1.0, 2.7, 3.0, 4.2}) {
+			for (double r1 : ratings) {
+				for (double r2 : ratings) {
+					String message = "ratings " + r1 + " and " + r2 + " with mean " + mean;
+					assertEquals("pss " + message, alg.pssTerm(r1, r2, mean, none, none), alg.pssTerm(r1, r2, mean, alg.tableBins, alg.pssPairTable), 0);
+					assertEquals("pip " + message, alg.pipTerm(r1, r2, mean, none, none), alg.pipTerm(r1, r2, mean, alg.tableBins, alg.pipPairTable), 0);
+				}
+			}
+		}
+	}
+
+	
+	/**
+	 * Calculating SMTP measure between two rating vectors.
+	 * @param vRating1 first rating vector.
+	 * @param vRating2 second rating vector.
+	 * @param itemIndex dictionary of item identifiers.
+	 * @param itemVars item variances, null to use general variance.
+	 * @param generalVar general variance.
+	 * @param lamda lamda parameter.
+	 * @return SMTP measure.
+	 */
+	private static double smtp(RatingVector vRating1, RatingVector vRating2, IdDictionary itemIndex, double[] itemVars, double generalVar, double lamda) {
+		return NeighborCFExt.smtp(new PreparedVector(vRating1).prepareActive(), new PreparedVector(vRating2), itemIndex, itemVars, generalVar, lamda);
+	}
+
+	
+	/**
+	 * Creating user rating vector from pairs of item identifier and rating value.
+	 * @param userId user identifier.
+	 * @param ratings pairs of item identifier and rating value.
+	 * @return user rating vector.
+	 */
+	private static RatingVector vector(int userId, double...ratings) {
+		RatingVector vRating = new UserRating(userId);
+		for (int i = 0; i + 1 < ratings.length; i += 2)
+			vRating.put((int)ratings[i], ratings[i + 1]);
+		return vRating;
+	}
+
+	
+	/**
+	 * This class is the default user-based algorithm which exposes statistics of its model to tests. Similarities are not cached.
+	 * The class is public because staging instances of the algorithm are created by reflection.
+	 *
+	 * @author Loc Nguyen
+	 * @version 1.0
+	 *
+	 */
+	public static class StatisticsUserBased extends NeighborCFUserBased {
+
+		/**
+		 * Serial version UID for serializable class.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Default constructor.
+		 */
+		public StatisticsUserBased() {
+			setCached(false);
+		}
+
+		/**
+		 * Getting variance of all ratings.
+		 * @return variance of all ratings.
+		 */
+		public double getRatingVar() {
+			return this.ratingVar;
+		}
+
+		/**
+		 * Getting variance of specified item.
+		 * @param itemId specified item identifier.
+		 * @return variance of specified item.
+		 */
+		public double getItemVar(int itemId) {
+			return fieldStat(this.itemVars, itemId);
+		}
+
+		/**
+		 * Getting identifiers of items of the model.
+		 * @return identifiers of items of the model.
+		 */
+		public Set<Integer> getItemIds() {
+			return this.itemIds;
+		}
+
+	}
+
+
+}
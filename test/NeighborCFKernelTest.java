@@ -0,0 +1,283 @@
+/**
+ * HUDUP: A FRAMEWORK OF E-COMMERCIAL RECOMMENDATION ALGORITHMS
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: http://www.locnguyen.net/st/products/hudup
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.hudup.core.alg.cf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import net.hudup.core.Util;
+import net.hudup.core.data.RatingVector;
+import net.hudup.core.data.UserRating;
+
+/**
+ * This class tests that compiled kernels, finishers of shared pair statistics, and batch paths of neighbor algorithm return the same similarities as
+ * {@link NeighborCF#sim0(String, RatingVector, RatingVector, net.hudup.core.data.Profile, net.hudup.core.data.Profile, Object...)} on fixed ratings
+ * of {@link RatingFixtures}, for every supported measure and every composite measure, with both double and quantized rating snapshots.
+ * Boxed measures may delegate to rating vectors whose arithmetic is rounded differently, so they are compared within {@link #DELTA},
+ * whereas finishers, fused multi-measure calculation, and row calculation are compared bit by bit with compiled kernels.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class NeighborCFKernelTest {
+
+	
+	/**
+	 * Tolerance of similarities calculated by boxed measures.
+	 */
+	protected static final double DELTA = 1e-12;
+
+	
+	/**
+	 * Testing compiled kernels against boxed measures with double snapshot.
+	 * @throws Exception if any error raises.
+	 */
+	@Test
+	public void testKernels() throws Exception {
+		testKernels(null);
+	}
+
+	
+	/**
+	 * Testing compiled kernels against boxed measures with quantized snapshot.
+	 * @throws Exception if any error raises.
+	 */
+	@Test
+	public void testKernelsQuantized() throws Exception {
+		testKernels(RatingFixtures.VALUE_BINS);
+	}
+
+	
+	/**
+	 * Testing finishers of shared pair statistics against boxed measures with double snapshot.
+	 * @throws Exception if any error raises.
+	 */
+	@Test
+	public void testFinishers() throws Exception {
+		testFinishers(null);
+	}
+
+	
+	/**
+	 * Testing finishers of shared pair statistics against boxed measures with quantized snapshot.
+	 * @throws Exception if any error raises.
+	 */
+	@Test
+	public void testFinishersQuantized() throws Exception {
+		testFinishers(RatingFixtures.VALUE_BINS);
+	}
+
+	
+	/**
+	 * Testing batch calculation, fused multi-measure calculation, and row calculation against boxed measures.
+	 * @throws Exception if any error raises.
+	 */
+	@Test
+	public void testBatches() throws Exception {
+		for (double[] valueBins : new double[][] {null, RatingFixtures.VALUE_BINS}) {
+			NeighborCF alg = setup(valueBins);
+			List<RatingVector> vectors = RatingFixtures.vectors();
+			List<String> measures = measures(alg);
+			Object[] params = parameters();
+			
+			for (int row = 0; row < vectors.size(); row++) {
+				double[][] multi = alg.simBatchMulti(vectors.get(row), vectors, measures, params);
+				for (int m = 0; m < measures.size(); m++) {
+					String measure = measures.get(m);
+					alg.setMeasure(measure);
+					double[] batch = alg.simBatch(vectors.get(row), vectors, params);
+					double[] rows = isParameterMeasure(measure) ? null : alg.simRows(row, 0, vectors.size(), null);
+					for (int i = 0; i < vectors.size(); i++) {
+						String message = message(measure, valueBins, row, i);
+						assertEquals("simBatch " + message, alg.sim0(measure, vectors.get(row), vectors.get(i), null, null, params), batch[i], DELTA);
+						assertEquals("simBatchMulti " + message, batch[i], multi[m][i], 0);
+						if (rows != null) assertEquals("simRows " + message, batch[i], rows[i], 0);
+					}
+				}
+			}
+		}
+	}
+
+	
+	/**
+	 * Testing that a query vector whose user is a row of the model but whose ratings differ from the row is scored by its own ratings in batch paths.
+	 * @throws Exception if any error raises.
+	 */
+	@Test
+	public void testQueryVectors() throws Exception {
+		NeighborCF alg = setup(null);
+		List<RatingVector> vectors = RatingFixtures.vectors();
+		RatingVector edited = new UserRating(vectors.get(0).id());
+		for (int itemId : vectors.get(1).fieldIds(true))
+			edited.put(itemId, vectors.get(1).get(itemId).value);
+		Object[] params = parameters();
+		
+		for (String measure : measures(alg)) {
+			alg.setMeasure(measure);
+			double[] batch = alg.simBatch(edited, vectors, params);
+			for (int i = 0; i < vectors.size(); i++)
+				assertEquals("simBatch of edited vector " + message(measure, null, 0, i), alg.sim0(measure, edited, vectors.get(i), null, null, params), batch[i], DELTA);
+		}
+	}
+
+	
+	/**
+	 * Testing that built-in composite measures are compiled into fused kernels.
+	 * @throws Exception if any error raises.
+	 */
+	@Test
+	public void testCompositeKernels() throws Exception {
+		NeighborCF alg = setup(null);
+		for (String measure : alg.getCompositeMeasures().keySet()) {
+			alg.setMeasure(measure);
+			assertTrue("composite measure " + measure + " is not compiled", alg.compileKernel(measure) != null);
+		}
+	}
+
+	
+	/**
+	 * Testing compiled kernels against boxed measures.
+	 * @param valueBins value bins of snapshot, null for double snapshot.
+	 * @throws Exception if any error raises.
+	 */
+	private static void testKernels(double[] valueBins) throws Exception {
+		NeighborCF alg = setup(valueBins);
+		RatingSnapshot snapshot = alg.snapshot;
+		List<RatingVector> vectors = RatingFixtures.vectors();
+		PreparedVector active = new PreparedVector(), candidate = new PreparedVector();
+		int compiled = 0;
+		for (String measure : measures(alg)) {
+			alg.setMeasure(measure);
+			SimilarityKernel kernel = alg.compileKernel(measure);
+			if (kernel == null) continue;
+			compiled++;
+			
+			for (int row1 = 0; row1 < vectors.size(); row1++) {
+				active.load(snapshot, row1).prepareActive();
+				for (int row2 = 0; row2 < vectors.size(); row2++) {
+					double expected = alg.sim0(measure, vectors.get(row1), vectors.get(row2), null, null, parameters());
+					assertEquals("kernel " + message(measure, valueBins, row1, row2), expected, kernel.sim(active, candidate.load(snapshot, row2)), DELTA);
+					assertEquals("kernel of boxed vectors " + message(measure, valueBins, row1, row2), expected,
+						kernel.sim(new PreparedVector(vectors.get(row1)).prepareActive(), new PreparedVector(vectors.get(row2))), DELTA);
+				}
+			}
+		}
+		assertTrue("no measure is compiled", compiled > 0);
+	}
+
+	
+	/**
+	 * Testing finishers of shared pair statistics against compiled kernels and boxed measures. All finishers of all measures share one statistics
+	 * so that registering centers of a measure does not disturb other measures. Column-major layout is built so that composite measures of column measures are finished too.
+	 * @param valueBins value bins of snapshot, null for double snapshot.
+	 * @throws Exception if any error raises.
+	 */
+	private static void testFinishers(double[] valueBins) throws Exception {
+		NeighborCF alg = setup(valueBins);
+		RatingSnapshot snapshot = alg.snapshot.buildColumns();
+		List<RatingVector> vectors = RatingFixtures.vectors();
+		List<String> measures = measures(alg);
+		PairStatistics statistics = new PairStatistics(alg.itemIndex);
+		PairStatistics.Finisher[] finishers = new PairStatistics.Finisher[measures.size()];
+		SimilarityKernel[] kernels = new SimilarityKernel[measures.size()];
+		int finished = 0;
+		for (int m = 0; m < finishers.length; m++) {
+			finishers[m] = alg.compileFinisher(measures.get(m), statistics);
+			kernels[m] = alg.compileKernel(measures.get(m));
+			if (finishers[m] != null) finished++;
+		}
+		assertTrue("no measure is finished from statistics", finished > 0);
+		
+		PreparedVector active = new PreparedVector(), candidate = new PreparedVector();
+		for (int row1 = 0; row1 < vectors.size(); row1++) {
+			active.load(snapshot, row1).prepareActive();
+			statistics.setActive(active);
+			for (int row2 = 0; row2 < vectors.size(); row2++) {
+				statistics.accumulate(active, candidate.load(snapshot, row2));
+				for (int m = 0; m < finishers.length; m++) {
+					if (finishers[m] == null) continue;
+					String message = message(measures.get(m), valueBins, row1, row2);
+					double sim = finishers[m].sim(active, candidate, statistics);
+					assertEquals("finisher " + message, alg.sim0(measures.get(m), vectors.get(row1), vectors.get(row2), null, null, parameters()), sim, DELTA);
+					if (kernels[m] != null) assertEquals("finisher against kernel " + message, kernels[m].sim(active, candidate), sim, 0);
+				}
+			}
+		}
+	}
+
+	
+	/**
+	 * Setting up the default algorithm with fixed ratings.
+	 * @param valueBins value bins of snapshot, null for double snapshot.
+	 * @return algorithm set up with fixed ratings.
+	 * @throws Exception if any error raises.
+	 */
+	private static NeighborCF setup(double[] valueBins) throws Exception {
+		NeighborCF alg = RatingFixtures.newAlgorithm();
+		alg.setCached(false);
+		alg.setupSnapshot(RatingFixtures.snapshot(valueBins));
+		return alg;
+	}
+
+	
+	/**
+	 * Getting supported measures and composite measures of specified algorithm.
+	 * @param alg specified algorithm.
+	 * @return supported measures and composite measures.
+	 */
+	private static List<String> measures(NeighborCF alg) {
+		Set<String> measures = Util.newSet();
+		measures.addAll(alg.getSupportedMeasures());
+		measures.addAll(alg.getCompositeMeasures().keySet());
+		List<String> list = Util.newList();
+		list.addAll(measures);
+		Collections.sort(list);
+		return list;
+	}
+
+	
+	/**
+	 * Checking whether specified measure needs extra parameters, such as the fixed column of PC measure.
+	 * @param measure specified measure.
+	 * @return whether specified measure needs extra parameters.
+	 */
+	private static boolean isParameterMeasure(String measure) {
+		return measure.equals("pc");
+	}
+
+	
+	/**
+	 * Getting extra parameters of measures, which is the fixed column of PC measure.
+	 * @return extra parameters of measures.
+	 */
+	private static Object[] parameters() {
+		return new Object[] {RatingFixtures.ITEM_IDS[0]};
+	}
+
+	
+	/**
+	 * Making assertion message of specified pair.
+	 * @param measure measure.
+	 * @param valueBins value bins of snapshot.
+	 * @param row1 first row.
+	 * @param row2 second row.
+	 * @return assertion message.
+	 */
+	private static String message(String measure, double[] valueBins, int row1, int row2) {
+		return measure + (valueBins != null ? " quantized" : "") + " of rows " + row1 + " and " + row2;
+	}
+
+
+}
@@ -0,0 +1,119 @@
+/**
+ * HUDUP: A FRAMEWORK OF E-COMMERCIAL RECOMMENDATION ALGORITHMS
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: http://www.locnguyen.net/st/products/hudup
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.hudup.core.alg.cf;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * This class tests that numbers of co-rated columns of overlap matrix are the same as numbers counted by intersecting rows, with narrow and wide counts.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class OverlapMatrixTest {
+
+	
+	/**
+	 * Testing overlap matrix of fixed ratings against intersections of rows.
+	 */
+	@Test
+	public void testBuild() {
+		RatingSnapshot snapshot = RatingFixtures.snapshot(null);
+		OverlapMatrix matrix = OverlapMatrix.build(snapshot);
+		assertTrue(matrix.narrowCounts != null);
+		
+		long pairCount = 0;
+		for (int row1 = 0; row1 < snapshot.rowCount(); row1++) {
+			for (int row2 = 0; row2 < snapshot.rowCount(); row2++) {
+				int common = intersect(snapshot, row1, row2);
+				if (row1 < row2 && common > 0) pairCount++;
+				assertEquals("rows " + row1 + " and " + row2, common, matrix.count(row1, row2));
+				assertArrayEquals(new int[] {snapshot.rowLength(row1), snapshot.rowLength(row2), common},
+					matrix.counts(snapshot.rowId(row1), snapshot.rowId(row2)));
+			}
+		}
+		assertEquals(pairCount, matrix.getPairCount());
+		assertNull(matrix.counts(RatingFixtures.USER_IDS[0], 999));
+	}
+
+	
+	/**
+	 * Testing that counts of stale rows are not read from the matrix, whereas the matrix itself is unchanged.
+	 */
+	@Test
+	public void testStale() {
+		RatingSnapshot snapshot = RatingFixtures.snapshot(null);
+		OverlapMatrix matrix = OverlapMatrix.build(snapshot);
+		OverlapMatrix stale = matrix.withStale(Arrays.asList(RatingFixtures.USER_IDS[1]));
+		
+		assertEquals(1, stale.getStaleCount());
+		assertNull(stale.counts(RatingFixtures.USER_IDS[0], RatingFixtures.USER_IDS[1]));
+		assertNull(stale.counts(RatingFixtures.USER_IDS[1], RatingFixtures.USER_IDS[2]));
+		assertArrayEquals(matrix.counts(RatingFixtures.USER_IDS[0], RatingFixtures.USER_IDS[2]), stale.counts(RatingFixtures.USER_IDS[0], RatingFixtures.USER_IDS[2]));
+		assertEquals(0, matrix.getStaleCount());
+		assertTrue(matrix.counts(RatingFixtures.USER_IDS[0], RatingFixtures.USER_IDS[1]) != null);
+	}
+
+	
+	/**
+	 * Testing wide counts of rows which have more than {@link Character#MAX_VALUE} ratings.
+	 */
+	@Test
+	public void testWideCounts() {
+		int length = Character.MAX_VALUE + 1000, shift = 500;
+		int[] rowIds = {1, 2, 3};
+		int[] rowStarts = {0, length, 2 * length, 2 * length + 2};
+		int[] fieldIds = new int[rowStarts[3]];
+		double[] values = new double[fieldIds.length];
+		for (int i = 0; i < length; i++) {
+			fieldIds[i] = i;
+			fieldIds[length + i] = i + shift;
+		}
+		fieldIds[2 * length] = 0;
+		fieldIds[2 * length + 1] = length + shift - 1;
+		Arrays.fill(values, 1);
+		
+		RatingSnapshot snapshot = RatingSnapshot.build(rowIds, rowIds.length, rowStarts, fieldIds, values, null);
+		OverlapMatrix matrix = OverlapMatrix.build(snapshot);
+		assertTrue(matrix.wideCounts != null);
+		for (int row1 = 0; row1 < snapshot.rowCount(); row1++) {
+			for (int row2 = 0; row2 < snapshot.rowCount(); row2++)
+				assertEquals("rows " + row1 + " and " + row2, intersect(snapshot, row1, row2), matrix.count(row1, row2));
+		}
+		assertEquals(length - shift, matrix.count(0, 1));
+	}
+
+	
+	/**
+	 * Counting co-rated columns of two rows by merging them, whose columns are sorted.
+	 * @param snapshot rating snapshot.
+	 * @param row1 first row.
+	 * @param row2 second row.
+	 * @return number of co-rated columns.
+	 */
+	private static int intersect(RatingSnapshot snapshot, int row1, int row2) {
+		int common = 0;
+		for (int k1 = snapshot.rowStart(row1), k2 = snapshot.rowStart(row2); k1 < snapshot.rowEnd(row1) && k2 < snapshot.rowEnd(row2);) {
+			int column1 = snapshot.column(k1), column2 = snapshot.column(k2);
+			if (column1 <= column2) k1++;
+			if (column2 <= column1) k2++;
+			if (column1 == column2) common++;
+		}
+		return common;
+	}
+
+
+}
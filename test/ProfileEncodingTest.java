@@ -0,0 +1,127 @@
+/**
+ * HUDUP: A FRAMEWORK OF E-COMMERCIAL RECOMMENDATION ALGORITHMS
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: http://www.locnguyen.net/st/products/hudup
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.hudup.core.alg.cf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import net.hudup.core.Constants;
+import net.hudup.core.Util;
+import net.hudup.core.data.Attribute;
+import net.hudup.core.data.Attribute.Type;
+import net.hudup.core.data.AttributeList;
+import net.hudup.core.data.MemFetcher;
+import net.hudup.core.data.Profile;
+
+/**
+ * This class tests that profile encoding normalizes numeric attributes by their ranges, so that codes and similarities of profiles are in [0, 1].
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class ProfileEncodingTest {
+
+	
+	/**
+	 * Tolerance of similarities.
+	 */
+	protected static final double DELTA = 1e-12;
+
+	
+	/**
+	 * Testing similarities of encoded profiles whose integer attribute is normalized by its range and whose missing values are skipped.
+	 * @throws Exception if any error raises.
+	 */
+	@Test
+	public void testNumericAttribute() throws Exception {
+		AttributeList attRef = attributes();
+		List<Profile> profiles = Util.newList();
+		profiles.add(profile(attRef, 1, 20, 1));
+		profiles.add(profile(attRef, 2, 30, 0));
+		profiles.add(profile(attRef, 3, 60, 1));
+		profiles.add(profile(attRef, 4, null, 0));
+		ProfileEncoding encoding = ProfileEncoding.build(new MemFetcher<Profile>(profiles));
+		assertEquals(2, encoding.width());
+		assertEquals(4, encoding.size());
+		
+		assertEquals(1.0 - (10.0 / 40.0 + 1.0) / 2.0, encoding.sim(1, 2, null, null), DELTA);
+		assertEquals(1.0 - 40.0 / 40.0 / 2.0, encoding.sim(1, 3, null, null), DELTA);
+		assertEquals(1.0, encoding.sim(2, 4, null, null), DELTA);
+		assertEquals(0.0, encoding.sim(1, 4, null, null), DELTA);
+		for (int id1 = 1; id1 <= 4; id1++) {
+			for (int id2 = 1; id2 <= 4; id2++) {
+				double sim = encoding.sim(id1, id2, null, null);
+				assertTrue("sim of profiles " + id1 + " and " + id2, sim >= 0 && sim <= 1);
+			}
+		}
+	}
+
+	
+	/**
+	 * Testing that values of profiles which were not encoded at setup are clamped into the range gathered at setup.
+	 * @throws Exception if any error raises.
+	 */
+	@Test
+	public void testOutOfRange() throws Exception {
+		AttributeList attRef = attributes();
+		List<Profile> profiles = Util.newList();
+		profiles.add(profile(attRef, 1, 20, 1));
+		profiles.add(profile(attRef, 2, 60, 1));
+		ProfileEncoding encoding = ProfileEncoding.build(new MemFetcher<Profile>(profiles));
+		
+		double[] codes = new double[encoding.width()];
+		encoding.encode(profile(attRef, 5, 100, null), codes, 0);
+		assertEquals(1.0, codes[0], 0);
+		assertEquals(Constants.UNUSED, codes[1], 0);
+		encoding.encode(profile(attRef, 6, 5, 1), codes, 0);
+		assertEquals(0.0, codes[0], 0);
+		
+		assertEquals(1.0, encoding.sim(2, 5, null, profile(attRef, 5, 100, 1)), DELTA);
+		assertEquals(0.5, encoding.sim(2, 6, null, profile(attRef, 6, 5, 1)), DELTA);
+		assertEquals(Constants.UNUSED, encoding.sim(2, 7, null, null), 0);
+	}
+
+	
+	/**
+	 * Creating attribute list of key, integer age, and bit flag.
+	 * @return attribute list of key, integer age, and bit flag.
+	 */
+	private static AttributeList attributes() {
+		AttributeList attRef = new AttributeList();
+		Attribute id = new Attribute("id", Type.integer);
+		id.setKey(true);
+		attRef.add(id);
+		attRef.add(new Attribute("age", Type.integer));
+		attRef.add(new Attribute("flag", Type.bit));
+		return attRef;
+	}
+
+	
+	/**
+	 * Creating profile with specified values.
+	 * @param attRef attribute list.
+	 * @param id profile identifier.
+	 * @param age age, which is missing if it is null.
+	 * @param flag flag, which is missing if it is null.
+	 * @return profile with specified values.
+	 */
+	private static Profile profile(AttributeList attRef, int id, Integer age, Integer flag) {
+		Profile profile = new Profile(attRef);
+		profile.setValue(0, id);
+		if (age != null) profile.setValue(1, age);
+		if (flag != null) profile.setValue(2, flag);
+		return profile;
+	}
+
+
+}
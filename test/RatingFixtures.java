@@ -0,0 +1,181 @@
+/**
+ * HUDUP: A FRAMEWORK OF E-COMMERCIAL RECOMMENDATION ALGORITHMS
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: http://www.locnguyen.net/st/products/hudup
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.hudup.core.alg.cf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import net.hudup.core.Util;
+import net.hudup.core.data.RatingVector;
+import net.hudup.core.data.UserRating;
+
+/**
+ * This utility class provides fixed ratings shared by tests of neighbor collaborative filtering algorithms.
+ * The fixed ratings cover identical users, a user with constant ratings, a user with one rating, and users without co-rated items, so that edge cases of measures are exercised.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public final class RatingFixtures {
+
+	
+	/**
+	 * User identifiers of fixed ratings, which are rows.
+	 */
+	public static final int[] USER_IDS = {1, 2, 3, 4, 5, 6, 7, 8};
+
+	
+	/**
+	 * Item identifiers of fixed ratings, which are columns.
+	 */
+	public static final int[] ITEM_IDS = {10, 11, 12, 13, 14, 15, 16, 17, 18, 19};
+
+	
+	/**
+	 * Fixed ratings whose rows are aligned with users and whose columns are aligned with items, where 0 means not rated.
+	 */
+	public static final double[][] RATINGS = {
+		{5, 3, 0, 1, 4, 0, 2, 0, 5, 1},
+		{4, 0, 0, 1, 5, 2, 0, 3, 4, 0},
+		{1, 1, 0, 5, 0, 4, 0, 0, 2, 5},
+		{0, 0, 5, 4, 0, 0, 3, 0, 0, 0},
+		{3, 3, 3, 3, 3, 0, 0, 0, 0, 0},
+		{5, 3, 0, 1, 4, 0, 2, 0, 5, 1},
+		{0, 0, 0, 0, 0, 0, 0, 2, 0, 0},
+		{2, 4, 1, 0, 0, 5, 5, 0, 1, 3}
+	};
+
+	
+	/**
+	 * Default value bins of fixed ratings.
+	 */
+	public static final double[] VALUE_BINS = {1, 2, 3, 4, 5};
+
+	
+	/**
+	 * Private constructor to prevent instantiation.
+	 */
+	private RatingFixtures() {
+
+	}
+
+	
+	/**
+	 * Building rating snapshot of fixed ratings.
+	 * @param valueBins value bins for quantized storage, which can be null for double storage.
+	 * @return rating snapshot of fixed ratings.
+	 */
+	public static RatingSnapshot snapshot(double[] valueBins) {
+		return snapshot(RATINGS, valueBins);
+	}
+
+	
+	/**
+	 * Building rating snapshot of specified ratings whose rows are aligned with {@link #USER_IDS} and whose columns are aligned with {@link #ITEM_IDS}.
+	 * @param ratings specified ratings, where 0 means not rated.
+	 * @param valueBins value bins for quantized storage, which can be null for double storage.
+	 * @return rating snapshot of specified ratings.
+	 */
+	public static RatingSnapshot snapshot(double[][] ratings, double[] valueBins) {
+		int[] rowStarts = new int[ratings.length + 1];
+		int[] fieldIds = new int[ratings.length * ITEM_IDS.length];
+		double[] values = new double[fieldIds.length];
+		int count = 0;
+		for (int row = 0; row < ratings.length; row++) {
+			for (int column = ratings[row].length - 1; column >= 0; column--) { //Unsorted rows are sorted by the snapshot.
+				if (ratings[row][column] == 0) continue;
+				fieldIds[count] = ITEM_IDS[column];
+				values[count] = ratings[row][column];
+				count++;
+			}
+			rowStarts[row + 1] = count;
+		}
+		
+		return RatingSnapshot.build(USER_IDS, ratings.length, rowStarts, fieldIds, values, valueBins);
+	}
+
+	
+	/**
+	 * Creating user rating vector of specified row of fixed ratings.
+	 * @param row specified row.
+	 * @return user rating vector.
+	 */
+	public static RatingVector vector(int row) {
+		RatingVector vRating = new UserRating(USER_IDS[row]);
+		for (int column = 0; column < ITEM_IDS.length; column++) {
+			if (RATINGS[row][column] != 0) vRating.put(ITEM_IDS[column], RATINGS[row][column]);
+		}
+		return vRating;
+	}
+
+	
+	/**
+	 * Creating user rating vectors of all rows of fixed ratings.
+	 * @return user rating vectors.
+	 */
+	public static List<RatingVector> vectors() {
+		List<RatingVector> vectors = Util.newList();
+		for (int row = 0; row < RATINGS.length; row++) vectors.add(vector(row));
+		return vectors;
+	}
+
+	
+	/**
+	 * Getting ratings of specified snapshot read from row-major layout.
+	 * @param snapshot specified snapshot.
+	 * @return map from row identifiers to maps from column identifiers to rating values.
+	 */
+	public static Map<Integer, Map<Integer, Double>> rows(RatingSnapshot snapshot) {
+		Map<Integer, Map<Integer, Double>> map = new TreeMap<>();
+		for (int row = 0; row < snapshot.rowCount(); row++) {
+			Map<Integer, Double> rowMap = new TreeMap<>();
+			for (int k = snapshot.rowStart(row); k < snapshot.rowEnd(row); k++)
+				rowMap.put(snapshot.columnId(snapshot.column(k)), snapshot.value(k));
+			map.put(snapshot.rowId(row), rowMap);
+		}
+		return map;
+	}
+
+	
+	/**
+	 * Getting ratings of specified snapshot read from column-major layout, checking that every entry refers back to its column.
+	 * @param snapshot specified snapshot whose column-major layout is built.
+	 * @return map from row identifiers to maps from column identifiers to rating values, which includes every row of the snapshot.
+	 */
+	public static Map<Integer, Map<Integer, Double>> columns(RatingSnapshot snapshot) {
+		Map<Integer, Map<Integer, Double>> map = new TreeMap<>();
+		for (int row = 0; row < snapshot.rowCount(); row++)
+			map.put(snapshot.rowId(row), new TreeMap<>());
+		for (int column = 0; column < snapshot.columnCount(); column++) {
+			for (int entry = snapshot.columnStart(column); entry < snapshot.columnEnd(column); entry++) {
+				int row = snapshot.row(entry), position = snapshot.position(entry);
+				if (entry > snapshot.columnStart(column)) assertTrue("rows of column are sorted", snapshot.row(entry - 1) < row);
+				assertEquals(column, snapshot.column(position));
+				assertTrue(position >= snapshot.rowStart(row) && position < snapshot.rowEnd(row));
+				map.get(snapshot.rowId(row)).put(snapshot.columnId(column), snapshot.value(position));
+			}
+		}
+		return map;
+	}
+
+	
+	/**
+	 * Creating a new instance of the default user-based neighbor algorithm.
+	 * @return new instance of the default user-based neighbor algorithm.
+	 */
+	public static NeighborCF newAlgorithm() {
+		return new net.hudup.alg.cf.NeighborCFUserBased();
+	}
+
+
+}
@@ -0,0 +1,181 @@
+/**
+ * HUDUP: A FRAMEWORK OF E-COMMERCIAL RECOMMENDATION ALGORITHMS
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: http://www.locnguyen.net/st/products/hudup
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.hudup.core.alg.cf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import net.hudup.core.Constants;
+import net.hudup.core.Util;
+import net.hudup.core.data.RatingVector;
+
+/**
+ * This class tests building rating snapshot and applying rating changes to it. A snapshot with applied changes must hold the same ratings in both layouts
+ * as a snapshot built from scratch, and the original snapshot must be left unchanged.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class RatingSnapshotTest {
+
+	
+	/**
+	 * Testing that building snapshot keeps all ratings and sorts rows by column.
+	 */
+	@Test
+	public void testBuild() {
+		for (double[] valueBins : new double[][] {null, RatingFixtures.VALUE_BINS}) {
+			RatingSnapshot snapshot = RatingFixtures.snapshot(valueBins);
+			assertEquals(RatingFixtures.USER_IDS.length, snapshot.rowCount());
+			assertEquals(RatingFixtures.ITEM_IDS.length, snapshot.columnCount());
+			assertEquals(valueBins != null, snapshot.getValues().isQuantized());
+			assertEquals(ratings(RatingFixtures.RATINGS), RatingFixtures.rows(snapshot));
+			
+			for (int row = 0; row < snapshot.rowCount(); row++) {
+				for (int k = snapshot.rowStart(row) + 1; k < snapshot.rowEnd(row); k++)
+					assertTrue(snapshot.column(k - 1) < snapshot.column(k));
+				
+				RatingVector vRating = snapshot.rowVector(row);
+				assertEquals(snapshot.rowId(row), vRating.id());
+				assertEquals(snapshot.rowLength(row), vRating.fieldIds(true).size());
+			}
+			assertEquals(RatingFixtures.rows(snapshot), RatingFixtures.columns(snapshot.buildColumns()));
+			assertEquals(-1, snapshot.rowOf(999));
+			assertEquals(-1, snapshot.columnOf(999));
+		}
+	}
+
+	
+	/**
+	 * Testing applying changes to double snapshot.
+	 */
+	@Test
+	public void testApply() {
+		testApply(null, false);
+		testApply(null, true);
+	}
+
+	
+	/**
+	 * Testing applying changes to quantized snapshot.
+	 */
+	@Test
+	public void testApplyQuantized() {
+		testApply(RatingFixtures.VALUE_BINS, false);
+		testApply(RatingFixtures.VALUE_BINS, true);
+	}
+
+	
+	/**
+	 * Testing that applying a rating which is not a value bin changes quantized storage into double storage.
+	 */
+	@Test
+	public void testApplyOutsideBins() {
+		RatingSnapshot snapshot = RatingFixtures.snapshot(RatingFixtures.VALUE_BINS);
+		RatingSnapshot applied = snapshot.apply(Arrays.asList(new RatingChange(1, 12, 2.5)), RatingFixtures.VALUE_BINS);
+		assertFalse(applied.getValues().isQuantized());
+		assertEquals(2.5, applied.value(position(applied, 1, 12)), 0);
+		assertTrue(snapshot.getValues().isQuantized());
+	}
+
+	
+	/**
+	 * Testing applying changes which update, insert, and remove ratings, add rows and columns, and remove all ratings of a row.
+	 * @param valueBins value bins of snapshot, null for double snapshot.
+	 * @param columns whether column-major layout is built before changes are applied.
+	 */
+	private static void testApply(double[] valueBins, boolean columns) {
+		RatingSnapshot snapshot = RatingFixtures.snapshot(valueBins);
+		if (columns) snapshot.buildColumns();
+		Map<Integer, Map<Integer, Double>> before = RatingFixtures.rows(snapshot);
+		
+		List<RatingChange> changes = Util.newList();
+		changes.add(new RatingChange(1, 10, 2)); //Update
+		changes.add(new RatingChange(1, 12, 4)); //Insert into existing row and column
+		changes.add(new RatingChange(2, 10, Constants.UNUSED)); //Removal
+		changes.add(new RatingChange(3, 20, 5)); //New column
+		changes.add(new RatingChange(9, 11, 3)); //New row
+		changes.add(new RatingChange(9, 5, 1)); //New row and new column before others
+		changes.add(new RatingChange(4, 12, 1)); //Overridden by the next change
+		changes.add(new RatingChange(4, 12, 3));
+		changes.add(new RatingChange(5, 99, Constants.UNUSED)); //Removal of unknown rating is ignored
+		changes.add(new RatingChange(77, 10, Constants.UNUSED));
+		changes.add(new RatingChange(7, 17, Constants.UNUSED)); //Removal of the only rating of a row
+		RatingSnapshot applied = snapshot.apply(changes, valueBins);
+		
+		Map<Integer, Map<Integer, Double>> expected = RatingFixtures.rows(snapshot);
+		for (RatingChange change : changes) {
+			Map<Integer, Double> row = expected.get(change.getUserId());
+			if (change.isRemoval()) {
+				if (row != null) row.remove(change.getItemId());
+				continue;
+			}
+			if (row == null) expected.put(change.getUserId(), row = new TreeMap<>());
+			row.put(change.getItemId(), change.getValue());
+		}
+		
+		String message = (valueBins != null ? "quantized" : "double") + (columns ? " with columns" : "");
+		assertEquals(message, before, RatingFixtures.rows(snapshot));
+		assertEquals(message, expected, RatingFixtures.rows(applied));
+		assertEquals(message, columns, applied.hasColumns());
+		assertEquals(message, expected, RatingFixtures.columns(applied.buildColumns()));
+		assertEquals(message, valueBins != null, applied.getValues().isQuantized());
+		
+		for (int row = 0; row < snapshot.rowCount(); row++)
+			assertEquals("rows keep their indices", snapshot.rowId(row), applied.rowId(row));
+		assertEquals(snapshot.rowCount() + 1, applied.rowCount());
+		assertEquals(0, applied.rowLength(applied.rowOf(7)));
+		for (int column = 1; column < applied.columnCount(); column++)
+			assertTrue("columns are sorted by identifier", applied.columnId(column - 1) < applied.columnId(column));
+	}
+
+	
+	/**
+	 * Getting ratings of specified matrix of fixed ratings.
+	 * @param ratings specified matrix whose rows are aligned with {@link RatingFixtures#USER_IDS} and whose columns are aligned with {@link RatingFixtures#ITEM_IDS}.
+	 * @return map from user identifiers to maps from item identifiers to rating values.
+	 */
+	private static Map<Integer, Map<Integer, Double>> ratings(double[][] ratings) {
+		Map<Integer, Map<Integer, Double>> map = new TreeMap<>();
+		for (int row = 0; row < ratings.length; row++) {
+			Map<Integer, Double> rowMap = new TreeMap<>();
+			for (int column = 0; column < ratings[row].length; column++) {
+				if (ratings[row][column] != 0) rowMap.put(RatingFixtures.ITEM_IDS[column], ratings[row][column]);
+			}
+			map.put(RatingFixtures.USER_IDS[row], rowMap);
+		}
+		return map;
+	}
+
+	
+	/**
+	 * Getting position of rating of specified row and column.
+	 * @param snapshot specified snapshot.
+	 * @param rowId row identifier.
+	 * @param columnId column identifier.
+	 * @return position of rating, -1 if the rating does not exist.
+	 */
+	private static int position(RatingSnapshot snapshot, int rowId, int columnId) {
+		int row = snapshot.rowOf(rowId), column = snapshot.columnOf(columnId);
+		for (int k = snapshot.rowStart(row); k < snapshot.rowEnd(row); k++) {
+			if (snapshot.column(k) == column) return k;
+		}
+		return -1;
+	}
+
+
+}
@@ -0,0 +1,211 @@
+/**
+ * HUDUP: A FRAMEWORK OF E-COMMERCIAL RECOMMENDATION ALGORITHMS
+ * (C) Copyright by Loc Nguyen's Academic Network
+ * Project homepage: http://www.locnguyen.net/st/products/hudup
+ * Email: ng_phloc@yahoo.com
+ * Phone: +84-975250362
+ */
+package net.hudup.core.alg.cf;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * This class tests writing rating snapshot file and reading it back by copying and by mapping, as well as rejecting files of other sources, corrupted files, and truncated files,
+ * and changing snapshots served from the mapping.
+ *
+ * @author Loc Nguyen
+ * @version 1.0
+ *
+ */
+public class SnapshotFileTest {
+
+	
+	/**
+	 * Checksum of source dataset of written files.
+	 */
+	protected static final long SOURCE_CHECKSUM = 0x5EED_CAFE_F00DL;
+
+	
+	/**
+	 * Temporary path of snapshot file.
+	 */
+	protected Path path = null;
+
+	
+	/**
+	 * Creating temporary path of snapshot file.
+	 * @throws IOException if any error raises.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		this.path = Files.createTempFile("snapshot", ".bin");
+	}
+
+	
+	/**
+	 * Deleting temporary snapshot file.
+	 * @throws IOException if any error raises.
+	 */
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(this.path);
+	}
+
+	
+	/**
+	 * Testing round trip of double snapshot.
+	 * @throws Exception if any error raises.
+	 */
+	@Test
+	public void testRoundTrip() throws Exception {
+		testRoundTrip(null);
+	}
+
+	
+	/**
+	 * Testing round trip of quantized snapshot.
+	 * @throws Exception if any error raises.
+	 */
+	@Test
+	public void testRoundTripQuantized() throws Exception {
+		testRoundTrip(RatingFixtures.VALUE_BINS);
+	}
+
+	
+	/**
+	 * Testing that files of other sources and missing files are not read.
+	 * @throws Exception if any error raises.
+	 */
+	@Test
+	public void testOtherSource() throws Exception {
+		write(null);
+		assertEquals(SOURCE_CHECKSUM, SnapshotFile.readSourceChecksum(this.path));
+		assertNull(SnapshotFile.read(this.path, SOURCE_CHECKSUM + 1, true));
+		assertNull(SnapshotFile.map(this.path, SOURCE_CHECKSUM + 1, true));
+		
+		Files.delete(this.path);
+		assertNull(SnapshotFile.read(this.path, SOURCE_CHECKSUM, true));
+		assertNull(SnapshotFile.map(this.path, SOURCE_CHECKSUM, true));
+	}
+
+	
+	/**
+	 * Testing that corrupted body is detected only when the body is verified, and that truncated file is rejected.
+	 * @throws Exception if any error raises.
+	 */
+	@Test
+	public void testCorrupted() throws Exception {
+		write(null);
+		long length = Files.size(this.path);
+		try (RandomAccessFile file = new RandomAccessFile(this.path.toFile(), "rw")) {
+			file.seek(SnapshotFile.HEADER_SIZE + 1);
+			int value = file.read();
+			file.seek(SnapshotFile.HEADER_SIZE + 1);
+			file.write(value ^ 0xFF);
+		}
+		for (boolean mapped : new boolean[] {false, true}) {
+			try {
+				if (mapped)
+					SnapshotFile.map(this.path, SOURCE_CHECKSUM, true);
+				else
+					SnapshotFile.read(this.path, SOURCE_CHECKSUM, true);
+				fail("Corrupted file is read");
+			}
+			catch (IOException e) {
+				assertTrue(e.getMessage().contains("corrupted"));
+			}
+		}
+		assertTrue(SnapshotFile.read(this.path, SOURCE_CHECKSUM, false) != null);
+		assertTrue(SnapshotFile.map(this.path, SOURCE_CHECKSUM, false) != null);
+		
+		try (RandomAccessFile file = new RandomAccessFile(this.path.toFile(), "rw")) {
+			file.setLength(length - 8);
+		}
+		for (boolean mapped : new boolean[] {false, true}) {
+			try {
+				if (mapped)
+					SnapshotFile.map(this.path, SOURCE_CHECKSUM, false);
+				else
+					SnapshotFile.read(this.path, SOURCE_CHECKSUM, false);
+				fail("Truncated file is read");
+			}
+			catch (IOException e) {
+				assertTrue(e.getMessage().contains("truncated"));
+			}
+		}
+	}
+
+	
+	/**
+	 * Testing that snapshot, moments, and storage of values are the same after writing and reading back by copying and by mapping.
+	 * @param valueBins value bins of snapshot, null for double snapshot.
+	 * @throws Exception if any error raises.
+	 */
+	private void testRoundTrip(double[] valueBins) throws Exception {
+		SnapshotFile written = write(valueBins);
+		SnapshotFile read = SnapshotFile.read(this.path, SOURCE_CHECKSUM, true);
+		SnapshotFile mapped = SnapshotFile.map(this.path, SOURCE_CHECKSUM, true);
+		
+		for (SnapshotFile file : new SnapshotFile[] {read, mapped}) {
+			RatingSnapshot expected = written.getSnapshot(), actual = file.getSnapshot();
+			assertTrue(actual.hasColumns());
+			assertEquals(expected.rowCount(), actual.rowCount());
+			assertEquals(expected.columnCount(), actual.columnCount());
+			assertEquals(expected.ratingCount(), actual.ratingCount());
+			assertEquals(expected.getValues().isQuantized(), actual.getValues().isQuantized());
+			assertEquals(RatingFixtures.rows(expected), RatingFixtures.rows(actual));
+			assertEquals(RatingFixtures.rows(expected), RatingFixtures.columns(actual));
+			for (int row = 0; row < expected.rowCount(); row++)
+				assertEquals(expected.rowVector(row).fieldIds(true), actual.rowVector(row).fieldIds(true));
+			
+			assertArrayEquals(written.getRowMeans(), file.getRowMeans(), 0);
+			assertArrayEquals(written.getRowVars(), file.getRowVars(), 0);
+			assertArrayEquals(written.getColumnMeans(), file.getColumnMeans(), 0);
+			assertArrayEquals(written.getColumnVars(), file.getColumnVars(), 0);
+			assertEquals(written.getRatingMean(), file.getRatingMean(), 0);
+			assertEquals(written.getRatingVar(), file.getRatingVar(), 0);
+			assertEquals(SOURCE_CHECKSUM, file.getSourceChecksum());
+		}
+		
+		assertTrue(mapped.getSnapshot() instanceof SnapshotFile.MappedSnapshot);
+		List<RatingChange> changes = Arrays.asList(new RatingChange(1, 10, 1), new RatingChange(2, 20, 4), new RatingChange(9, 11, 2));
+		RatingSnapshot expected = written.getSnapshot().apply(changes, valueBins), actual = mapped.getSnapshot().apply(changes, valueBins);
+		assertTrue(!(actual instanceof SnapshotFile.MappedSnapshot));
+		assertEquals(RatingFixtures.rows(expected), RatingFixtures.rows(actual));
+		assertEquals(RatingFixtures.rows(expected), RatingFixtures.columns(actual));
+		assertEquals(expected.getValues().isQuantized(), actual.getValues().isQuantized());
+	}
+
+	
+	/**
+	 * Writing snapshot file of fixed ratings whose moments are calculated by the default algorithm.
+	 * @param valueBins value bins of snapshot, null for double snapshot.
+	 * @return written snapshot file.
+	 * @throws Exception if any error raises.
+	 */
+	private SnapshotFile write(double[] valueBins) throws Exception {
+		NeighborCF alg = RatingFixtures.newAlgorithm();
+		RatingSnapshot snapshot = RatingFixtures.snapshot(valueBins);
+		alg.setupSnapshot(snapshot);
+		SnapshotFile file = new SnapshotFile(snapshot, alg.userMeanArray, alg.userVarArray, alg.itemMeanArray, alg.itemVarArray, alg.ratingMean, alg.ratingVar, SOURCE_CHECKSUM);
+		file.write(this.path);
+		return file;
+	}
+
+
+}